@@ -2,16 +2,19 @@ package com.cheng.linegroup.api.line;
 
 import com.cheng.linegroup.common.domain.Line;
 import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.enums.LineEndpoint;
 import com.cheng.linegroup.exception.BizException;
 import com.cheng.linegroup.utils.ApiUtils;
+import com.cheng.linegroup.utils.HttpRequest;
 import com.cheng.linegroup.utils.JacksonUtils;
-import com.cheng.linegroup.utils.OkHttpUtils;
 import com.cheng.linegroup.utils.dto.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author cheng
  * @since 2023/12/3 5:39 PM
@@ -22,23 +25,39 @@ import org.springframework.stereotype.Component;
 public class GroupAPI {
 
     private final Line line;
+    private final LineApiGateway lineApiGateway;
 
     public <T> T getGroupChatSummary(String groupId, Class<T> lineGroupResponse) {
         String url = combineParamsUrl(Api.LINE_GROUP_SUMMARY, groupId);
-        return handleApiResponse(url, lineGroupResponse);
+        return handleApiResponse(Api.LINE_GROUP_SUMMARY, url, lineGroupResponse);
     }
 
     public <T> T getGroupChatMemberProfile(String groupId, String userId, Class<T> lineGroupResponse) {
         String url = combineParamsUrl(Api.LINE_GROUP_MEMBER_PROFILE, groupId, userId);
-        return handleApiResponse(url, lineGroupResponse);
+        return handleApiResponse(Api.LINE_GROUP_MEMBER_PROFILE, url, lineGroupResponse);
+    }
+
+    /**
+     * 非同步取得群組摘要，非 200 時以 {@link BizException} 結束
+     */
+    public <T> CompletableFuture<T> getGroupChatSummaryAsync(String groupId, Class<T> lineGroupResponse) {
+        String url = combineParamsUrl(Api.LINE_GROUP_SUMMARY, groupId);
+        HttpRequest request = HttpRequest.get(url).bearer(line.getMessage().getChannelToken());
+        return lineApiGateway.executeAsync(LineEndpoint.of(Api.LINE_GROUP_SUMMARY), request, null)
+                .thenApply(apiResponse -> decode(apiResponse, lineGroupResponse));
     }
 
     private String combineParamsUrl(Api api, Object... param) {
         return ApiUtils.getUrl(line.getApiDomain(), String.format(api.getUri(), param));
     }
 
-    private <T> T handleApiResponse(String url, Class<T> responseType) {
-        ApiResponse apiResponse = OkHttpUtils.builder().addLineAuthHeader(line.getMessage().getChannelToken()).get(url).sync();
+    private <T> T handleApiResponse(Api api, String url, Class<T> responseType) {
+        HttpRequest request = HttpRequest.get(url).bearer(line.getMessage().getChannelToken());
+        ApiResponse apiResponse = lineApiGateway.execute(LineEndpoint.of(api), request);
+        return decode(apiResponse, responseType);
+    }
+
+    private static <T> T decode(ApiResponse apiResponse, Class<T> responseType) {
         int httpStatusCode = apiResponse.getHttpStatusCode();
         String resultData = apiResponse.getResultData();
         if (httpStatusCode == HttpStatus.OK.value()) {
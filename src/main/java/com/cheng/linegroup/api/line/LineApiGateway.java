@@ -0,0 +1,415 @@
+package com.cheng.linegroup.api.line;
+
+import com.cheng.linegroup.common.domain.LineGateway;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
+import com.cheng.linegroup.enums.LineEndpoint;
+import com.cheng.linegroup.enums.Upstream;
+import com.cheng.linegroup.exception.BizException;
+import com.cheng.linegroup.exception.UpstreamRejectedException;
+import com.cheng.linegroup.utils.HttpRequest;
+import com.cheng.linegroup.utils.OkHttpUtils;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 呼叫 LINE Messaging API 的入口，依 {@link LineEndpoint} 分別限制速率並處理重試。
+ * <ul>
+ *   <li>每個端點分類一個 token bucket，額度不足時排隊等待，超過 max-queue-wait 直接拒絕 (429 {@link BizException})</li>
+ *   <li>收到 429 時依 Retry-After (沒有則指數退避) 暫停整個分類，並重試這次請求</li>
+ *   <li>push、multicast 帶 X-Line-Retry-Key，重試時沿用同一個 key，LINE 會排除重複送出；
+ *       重試收到 409 表示先前的請求已被接受，視為成功。呼叫端已帶 key 時沿用呼叫端的 key</li>
+ *   <li>連線失敗或 5xx 只在可安全重試的分類重試；reply token 只能使用一次，reply 只在 429 時重試</li>
+ *   <li>呼叫端可指定 retryUntil (reply token 期限)，重試會等到期限之後時不再重試，直接回傳 429 由呼叫端改用 push</li>
+ *   <li>webhook lane 上的呼叫應使用 {@link #executeAsync}，重試的等待交給排程器，不會讓 lane 的執行緒 sleep</li>
+ *   <li>每次呼叫經過 {@link UpstreamGuard} (api-data 的內容端點為 {@link Upstream#LINE_DATA}，其餘為 {@link Upstream#LINE_MESSAGING})，
+ *       斷路或 bulkhead 已滿時直接以 {@link UpstreamRejectedException} 失敗，不再重試</li>
+ *   <li>重試途中才被拒絕 (額度或斷路) 時，先前的請求可能已被接受，改以一般的 {@link BizException} 失敗，
+ *       呼叫端不能當作沒有送出而換新的 retry key 重送</li>
+ * </ul>
+ *
+ * @author cheng
+ * @since 2026/10/17 22:20
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LineApiGateway implements MetricsSource {
+
+    public static final String RETRY_KEY_HEADER = "X-Line-Retry-Key";
+
+    private static final int NO_RETRY = -1;
+
+    private final LineGateway setting;
+    private final UpstreamGuard upstreamGuard;
+
+    private final Map<LineEndpoint, Family> families = new EnumMap<>(LineEndpoint.class);
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        for (LineEndpoint endpoint : LineEndpoint.values()) {
+            double permits = setting.permitsPerSecondOf(endpoint);
+            families.put(endpoint, new Family(permits, Math.max(1, permits * setting.getBurst().toMillis() / 1000d)));
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("lineApiGateway_"));
+    }
+
+    /**
+     * 同步送出，排隊與重試的等待都在呼叫端執行緒
+     *
+     * @return 最後一次的回應；push、multicast 重試時收到 409 會改為 200
+     * @throws BizException             等待額度超過上限或等待中被中斷
+     * @throws UpstreamRejectedException 上游斷路或 bulkhead 已滿 (第一次送出前)
+     */
+    public ApiResponse execute(LineEndpoint endpoint, HttpRequest request) {
+        return execute(endpoint, request, Long.MAX_VALUE);
+    }
+
+    /**
+     * 同步送出，重試的等待不超過 retryUntil
+     *
+     * @param retryUntil 重試的期限 (epoch millis)，等待後會超過期限時不再重試，回傳最後一次的回應
+     * @see #execute(LineEndpoint, HttpRequest)
+     */
+    public ApiResponse execute(LineEndpoint endpoint, HttpRequest request, long retryUntil) {
+        Family family = families.get(endpoint);
+        HttpRequest req = withRetryKey(endpoint, request);
+        for (int attempt = 0; ; attempt++) {
+            ApiResponse response;
+            try {
+                acquire(endpoint, family);
+                response = upstreamGuard.execute(Upstream.of(endpoint), req);
+            } catch (BizException | UpstreamRejectedException e) {
+                throw attempt == 0 ? e : retryAborted(endpoint, attempt, e);
+            }
+            long delay = retryDelay(endpoint, family, response, attempt, retryUntil);
+            if (delay == NO_RETRY) {
+                return accepted(endpoint, response, attempt);
+            }
+            family.retries.increment();
+            log.info("Retry LINE API, endpoint:{}, httpStatus:{}, attempt:{}, delay:{}ms",
+                    endpoint, response.getHttpStatusCode(), attempt + 1, delay);
+            sleep(delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 非同步送出，排隊與重試的等待交給排程器，不佔用執行緒
+     *
+     * @param timeout 單次呼叫的逾時，null 表示使用 client 預設值
+     * @return 額度不足時以 {@link BizException} 結束；取消時會一併取消進行中的呼叫
+     */
+    public CompletableFuture<ApiResponse> executeAsync(LineEndpoint endpoint, HttpRequest request, Duration timeout) {
+        return executeAsync(endpoint, request, timeout, Long.MAX_VALUE);
+    }
+
+    /**
+     * 非同步送出，重試的等待不超過 retryUntil
+     *
+     * @param retryUntil 重試的期限 (epoch millis)，等待後會超過期限時不再重試，以最後一次的回應結束
+     * @see #executeAsync(LineEndpoint, HttpRequest, Duration)
+     */
+    public CompletableFuture<ApiResponse> executeAsync(LineEndpoint endpoint, HttpRequest request, Duration timeout,
+                                                       long retryUntil) {
+        CompletableFuture<ApiResponse> result = new CompletableFuture<>();
+        AtomicReference<Future<?>> inflight = new AtomicReference<>();
+        result.whenComplete((r, t) -> {
+            Future<?> f = inflight.get();
+            if (result.isCancelled() && f != null) {
+                f.cancel(true);
+            }
+        });
+        attemptAsync(endpoint, families.get(endpoint), withRetryKey(endpoint, request), timeout, retryUntil, 0, result, inflight);
+        return result;
+    }
+
+    /**
+     * 只限制速率，不重試 (handler 可能已讀取部分內容)
+     */
+    public <T> T stream(LineEndpoint endpoint, HttpRequest request, OkHttpUtils.ResponseHandler<T> handler) throws IOException {
+        acquire(endpoint, families.get(endpoint));
+        return upstreamGuard.stream(Upstream.of(endpoint), request, handler);
+    }
+
+    private void attemptAsync(LineEndpoint endpoint, Family family, HttpRequest request, Duration timeout, long retryUntil,
+                              int attempt, CompletableFuture<ApiResponse> result, AtomicReference<Future<?>> inflight) {
+        if (result.isDone()) {
+            return;
+        }
+        long wait = reserve(endpoint, family);
+        if (wait < 0) {
+            BizException e = rejected(endpoint);
+            result.completeExceptionally(attempt == 0 ? e : retryAborted(endpoint, attempt, e));
+            return;
+        }
+        Runnable send = () -> {
+            CompletableFuture<ApiResponse> call = upstreamGuard.executeAsync(Upstream.of(endpoint), request, timeout);
+            inflight.set(call);
+            call.whenComplete((response, e) -> {
+                if (e != null && UpstreamGuard.isRejected(e)) {
+                    result.completeExceptionally(attempt == 0 ? e : retryAborted(endpoint, attempt, e));
+                    return;
+                }
+                ApiResponse r = e != null ? ApiResponse.empty() : response;
+                long delay = retryDelay(endpoint, family, r, attempt, retryUntil);
+                if (delay == NO_RETRY) {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(accepted(endpoint, r, attempt));
+                    }
+                    return;
+                }
+                family.retries.increment();
+                log.info("Retry LINE API, endpoint:{}, httpStatus:{}, attempt:{}, delay:{}ms",
+                        endpoint, r.getHttpStatusCode(), attempt + 1, delay);
+                inflight.set(scheduler.schedule(
+                        () -> attemptAsync(endpoint, family, request, timeout, retryUntil, attempt + 1, result, inflight),
+                        delay, TimeUnit.MILLISECONDS));
+            });
+        };
+        if (wait == 0) {
+            send.run();
+        } else {
+            inflight.set(scheduler.schedule(send, wait, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private static HttpRequest withRetryKey(LineEndpoint endpoint, HttpRequest request) {
+        if (!endpoint.isRetryKey() || request.header(RETRY_KEY_HEADER) != null) {
+            return request;
+        }
+        return request.header(RETRY_KEY_HEADER, UUID.randomUUID().toString());
+    }
+
+    private void acquire(LineEndpoint endpoint, Family family) {
+        long wait = reserve(endpoint, family);
+        if (wait < 0) {
+            throw rejected(endpoint);
+        }
+        if (wait > 0) {
+            sleep(wait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return 需要等待的奈秒數，超過 max-queue-wait 時回傳 -1 且不佔用額度
+     */
+    private long reserve(LineEndpoint endpoint, Family family) {
+        family.requests.increment();
+        long wait = family.reserve(System.nanoTime(), setting.getMaxQueueWait().toNanos());
+        if (wait < 0) {
+            family.rejected.increment();
+            log.warn("LINE API rate limit exceeded, endpoint:{}", endpoint);
+            return wait;
+        }
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(wait);
+        family.queueWaitMs.add(waitMs);
+        family.maxQueueWaitMs.accumulate(waitMs);
+        return wait;
+    }
+
+    private static BizException rejected(LineEndpoint endpoint) {
+        return BizException.error(HttpStatus.TOO_MANY_REQUESTS.value(), "LINE API rate limit exceeded: " + endpoint);
+    }
+
+    /**
+     * 重試途中被拒絕，先前的請求可能已被 LINE 接受
+     */
+    private static BizException retryAborted(LineEndpoint endpoint, int attempt, Throwable cause) {
+        return BizException.error(cause, String.format("LINE API retry aborted after %d attempts: %s", attempt, endpoint));
+    }
+
+    /**
+     * @return 重試前要等待的毫秒數；不重試時回傳 {@link #NO_RETRY}
+     */
+    private long retryDelay(LineEndpoint endpoint, Family family, ApiResponse response, int attempt, long retryUntil) {
+        int status = response.getHttpStatusCode();
+        long delay;
+        if (status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            family.throttled.increment();
+            delay = retryAfterMillis(response.getRetryAfter(), attempt);
+            // 暫停整個分類，其他呼叫端也會一起等待
+            family.pause(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+        } else if (endpoint.isIdempotent() && (status == 0 || status >= HttpStatus.INTERNAL_SERVER_ERROR.value())) {
+            delay = backoff(attempt);
+        } else {
+            return NO_RETRY;
+        }
+        if (attempt >= setting.getMaxRetries() || delay > setting.getMaxRetryWait().toMillis()) {
+            return NO_RETRY;
+        }
+        if (System.currentTimeMillis() + delay > retryUntil) {
+            family.pastDeadline.increment();
+            log.info("Skip LINE API retry past deadline, endpoint:{}, delay:{}ms", endpoint, delay);
+            return NO_RETRY;
+        }
+        return delay;
+    }
+
+    /**
+     * push、multicast 重試時收到 409 表示先前帶相同 retry key 的請求已被接受
+     */
+    private static ApiResponse accepted(LineEndpoint endpoint, ApiResponse response, int attempt) {
+        if (endpoint.isRetryKey() && attempt > 0 && response.getHttpStatusCode() == HttpStatus.CONFLICT.value()) {
+            log.info("LINE API request already accepted, endpoint:{}, lineRequestId:{}", endpoint, response.getLineRequestId());
+            return response.setHttpStatusCode(HttpStatus.OK.value());
+        }
+        return response;
+    }
+
+    /**
+     * Retry-After 可能是秒數或 HTTP date，無法解析時使用指數退避
+     */
+    private long retryAfterMillis(String retryAfter, int attempt) {
+        if (StringUtils.isNotBlank(retryAfter)) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+                } catch (Exception ignored) {
+                    log.debug("Unparseable Retry-After:{}", retryAfter);
+                }
+            }
+        }
+        return backoff(attempt);
+    }
+
+    private long backoff(int attempt) {
+        long delay = setting.getInitialBackoff().toMillis() << Math.min(attempt, 16);
+        return delay > 0 ? Math.min(delay, setting.getMaxRetryWait().toMillis()) : setting.getMaxRetryWait().toMillis();
+    }
+
+    private static void sleep(long duration, TimeUnit unit) {
+        try {
+            unit.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw BizException.error(e, "interrupted while waiting for LINE API rate limit");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "lineApiGateway";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        families.forEach((endpoint, family) -> {
+            long requests = family.requests.sum();
+            long admitted = requests - family.rejected.sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("permitsPerSecond", family.permitsPerSecond);
+            m.put("requests", requests);
+            m.put("rejected", family.rejected.sum());
+            m.put("throttled", family.throttled.sum());
+            m.put("retries", family.retries.sum());
+            m.put("retriesPastDeadline", family.pastDeadline.sum());
+            m.put("queueWaitAvgMs", admitted == 0 ? 0 : family.queueWaitMs.sum() / admitted);
+            m.put("queueWaitMaxMs", family.maxQueueWaitMs.get());
+            m.put("pausedMs", family.pausedMillis(now));
+            metrics.put(endpoint.name().toLowerCase(), m);
+        });
+        return metrics;
+    }
+
+    /**
+     * 單一端點分類的 token bucket 與統計
+     * <p>
+     * tokens 可以是負數，代表已被預約、尚未補回的額度；預約者依序等待補回，先預約的先送出
+     */
+    private static final class Family {
+        private final double permitsPerSecond;
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private long pausedUntil = lastRefill;
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder pastDeadline = new LongAdder();
+        private final LongAdder queueWaitMs = new LongAdder();
+        private final LongAccumulator maxQueueWaitMs = new LongAccumulator(Math::max, 0);
+
+        private Family(double permitsPerSecond, double capacity) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * 預約一個額度
+         *
+         * @return 需要等待的奈秒數；超過 maxWait 時回傳 -1
+         */
+        private synchronized long reserve(long now, long maxWait) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+                lastRefill = now;
+            }
+            long wait = Math.max(0, pausedUntil - now);
+            if (tokens < 1) {
+                wait += (long) Math.ceil((1 - tokens) / permitsPerNano);
+            }
+            if (wait > maxWait) {
+                return -1;
+            }
+            tokens -= 1;
+            return wait;
+        }
+
+        /**
+         * 暫停到指定時間，暫停期間不累積額度，避免恢復時一次送出大量請求
+         */
+        private synchronized void pause(long until) {
+            if (until > pausedUntil) {
+                pausedUntil = until;
+                tokens = Math.min(tokens, 0);
+                lastRefill = until;
+            }
+        }
+
+        private synchronized long pausedMillis(long now) {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - now));
+        }
+    }
+}
@@ -3,21 +3,36 @@ package com.cheng.linegroup.api.line;
 import com.cheng.linegroup.api.response.MessageContentResponse;
 import com.cheng.linegroup.common.domain.Line;
 import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.enums.LineEndpoint;
+import com.cheng.linegroup.media.MediaContentStore;
+import com.cheng.linegroup.media.StoredMedia;
 import com.cheng.linegroup.utils.ApiUtils;
+import com.cheng.linegroup.utils.HttpRequest;
 import com.cheng.linegroup.utils.JacksonUtils;
-import com.cheng.linegroup.utils.OkHttpUtils;
-import com.cheng.linegroup.utils.dto.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import okhttp3.ResponseBody;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.Objects;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MessageContentAPI {
 
+    /**
+     * 預覽圖在 {@link MediaContentStore} 中的 id 後綴
+     */
+    public static final String PREVIEW_SUFFIX = "-preview";
+
     private final Line line;
+    private final MediaContentStore mediaContentStore;
+    private final LineApiGateway lineApiGateway;
 
     /**
      * [GET] https://api-data.line.me/v2/bot/message/{messageId}/content
@@ -28,11 +43,12 @@ public class MessageContentAPI {
      * {messageId} 只能取得圖像、視訊、音訊、檔案<p>
      * <p>
      * response<p>
-     * http status 200 和二進位內容，資料檔案格式則在 response header Content-Type
+     * http status 200 和二進位內容，資料檔案格式則在 response header Content-Type<p>
+     * 二進位內容會串流存入 {@link MediaContentStore}，回應只帶 contentHash
      */
     public <T> T getMessageContent(String messageId, Class<T> messageContentResponse) {
         String url = combineParamsUrl(Api.LINE_MESSAGE_CONTENT, messageId);
-        return handleApiResponse(url, messageContentResponse);
+        return handleApiResponse(url, messageId, messageContentResponse);
     }
 
     /**
@@ -49,7 +65,7 @@ public class MessageContentAPI {
      */
     public <T> T getVideoOrAudioStatus(String messageId, Class<T> messageContentResponse) {
         String url = combineParamsUrl(Api.LINE_MESSAGE_CONTENT_TRANSCODING, messageId);
-        return handleApiResponse(url, messageContentResponse);
+        return handleApiResponse(url, messageId, messageContentResponse);
     }
 
     /**
@@ -61,40 +77,48 @@ public class MessageContentAPI {
      * {messageId} 主要取得影像或影片的預覽影像<p>
      * <p>
      * response<p>
-     * http status 200 和以二進位形式回傳預覽影像
+     * http status 200 和以二進位形式回傳預覽影像<p>
+     * 預覽影像以 {messageId}-preview 存入 {@link MediaContentStore}
      */
     public <T> T getImageOrVideoPreview(String messageId, Class<T> messageContentResponse) {
         String url = combineParamsUrl(Api.LINE_MESSAGE_CONTENT_PREVIEW, messageId);
-        return handleApiResponse(url, messageContentResponse);
+        return handleApiResponse(url, messageId + PREVIEW_SUFFIX, messageContentResponse);
     }
 
     private String combineParamsUrl(Api api, Object... param) {
         return ApiUtils.getUrl(line.getApiDataDomain(), String.format(api.getUri(), param));
     }
 
-    private <T> T handleApiResponse(String url, Class<T> responseType) {
-        ApiResponse apiResponse = OkHttpUtils.builder().addLineAuthHeader(line.getMessage().getChannelToken()).get(url).sync();
-        int httpStatusCode = apiResponse.getHttpStatusCode();
-        String contentType = apiResponse.getContentType();
-        String resultData = apiResponse.getResultData();
-        if (httpStatusCode == HttpStatus.OK.value()) {
-            if ("application/json".equals(contentType)) {
-                log.info("resultData:{}", resultData);
-                return JacksonUtils.decodeFromJson(resultData, responseType);
-            } else if (contentType.startsWith("audio") || contentType.startsWith("video")) {
-                log.info("contentType: {}", contentType);
-                MessageContentResponse response = MessageContentResponse.builder()
+    /**
+     * JSON 回應 (狀態或錯誤訊息) 直接解析；二進位內容不讀進記憶體，邊下載邊寫入 {@link MediaContentStore}
+     */
+    private <T> T handleApiResponse(String url, String storeId, Class<T> responseType) {
+        try {
+            HttpRequest request = HttpRequest.get(url).bearer(line.getMessage().getChannelToken());
+            return lineApiGateway.stream(LineEndpoint.CONTENT, request, response -> {
+                String contentType = response.header(HttpHeaders.CONTENT_TYPE);
+                ResponseBody body = Objects.requireNonNull(response.body());
+                if (!response.isSuccessful() || contentType == null || contentType.startsWith(MediaType.APPLICATION_JSON_VALUE)) {
+                    String resultData = body.string();
+                    log.info("httpStatus:{}, resultData:{}", response.code(), resultData);
+                    T result = JacksonUtils.decodeFromJson(resultData, responseType);
+                    if (result instanceof MessageContentResponse contentResponse) {
+                        contentResponse.setHttpStatus(response.code());
+                    }
+                    return result;
+                }
+                StoredMedia media = mediaContentStore.store(storeId, contentType, body.byteStream());
+                log.info("contentType:{}, stored:{}, size:{}", contentType, media.hash(), media.size());
+                return responseType.cast(MessageContentResponse.builder()
                         .contentType(contentType)
-                        .binaryData(apiResponse.getBinaryData())
-                        .build();
-                return responseType.cast(response);
-            } else {
-                log.error("Unexpected contentType: {}", contentType);
-                return null;
-            }
-        } else {
-            return JacksonUtils.decodeFromJson(resultData, responseType);
-//            throw BizException.error(httpStatusCode, resultData);
+                        .contentHash(media.hash())
+                        .contentLength(media.size())
+                        .httpStatus(response.code())
+                        .build());
+            });
+        } catch (IOException e) {
+            log.error("ERR:{}", ExceptionUtils.getStackTrace(e));
+            return null;
         }
     }
 }
@@ -1,5 +1,6 @@
 package com.cheng.linegroup.api.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -32,6 +33,17 @@ public class MessageContentResponse {
     private String status;
 
     private String contentType;
-    private byte[] binaryData;
+
+    /**
+     * 內容已串流存入 {@link com.cheng.linegroup.media.MediaContentStore}，以 sha256 取得
+     */
+    private String contentHash;
+    private Long contentLength;
+
+    /**
+     * LINE 回應的 http status，用來區分內容已過期 (404 / 410) 與其他錯誤
+     */
+    @JsonIgnore
+    private Integer httpStatus;
 
 }
@@ -24,5 +24,20 @@ public class RedisPrefix {
      */
     public static final String REFRESH_TOKEN = "token:refresh:";
 
+    /**
+     * 已處理過的 webhookEventId
+     */
+    public static final String WEBHOOK_EVENT = "webhook:event:";
+
+    /**
+     * 每日已發送圖片的 bitmap，完整 key 為 image:sent:{yyyyMMdd}:{scope}
+     */
+    public static final String IMAGE_SENT = "image:sent:";
+
+    /**
+     * 每日發送圖片的次數，完整 key 為 image:sent-count:{yyyyMMdd}:{scope}
+     */
+    public static final String IMAGE_SENT_COUNT = "image:sent-count:";
+
     public static final String PERSONAL = "personal";
 }
@@ -0,0 +1,35 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 圖片目錄 (image.base-path) 的掃描與監聽設定
+ *
+ * @author cheng
+ * @since 2026/10/17 19:40
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.catalog")
+public class ImageCatalogSetting {
+
+    /**
+     * 以 WatchService 監聽目錄變更，關閉時只能透過 resetImages 重新掃描
+     */
+    private boolean watch = true;
+
+    /**
+     * 收到變更後等待目錄靜止多久才發布新的清單，避免複製大量檔案時不斷重建
+     */
+    private Duration debounce = Duration.ofMillis(500);
+
+    /**
+     * 納入清單的副檔名 (小寫)
+     */
+    private List<String> extensions = List.of("jpg", "jpeg", "png");
+}
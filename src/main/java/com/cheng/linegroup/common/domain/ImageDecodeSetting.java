@@ -0,0 +1,35 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 圖片解碼與縮圖的記憶體限制
+ *
+ * @author cheng
+ * @since 2026/10/17 20:20
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.decode")
+public class ImageDecodeSetting {
+
+    /**
+     * 同時進行中的解碼 / 縮圖可使用的像素記憶體合計 (估算值，bytes)，
+     * 同時能執行幾張由這個預算與每張圖的大小決定，而不是固定的執行緒數
+     */
+    private long memoryBudgetBytes = 128 * 1024 * 1024;
+
+    /**
+     * 解碼時保留目標尺寸幾倍的解析度，再交給 Thumbnailator 平滑縮小，避免直接抽樣產生鋸齒
+     */
+    private int oversample = 2;
+
+    /**
+     * 等待記憶體預算的最長時間，逾時回應 503
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(10);
+}
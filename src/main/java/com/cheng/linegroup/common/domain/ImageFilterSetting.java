@@ -0,0 +1,37 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 分塊平行濾鏡設定
+ *
+ * @author cheng
+ * @since 2026/10/17 21:00
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.filter")
+public class ImageFilterSetting {
+
+    /**
+     * 每個分塊的邊長 (不含重疊的邊界)
+     */
+    private int tileSize = 512;
+
+    /**
+     * ForkJoinPool 的平行度，0 為 CPU 核心數
+     */
+    private int parallelism = 0;
+
+    /**
+     * 每種分塊尺寸最多保留幾個可重複使用的暫存影像，只有完整尺寸的分塊會放回 pool
+     */
+    private int pooledBuffersPerSize = 32;
+
+    /**
+     * 所有 pool 中暫存影像合計的上限 (估算值，bytes)
+     */
+    private long pooledMaxBytes = 64 * 1024 * 1024;
+}
@@ -0,0 +1,53 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * /img/{name}/{w}/{h} 縮圖快取設定
+ *
+ * @author cheng
+ * @since 2026/10/17 20:00
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.resize-cache")
+public class ImageResizeCacheSetting {
+
+    /**
+     * 記憶體中縮圖 (已編碼的 bytes) 合計的上限，超過時淘汰最久沒用到的
+     */
+    private long memoryMaxBytes = 64 * 1024 * 1024;
+
+    /**
+     * 磁碟快取，記憶體被淘汰後仍可直接讀檔而不必重新縮圖
+     */
+    private boolean diskEnabled = true;
+
+    private String diskDir = System.getProperty("java.io.tmpdir") + "/linegroup-resize";
+
+    /**
+     * 磁碟快取合計的上限，超過時刪除最久沒用到的檔案
+     */
+    private long diskMaxBytes = 512L * 1024 * 1024;
+
+    /**
+     * 允許的最大寬高，超過時回應 400
+     */
+    private int maxDimension = 2048;
+
+    /**
+     * 實際輸出的尺寸，要求的寬高各自往上取到最接近的一級 (超過最大一級時取最大一級)，
+     * 任意尺寸的請求只會產生有限種縮圖
+     */
+    private List<Integer> sizeBuckets = List.of(64, 128, 240, 360, 480, 640, 800, 1024, 1280, 1600, 2048);
+
+    /**
+     * 回應的 Cache-Control max-age
+     */
+    private Duration maxAge = Duration.ofDays(7);
+}
@@ -0,0 +1,57 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 圖片預先產生的縮圖 (預覽圖、限制尺寸的原圖、模糊預告圖) 設定
+ *
+ * @author cheng
+ * @since 2026/10/17 20:40
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.variants")
+public class ImageVariantSetting {
+
+    private boolean enabled = true;
+
+    /**
+     * 產生的檔案存放目錄，不可放在 image.base-path 底下，否則會被圖片目錄當成新圖片
+     */
+    private String dir = System.getProperty("java.io.tmpdir") + "/linegroup-variants";
+
+    /**
+     * 本服務對外的網址 (https)，圖片連結為 {publicUrl}/img/variant/{variant}/{file}；
+     * 未設定時訊息仍使用原圖連結
+     */
+    private String publicUrl;
+
+    /**
+     * LINE previewImageUrl 使用的預覽圖最大邊長
+     */
+    private int previewSize = 240;
+
+    /**
+     * LINE originalContentUrl 使用的原圖最大邊長，原圖不超過時直接使用原圖
+     */
+    private int originalMaxSize = 2048;
+
+    private float quality = 0.85f;
+
+    /**
+     * 是否額外產生模糊的預告圖
+     */
+    private boolean teaserEnabled = false;
+
+    /**
+     * 模糊半徑，數字越大越模糊
+     */
+    private float teaserRadius = 40f;
+
+    /**
+     * 背景產生縮圖的執行緒數，0 為 CPU 核心數
+     */
+    private int threads = 0;
+}
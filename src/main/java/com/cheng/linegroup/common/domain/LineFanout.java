@@ -0,0 +1,49 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 群發工作 (multicast / push) 的設定
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "line.fanout")
+public class LineFanout {
+
+    /**
+     * 同時執行的工作數
+     */
+    private int maxConcurrentJobs = 2;
+
+    /**
+     * 每個工作同時送出中的批次數，實際速率仍由 line.gateway 限制
+     */
+    private int inFlightBatches = 4;
+
+    /**
+     * 每個 multicast 請求的收件者數，LINE 上限 500
+     */
+    private int multicastSize = 500;
+
+    /**
+     * 每次從資料庫取出的批次數
+     */
+    private int pageSize = 100;
+
+    /**
+     * 單一批次最多嘗試次數，超過後 resume 也不再重送
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 單次請求的逾時
+     */
+    private Duration requestTimeout = Duration.ofSeconds(30);
+}
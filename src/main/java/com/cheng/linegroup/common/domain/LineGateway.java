@@ -0,0 +1,57 @@
+package com.cheng.linegroup.common.domain;
+
+import com.cheng.linegroup.enums.LineEndpoint;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 呼叫 LINE Messaging API 的速率限制與重試設定
+ *
+ * @author cheng
+ * @since 2026/10/17 22:20
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "line.gateway")
+public class LineGateway {
+
+    /**
+     * 各端點分類的每秒請求數，未設定時使用 {@link LineEndpoint#getPermitsPerSecond()}
+     */
+    private Map<LineEndpoint, Double> permitsPerSecond = new EnumMap<>(LineEndpoint.class);
+
+    /**
+     * 可累積的突發量，以幾秒的額度計算
+     */
+    private Duration burst = Duration.ofSeconds(1);
+
+    /**
+     * 等待額度的上限，超過時直接拒絕
+     */
+    private Duration maxQueueWait = Duration.ofSeconds(2);
+
+    /**
+     * 429、5xx 或連線失敗時的最大重試次數
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 沒有 Retry-After 時第一次重試的間隔，之後每次加倍
+     */
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    /**
+     * 單次重試願意等待的上限，Retry-After 超過此值時不再重試
+     */
+    private Duration maxRetryWait = Duration.ofSeconds(30);
+
+    public double permitsPerSecondOf(LineEndpoint endpoint) {
+        Double permits = permitsPerSecond.get(endpoint);
+        return permits != null && permits > 0 ? permits : endpoint.getPermitsPerSecond();
+    }
+}
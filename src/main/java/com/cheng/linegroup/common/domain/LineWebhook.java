@@ -0,0 +1,203 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * LINE webhook 接收與處理相關設定
+ *
+ * @author cheng
+ * @since 2026/10/17 10:12
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "line.webhook")
+public class LineWebhook {
+
+    /**
+     * webhook 接收模式，預設直接依對話排入 lane 處理
+     */
+    private IntakeMode intakeMode = IntakeMode.DIRECT;
+
+    private Journal journal = new Journal();
+
+    private Dedup dedup = new Dedup();
+
+    private Lanes lanes = new Lanes();
+
+    private Deadline deadline = new Deadline();
+
+    private Admission admission = new Admission();
+
+    public enum IntakeMode {
+        /**
+         * 驗證後直接解析並依對話排入 lane
+         */
+        DIRECT,
+
+        /**
+         * 驗證後先寫入本地 journal 立即回應 200，再由 consumer 讀取處理
+         */
+        JOURNAL
+    }
+
+    public enum ExpiredPolicy {
+        /**
+         * reply token 過期後改用 push API 發送
+         */
+        PUSH,
+
+        /**
+         * reply token 過期後直接丟棄回覆
+         */
+        DROP
+    }
+
+    @Data
+    public static class Journal {
+        /**
+         * journal segment 與 checkpoint 檔案存放目錄
+         */
+        private String dir = "./data/webhook-journal";
+
+        /**
+         * 單一 segment 檔案大小 (bytes)
+         */
+        private int segmentSize = 64 * 1024 * 1024;
+
+        /**
+         * 同時排入 lane 處理中的紀錄上限
+         */
+        private int maxInflight = 1000;
+
+        /**
+         * 每次寫入後是否強制 force 到磁碟，關閉時只保證程序崩潰不遺失 (依賴 page cache)
+         */
+        private boolean forceOnAppend = false;
+
+        /**
+         * checkpoint 寫入間隔
+         */
+        private Duration checkpointInterval = Duration.ofSeconds(1);
+
+        /**
+         * 關機時等待 consumer 消化剩餘事件的最長時間
+         */
+        private Duration drainTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Dedup {
+        private boolean enabled = true;
+
+        /**
+         * 記住 webhookEventId 的時間窗
+         */
+        private Duration window = Duration.ofHours(1);
+
+        /**
+         * Redis 上處理中 (尚未完成) 標記的保留時間，服務崩潰後超過此時間的重送才會再次處理
+         */
+        private Duration pendingTtl = Duration.ofMinutes(5);
+
+        /**
+         * 本機最多記住的事件數量
+         */
+        private long maxSize = 100_000;
+
+        /**
+         * 多台機器部署時開啟，透過 Redis 共用去重結果
+         */
+        private boolean redisEnabled = false;
+    }
+
+    @Data
+    public static class Lanes {
+        /**
+         * lane 數量，0 表示使用 CPU 核心數 * 2
+         */
+        private int count = 0;
+
+        /**
+         * 關機時等待 lane 處理完剩餘事件的最長時間
+         */
+        private Duration awaitTermination = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Deadline {
+        /**
+         * 是否依 reply token 期限排序 (earliest deadline first)
+         */
+        private boolean enabled = true;
+
+        /**
+         * reply token 自 event.timestamp 起的有效時間
+         */
+        private Duration replyTokenTtl = Duration.ofMinutes(1);
+
+        /**
+         * 預留給 reply API 呼叫本身的時間
+         */
+        private Duration safetyMargin = Duration.ofSeconds(3);
+
+        private ExpiredPolicy expiredPolicy = ExpiredPolicy.PUSH;
+
+        /**
+         * 單一 TextMessageBehavior 可使用的最長時間
+         */
+        private Duration actionBudget = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Admission {
+        private boolean enabled = true;
+
+        /**
+         * 同時處理中事件數量的初始上限，之後依處理時間自動調整
+         */
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 500;
+
+        /**
+         * 允許近期處理時間比長期基準慢多少倍才開始縮小上限
+         */
+        private double rttTolerance = 1.5;
+
+        /**
+         * 上限調整的平滑係數 (0~1)，越小變化越慢
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * 近期處理時間的取樣數
+         */
+        private int shortWindow = 10;
+
+        /**
+         * 長期基準處理時間的取樣數
+         */
+        private int longWindow = 600;
+
+        /**
+         * COMMAND 可超出上限的倍數
+         */
+        private double commandHeadroom = 1.5;
+
+        /**
+         * CHATTER 可使用上限的比例
+         */
+        private double chatterRatio = 0.8;
+
+        /**
+         * 各優先等級延後佇列的最大長度
+         */
+        private int maxDeferred = 5000;
+    }
+}
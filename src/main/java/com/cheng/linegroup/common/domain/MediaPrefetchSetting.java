@@ -0,0 +1,49 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 收到圖片、音訊、影片訊息時預先下載內容的設定
+ *
+ * @author cheng
+ * @since 2026/10/17 21:40
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "media.prefetch")
+public class MediaPrefetchSetting {
+
+    /**
+     * 是否啟用預先下載
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同時下載的數量
+     */
+    private int concurrency = 4;
+
+    /**
+     * 等待下載的上限，超過時直接放棄，不阻塞 webhook 處理
+     */
+    private int queueCapacity = 1_000;
+
+    /**
+     * 影音轉檔狀態為 processing 時第一次重新查詢的間隔，之後每次加倍
+     */
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    /**
+     * 重新查詢間隔的上限
+     */
+    private Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * 從收到事件起等待轉檔完成的上限，超過視為失敗
+     */
+    private Duration maxWait = Duration.ofMinutes(10);
+}
@@ -0,0 +1,49 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * LINE 訊息內容 (圖片、音訊、影片、檔案) 的本機儲存設定
+ *
+ * @author cheng
+ * @since 2026/10/17 21:20
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "media.store")
+public class MediaStoreSetting {
+
+    /**
+     * 儲存目錄，內容依 sha256 存放於 blobs/，messageId 對應表存放於 ids/
+     */
+    private String dir = System.getProperty("java.io.tmpdir") + "/linegroup-media";
+
+    /**
+     * 記憶體中保留的 messageId 對應筆數
+     */
+    private int indexCacheSize = 10_000;
+
+    /**
+     * 回應的 Cache-Control max-age，內容依 hash 存放不會改變
+     */
+    private Duration maxAge = Duration.ofDays(1);
+
+    /**
+     * 內容保留期限，超過期限沒有再被儲存的內容會被刪除
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * blobs/ 的總大小上限 (bytes)，超過時從最久沒有被儲存的內容開始刪除
+     */
+    private long maxBytes = 2L * 1024 * 1024 * 1024;
+
+    /**
+     * 清理的間隔，也是下載中暫存檔保留的時間
+     */
+    private Duration cleanupInterval = Duration.ofHours(1);
+}
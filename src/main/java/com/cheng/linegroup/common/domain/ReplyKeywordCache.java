@@ -0,0 +1,53 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 學習關鍵字 (ReplyKeyword) 的記憶體快取設定
+ *
+ * @author cheng
+ * @since 2026/10/17 18:00
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "reply-keyword.cache")
+public class ReplyKeywordCache {
+
+    /**
+     * 所有群組索引合計的最大記憶體用量 (估算值，bytes)，超過時淘汰最久沒用到的群組
+     */
+    private long maxWeight = 16 * 1024 * 1024;
+
+    /**
+     * 多台機器部署時透過 Redis pub/sub 通知其他機器關鍵字已變更
+     */
+    private boolean syncEnabled = true;
+
+    private String syncChannel = "reply-keyword:sync";
+
+    private Bloom bloom = new Bloom();
+
+    @Data
+    public static class Bloom {
+        private boolean enabled = true;
+
+        /**
+         * 預期的關鍵字數量，實際數量較多時以實際數量的兩倍建立
+         */
+        private long expectedInsertions = 100_000;
+
+        /**
+         * 可接受的誤判率 (false positive rate)，越低佔用記憶體越多
+         */
+        private double fpp = 0.01;
+
+        /**
+         * 定期重建的間隔，用來吸收資料庫中被刪除的關鍵字
+         */
+        private Duration rebuildInterval = Duration.ofHours(6);
+    }
+}
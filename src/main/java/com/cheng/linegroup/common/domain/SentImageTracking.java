@@ -0,0 +1,54 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 每日已發送圖片 (抽) 的追蹤設定
+ *
+ * @author cheng
+ * @since 2026/10/17 19:20
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image.sent-tracking")
+public class SentImageTracking {
+
+    /**
+     * 每個群組 (私訊則為每個使用者) 每天發送超過此數量後改為回覆訂閱連結
+     */
+    private int dailyLimit = 5;
+
+    /**
+     * 時區，決定每天幾點換日
+     */
+    private String zoneId = "Asia/Taipei";
+
+    /**
+     * 多台機器部署時將 bitmap 同步寫入 Redis，重啟或其他機器可從 Redis 載入當天紀錄
+     */
+    private boolean redisMirror = false;
+
+    /**
+     * Redis 上 bitmap 的保留時間，超過當天即可，之後由 Redis 自動清除
+     */
+    private Duration redisTtl = Duration.ofHours(48);
+
+    /**
+     * bitmap 大小為 2^id-bits，每張圖片依檔名的 hash 對應到其中一個 bit；圖片數量接近此大小時請調大
+     */
+    private int idBits = 16;
+
+    /**
+     * image_sent_records 保留的天數，超過的紀錄由排程刪除
+     */
+    private Duration recordRetention = Duration.ofDays(30);
+
+    /**
+     * 刪除過期 image_sent_records 的間隔
+     */
+    private Duration recordPurgeInterval = Duration.ofHours(6);
+}
@@ -0,0 +1,77 @@
+package com.cheng.linegroup.common.domain;
+
+import com.cheng.linegroup.enums.Upstream;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 各外部依賴的 bulkhead 與 circuit breaker 設定
+ *
+ * @author cheng
+ * @since 2026/10/17 23:20
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "upstream")
+public class UpstreamResilience {
+
+    /**
+     * 各上游的設定，未設定的上游使用 defaults；有設定的上游中未填的欄位使用 {@link Policy} 的預設值
+     */
+    private Map<Upstream, Policy> policies = new EnumMap<>(Upstream.class);
+
+    private Policy defaults = new Policy();
+
+    public Policy policyOf(Upstream upstream) {
+        return policies.getOrDefault(upstream, defaults);
+    }
+
+    @Data
+    public static class Policy {
+
+        /**
+         * 同時進行的呼叫上限 (同步呼叫與非同步 dispatcher 各自套用)
+         */
+        private int maxConcurrent = 20;
+
+        /**
+         * 同步呼叫等待 bulkhead 空位的上限，超過時直接失敗
+         */
+        private Duration maxWait = Duration.ofMillis(100);
+
+        /**
+         * 失敗 (含慢呼叫) 比例達到此百分比時斷路
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * 超過此時間的呼叫視為失敗
+         */
+        private Duration slowCallThreshold = Duration.ofSeconds(10);
+
+        /**
+         * 計算失敗比例的最近呼叫數
+         */
+        private int windowSize = 20;
+
+        /**
+         * 視窗內至少有這麼多呼叫才判斷是否斷路
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * 斷路後多久進入半開，放行少量探測呼叫
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        /**
+         * 半開時的探測呼叫數，全部成功才恢復
+         */
+        private int halfOpenProbes = 3;
+    }
+}
@@ -0,0 +1,49 @@
+package com.cheng.linegroup.common.domain;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 稽核類紀錄 (MessageEventRecord、ImageSentRecords) 延後批次寫入的設定
+ *
+ * @author cheng
+ * @since 2026/10/17 19:00
+ **/
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "persistence.write-behind")
+public class WriteBehind {
+
+    /**
+     * 關閉時直接在呼叫端同步寫入
+     */
+    private boolean enabled = true;
+
+    /**
+     * 累積到此筆數就寫入
+     */
+    private int batchSize = 200;
+
+    /**
+     * 未滿 batchSize 時最久等待多久寫入
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * 等待寫入的最大筆數
+     */
+    private int capacity = 10_000;
+
+    /**
+     * 佇列滿時呼叫端最多等待多久，逾時改為在呼叫端同步寫入
+     */
+    private Duration offerTimeout = Duration.ofMillis(100);
+
+    /**
+     * 寫入失敗時的重試次數，仍失敗則記錄 log 後放棄
+     */
+    private int maxRetries = 3;
+}
@@ -0,0 +1,22 @@
+package com.cheng.linegroup.common.metrics;
+
+import java.util.Map;
+
+/**
+ * 提供執行期統計數據的元件，由 {@link com.cheng.linegroup.controller.MetricsController} 統一輸出
+ *
+ * @author cheng
+ * @since 2026/10/17 13:05
+ **/
+public interface MetricsSource {
+
+    /**
+     * @return 統計數據的分類名稱，同時作為輸出時的 key
+     */
+    String getMetricsName();
+
+    /**
+     * @return 當下的統計數據快照
+     */
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,202 @@
+package com.cheng.linegroup.common.persistence;
+
+import com.cheng.linegroup.common.domain.WriteBehind;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 只新增不修改的紀錄延後批次寫入 (write-behind)。
+ * <p>
+ * 呼叫端只把紀錄放進有上限的佇列，由背景執行緒累積到 batchSize 或等待 flushInterval 後以 JDBC batch insert 寫入。
+ * 佇列滿時呼叫端最多等待 offerTimeout，仍無法放入則改在呼叫端同步寫入，藉此對上游施加背壓而不遺失紀錄。
+ * 關閉時會先寫完佇列中剩下的紀錄。
+ *
+ * @param <T> 紀錄類型
+ * @author cheng
+ * @since 2026/10/17 19:00
+ **/
+@Slf4j
+public class WriteBehindBuffer<T> implements MetricsSource {
+
+    private final String name;
+    private final WriteBehind config;
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertSql;
+    private final ParameterizedPreparedStatementSetter<T> setter;
+    private final BlockingQueue<T> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param name      名稱，用於 log 與 metrics
+     * @param insertSql INSERT 語法
+     * @param setter    將一筆紀錄設定到 PreparedStatement
+     */
+    public WriteBehindBuffer(String name, WriteBehind config, JdbcTemplate jdbcTemplate,
+                             String insertSql, ParameterizedPreparedStatementSetter<T> setter) {
+        this.name = name;
+        this.config = config;
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertSql = insertSql;
+        this.setter = setter;
+        this.queue = new ArrayBlockingQueue<>(config.getCapacity());
+        this.flusher = new Thread(this::flushLoop, name + "WriteBehind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 加入一筆紀錄，佇列滿時會等待，逾時則同步寫入
+     */
+    public void add(T entity) {
+        if (!config.isEnabled() || !running) {
+            writeInCaller(entity);
+            return;
+        }
+        try {
+            if (queue.offer(entity, config.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("{} write-behind queue is full, write in caller thread", name);
+        writeInCaller(entity);
+    }
+
+    private void writeInCaller(T entity) {
+        callerWrites.increment();
+        write(List.of(entity));
+    }
+
+    private void flushLoop() {
+        List<T> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(config.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + config.getFlushInterval().toNanos();
+                while (batch.size() < config.getBatchSize()) {
+                    queue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0 || !running) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // 已取出的紀錄不在佇列中，先寫完再結束；佇列中剩下的由 close 寫入
+                write(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                jdbcTemplate.batchUpdate(insertSql, batch, batch.size(), setter);
+                long elapsed = System.nanoTime() - start;
+                batches.increment();
+                written.add(batch.size());
+                flushNanos.add(elapsed);
+                maxFlushNanos.accumulate(elapsed);
+                maxBatchSize.accumulate(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= config.getMaxRetries()) {
+                    failed.add(batch.size());
+                    log.error("{} write-behind flush failed, drop {} records, ERR:{}", name, batch.size(), ExceptionUtils.getStackTrace(e));
+                    return;
+                }
+                log.warn("{} write-behind flush failed, retry {}: {}", name, attempt + 1, e.getMessage());
+                try {
+                    Thread.sleep(100L << attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止接收並寫完佇列中剩下的紀錄
+     */
+    public void close() {
+        running = false;
+        try {
+            flusher.join(config.getFlushInterval().toMillis() * 2 + 5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+        }
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += config.getBatchSize()) {
+            write(remaining.subList(i, Math.min(remaining.size(), i + config.getBatchSize())));
+        }
+        log.info("{} write-behind closed, written:{}, failed:{}", name, written.sum(), failed.sum());
+    }
+
+    @Override
+    public String getMetricsName() {
+        return name + "WriteBehind";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long batchCount = batches.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueSize", queue.size());
+        metrics.put("capacity", config.getCapacity());
+        metrics.put("enqueued", enqueued.sum());
+        metrics.put("written", written.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("callerWrites", callerWrites.sum());
+        metrics.put("batches", batchCount);
+        metrics.put("avgBatchSize", batchCount == 0 ? 0 : written.sum() / (double) batchCount);
+        metrics.put("maxBatchSize", maxBatchSize.get());
+        metrics.put("avgFlushMs", batchCount == 0 ? 0 : flushNanos.sum() / batchCount / 1_000_000.0);
+        metrics.put("maxFlushMs", maxFlushNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+}
@@ -0,0 +1,152 @@
+package com.cheng.linegroup.common.resilience;
+
+import com.cheng.linegroup.common.domain.UpstreamResilience;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以最近 windowSize 次呼叫的失敗比例判斷的斷路器
+ * <pre>
+ * CLOSED    -- 失敗比例 >= threshold --> OPEN
+ * OPEN      -- 經過 openDuration     --> HALF_OPEN (下一次呼叫時轉換)
+ * HALF_OPEN -- probes 全部成功       --> CLOSED
+ * HALF_OPEN -- 任一 probe 失敗       --> OPEN
+ * </pre>
+ * 呼叫量不大，直接以 synchronized 保護狀態。
+ *
+ * @author cheng
+ * @since 2026/10/17 23:20
+ **/
+@Slf4j
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    enum Permit {
+        DENIED,
+        NORMAL,
+        /**
+         * 半開時放行的探測呼叫，結果決定是否恢復
+         */
+        PROBE
+    }
+
+    private final String name;
+    private final UpstreamResilience.Policy policy;
+    private final boolean[] window;
+    private int index;
+    private int size;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private volatile long lastTransitionAt;
+    private final Map<String, LongAdder> transitions = new ConcurrentHashMap<>();
+
+    CircuitBreaker(String name, UpstreamResilience.Policy policy) {
+        this.name = name;
+        this.policy = policy;
+        this.window = new boolean[Math.max(1, policy.getWindowSize())];
+    }
+
+    synchronized Permit tryAcquire(long now) {
+        if (state == State.CLOSED) {
+            return Permit.NORMAL;
+        }
+        if (state == State.OPEN) {
+            if (now - openedAt < policy.getOpenDuration().toMillis()) {
+                return Permit.DENIED;
+            }
+            transition(State.HALF_OPEN, now);
+        }
+        if (probesInFlight >= Math.max(1, policy.getHalfOpenProbes())) {
+            return Permit.DENIED;
+        }
+        probesInFlight++;
+        return Permit.PROBE;
+    }
+
+    /**
+     * 取得許可後沒有實際呼叫 (例如 bulkhead 已滿或呼叫端取消)
+     */
+    synchronized void release(Permit permit) {
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized void onResult(Permit permit, boolean failed, long now) {
+        if (permit == Permit.PROBE) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            if (failed) {
+                transition(State.OPEN, now);
+            } else if (++probeSuccesses >= Math.max(1, policy.getHalfOpenProbes())) {
+                transition(State.CLOSED, now);
+            }
+            return;
+        }
+        // 斷路前就已送出的呼叫，結果不再計入
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (size == window.length) {
+            if (window[index]) {
+                failures--;
+            }
+        } else {
+            size++;
+        }
+        window[index] = failed;
+        if (failed) {
+            failures++;
+        }
+        index = (index + 1) % window.length;
+        if (size >= policy.getMinimumCalls() && failures * 100 >= policy.getFailureRateThreshold() * size) {
+            transition(State.OPEN, now);
+        }
+    }
+
+    private void transition(State to, long now) {
+        log.warn("Circuit breaker {} {} -> {}, failures:{}/{}", name, state, to, failures, size);
+        transitions.computeIfAbsent(state + "->" + to, k -> new LongAdder()).increment();
+        state = to;
+        lastTransitionAt = now;
+        switch (to) {
+            case OPEN -> openedAt = now;
+            case HALF_OPEN -> {
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+            case CLOSED -> {
+                index = 0;
+                size = 0;
+                failures = 0;
+            }
+        }
+    }
+
+    synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("state", state);
+        metrics.put("failureRate", size == 0 ? 0 : failures * 100 / size);
+        metrics.put("windowCalls", size);
+        metrics.put("lastTransitionAt", lastTransitionAt);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        transitions.forEach((k, v) -> counts.put(k, v.sum()));
+        metrics.put("transitions", counts);
+        return metrics;
+    }
+}
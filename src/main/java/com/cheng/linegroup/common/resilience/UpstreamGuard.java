@@ -0,0 +1,276 @@
+package com.cheng.linegroup.common.resilience;
+
+import com.cheng.linegroup.common.domain.UpstreamResilience;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.enums.Upstream;
+import com.cheng.linegroup.exception.UpstreamRejectedException;
+import com.cheng.linegroup.utils.HttpRequest;
+import com.cheng.linegroup.utils.OkHttpUtils;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 依 {@link Upstream} 隔離外部依賴：每個上游有自己的 bulkhead 與 circuit breaker。
+ * <ul>
+ *   <li>bulkhead：同時呼叫數上限，同步呼叫最多等待 max-wait，非同步呼叫不等待；串流呼叫 ({@link #stream}) 只佔用到收到回應標頭為止；
+ *       HTTP 呼叫另外使用獨立 dispatcher 的 client，執行緒不與其他上游共用</li>
+ *   <li>circuit breaker：最近的呼叫失敗 (含連線失敗、5xx、逾時、超過 slow-call-threshold) 比例過高時斷路，
+ *       斷路期間直接失敗，經過 open-duration 後放行少量探測呼叫</li>
+ * </ul>
+ * 被拒絕的呼叫以 {@link UpstreamRejectedException} 結束 (上游本身的 503 不是)，可用 {@link #isRejected(Throwable)} 判斷並改用替代回應。
+ *
+ * @author cheng
+ * @since 2026/10/17 23:20
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UpstreamGuard implements MetricsSource {
+
+    private final UpstreamResilience setting;
+
+    private final Map<Upstream, Compartment> compartments = new EnumMap<>(Upstream.class);
+
+    @PostConstruct
+    public void init() {
+        for (Upstream upstream : Upstream.values()) {
+            compartments.put(upstream, new Compartment(upstream, setting.policyOf(upstream)));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compartments.values().forEach(c -> c.client.dispatcher().executorService().shutdown());
+    }
+
+    /**
+     * @return 該上游使用的 client (獨立 dispatcher，共用連線池)
+     */
+    public OkHttpClient client(Upstream upstream) {
+        return compartments.get(upstream).client;
+    }
+
+    /**
+     * 以該上游的 client 同步送出，連線失敗或 5xx 視為失敗
+     */
+    public ApiResponse execute(Upstream upstream, HttpRequest request) {
+        HttpRequest req = request.client(client(upstream));
+        return call(upstream, req::execute, UpstreamGuard::isServerError);
+    }
+
+    /**
+     * 以該上游的 client 非同步送出，bulkhead 已滿時不等待
+     */
+    public CompletableFuture<ApiResponse> executeAsync(Upstream upstream, HttpRequest request, Duration timeout) {
+        HttpRequest req = request.client(client(upstream));
+        return callAsync(upstream, () -> req.executeAsync(timeout), UpstreamGuard::isServerError);
+    }
+
+    /**
+     * 串流讀取回應，bulkhead 與 circuit breaker 只涵蓋連線到收到回應標頭為止：
+     * 收到標頭時就釋放 bulkhead 並以狀態碼 (5xx 為失敗) 記錄結果，之後讀取 body 的時間不佔用 bulkhead，
+     * 也不計入 slow-call-threshold，大檔案下載不會被當成慢呼叫；讀取 body 時的錯誤由 handler 自行處理，不計入失敗
+     */
+    public <T> T stream(Upstream upstream, HttpRequest request, OkHttpUtils.ResponseHandler<T> handler) throws IOException {
+        Compartment c = compartments.get(upstream);
+        CircuitBreaker.Permit permit = c.enter(true);
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            return request.client(c.client).stream(response -> {
+                released.set(true);
+                c.exit(permit, response.code() >= HttpStatus.INTERNAL_SERVER_ERROR.value(), start);
+                return handler.handle(response);
+            });
+        } finally {
+            if (!released.get()) {
+                c.exit(permit, true, start);
+            }
+        }
+    }
+
+    /**
+     * 同步呼叫
+     *
+     * @param isFailure 依結果判斷是否失敗，null 表示只有拋出例外才算失敗
+     * @throws UpstreamRejectedException 斷路中或 bulkhead 已滿
+     */
+    public <T> T call(Upstream upstream, Supplier<T> call, Predicate<T> isFailure) {
+        Compartment c = compartments.get(upstream);
+        CircuitBreaker.Permit permit = c.enter(true);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = isFailure != null && isFailure.test(result);
+            return result;
+        } finally {
+            c.exit(permit, failed, start);
+        }
+    }
+
+    /**
+     * 非同步呼叫，完成時才釋放 bulkhead；呼叫端取消 future 不計入失敗
+     *
+     * @param isFailure 依結果判斷是否失敗，null 表示只有例外結束才算失敗
+     * @return 斷路中或 bulkhead 已滿時以 {@link UpstreamRejectedException} 結束
+     */
+    public <T> CompletableFuture<T> callAsync(Upstream upstream, Supplier<CompletableFuture<T>> call, Predicate<T> isFailure) {
+        Compartment c = compartments.get(upstream);
+        CircuitBreaker.Permit permit;
+        try {
+            permit = c.enter(false);
+        } catch (UpstreamRejectedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            c.exit(permit, true, start);
+            return CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                c.abandon(permit);
+            } else {
+                c.exit(permit, e != null || (isFailure != null && isFailure.test(result)), start);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return 是否因斷路或 bulkhead 已滿而被拒絕 (未實際呼叫上游)
+     */
+    public static boolean isRejected(Throwable e) {
+        Throwable t = e;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof UpstreamRejectedException;
+    }
+
+    private static boolean isServerError(ApiResponse response) {
+        int status = response.getHttpStatusCode();
+        return status == 0 || status >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "upstream";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        compartments.forEach((upstream, c) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("maxConcurrent", c.policy.getMaxConcurrent());
+            m.put("active", c.policy.getMaxConcurrent() - c.bulkhead.availablePermits());
+            m.put("calls", c.calls.sum());
+            m.put("failures", c.failures.sum());
+            m.put("slowCalls", c.slowCalls.sum());
+            m.put("rejectedBulkhead", c.rejectedBulkhead.sum());
+            m.put("rejectedOpen", c.rejectedOpen.sum());
+            m.put("dispatcherRunning", c.client.dispatcher().runningCallsCount());
+            m.put("dispatcherQueued", c.client.dispatcher().queuedCallsCount());
+            m.put("circuit", c.breaker.metrics());
+            metrics.put(upstream.name().toLowerCase(), m);
+        });
+        return metrics;
+    }
+
+    /**
+     * 單一上游的 bulkhead、circuit breaker 與統計
+     */
+    private static final class Compartment {
+        private final Upstream upstream;
+        private final UpstreamResilience.Policy policy;
+        private final OkHttpClient client;
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final LongAdder rejectedBulkhead = new LongAdder();
+        private final LongAdder rejectedOpen = new LongAdder();
+
+        private Compartment(Upstream upstream, UpstreamResilience.Policy policy) {
+            this.upstream = upstream;
+            this.policy = policy;
+            int maxConcurrent = Math.max(1, policy.getMaxConcurrent());
+            this.client = OkHttpUtils.isolatedClient(upstream.name().toLowerCase(), maxConcurrent);
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.breaker = new CircuitBreaker(upstream.name(), policy);
+        }
+
+        /**
+         * @param wait 是否等待 bulkhead 空位 (最多 max-wait)
+         * @throws UpstreamRejectedException 斷路中或 bulkhead 已滿
+         */
+        private CircuitBreaker.Permit enter(boolean wait) {
+            CircuitBreaker.Permit permit = breaker.tryAcquire(System.currentTimeMillis());
+            if (permit == CircuitBreaker.Permit.DENIED) {
+                rejectedOpen.increment();
+                throw new UpstreamRejectedException(upstream, "circuit open");
+            }
+            if (!(wait ? acquire() : bulkhead.tryAcquire())) {
+                breaker.release(permit);
+                rejectedBulkhead.increment();
+                log.warn("Upstream bulkhead full: {}", upstream);
+                throw new UpstreamRejectedException(upstream, "bulkhead full");
+            }
+            calls.increment();
+            return permit;
+        }
+
+        private boolean acquire() {
+            try {
+                return bulkhead.tryAcquire(policy.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void exit(CircuitBreaker.Permit permit, boolean failed, long startNanos) {
+            bulkhead.release();
+            boolean slow = System.nanoTime() - startNanos > policy.getSlowCallThreshold().toNanos();
+            if (failed) {
+                failures.increment();
+            } else if (slow) {
+                slowCalls.increment();
+            }
+            breaker.onResult(permit, failed || slow, System.currentTimeMillis());
+        }
+
+        private void abandon(CircuitBreaker.Permit permit) {
+            bulkhead.release();
+            breaker.release(permit);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cheng.linegroup.config;
+
+import com.cheng.linegroup.common.domain.WriteBehind;
+import com.cheng.linegroup.common.persistence.WriteBehindBuffer;
+import com.cheng.linegroup.entity.ImageSentRecords;
+import com.cheng.linegroup.entity.MessageEventRecord;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 稽核類紀錄的延後批次寫入，建立時間由資料表預設值 (CURRENT_TIMESTAMP) 產生
+ * <p>
+ * MySQL 需在連線字串加上 {@code rewriteBatchedStatements=true} 才會把 batch 合併成多筆 VALUES 的單一 INSERT
+ *
+ * @author cheng
+ * @since 2026/10/17 19:00
+ **/
+@Configuration
+public class WriteBehindConfig {
+
+    @Bean(destroyMethod = "close")
+    public WriteBehindBuffer<MessageEventRecord> messageEventRecordBuffer(WriteBehind writeBehind, JdbcTemplate jdbcTemplate) {
+        return new WriteBehindBuffer<>("messageEventRecord", writeBehind, jdbcTemplate,
+                "INSERT INTO message_event_record (uid, message_type, message_id) VALUES (?, ?, ?)",
+                (ps, r) -> {
+                    ps.setString(1, r.getUid());
+                    ps.setString(2, r.getMessageType());
+                    ps.setString(3, r.getMessageId());
+                });
+    }
+
+    @Bean(destroyMethod = "close")
+    public WriteBehindBuffer<ImageSentRecords> imageSentRecordsBuffer(WriteBehind writeBehind, JdbcTemplate jdbcTemplate) {
+        return new WriteBehindBuffer<>("imageSentRecords", writeBehind, jdbcTemplate,
+                "INSERT INTO image_sent_records (image_link, uid, group_id) VALUES (?, ?, ?)",
+                (ps, r) -> {
+                    ps.setString(1, r.getImageLink());
+                    ps.setString(2, r.getUid());
+                    ps.setString(3, r.getGroupId());
+                });
+    }
+}
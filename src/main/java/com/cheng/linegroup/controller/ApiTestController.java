@@ -9,10 +9,14 @@ import com.cheng.linegroup.entity.LineUser;
 import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.MessageType;
 import com.cheng.linegroup.exception.BizException;
+import com.cheng.linegroup.media.MediaContentStore;
+import com.cheng.linegroup.media.MediaRangeWriter;
+import com.cheng.linegroup.media.StoredMedia;
 import com.cheng.linegroup.services.LineNotifyService;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.dto.LineMessage;
 import com.cheng.linegroup.utils.JacksonUtils;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +28,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -46,6 +49,8 @@ public class ApiTestController {
     private final LineNotify lineNotify;
     private final LineNotifyService lineNotifyService;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final MediaContentStore mediaContentStore;
+    private final MediaRangeWriter mediaRangeWriter;
 
     @GetMapping("r")
     public ResponseEntity<R> testR() {
@@ -116,29 +121,33 @@ public class ApiTestController {
         return ResponseEntity.ok(R.success());
     }
 
+    /**
+     * 已下載過的內容直接從 {@link MediaContentStore} 讀取，支援 Range (影片拖曳播放)
+     */
     @GetMapping("msg/content/{messageId}")
-    public void testMsgContent(@PathVariable String messageId, HttpServletResponse response) {
+    public void testMsgContent(@PathVariable String messageId, HttpServletRequest request, HttpServletResponse response) {
         log.info("test/msg/content/{}", messageId);
-        MessageContentResponse result = lineService.getMessageContent(messageId);
-
-        if (result.getContentType() == null) {
-            response.setContentType("application/json");
-            try (PrintWriter writer = response.getWriter()) {
-                String jsonResponse = JacksonUtils.encodeToJson(result);
-                writer.write(jsonResponse);
-                writer.flush();
-            } catch (IOException e) {
-                throw new RuntimeException("Error writing JSON response", e);
-            }
-        } else {
-            response.setContentType(result.getContentType());
-            response.setContentLength(result.getBinaryData().length);
-            try (OutputStream out = response.getOutputStream()) {
-                out.write(result.getBinaryData());
-                out.flush();
-            } catch (IOException e) {
-                throw new RuntimeException("Error writing binary response", e);
+        StoredMedia media = mediaContentStore.find(messageId);
+        if (media == null) {
+            MessageContentResponse result = lineService.getMessageContent(messageId);
+            if (result == null || result.getContentHash() == null) {
+                response.setContentType("application/json");
+                try (PrintWriter writer = response.getWriter()) {
+                    String jsonResponse = JacksonUtils.encodeToJson(result);
+                    writer.write(jsonResponse);
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new RuntimeException("Error writing JSON response", e);
+                }
+                return;
             }
+            media = mediaContentStore.find(messageId);
+        }
+
+        try {
+            mediaRangeWriter.write(media, request, response);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing binary response", e);
         }
     }
 }
@@ -0,0 +1,65 @@
+package com.cheng.linegroup.controller;
+
+import com.cheng.linegroup.common.BaseResponse;
+import com.cheng.linegroup.common.R;
+import com.cheng.linegroup.dto.FanoutJobRequest;
+import com.cheng.linegroup.fanout.FanoutEngine;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 群發工作管理，進度包含本次執行的速率與預估剩餘時間
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/fanout")
+@Tag(name = "FanoutAPI", description = "群發工作API")
+public class FanoutController {
+
+    private final FanoutEngine fanoutEngine;
+
+    @Operation(summary = "建立群發工作", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @PostMapping
+    public BaseResponse create(@RequestBody FanoutJobRequest request) {
+        return R.success(fanoutEngine.create(request));
+    }
+
+    @Operation(summary = "最近的群發工作", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @GetMapping
+    public BaseResponse list() {
+        return R.success(fanoutEngine.list());
+    }
+
+    @Operation(summary = "取得群發進度", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @GetMapping("/{id}")
+    public BaseResponse progress(@PathVariable Long id) {
+        return R.success(fanoutEngine.progress(id));
+    }
+
+    @Operation(summary = "暫停群發", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @PostMapping("/{id}/pause")
+    public BaseResponse pause(@PathVariable Long id) {
+        return R.success(fanoutEngine.pause(id));
+    }
+
+    @Operation(summary = "繼續群發或重送失敗的批次", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @PostMapping("/{id}/resume")
+    public BaseResponse resume(@PathVariable Long id) {
+        return R.success(fanoutEngine.resume(id));
+    }
+
+    @Operation(summary = "取消群發", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @PostMapping("/{id}/cancel")
+    public BaseResponse cancel(@PathVariable Long id) {
+        return R.success(fanoutEngine.cancel(id));
+    }
+}
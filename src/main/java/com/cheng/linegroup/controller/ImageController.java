@@ -1,39 +1,41 @@
 package com.cheng.linegroup.controller;
 
-import com.cheng.linegroup.common.contants.Sign;
+import com.cheng.linegroup.common.domain.ImageResizeCacheSetting;
 import com.cheng.linegroup.common.domain.Line;
 import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.MessageType;
 import com.cheng.linegroup.exception.BizException;
+import com.cheng.linegroup.image.ImageCatalog;
+import com.cheng.linegroup.image.ImageEntry;
+import com.cheng.linegroup.image.ImageFilter;
+import com.cheng.linegroup.image.ImageVariant;
+import com.cheng.linegroup.image.ImageVariants;
+import com.cheng.linegroup.image.ResizedImageCache;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.dto.LineMessage;
 import com.cheng.linegroup.utils.JasyptUtils;
-import jakarta.annotation.PostConstruct;
-import jakarta.servlet.http.HttpServletResponse;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
-import java.util.List;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -46,48 +48,41 @@ import java.util.concurrent.ThreadLocalRandom;
 @RequiredArgsConstructor
 public class ImageController {
 
-    @Value("${image.base-path}")
-    private String basePath;
     @Value("${image.domain}")
     private String domain;
 
-    @Getter
-    private static final List<String> IMAGES = new ArrayList<>();
-
     private final Line line;
-    private final ResourceLoader resourceLoader;
     private final LineService lineService;
-
-    @PostConstruct
-    public void init() {
-        execScript();
-        log.info("IMAGES SIZE: {}", IMAGES);
-    }
+    private final ImageCatalog imageCatalog;
+    private final ImageVariants imageVariants;
+    private final ResizedImageCache resizedImageCache;
+    private final ImageResizeCacheSetting imageResizeCacheSetting;
 
     @GetMapping("resetImages/{key}")
     public ResponseEntity<?> resetImages(@PathVariable(value = "key") String key) {
         try {
-            if (JasyptUtils.KEY.equals(key)) {
-                execScript();
-            } else {
+            if (!JasyptUtils.KEY.equals(key)) {
                 throw BizException.error("密碼錯誤");
             }
+            int count = imageCatalog.rescan();
+            return ResponseEntity.ok("IMAGES 重置成功，共 " + count + " 張");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
-        return ResponseEntity.ok("IMAGES 重置成功");
     }
 
     @GetMapping("send/myself")
-    public ResponseEntity<?> getImages(HttpServletResponse response) {
-        if (IMAGES.isEmpty()) {
+    public ResponseEntity<?> getImages() {
+        ImageCatalog.Snapshot images = imageCatalog.snapshot();
+        if (images.isEmpty()) {
             log.warn("IMAGES 列表為空，無法選擇隨機圖片");
             return ResponseEntity.badRequest().body("IMAGES 列表為空，無法選擇隨機圖片");
         }
 
         String selfUid = line.getMessage().getSelfUid();
-        String imgName = IMAGES.get(ThreadLocalRandom.current().nextInt(IMAGES.size()));
-        imgName = domain.concat(imgName);
+        ImageEntry image = images.get(ThreadLocalRandom.current().nextInt(images.size()));
+        String imgName = domain.concat(image.urlPath());
+        ImageVariants.Urls urls = imageVariants.urlsOf(image);
         log.info("imgName: {}", imgName);
 
         LineMessage lineMessage = LineMessage.builder()
@@ -95,8 +90,8 @@ public class ImageController {
                 .messages(Collections.singletonList(
                         LineMessage.Message.builder()
                                 .type(MessageType.image)
-                                .originalContentUrl(imgName)
-                                .previewImageUrl(imgName)
+                                .originalContentUrl(urls.original())
+                                .previewImageUrl(urls.preview())
                                 .build()
                 ))
                 .build();
@@ -105,60 +100,87 @@ public class ImageController {
         return ResponseEntity.ok(imgName);
     }
 
-    @GetMapping("/{imgName}/{width}/{height}")
-    public void getImage(HttpServletResponse response,
-                         @PathVariable String imgName,
-                         @PathVariable int width,
-                         @PathVariable int height) throws IOException {
-
-        Resource resource = resourceLoader.getResource("file:" + basePath + "/" + imgName + ".jpg");
-        BufferedImage img = ImageIO.read(resource.getInputStream());
-
-        BufferedImage outputImage = Thumbnails.of(img)
-                .size(width, height)
-                .asBufferedImage();
-        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
-        ImageIO.write(outputImage, "jpeg", response.getOutputStream());
+    /**
+     * 預先產生的圖片版本，檔名內含原圖修改時間，內容不會改變
+     */
+    @GetMapping("variant/{variant}/{fileName}")
+    public ResponseEntity<Resource> getVariant(@PathVariable String variant, @PathVariable String fileName) {
+        ImageVariant imageVariant = ImageVariant.of(variant);
+        Path file = imageVariant != null ? imageVariants.resolve(imageVariant, fileName) : null;
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .body(new FileSystemResource(file));
     }
 
-    private static void execScript() {
-        String scriptPath = "/images/getImagePath.sh";
-        ProcessBuilder processBuilder = new ProcessBuilder(scriptPath);
-
+    /**
+     * 縮圖，經過 {@link ResizedImageCache} 快取；瀏覽器帶 If-None-Match / If-Modified-Since 且未變更時回應 304
+     */
+    @GetMapping("/{imgName}/{width}/{height}")
+    public ResponseEntity<byte[]> getImage(WebRequest request,
+                                           @PathVariable String imgName,
+                                           @PathVariable int width,
+                                           @PathVariable int height) throws IOException {
+        ResizedImageCache.Variant variant;
         try {
-            // 執行 shell 腳本
-            Process process = processBuilder.start();
-            IMAGES.clear();
-
-            // 讀取腳本執行結果
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    IMAGES.add(URLEncoder.encode(line, StandardCharsets.UTF_8)
-                            .replace(Sign.ENCODED_SLASH, Sign.SLASH)
-                            .replace(Sign.PLUS, Sign.ENCODED_SPACE));
-                }
-            }
-
-            // 讀取錯誤輸出
-            try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
-                String errorLine;
-                while ((errorLine = errorReader.readLine()) != null) {
-                    log.error("Script error output: {}", errorLine);
-                }
-            }
+            variant = resizedImageCache.variant(imgName, width, height);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return respond(request, imgName, variant);
+    }
 
-            // 確認腳本執行成功
-            int exitCode = process.waitFor();
-            log.info("Exited with error code : {}", exitCode);
+    /**
+     * 套用濾鏡的縮圖，濾鏡由 {@link com.cheng.linegroup.image.TiledFilterEngine} 分塊平行處理，結果同樣經過縮圖快取
+     *
+     * @param filter blur / sharpen / grayscale
+     * @param amount 濾鏡強度 (blur 為半徑)，取最接近的允許強度 (blur 為 5/10/20/40/70/100)，未帶時使用預設值
+     */
+    @GetMapping("filter/{filter}/{imgName}/{width}/{height}")
+    public ResponseEntity<byte[]> getFilteredImage(WebRequest request,
+                                                   @PathVariable String filter,
+                                                   @PathVariable String imgName,
+                                                   @PathVariable int width,
+                                                   @PathVariable int height,
+                                                   @RequestParam(required = false) Float amount) throws IOException {
+        ImageFilter imageFilter = ImageFilter.of(filter);
+        if (imageFilter == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResizedImageCache.Variant variant;
+        try {
+            variant = resizedImageCache.variant(imgName, width, height, imageFilter, amount);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return respond(request, imgName, variant);
+    }
 
-        } catch (IOException e) {
-            log.error("IO Exception occurred: {}", ExceptionUtils.getStackTrace(e));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("Script execution interrupted: {}", ExceptionUtils.getStackTrace(e));
+    private ResponseEntity<byte[]> respond(WebRequest request, String imgName, ResizedImageCache.Variant variant) throws IOException {
+        if (variant == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(variant.etag(), variant.lastModified())) {
+            resizedImageCache.recordNotModified();
+            return null;
         }
 
+        byte[] data;
+        try {
+            data = resizedImageCache.get(variant);
+        } catch (RejectedExecutionException e) {
+            log.warn("Resize {} rejected: {}", imgName, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .eTag(variant.etag())
+                .lastModified(variant.lastModified())
+                .cacheControl(CacheControl.maxAge(imageResizeCacheSetting.getMaxAge()).cachePublic())
+                .body(data);
     }
 
 }
@@ -1,31 +1,23 @@
 package com.cheng.linegroup.controller;
 
-import com.cheng.linegroup.common.domain.Line;
 import com.cheng.linegroup.common.domain.LineHeader;
-import com.cheng.linegroup.dto.WebhookEvent;
-import com.cheng.linegroup.enums.LineEvent;
-import com.cheng.linegroup.events.EventHandler;
-import com.cheng.linegroup.events.EventHandlerRegistry;
-import com.cheng.linegroup.utils.JacksonUtils;
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.events.WebhookEventDispatcher;
+import com.cheng.linegroup.events.journal.WebhookJournal;
+import com.cheng.linegroup.events.webhook.WebhookBodyReader;
+import com.cheng.linegroup.events.webhook.WebhookEventStreamParser;
+import com.cheng.linegroup.events.webhook.WebhookSignatureVerifier;
 import com.cheng.linegroup.utils.TraceUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tomcat.util.codec.binary.Base64;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * @author cheng
@@ -36,61 +28,57 @@ import java.security.NoSuchAlgorithmException;
 @RequiredArgsConstructor
 public class LineController {
 
-    private final Line line;
     private final LineHeader lineHeader;
-    private final EventHandlerRegistry eventHandlerRegistry;
-    private final ThreadPoolTaskExecutor executor;
+    private final LineWebhook lineWebhook;
+    private final WebhookJournal webhookJournal;
+    private final WebhookEventDispatcher webhookEventDispatcher;
+    private final WebhookBodyReader webhookBodyReader;
+    private final WebhookSignatureVerifier webhookSignatureVerifier;
+    private final WebhookEventStreamParser webhookEventStreamParser;
 
     @PostMapping("webhook")
-    public ResponseEntity<Object> webhook(HttpServletRequest request, @RequestBody String data) {
-        log.info("webhook.rawData:{}", data);
-
-        if (verifySignature(request, data)) {
-            WebhookEvent event = JacksonUtils.decodeFromJson(data, WebhookEvent.class);
-            log.info("event:{}", event);
-            Assert.notNull(event, "webhook event can not be null");
-
-            String traceId = TraceUtils.getTraceId();
-            for (WebhookEvent.Event e : event.getEvents()) {
-                e.setTraceId(traceId);
-                EventHandler eventHandler = eventHandlerRegistry.getEventHandler(LineEvent.getEvent(e.getType()));
-                executor.execute(() -> {
-                    try {
-                        TraceUtils.setTraceId(traceId);
-                        eventHandler.handle(e);
-                    } finally {
-                        TraceUtils.clearTrace();
-                    }
-                });
-            }
+    public ResponseEntity<Object> webhook(HttpServletRequest request) throws IOException {
+        // body 只讀一次到重複使用的暫存陣列，之後的驗證、寫入 journal、解析都直接使用 byte
+        WebhookBodyReader.Body body = webhookBodyReader.read(request.getInputStream(), request.getContentLength());
+        if (log.isDebugEnabled()) {
+            log.debug("webhook.rawData:{}", new String(body.data(), 0, body.length(), StandardCharsets.UTF_8));
+        }
 
-            // Method for tasks handled by a thread pool
-//            lineNotifyService.notifyCentralControlGroup(event);
-        } else {
+        String signature = request.getHeader(lineHeader.getSignature());
+        if (!webhookSignatureVerifier.verify(body.data(), 0, body.length(), signature)) {
             String msg = "===> Signature verification failed";
             log.warn(msg);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(msg);
         }
 
+        String traceId = TraceUtils.getTraceId();
+        if (lineWebhook.getIntakeMode() == LineWebhook.IntakeMode.JOURNAL) {
+            return appendJournal(body, traceId);
+        }
+
+        int count = webhookEventStreamParser.parse(body.data(), 0, body.length(), e -> {
+            log.info("event:{}", e);
+            webhookEventDispatcher.dispatch(e, traceId);
+        });
+        log.info("webhook dispatched {} events", count);
+
+        // Method for tasks handled by a thread pool
+//            lineNotifyService.notifyCentralControlGroup(event);
+
         return ResponseEntity.ok().build();
     }
 
-    private boolean verifySignature(HttpServletRequest request, String data) {
-        String requestSignature = request.getHeader(lineHeader.getSignature());
+    /**
+     * 先寫入 journal 再回應 200，事件交由 consumer 處理；寫入失敗回應 503 讓 LINE 重送
+     */
+    private ResponseEntity<Object> appendJournal(WebhookBodyReader.Body body, String traceId) {
         try {
-            String channelSecret = line.getMessage().getChannelSecret();
-            SecretKeySpec key = new SecretKeySpec(channelSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(key);
-            byte[] source = data.getBytes(StandardCharsets.UTF_8);
-            byte[] calculatedSignature = mac.doFinal(source);
-            byte[] receivedSignature = Base64.decodeBase64(requestSignature);
-
-            // Compare x-line-signature request header string and the signature
-            return MessageDigest.isEqual(calculatedSignature, receivedSignature);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            log.error("===> Signature verification error: {}", e.getMessage());
-            return false;
+            long offset = webhookJournal.append(body.data(), 0, body.length(), traceId);
+            log.info("webhook appended to journal, offset:{}", offset);
+            return ResponseEntity.ok().build();
+        } catch (IOException | IllegalStateException e) {
+            log.error("===> Append webhook journal failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
 
@@ -0,0 +1,55 @@
+package com.cheng.linegroup.controller;
+
+import com.cheng.linegroup.common.BaseResponse;
+import com.cheng.linegroup.common.R;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 執行期統計數據
+ *
+ * @author cheng
+ * @since 2026/10/17 13:10
+ **/
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/metrics")
+@Tag(name = "MetricsAPI", description = "執行期統計數據API")
+public class MetricsController {
+
+    private final List<MetricsSource> metricsSources;
+
+    @Operation(summary = "取得所有統計數據", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @GetMapping
+    public BaseResponse getAllMetrics() {
+        Map<String, Object> result = new TreeMap<>();
+        for (MetricsSource source : metricsSources) {
+            result.put(source.getMetricsName(), source.getMetrics());
+        }
+        return R.success(result);
+    }
+
+    @Operation(summary = "取得指定分類的統計數據", security = @SecurityRequirement(name = HttpHeaders.AUTHORIZATION))
+    @GetMapping("/{name}")
+    public BaseResponse getMetrics(@PathVariable String name) {
+        return metricsSources.stream()
+                .filter(source -> source.getMetricsName().equals(name))
+                .findFirst()
+                .map(source -> R.success(source.getMetrics()))
+                .orElseGet(() -> R.error("metrics not found: %s", name));
+    }
+}
@@ -0,0 +1,44 @@
+package com.cheng.linegroup.dao;
+
+import com.cheng.linegroup.entity.FanoutBatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Repository
+public interface FanoutBatchRepository extends JpaRepository<FanoutBatch, Long> {
+
+    /**
+     * 依 seq 往後取出待發送的批次 (未送出，或失敗但未超過嘗試次數)
+     */
+    @Query("SELECT b FROM FanoutBatch b WHERE b.jobId = ?1 AND b.seq > ?2 AND b.status IN ?3 AND b.attempts < ?4 ORDER BY b.seq")
+    List<FanoutBatch> findUnsent(Long jobId, int afterSeq, List<FanoutBatch.Status> statuses, int maxAttempts, Pageable pageable);
+
+    @Query("SELECT COUNT(b) FROM FanoutBatch b WHERE b.jobId = ?1 AND b.status = ?2")
+    int countByStatus(Long jobId, FanoutBatch.Status status);
+
+    @Query("SELECT COALESCE(SUM(b.recipientCount), 0) FROM FanoutBatch b WHERE b.jobId = ?1 AND b.status = ?2")
+    long sumRecipients(Long jobId, FanoutBatch.Status status);
+
+    /**
+     * 批次中每送出一個請求就記錄，只更新 partsSent，不覆蓋工作執行緒寫入的其他欄位
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanoutBatch b SET b.partsSent = ?2 WHERE b.id = ?1")
+    int updatePartsSent(Long id, int partsSent);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM FanoutBatch b WHERE b.jobId = ?1")
+    int deleteByJobId(Long jobId);
+}
@@ -0,0 +1,22 @@
+package com.cheng.linegroup.dao;
+
+import com.cheng.linegroup.entity.FanoutJob;
+import com.cheng.linegroup.enums.FanoutStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Repository
+public interface FanoutJobRepository extends JpaRepository<FanoutJob, Long> {
+
+    @Query("SELECT j FROM FanoutJob j WHERE j.status IN ?1 ORDER BY j.id")
+    List<FanoutJob> findByStatusIn(List<FanoutStatus> statuses);
+
+    List<FanoutJob> findTop50ByOrderByIdDesc();
+}
@@ -5,6 +5,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * @author cheng
  * @since 2024/2/15 00:35
@@ -14,4 +16,7 @@ public interface GroupMainRepository extends JpaRepository<GroupMain, Long> {
 
     @Query("SELECT g FROM GroupMain g WHERE g.gid = ?1")
     GroupMain findByGid(String gid);
+
+    @Query("SELECT g.gid FROM GroupMain g WHERE g.isExist = true ORDER BY g.id")
+    List<String> findExistingGids();
 }
@@ -2,7 +2,12 @@ package com.cheng.linegroup.dao;
 
 import com.cheng.linegroup.entity.ImageSentRecords;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 
 /**
  * @author Cheng
@@ -11,7 +16,8 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ImageSentRecordsRepository extends JpaRepository<ImageSentRecords, Long> {
 
-    int countByGroupId(String groupId);
-
-    int countByGroupIdAndUid(String groupId, String uid);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ImageSentRecords r WHERE r.createTime < ?1")
+    int deleteByCreateTimeBefore(LocalDateTime before);
 }
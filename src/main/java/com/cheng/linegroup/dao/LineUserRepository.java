@@ -5,6 +5,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * @author cheng
  * @since 2024/2/14 01:11
@@ -14,4 +16,7 @@ public interface LineUserRepository extends JpaRepository<LineUser, Long> {
 
     @Query("SELECT l FROM LineUser l WHERE l.uid = ?1")
     LineUser findByUid(String uid);
+
+    @Query("SELECT l.uid FROM LineUser l WHERE l.isFriend = true ORDER BY l.id")
+    List<String> findFriendUids();
 }
@@ -2,8 +2,11 @@ package com.cheng.linegroup.dao;
 
 import com.cheng.linegroup.entity.ReplyKeyword;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * @author cheng
  * @since 2024/2/15 23:24
@@ -14,4 +17,17 @@ public interface ReplyKeywordRepository extends JpaRepository<ReplyKeyword, Long
     ReplyKeyword getReplyKeywordByKeywordAndUidAndGid(String keyword, String uid, String gid);
 
     ReplyKeyword getReplyKeywordByKeywordAndGid(String keyword, String gid);
+
+    List<ReplyKeyword> findByGid(String gid);
+
+    List<ReplyKeyword> findByGidAndUid(String gid, String uid);
+
+    @Query("SELECT DISTINCT r.keyword FROM ReplyKeyword r")
+    List<String> findAllKeywords();
+
+    /**
+     * @return 所有關鍵字的 [gid, uid, keyword]
+     */
+    @Query("SELECT r.gid, r.uid, r.keyword FROM ReplyKeyword r")
+    List<Object[]> findAllScopeKeys();
 }
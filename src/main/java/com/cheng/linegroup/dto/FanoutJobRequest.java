@@ -0,0 +1,42 @@
+package com.cheng.linegroup.dto;
+
+import com.cheng.linegroup.enums.FanoutAudience;
+import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.services.dto.LineMessage;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 建立群發工作
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+public class FanoutJobRequest {
+    private String name;
+    private FanoutAudience audience;
+    /**
+     * audience 為 CUSTOM 時的收件者 ID
+     */
+    private List<String> recipients;
+    private List<Message> messages;
+
+    @Data
+    public static class Message {
+        private MessageType type = MessageType.text;
+        private String text;
+        private String originalContentUrl;
+        private String previewImageUrl;
+
+        public LineMessage.Message toLineMessage() {
+            return LineMessage.Message.builder()
+                    .type(type)
+                    .msg(text)
+                    .originalContentUrl(originalContentUrl)
+                    .previewImageUrl(previewImageUrl)
+                    .build();
+        }
+    }
+}
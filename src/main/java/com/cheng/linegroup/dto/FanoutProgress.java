@@ -0,0 +1,39 @@
+package com.cheng.linegroup.dto;
+
+import com.cheng.linegroup.enums.FanoutAudience;
+import com.cheng.linegroup.enums.FanoutStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 群發工作進度，速率與預估剩餘時間只在工作執行中計算
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+@Builder
+public class FanoutProgress {
+    private Long id;
+    private String name;
+    private FanoutAudience audience;
+    private FanoutStatus status;
+    private int totalRecipients;
+    private long sentRecipients;
+    private int totalBatches;
+    private int completedBatches;
+    private int failedBatches;
+    /**
+     * 本次執行的每秒送達人數
+     */
+    private Double recipientsPerSecond;
+    /**
+     * 以本次執行速率估算的剩餘秒數
+     */
+    private Long etaSeconds;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String lastError;
+}
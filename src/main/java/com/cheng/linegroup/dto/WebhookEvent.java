@@ -1,8 +1,12 @@
 package com.cheng.linegroup.dto;
 
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author cheng
@@ -24,9 +28,30 @@ public class WebhookEvent {
         private Source source;
         private String replyToken;
         private String mode;
+        /**
+         * 文字訊息在分派時的關鍵字比對結果，不屬於 webhook 內容
+         */
+        @JsonIgnore
+        private KeywordMatch keywordMatch;
+        /**
+         * 處理事件時送出、尚未完成的非同步工作，不屬於 webhook 內容
+         */
+        @JsonIgnore
+        private CompletableFuture<?> inFlight;
+
+        /**
+         * 登記尚未完成的非同步工作，dispatcher 等這些工作都完成後才算事件處理完成
+         */
+        public synchronized void defer(CompletableFuture<?> work) {
+            if (work == null) {
+                return;
+            }
+            inFlight = inFlight == null ? work : CompletableFuture.allOf(inFlight, work);
+        }
 
         @Data
         public static class DeliveryContext {
+            @JsonProperty("isRedelivery")
             private boolean isRedelivery;
         }
 
@@ -51,6 +76,19 @@ public class WebhookEvent {
             private Double latitude;
             private Double longitude;
             private String address;
+            // 圖片、影片、音訊訊息專有屬性
+            private ContentProvider contentProvider;
+
+            @Data
+            public static class ContentProvider {
+                /**
+                 * line: 內容由 LINE 保存，可透過 messageId 取得<p>
+                 * external: 內容由外部提供，只有 originalContentUrl / previewImageUrl
+                 */
+                private String type;
+                private String originalContentUrl;
+                private String previewImageUrl;
+            }
         }
     }
 }
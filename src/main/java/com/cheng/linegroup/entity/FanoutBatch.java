@@ -0,0 +1,58 @@
+package com.cheng.linegroup.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * 群發工作的一個批次：multicast 最多 500 位使用者，或 push 給單一群組
+ * <p>
+ * 訊息超過 5 則時一個批次要送出多個請求，partsSent 記錄已送出的請求數，中斷後從下一個請求繼續。
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_job_seq", columnList = "jobId, seq", unique = true)
+})
+public class FanoutBatch extends BaseEntity {
+
+    private Long jobId;
+
+    /**
+     * 批次順序，從 1 開始
+     */
+    private int seq;
+
+    @Column(columnDefinition = "BIT")
+    private boolean multicast;
+
+    /**
+     * 收件者 ID，以逗號分隔
+     */
+    @Column(columnDefinition = "TEXT")
+    private String recipients;
+
+    private int recipientCount;
+
+    private int partsSent;
+
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "VARCHAR(20)")
+    private Status status;
+
+    private int attempts;
+
+    @Column(columnDefinition = "VARCHAR(500)")
+    private String lastError;
+
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED
+    }
+}
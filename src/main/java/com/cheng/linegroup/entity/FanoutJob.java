@@ -0,0 +1,65 @@
+package com.cheng.linegroup.entity;
+
+import com.cheng.linegroup.enums.FanoutAudience;
+import com.cheng.linegroup.enums.FanoutStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 群發工作，發送進度記錄在 {@link FanoutBatch}
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_status", columnList = "status")
+})
+public class FanoutJob extends BaseEntity {
+
+    @Column(columnDefinition = "VARCHAR(100)")
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "VARCHAR(20)")
+    private FanoutAudience audience;
+
+    /**
+     * 要發送的訊息 (JSON)，每 5 則為一個請求
+     */
+    @Column(columnDefinition = "TEXT")
+    private String messages;
+
+    /**
+     * {@link FanoutAudience#CUSTOM} 指定的 ID，以逗號分隔
+     */
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String recipients;
+
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "VARCHAR(20)")
+    private FanoutStatus status;
+
+    private int totalRecipients;
+
+    private long sentRecipients;
+
+    private int totalBatches;
+
+    private int completedBatches;
+
+    private int failedBatches;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    @Column(columnDefinition = "VARCHAR(500)")
+    private String lastError;
+}
@@ -41,6 +41,15 @@ public enum Api implements Uri {
 
     LINE_MESSAGE_REPLY("/bot/message/reply"),
 
+    /**
+     * <a href="https://developers.line.biz/en/reference/messaging-api/#send-multicast-message">
+     * Send multicast message
+     * </a>
+     * <p>
+     * 一次最多 500 個 userId
+     */
+    LINE_MESSAGE_MULTICAST("/bot/message/multicast"),
+
     /**
      * <a href="https://developers.line.biz/en/reference/messaging-api/#get-profile">
      * Get profile
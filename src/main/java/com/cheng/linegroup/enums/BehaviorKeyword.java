@@ -12,13 +12,32 @@ public enum BehaviorKeyword {
     AI_CHAT("."),
     BOT_LEARNING("欸唐董看到", "唐董", "唐懂", "唐墥", "唐"),
     RANDOM_IMAGE("抽"),
+    FOOD(MatchMode.CONTAINS, "food", "美食"),
 
     ;
 
+    private final MatchMode matchMode;
     private final String[] keywords;
 
     BehaviorKeyword(String... keywords) {
+        this(MatchMode.PREFIX, keywords);
+    }
+
+    BehaviorKeyword(MatchMode matchMode, String... keywords) {
+        this.matchMode = matchMode;
         this.keywords = keywords;
     }
 
+    public enum MatchMode {
+        /**
+         * 訊息以關鍵字開頭
+         */
+        PREFIX,
+
+        /**
+         * 訊息任意位置包含關鍵字，不分大小寫
+         */
+        CONTAINS
+    }
+
 }
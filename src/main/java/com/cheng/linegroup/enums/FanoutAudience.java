@@ -0,0 +1,22 @@
+package com.cheng.linegroup.enums;
+
+/**
+ * 群發對象
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+public enum FanoutAudience {
+    /**
+     * 所有仍是好友的 {@code LineUser}，以 multicast 發送
+     */
+    FRIENDS,
+    /**
+     * 所有仍存在的 {@code GroupMain} 群組，multicast 不支援群組，逐一 push
+     */
+    GROUPS,
+    /**
+     * 指定的 ID，U 開頭的使用者以 multicast 發送，其餘 (群組、聊天室) 逐一 push
+     */
+    CUSTOM
+}
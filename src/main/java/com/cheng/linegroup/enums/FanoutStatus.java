@@ -0,0 +1,28 @@
+package com.cheng.linegroup.enums;
+
+/**
+ * 群發工作狀態
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+public enum FanoutStatus {
+    /**
+     * 已建立，尚未切分批次
+     */
+    PENDING,
+    /**
+     * 發送中，服務重啟後會從未完成的批次繼續
+     */
+    RUNNING,
+    PAUSED,
+    /**
+     * 所有批次都已處理，失敗的批次數見 failedBatches，可再 resume 重送
+     */
+    COMPLETED,
+    CANCELLED,
+    /**
+     * 切分批次或執行時發生非預期錯誤
+     */
+    FAILED
+}
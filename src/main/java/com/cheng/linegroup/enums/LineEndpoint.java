@@ -0,0 +1,68 @@
+package com.cheng.linegroup.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * LINE Messaging API 的端點分類，各類別有獨立的 rate limit
+ * <p>
+ * 預設速率參考 LINE 公布的限制：訊息 reply/push 與一般端點 2,000 requests/s，multicast 200 requests/s。
+ *
+ * @author cheng
+ * @since 2026/10/17 22:20
+ **/
+@Getter
+@AllArgsConstructor
+public enum LineEndpoint {
+
+    REPLY(2_000, false, false),
+
+    /**
+     * 以 X-Line-Retry-Key 重試，LINE 會排除重複送出
+     */
+    PUSH(2_000, true, true),
+
+    /**
+     * 以 X-Line-Retry-Key 重試，LINE 會排除重複送出
+     */
+    MULTICAST(200, true, true),
+
+    /**
+     * 使用者、群組成員的 profile
+     */
+    PROFILE(2_000, false, true),
+
+    /**
+     * api-data 網域的訊息內容
+     */
+    CONTENT(2_000, false, true),
+
+    OTHER(2_000, false, true),
+    ;
+
+    /**
+     * LINE 公布的每秒請求上限
+     */
+    private final double permitsPerSecond;
+
+    /**
+     * 是否帶 X-Line-Retry-Key
+     */
+    private final boolean retryKey;
+
+    /**
+     * 連線失敗或 5xx 時重試是否安全 (不會重複執行)；reply token 只能使用一次，因此 reply 只在 429 時重試
+     */
+    private final boolean idempotent;
+
+    public static LineEndpoint of(Api api) {
+        return switch (api) {
+            case LINE_MESSAGE_REPLY -> REPLY;
+            case LINE_MESSAGE_PUSH -> PUSH;
+            case LINE_MESSAGE_MULTICAST -> MULTICAST;
+            case LINE_GET_USER_PROFILE, LINE_GROUP_MEMBER_PROFILE -> PROFILE;
+            case LINE_MESSAGE_CONTENT, LINE_MESSAGE_CONTENT_PREVIEW, LINE_MESSAGE_CONTENT_TRANSCODING -> CONTENT;
+            default -> OTHER;
+        };
+    }
+}
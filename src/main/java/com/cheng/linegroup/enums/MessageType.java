@@ -1,5 +1,11 @@
 package com.cheng.linegroup.enums;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * @author cheng
  * @since 2024/2/12 00:12
@@ -12,4 +18,22 @@ public enum MessageType {
     audio,
     file,
     location,
+    ;
+
+    private static final Map<String, MessageType> NAME_TO_TYPE_MAP = Arrays.stream(values())
+            .collect(Collectors.toMap(Enum::name, Function.identity()));
+
+    /**
+     * 不分大小寫取得訊息類型
+     *
+     * @param type webhook 中的 message.type
+     * @return 對應的類型，不支援時回傳 null
+     */
+    public static MessageType of(String type) {
+        if (type == null) {
+            return null;
+        }
+        MessageType messageType = NAME_TO_TYPE_MAP.get(type);
+        return messageType != null ? messageType : NAME_TO_TYPE_MAP.get(type.toLowerCase(Locale.ROOT));
+    }
 }
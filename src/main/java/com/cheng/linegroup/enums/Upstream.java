@@ -0,0 +1,43 @@
+package com.cheng.linegroup.enums;
+
+/**
+ * 外部依賴的分組，各組有獨立的 bulkhead 與 circuit breaker
+ *
+ * @author cheng
+ * @since 2026/10/17 23:20
+ **/
+public enum Upstream {
+
+    /**
+     * api.line.me：reply、push、multicast、profile、群組
+     */
+    LINE_MESSAGING,
+
+    /**
+     * api-data.line.me：訊息內容與轉檔狀態
+     */
+    LINE_DATA,
+
+    /**
+     * OpenAI (經由 {@code ChatService})
+     */
+    OPENAI,
+
+    LINE_NOTIFY,
+
+    OTHER,
+    ;
+
+    public static Upstream of(Api api) {
+        return switch (api) {
+            case LINE_MESSAGE_CONTENT, LINE_MESSAGE_CONTENT_PREVIEW, LINE_MESSAGE_CONTENT_TRANSCODING -> LINE_DATA;
+            case LINE_NOTIFY_PUSH, LINE_NOTIFY_OAUTH, LINE_NOTIFY_TOKEN, LINE_NOTIFY_CALLBACK -> LINE_NOTIFY;
+            case DATASET, DATA_STORE, DUMP_DATA_STORE -> OTHER;
+            default -> LINE_MESSAGING;
+        };
+    }
+
+    public static Upstream of(LineEndpoint endpoint) {
+        return endpoint == LineEndpoint.CONTENT ? LINE_DATA : LINE_MESSAGING;
+    }
+}
@@ -0,0 +1,70 @@
+package com.cheng.linegroup.events;
+
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事件分派各階段 (handler、message strategy、text behavior) 的耗時統計。
+ * <p>
+ * 各階段在啟動時建立分派表時註冊並取得自己的 {@link Stage}，執行時直接累加，不需查表。
+ *
+ * @author cheng
+ * @since 2026/10/17 17:00
+ **/
+@Component
+public class DispatchMetrics implements MetricsSource {
+
+    private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+
+    /**
+     * 取得或註冊一個階段
+     *
+     * @param name 階段名稱，例如 {@code behavior.AiChatBehavior}
+     */
+    public Stage stage(String name) {
+        return stages.computeIfAbsent(name, k -> new Stage());
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "webhookDispatch";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        stages.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> metrics.put(entry.getKey(), entry.getValue().snapshot()));
+        return metrics;
+    }
+
+    public static final class Stage {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        public void record(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            count.increment();
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        }
+
+        private Map<String, Object> snapshot() {
+            long n = count.sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", n);
+            m.put("totalMs", totalNanos.sum() / 1_000_000);
+            m.put("avgMs", n == 0 ? 0 : totalNanos.sum() / n / 1_000_000.0);
+            m.put("maxMs", maxNanos.get() / 1_000_000.0);
+            return m;
+        }
+    }
+}
@@ -1,30 +1,52 @@
 package com.cheng.linegroup.events;
 
+import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.enums.LineEvent;
 import com.cheng.linegroup.events.handler.NoneEventHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.EnumMap;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * 啟動時將 {@link EventHandler} 依 {@link LineEvent} 編成陣列，分派時以 ordinal 直接取得，沒有對應的事件共用同一個 {@link NoneEventHandler}
+ *
  * @author cheng
  * @since 2024/2/11 14:08
  **/
 @Component
 public class EventHandlerRegistry {
-    private final Map<LineEvent, EventHandler> eventHandlerMap = new EnumMap<>(LineEvent.class);
+    private static final EventHandler NONE_EVENT_HANDLER = new NoneEventHandler();
+
+    private final EventHandler[] eventHandlers = new EventHandler[LineEvent.values().length];
+    private final DispatchMetrics.Stage[] stages = new DispatchMetrics.Stage[LineEvent.values().length];
 
     @Autowired
-    public EventHandlerRegistry(List<EventHandler> handlers) {
+    public EventHandlerRegistry(List<EventHandler> handlers, DispatchMetrics dispatchMetrics) {
         for (EventHandler handler : handlers) {
-            eventHandlerMap.put(handler.getSupportedEventType(), handler);
+            eventHandlers[handler.getSupportedEventType().ordinal()] = handler;
+        }
+        for (LineEvent event : LineEvent.values()) {
+            if (eventHandlers[event.ordinal()] == null) {
+                eventHandlers[event.ordinal()] = NONE_EVENT_HANDLER;
+            }
+            stages[event.ordinal()] = dispatchMetrics.stage("handler." + eventHandlers[event.ordinal()].getClass().getSimpleName());
         }
     }
 
     public EventHandler getEventHandler(LineEvent event) {
-        return eventHandlerMap.getOrDefault(event, new NoneEventHandler());
+        return eventHandlers[event.ordinal()];
+    }
+
+    /**
+     * 交給對應的 handler 處理並記錄耗時
+     */
+    public void handle(LineEvent event, WebhookEvent.Event e) {
+        long start = System.nanoTime();
+        try {
+            eventHandlers[event.ordinal()].handle(e);
+        } finally {
+            stages[event.ordinal()].record(start);
+        }
     }
 }
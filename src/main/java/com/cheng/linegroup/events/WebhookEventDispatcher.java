@@ -0,0 +1,176 @@
+package com.cheng.linegroup.events;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.LineEvent;
+import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.events.admission.AdmissionController;
+import com.cheng.linegroup.events.admission.EventPriority;
+import com.cheng.linegroup.events.deadline.ReplyDeadline;
+import com.cheng.linegroup.events.deadline.ReplyDeadlineTracker;
+import com.cheng.linegroup.events.dedup.WebhookEventDeduplicator;
+import com.cheng.linegroup.events.lane.ConversationLaneExecutor;
+import com.cheng.linegroup.events.message.keyword.KeywordAutomaton;
+import com.cheng.linegroup.utils.TraceUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 將 webhook 事件分派給對應的 {@link EventHandler}
+ * <p>
+ * 事件依對話 (群組優先，其次使用者) 排入 {@link ConversationLaneExecutor}，同一對話內依收到的順序處理，
+ * 不同對話之間則依 reply token 期限先到先處理。排入 lane 前先經過 {@link AdmissionController}，
+ * 系統飽和時依 {@link EventPriority} 延後或丟棄低優先的事件。
+ * <p>
+ * 處理時以 {@link WebhookEvent.Event#defer} 登記的非同步工作完成後才算處理完成：
+ * 在那之前同一對話的下一個事件不會開始，准入的 permit、去重的 claim 也不會釋放，journal 不會被 ack。
+ *
+ * @author cheng
+ * @since 2026/10/17 11:02
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookEventDispatcher {
+
+    /**
+     * 沒有 source 的事件 (理論上不會發生) 共用同一條 lane
+     */
+    private static final String UNKNOWN_CONVERSATION = "_";
+
+    private final EventHandlerRegistry eventHandlerRegistry;
+    private final ConversationLaneExecutor conversationLaneExecutor;
+    private final WebhookEventDeduplicator webhookEventDeduplicator;
+    private final ReplyDeadlineTracker replyDeadlineTracker;
+    private final AdmissionController admissionController;
+    private final KeywordAutomaton keywordAutomaton;
+
+    /**
+     * 將每個事件依對話排入 lane 非同步處理
+     *
+     * @param webhookEvent 解析後的 webhook 內容
+     * @param traceId      接收 webhook 時的 traceId
+     */
+    public void dispatch(WebhookEvent webhookEvent, String traceId) {
+        for (WebhookEvent.Event e : webhookEvent.getEvents()) {
+            dispatch(e, traceId);
+        }
+    }
+
+    /**
+     * 將單一事件依對話排入 lane 非同步處理
+     *
+     * @param e       webhook 事件
+     * @param traceId 接收 webhook 時的 traceId
+     */
+    public void dispatch(WebhookEvent.Event e, String traceId) {
+        e.setTraceId(traceId);
+        submit(e, false, null);
+    }
+
+    /**
+     * 將已設定 traceId 的事件依對話排入 lane 非同步處理
+     *
+     * @param e          webhook 事件
+     * @param replay     true: journal 重播的事件
+     * @param onComplete 事件處理完成 (或判定為重複、被丟棄) 後的回呼，可為 null
+     */
+    public void submit(WebhookEvent.Event e, boolean replay, Runnable onComplete) {
+        if (!webhookEventDeduplicator.tryClaim(e, replay)) {
+            complete(onComplete);
+            return;
+        }
+        long receivedAt = System.currentTimeMillis();
+        matchKeywords(e);
+        admissionController.submit(conversationKey(e), EventPriority.of(e),
+                permit -> enqueue(e, receivedAt, permit, onComplete),
+                () -> {
+                    webhookEventDeduplicator.release(e);
+                    complete(onComplete);
+                });
+    }
+
+    private void enqueue(WebhookEvent.Event e, long receivedAt, AdmissionController.Permit permit, Runnable onComplete) {
+        long deadline = replyDeadlineTracker.deadlineOf(e);
+        try {
+            conversationLaneExecutor.executeAsync(conversationKey(e), deadline, () -> {
+                boolean handled = false;
+                try {
+                    replyDeadlineTracker.begin(e, deadline, receivedAt);
+                    invoke(e);
+                    handled = true;
+                } finally {
+                    ReplyDeadline.clear();
+                    if (!handled) {
+                        finish(e, false, permit, onComplete);
+                    }
+                }
+                CompletableFuture<?> inFlight = e.getInFlight();
+                if (inFlight == null) {
+                    finish(e, true, permit, onComplete);
+                    return null;
+                }
+                return inFlight.whenComplete((r, ex) -> finish(e, ex == null, permit, onComplete));
+            });
+        } catch (RejectedExecutionException ex) {
+            webhookEventDeduplicator.release(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * 事件處理完成 (包含登記的非同步工作)，失敗時釋放去重的 claim 讓 LINE 重送的事件可以重新處理
+     */
+    private void finish(WebhookEvent.Event e, boolean handled, AdmissionController.Permit permit, Runnable onComplete) {
+        try {
+            if (handled) {
+                webhookEventDeduplicator.complete(e);
+            } else {
+                webhookEventDeduplicator.release(e);
+            }
+        } finally {
+            permit.release();
+            complete(onComplete);
+        }
+    }
+
+    /**
+     * 文字訊息在這裡掃描一次關鍵字，准入判斷與 {@code TextMessageStrategy} 共用同一份結果
+     */
+    private void matchKeywords(WebhookEvent.Event e) {
+        WebhookEvent.Event.Message message = e.getMessage();
+        if (message != null && MessageType.of(message.getType()) == MessageType.text && message.getText() != null) {
+            e.setKeywordMatch(keywordAutomaton.match(message.getText()));
+        }
+    }
+
+    private static void complete(Runnable onComplete) {
+        if (onComplete != null) {
+            onComplete.run();
+        }
+    }
+
+    private static String conversationKey(WebhookEvent.Event e) {
+        WebhookEvent.Event.Source source = e.getSource();
+        if (source == null) {
+            return UNKNOWN_CONVERSATION;
+        }
+        if (StringUtils.isNotBlank(source.getGroupId())) {
+            return source.getGroupId();
+        }
+        return StringUtils.defaultIfBlank(source.getUserId(), UNKNOWN_CONVERSATION);
+    }
+
+    private void invoke(WebhookEvent.Event e) {
+        try {
+            TraceUtils.setTraceId(e.getTraceId());
+            eventHandlerRegistry.handle(LineEvent.getEvent(e.getType()), e);
+        } finally {
+            TraceUtils.clearTrace();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cheng.linegroup.events.admission;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+
+/**
+ * 依實際處理時間動態調整的並行上限 (gradient 演算法)。
+ * <p>
+ * 以長期的平均處理時間 (longRtt) 作為基準，與最近的處理時間 (shortRtt) 比較：
+ * 最近變慢代表開始排隊，上限依比例縮小；處理時間恢復時上限再以 sqrt(limit) 的幅度慢慢放大。
+ * 處理時間從事件被接受開始計算，包含在 lane 中排隊的時間。
+ *
+ * @author cheng
+ * @since 2026/10/17 16:30
+ **/
+class AdaptiveConcurrencyLimit {
+
+    private final LineWebhook.Admission config;
+
+    private volatile double limit;
+    private double longRtt;
+    private double shortRtt;
+    private long samples;
+
+    AdaptiveConcurrencyLimit(LineWebhook.Admission config) {
+        this.config = config;
+        this.limit = config.getInitialLimit();
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized double getLongRtt() {
+        return longRtt;
+    }
+
+    synchronized double getShortRtt() {
+        return shortRtt;
+    }
+
+    /**
+     * @param rttNanos 此次處理時間
+     * @param inflight 完成當下仍在處理中的數量
+     */
+    synchronized void onSample(long rttNanos, int inflight) {
+        double rtt = rttNanos;
+        samples++;
+        if (samples == 1) {
+            longRtt = rtt;
+            shortRtt = rtt;
+            return;
+        }
+        shortRtt = ewma(shortRtt, rtt, config.getShortWindow());
+        longRtt = ewma(longRtt, rtt, config.getLongWindow());
+
+        // 長期基準明顯高於近期時讓基準快一點回落，避免負載下降後上限長期偏大
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // 沒用到一半的上限時不放大，避免閒置時上限無限成長
+        if (inflight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - config.getSmoothing()) + newLimit * config.getSmoothing();
+        limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+    }
+
+    private static double ewma(double current, double sample, int window) {
+        double factor = 2.0 / (window + 1);
+        return current * (1 - factor) + sample * factor;
+    }
+}
@@ -0,0 +1,310 @@
+package com.cheng.linegroup.events.admission;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * webhook 事件的准入控制，位於事件排入 lane 之前。
+ * <p>
+ * 同時處理中的事件數量以 {@link AdaptiveConcurrencyLimit} 量測出的上限為準，各優先等級可使用的比例不同：
+ * <ul>
+ *     <li>{@link EventPriority#COMMAND}: 可超出上限 (command-headroom 倍)，再多則延後</li>
+ *     <li>{@link EventPriority#LIFECYCLE}: 到達上限後延後</li>
+ *     <li>{@link EventPriority#CHATTER}: 到達上限的 chatter-ratio 後延後，延後佇列滿了直接丟棄</li>
+ * </ul>
+ * COMMAND 與 LIFECYCLE 不會被丟棄，延後佇列滿時直接超量接受。延後的事件在有事件完成時依優先等級補進來。
+ * <p>
+ * 准入以對話 key 為單位：對話中已有延後的事件時，之後的事件 (不論優先等級) 都排在它後面，
+ * 補入時一次只取對話最前面的事件，因此同一對話的事件進入 lane 的順序與送進來的順序相同。
+ *
+ * @author cheng
+ * @since 2026/10/17 16:30
+ **/
+@Slf4j
+@Component
+public class AdmissionController implements MetricsSource {
+
+    private static final long DRAIN_INTERVAL_MS = 100;
+
+    private final LineWebhook.Admission config;
+    private final AdaptiveConcurrencyLimit limiter;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 有延後事件的對話，依對話最前面事件的優先等級排隊；與 waiting、deferredCount 一起以 this 為鎖保護
+     */
+    private final Map<EventPriority, ArrayDeque<Conversation>> deferred = new EnumMap<>(EventPriority.class);
+    private final Map<String, Conversation> waiting = new HashMap<>();
+    /**
+     * 各優先等級延後中的事件數
+     */
+    private final Map<EventPriority, Integer> deferredCount = new EnumMap<>(EventPriority.class);
+    private final Map<EventPriority, Counters> counters = new EnumMap<>(EventPriority.class);
+
+    private ScheduledExecutorService drainScheduler;
+
+    public AdmissionController(LineWebhook lineWebhook) {
+        this.config = lineWebhook.getAdmission();
+        this.limiter = new AdaptiveConcurrencyLimit(config);
+        for (EventPriority priority : EventPriority.values()) {
+            deferred.put(priority, new ArrayDeque<>());
+            deferredCount.put(priority, 0);
+            counters.put(priority, new Counters());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        // 沒有事件完成時也要定期嘗試補入延後的事件
+        drainScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("admissionDrain_"));
+        drainScheduler.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 申請處理事件
+     *
+     * @param key      對話 key，同一對話的事件依呼叫順序被接受
+     * @param priority 事件優先等級
+     * @param task     被接受時呼叫 (可能稍後在其他執行緒)，處理完成後必須呼叫 {@link Permit#release()}
+     * @param onShed   被丟棄時呼叫 (只有 CHATTER 會被丟棄)
+     */
+    public void submit(String key, EventPriority priority, Consumer<Permit> task, Runnable onShed) {
+        Counters c = counters.get(priority);
+        if (!config.isEnabled()) {
+            c.admitted.increment();
+            begin(task);
+            return;
+        }
+
+        boolean admitted;
+        synchronized (this) {
+            Conversation conversation = waiting.get(key);
+            admitted = conversation == null && tryAcquire(priority);
+            if (!admitted) {
+                boolean full = deferredCount.get(priority) >= config.getMaxDeferred();
+                // 對話中已有延後的事件時不能超量接受，否則會超越前面的事件；只有 CHATTER 會被丟棄
+                if (!full || (conversation != null && priority != EventPriority.CHATTER)) {
+                    defer(key, conversation, priority, task);
+                    c.deferred.increment();
+                    return;
+                }
+            }
+        }
+
+        if (admitted) {
+            c.admitted.increment();
+            begin(task);
+            return;
+        }
+        if (priority == EventPriority.CHATTER) {
+            c.shed.increment();
+            log.warn("Shed {} event, inflight:{}, limit:{}", priority, inflight.get(), limiter.getLimit());
+            onShed.run();
+            return;
+        }
+        c.overLimit.increment();
+        inflight.incrementAndGet();
+        log.warn("Admit {} event over limit, inflight:{}, limit:{}", priority, inflight.get(), limiter.getLimit());
+        begin(task);
+    }
+
+    /**
+     * 將事件排到對話的最後面，對話原本沒有延後的事件時依此事件的優先等級排隊
+     */
+    private void defer(String key, Conversation conversation, EventPriority priority, Consumer<Permit> task) {
+        if (conversation == null) {
+            conversation = new Conversation(key);
+            waiting.put(key, conversation);
+            deferred.get(priority).addLast(conversation);
+        }
+        conversation.events.addLast(new Deferred(priority, task));
+        deferredCount.merge(priority, 1, Integer::sum);
+    }
+
+    private boolean tryAcquire(EventPriority priority) {
+        int allowed = allowed(priority);
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private int allowed(EventPriority priority) {
+        int limit = limiter.getLimit();
+        return switch (priority) {
+            case COMMAND -> (int) Math.ceil(limit * config.getCommandHeadroom());
+            case LIFECYCLE -> limit;
+            case CHATTER -> Math.max(1, (int) (limit * config.getChatterRatio()));
+        };
+    }
+
+    private void begin(Consumer<Permit> task) {
+        Permit permit = new Permit(System.nanoTime());
+        try {
+            task.accept(permit);
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    private void release(Permit permit) {
+        int current = inflight.decrementAndGet();
+        limiter.onSample(System.nanoTime() - permit.startedAt, current);
+        drain();
+    }
+
+    /**
+     * 依優先等級由高到低補入延後的事件，每次取對話最前面的一個事件。
+     * <p>
+     * 在鎖內開始處理 (排入 lane)，避免同一對話較晚的事件搶先排入 lane。
+     */
+    private synchronized void drain() {
+        Deferred next;
+        while ((next = pollAdmissible()) != null) {
+            counters.get(next.priority()).admittedFromDeferred.increment();
+            try {
+                begin(next.task());
+            } catch (RuntimeException e) {
+                log.error("Failed to start deferred {} event, ERR:{}", next.priority(), ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * 每次都從最高的優先等級找起：對話補入一個事件後，下一個事件可能屬於更高的優先等級
+     *
+     * @return 已取得額度的事件，沒有可補入的事件時為 null
+     */
+    private Deferred pollAdmissible() {
+        for (EventPriority priority : EventPriority.values()) {
+            ArrayDeque<Conversation> queue = deferred.get(priority);
+            if (queue.isEmpty() || !tryAcquire(priority)) {
+                continue;
+            }
+            Conversation conversation = queue.pollFirst();
+            Deferred next = conversation.events.pollFirst();
+            deferredCount.merge(next.priority(), -1, Integer::sum);
+            Deferred head = conversation.events.peekFirst();
+            if (head == null) {
+                waiting.remove(conversation.key);
+            } else {
+                deferred.get(head.priority()).addLast(conversation);
+            }
+            return next;
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainScheduler.shutdownNow();
+        int remaining;
+        synchronized (this) {
+            remaining = deferredCount.values().stream().mapToInt(Integer::intValue).sum();
+        }
+        if (remaining > 0) {
+            // journal 模式下這些事件尚未確認，下次啟動時會重播
+            log.warn("AdmissionController shutdown with {} deferred events", remaining);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "webhookAdmission";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("limit", limiter.getLimit());
+        metrics.put("inflight", inflight.get());
+        metrics.put("longRttMs", limiter.getLongRtt() / 1_000_000);
+        metrics.put("shortRttMs", limiter.getShortRtt() / 1_000_000);
+        for (EventPriority priority : EventPriority.values()) {
+            Counters c = counters.get(priority);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("admitted", c.admitted.sum());
+            m.put("deferred", c.deferred.sum());
+            m.put("admittedFromDeferred", c.admittedFromDeferred.sum());
+            m.put("shed", c.shed.sum());
+            m.put("overLimit", c.overLimit.sum());
+            synchronized (this) {
+                m.put("deferredQueue", deferredCount.get(priority));
+            }
+            metrics.put(priority.name(), m);
+        }
+        synchronized (this) {
+            metrics.put("waitingConversations", waiting.size());
+        }
+        return metrics;
+    }
+
+    /**
+     * 已被接受的事件，處理完成時需呼叫一次 {@link #release()}
+     */
+    public final class Permit {
+        private final long startedAt;
+        private boolean released;
+
+        private Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            AdmissionController.this.release(this);
+        }
+    }
+
+    private record Deferred(EventPriority priority, Consumer<Permit> task) {
+    }
+
+    /**
+     * 單一對話中延後的事件，依送進來的順序排列
+     */
+    private static final class Conversation {
+        private final String key;
+        private final ArrayDeque<Deferred> events = new ArrayDeque<>();
+
+        private Conversation(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder deferred = new LongAdder();
+        private final LongAdder admittedFromDeferred = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder overLimit = new LongAdder();
+    }
+}
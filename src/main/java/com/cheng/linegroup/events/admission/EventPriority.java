@@ -0,0 +1,46 @@
+package com.cheng.linegroup.events.admission;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.BehaviorKeyword;
+import com.cheng.linegroup.enums.LineEvent;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+
+/**
+ * webhook 事件的處理優先等級，系統飽和時由低到高開始延後或丟棄
+ *
+ * @author cheng
+ * @since 2026/10/17 16:30
+ **/
+public enum EventPriority {
+
+    /**
+     * 明確的指令 (符合 {@link BehaviorKeyword} 或學過的關鍵字) 或 postback，使用者正在等回覆
+     */
+    COMMAND,
+
+    /**
+     * 加入/追蹤等生命週期事件，會更新群組與使用者資料，只能延後不能丟棄
+     */
+    LIFECYCLE,
+
+    /**
+     * 一般聊天訊息，主要只寫入 MessageEventRecord，飽和時最先被延後或丟棄
+     */
+    CHATTER;
+
+    /**
+     * @param e webhook 事件，文字訊息需先由 dispatcher 設定 {@link WebhookEvent.Event#getKeywordMatch()}
+     */
+    public static EventPriority of(WebhookEvent.Event e) {
+        return switch (LineEvent.getEvent(e.getType())) {
+            case FOLLOW, UNFOLLOW, JOIN, LEAVE, MEMBER_JOINED, MEMBER_LEFT -> LIFECYCLE;
+            case POSTBACK -> COMMAND;
+            case MESSAGE -> isCommand(e.getKeywordMatch()) ? COMMAND : CHATTER;
+            default -> CHATTER;
+        };
+    }
+
+    private static boolean isCommand(KeywordMatch match) {
+        return match != null && (match.hasAnyBehavior() || match.isLearnedKeyword());
+    }
+}
@@ -0,0 +1,113 @@
+package com.cheng.linegroup.events.deadline;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 為單一行為 (例如 {@code TextMessageBehavior.performAction}) 加上可取消的時間預算。
+ * <p>
+ * 行為在目前執行緒執行，超過預算時由 watchdog 中斷該執行緒，讓阻塞中的 HTTP 呼叫提早結束；
+ * 行為本身也可透過 {@link #isCancelled()} 主動檢查。結束後會清除中斷狀態，不影響 lane 的 worker。
+ *
+ * @author cheng
+ * @since 2026/10/17 16:05
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActionBudget {
+
+    private static final ThreadLocal<Guard> CURRENT = new ThreadLocal<>();
+
+    private final ReplyDeadlineTracker replyDeadlineTracker;
+
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("actionBudget_"));
+
+    /**
+     * 在時間預算內執行行為
+     *
+     * @param name   行為名稱，用於 log
+     * @param action 行為內容，回傳值為是否中斷後續行為
+     * @return 行為的回傳值；被取消時回傳 true 中斷後續行為
+     */
+    public boolean run(String name, BooleanSupplier action) {
+        long budget = replyDeadlineTracker.actionBudgetMillis();
+        if (budget <= 0) {
+            replyDeadlineTracker.onActionCancelled();
+            log.info("Skip {}, no time budget left", name);
+            return true;
+        }
+
+        Guard guard = new Guard(Thread.currentThread());
+        ScheduledFuture<?> timeout = watchdog.schedule(guard::cancel, budget, TimeUnit.MILLISECONDS);
+        CURRENT.set(guard);
+        try {
+            return action.getAsBoolean();
+        } catch (RuntimeException e) {
+            if (guard.cancelled) {
+                log.warn("{} cancelled after {}ms budget: {}", name, budget, e.getMessage());
+                return true;
+            }
+            throw e;
+        } finally {
+            timeout.cancel(false);
+            guard.finish();
+            CURRENT.remove();
+            if (guard.cancelled) {
+                replyDeadlineTracker.onActionCancelled();
+            }
+        }
+    }
+
+    /**
+     * @return 目前執行中的行為是否已超過時間預算
+     */
+    public static boolean isCancelled() {
+        Guard guard = CURRENT.get();
+        return guard != null && guard.cancelled;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    private static final class Guard {
+        private final Thread thread;
+        private volatile boolean cancelled;
+        private boolean finished;
+
+        private Guard(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void cancel() {
+            if (!finished) {
+                cancelled = true;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * 結束後 watchdog 不會再中斷執行緒，並清除先前可能留下的中斷狀態
+         */
+        private void finish() {
+            synchronized (this) {
+                finished = true;
+            }
+            if (cancelled) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.cheng.linegroup.events.deadline;
+
+/**
+ * 目前處理中事件的 reply token 期限，由 {@link ReplyDeadlineTracker} 在事件開始處理時綁定到執行緒上。
+ *
+ * @param deadline   reply token 失效時間 (epoch millis)，沒有 reply token 時為 {@link Long#MAX_VALUE}
+ * @param enqueuedAt 事件排入 lane 的時間
+ * @param pushTarget 改用 push 時的發送對象 (群組優先，其次使用者)
+ * @author cheng
+ * @since 2026/10/17 15:50
+ **/
+public record ReplyDeadline(long deadline, long enqueuedAt, String pushTarget) {
+
+    private static final ThreadLocal<ReplyDeadline> CURRENT = new ThreadLocal<>();
+
+    public static ReplyDeadline current() {
+        return CURRENT.get();
+    }
+
+    static void set(ReplyDeadline replyDeadline) {
+        CURRENT.set(replyDeadline);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public boolean hasDeadline() {
+        return deadline != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return 距離期限剩餘的毫秒數，已過期時為負數
+     */
+    public long remainingMillis() {
+        return hasDeadline() ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+}
@@ -0,0 +1,192 @@
+package com.cheng.linegroup.events.deadline;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.lane.ConversationLaneExecutor;
+import com.cheng.linegroup.services.dto.LineMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 計算事件的 reply token 期限，並統計排隊延遲與錯過期限的次數。
+ * <p>
+ * reply token 約在 {@code event.timestamp} 後一分鐘失效，期限以 ttl 減去安全邊際計算。
+ * 過期的 reply 依 {@link LineWebhook.ExpiredPolicy} 改用 push 發送或直接丟棄。
+ *
+ * @author cheng
+ * @since 2026/10/17 15:50
+ **/
+@Slf4j
+@Component
+public class ReplyDeadlineTracker implements MetricsSource {
+
+    /**
+     * 排隊延遲分布的上限 (ms)，最後一格為超過 60 秒
+     */
+    private static final long[] DELAY_BUCKETS = {10, 100, 1_000, 10_000, 60_000};
+
+    private final LineWebhook.Deadline config;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder missedBeforeStart = new LongAdder();
+    private final LongAdder missedOnReply = new LongAdder();
+    private final LongAdder downgradedToPush = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder actionsCancelled = new LongAdder();
+    private final LongAdder totalDelay = new LongAdder();
+    private final LongAccumulator maxDelay = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] delayHistogram = new LongAdder[DELAY_BUCKETS.length + 1];
+
+    public ReplyDeadlineTracker(LineWebhook lineWebhook) {
+        this.config = lineWebhook.getDeadline();
+        for (int i = 0; i < delayHistogram.length; i++) {
+            delayHistogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return reply token 的期限 (epoch millis)，沒有 reply token 或未啟用時為 {@link ConversationLaneExecutor#NO_DEADLINE}
+     */
+    public long deadlineOf(WebhookEvent.Event e) {
+        if (!config.isEnabled() || StringUtils.isBlank(e.getReplyToken()) || e.getTimestamp() <= 0) {
+            return ConversationLaneExecutor.NO_DEADLINE;
+        }
+        return e.getTimestamp() + config.getReplyTokenTtl().toMillis() - config.getSafetyMargin().toMillis();
+    }
+
+    /**
+     * 事件開始處理時呼叫，記錄排隊延遲並把期限綁定到目前執行緒，處理完後需呼叫 {@link ReplyDeadline#clear()}
+     */
+    public ReplyDeadline begin(WebhookEvent.Event e, long deadline, long enqueuedAt) {
+        long now = System.currentTimeMillis();
+        long delay = now - enqueuedAt;
+        recordDelay(delay);
+
+        ReplyDeadline replyDeadline = new ReplyDeadline(deadline, enqueuedAt, pushTarget(e));
+        if (replyDeadline.hasDeadline() && replyDeadline.isExpired()) {
+            missedBeforeStart.increment();
+            log.warn("Reply token expired before processing, webhookEventId:{}, queued:{}ms, overdue:{}ms, policy:{}",
+                    e.getWebhookEventId(), delay, now - deadline, config.getExpiredPolicy());
+        } else {
+            log.debug("Event start, webhookEventId:{}, queued:{}ms", e.getWebhookEventId(), delay);
+        }
+        ReplyDeadline.set(replyDeadline);
+        return replyDeadline;
+    }
+
+    /**
+     * @return 目前事件的 reply token 是否已過期
+     */
+    public boolean isReplyExpired() {
+        return isReplyExpired(ReplyDeadline.current());
+    }
+
+    /**
+     * 非同步處理時執行緒上沒有綁定期限，改用事件開始時取得的 {@link ReplyDeadline}
+     *
+     * @return 指定的 reply token 是否已過期
+     */
+    public boolean isReplyExpired(ReplyDeadline replyDeadline) {
+        return replyDeadline != null && replyDeadline.isExpired();
+    }
+
+    /**
+     * reply token 過期時呼叫，依設定改為 push 或丟棄
+     *
+     * @param lineMessage 原本要 reply 的訊息
+     * @return 改用 push 時回傳調整後的訊息 (需改呼叫 push API)；丟棄時回傳 null
+     */
+    public LineMessage fallback(LineMessage lineMessage) {
+        return fallback(lineMessage, ReplyDeadline.current());
+    }
+
+    /**
+     * @see #fallback(LineMessage)
+     */
+    public LineMessage fallback(LineMessage lineMessage, ReplyDeadline replyDeadline) {
+        missedOnReply.increment();
+        if (config.getExpiredPolicy() == LineWebhook.ExpiredPolicy.PUSH && replyDeadline != null && replyDeadline.pushTarget() != null) {
+            downgradedToPush.increment();
+            log.info("Reply token expired, fallback to push, to:{}", replyDeadline.pushTarget());
+            lineMessage.setReplyToken(null);
+            lineMessage.setUid(replyDeadline.pushTarget());
+            return lineMessage;
+        }
+        dropped.increment();
+        log.info("Reply token expired, drop reply");
+        return null;
+    }
+
+    /**
+     * 取得目前事件中單一行為可使用的時間 (ms)
+     * <p>
+     * 過期改用 push 時行為仍有意義，使用固定的 action-budget；丟棄時則不超過 reply token 剩餘的時間
+     */
+    public long actionBudgetMillis() {
+        long budget = config.getActionBudget().toMillis();
+        ReplyDeadline replyDeadline = ReplyDeadline.current();
+        if (replyDeadline == null || config.getExpiredPolicy() == LineWebhook.ExpiredPolicy.PUSH) {
+            return budget;
+        }
+        return Math.min(budget, Math.max(0, replyDeadline.remainingMillis()));
+    }
+
+    void onActionCancelled() {
+        actionsCancelled.increment();
+    }
+
+    private void recordDelay(long delay) {
+        started.increment();
+        totalDelay.add(delay);
+        maxDelay.accumulate(delay);
+        int i = 0;
+        while (i < DELAY_BUCKETS.length && delay >= DELAY_BUCKETS[i]) {
+            i++;
+        }
+        delayHistogram[i].increment();
+    }
+
+    /**
+     * @return 改用 push 時的發送對象，群組優先，其次使用者
+     */
+    public static String pushTarget(WebhookEvent.Event e) {
+        WebhookEvent.Event.Source source = e.getSource();
+        if (source == null) {
+            return null;
+        }
+        return StringUtils.isNotBlank(source.getGroupId()) ? source.getGroupId() : source.getUserId();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "replyDeadline";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long count = started.sum();
+        metrics.put("started", count);
+        metrics.put("queueDelayAvgMs", count == 0 ? 0 : totalDelay.sum() / count);
+        metrics.put("queueDelayMaxMs", maxDelay.get());
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < DELAY_BUCKETS.length; i++) {
+            histogram.put("<" + DELAY_BUCKETS[i] + "ms", delayHistogram[i].sum());
+        }
+        histogram.put(">=" + DELAY_BUCKETS[DELAY_BUCKETS.length - 1] + "ms", delayHistogram[DELAY_BUCKETS.length].sum());
+        metrics.put("queueDelayHistogram", histogram);
+        metrics.put("missedBeforeStart", missedBeforeStart.sum());
+        metrics.put("missedOnReply", missedOnReply.sum());
+        metrics.put("downgradedToPush", downgradedToPush.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("actionsCancelled", actionsCancelled.sum());
+        return metrics;
+    }
+}
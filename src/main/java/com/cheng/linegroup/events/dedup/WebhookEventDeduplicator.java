@@ -0,0 +1,178 @@
+package com.cheng.linegroup.events.dedup;
+
+import com.cheng.linegroup.common.contants.RedisPrefix;
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 webhookEventId 去除 LINE 重送的重複事件。
+ * <p>
+ * 第一層為本機的時間窗集合 (有上限的 Guava Cache)，第二層為可選的 Redis SETNX，
+ * 讓多台機器共用去重結果。Redis 發生錯誤時視為未重複，不影響事件處理。
+ * <p>
+ * 標記分兩階段：{@link #tryClaim} 先寫入處理中 (pending) 標記，事件處理成功後 {@link #complete} 才改為已完成；
+ * 事件被丟棄、lane 拒絕或處理失敗時以 {@link #release} 刪除標記，讓 LINE 重送或 journal 重播能再次處理。
+ * Redis 上的 pending 標記只保留 pending-ttl，服務崩潰後留下的標記不會擋住重送太久；
+ * journal 重播的事件則忽略 pending 標記，只有已完成的標記才視為重複。
+ *
+ * @author cheng
+ * @since 2026/10/17 13:20
+ **/
+@Slf4j
+@Component
+public class WebhookEventDeduplicator implements MetricsSource {
+
+    private static final String PENDING = "0";
+    private static final String DONE = "1";
+
+    private final LineWebhook.Dedup config;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<String, String> seenEvents;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder redeliveries = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder takenOver = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    public WebhookEventDeduplicator(LineWebhook lineWebhook, StringRedisTemplate stringRedisTemplate) {
+        this.config = lineWebhook.getDedup();
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seenEvents = CacheBuilder.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfterWrite(config.getWindow())
+                .build();
+    }
+
+    /**
+     * 取得事件的處理權並寫入 pending 標記，取得後必須呼叫 {@link #complete} 或 {@link #release} 其中之一
+     *
+     * @param e      webhook 事件
+     * @param replay true: journal 重播的事件，前一次執行留下的 pending 標記可以接手
+     * @return false: 重複事件 (已完成或其他地方正在處理)，應直接丟棄
+     */
+    public boolean tryClaim(WebhookEvent.Event e, boolean replay) {
+        String eventId = e.getWebhookEventId();
+        if (!config.isEnabled() || eventId == null) {
+            return true;
+        }
+        boolean isRedelivery = e.getDeliveryContext() != null && e.getDeliveryContext().isRedelivery();
+        if (isRedelivery) {
+            redeliveries.increment();
+        }
+
+        if (seenEvents.asMap().putIfAbsent(eventId, PENDING) != null) {
+            localHits.increment();
+            log.info("Drop duplicate webhook event (local), webhookEventId:{}, isRedelivery:{}", eventId, isRedelivery);
+            return false;
+        }
+
+        if (config.isRedisEnabled() && !claimInRedis(eventId, replay)) {
+            seenEvents.asMap().remove(eventId, PENDING);
+            redisHits.increment();
+            log.info("Drop duplicate webhook event (redis), webhookEventId:{}, isRedelivery:{}", eventId, isRedelivery);
+            return false;
+        }
+
+        misses.increment();
+        return true;
+    }
+
+    /**
+     * 事件處理成功，pending 標記改為已完成，之後時間窗內的重送都會被丟棄
+     */
+    public void complete(WebhookEvent.Event e) {
+        String eventId = e.getWebhookEventId();
+        if (!config.isEnabled() || eventId == null) {
+            return;
+        }
+        seenEvents.put(eventId, DONE);
+        if (config.isRedisEnabled()) {
+            try {
+                stringRedisTemplate.opsForValue().set(key(eventId), DONE, config.getWindow());
+            } catch (Exception ex) {
+                redisErrors.increment();
+                log.warn("Webhook dedup redis error on complete: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 事件未處理完成 (被丟棄、lane 拒絕或處理失敗)，刪除 pending 標記讓重送能再次處理
+     */
+    public void release(WebhookEvent.Event e) {
+        String eventId = e.getWebhookEventId();
+        if (!config.isEnabled() || eventId == null) {
+            return;
+        }
+        released.increment();
+        seenEvents.asMap().remove(eventId, PENDING);
+        if (config.isRedisEnabled()) {
+            try {
+                stringRedisTemplate.delete(key(eventId));
+            } catch (Exception ex) {
+                redisErrors.increment();
+                log.warn("Webhook dedup redis error on release: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return true: 取得處理權
+     */
+    private boolean claimInRedis(String eventId, boolean replay) {
+        String key = key(eventId);
+        try {
+            Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(key, PENDING, config.getPendingTtl());
+            if (!Boolean.FALSE.equals(first)) {
+                return true;
+            }
+            // 重播的事件在崩潰前可能已寫入 pending 標記，只要還沒完成就由重播接手
+            if (replay && PENDING.equals(stringRedisTemplate.opsForValue().get(key))) {
+                stringRedisTemplate.opsForValue().set(key, PENDING, config.getPendingTtl());
+                takenOver.increment();
+                return true;
+            }
+            return false;
+        } catch (Exception ex) {
+            redisErrors.increment();
+            log.warn("Webhook dedup redis error, fallback to local only: {}", ex.getMessage());
+            return true;
+        }
+    }
+
+    private static String key(String eventId) {
+        return RedisPrefix.WEBHOOK_EVENT + eventId;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "webhookDedup";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("localHits", localHits.sum());
+        metrics.put("redisHits", redisHits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("redeliveries", redeliveries.sum());
+        metrics.put("released", released.sum());
+        metrics.put("takenOver", takenOver.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        metrics.put("localSize", seenEvents.size());
+        return metrics;
+    }
+}
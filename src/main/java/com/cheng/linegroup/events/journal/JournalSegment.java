@@ -0,0 +1,151 @@
+package com.cheng.linegroup.events.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * journal 的單一 segment 檔案，整個檔案以 {@link MappedByteBuffer} 映射。
+ * <pre>
+ * 紀錄格式：[int length][int crc32][payload]
+ * length 為 0 表示尚未寫入的區域，寫入時最後才填 length，避免讀到寫一半的紀錄
+ * </pre>
+ *
+ * @author cheng
+ * @since 2026/10/17 10:20
+ **/
+class JournalSegment implements Closeable {
+
+    static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".log";
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * 目前寫入位置 (segment 內的相對位置)，只有 writer 會修改
+     */
+    private int writePosition;
+
+    private JournalSegment(Path path, long baseOffset, int capacity) throws IOException {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static JournalSegment create(Path dir, long baseOffset, int capacity) throws IOException {
+        return new JournalSegment(dir.resolve(fileName(baseOffset)), baseOffset, capacity);
+    }
+
+    /**
+     * 開啟既有的 segment，並掃描出最後一筆完整紀錄的位置
+     */
+    static JournalSegment open(Path path, int capacity) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        int size = (int) Math.max(capacity, Files.size(path));
+        JournalSegment segment = new JournalSegment(path, baseOffset, size);
+        segment.recover();
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    private static String fileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, SUFFIX);
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > capacity) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (crc(payload) != buffer.getInt(position + 4)) {
+                // 寫到一半就中斷的紀錄，從這裡開始覆寫
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        // 清掉殘留的半筆紀錄，避免之後誤判
+        for (int i = position; i < Math.min(position + HEADER_SIZE, capacity); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        writePosition = position;
+    }
+
+    boolean hasRoom(int payloadLength) {
+        return writePosition + HEADER_SIZE + payloadLength <= capacity;
+    }
+
+    /**
+     * 寫入一筆紀錄，呼叫端需自行確保同一時間只有一個 writer
+     *
+     * @return 寫入後的全域 offset
+     */
+    long append(byte[] payload, boolean force) {
+        int position = writePosition;
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position + 4, crc(payload));
+        buffer.putInt(position, payload.length);
+        if (force) {
+            buffer.force();
+        }
+        writePosition = position + HEADER_SIZE + payload.length;
+        return endOffset();
+    }
+
+    /**
+     * 讀取指定全域 offset 的紀錄內容，offset 必須小於已提交的寫入位置
+     */
+    byte[] read(long offset) {
+        int position = (int) (offset - baseOffset);
+        int length = buffer.getInt(position);
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_SIZE, payload);
+        return payload;
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    long endOffset() {
+        return baseOffset + writePosition;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return (int) crc32.getValue();
+    }
+}
@@ -0,0 +1,254 @@
+package com.cheng.linegroup.events.journal;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * webhook 原始內容的本地 append-only journal。
+ * <p>
+ * 由多個 memory-mapped {@link JournalSegment} 組成，offset 為跨 segment 的全域位置，
+ * segment 檔名即為該 segment 的起始 offset。consumer 處理完成後寫入 checkpoint，
+ * 重新啟動時從 checkpoint 之後重播尚未確認的事件。
+ * <p>
+ * 只有在 {@link LineWebhook.IntakeMode#JOURNAL} 模式下才會開啟檔案。
+ *
+ * @author cheng
+ * @since 2026/10/17 10:35
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookJournal {
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final LineWebhook lineWebhook;
+
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Condition dataAppended = writeLock.newCondition();
+
+    private Path dir;
+    private volatile JournalSegment active;
+
+    /**
+     * 已完整寫入的結尾 offset，reader 只能讀取小於此值的紀錄
+     */
+    private volatile long committedOffset;
+    private volatile boolean open;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (lineWebhook.getIntakeMode() != LineWebhook.IntakeMode.JOURNAL) {
+            return;
+        }
+        LineWebhook.Journal config = lineWebhook.getJournal();
+        dir = Paths.get(config.getDir());
+        Files.createDirectories(dir);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file, config.getSegmentSize());
+            segments.put(segment.baseOffset(), segment);
+        }
+        if (segments.isEmpty()) {
+            long base = readCheckpoint();
+            segments.put(base, JournalSegment.create(dir, base, config.getSegmentSize()));
+        }
+        active = segments.lastEntry().getValue();
+        committedOffset = active.endOffset();
+        open = true;
+        log.info("WebhookJournal opened, dir:{}, segments:{}, checkpoint:{}, end:{}",
+                dir.toAbsolutePath(), segments.size(), readCheckpoint(), committedOffset);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return 已完整寫入的結尾 offset
+     */
+    public long endOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * 寫入一筆 webhook 原始內容
+     *
+     * @param body    已驗證簽章的 request body
+     * @param offset  body 在陣列中的起始位置
+     * @param length  body 長度
+     * @param traceId 接收時的 traceId，重播時沿用
+     * @return 紀錄的起始 offset
+     */
+    public long append(byte[] body, int offset, int length, String traceId) throws IOException {
+        byte[] payload = encode(body, offset, length, traceId);
+        writeLock.lock();
+        try {
+            if (!open) {
+                throw new IllegalStateException("webhook journal is closed");
+            }
+            if (!active.hasRoom(payload.length)) {
+                roll(payload.length);
+            }
+            long recordOffset = active.endOffset();
+            committedOffset = active.append(payload, lineWebhook.getJournal().isForceOnAppend());
+            dataAppended.signalAll();
+            return recordOffset;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void roll(int payloadLength) throws IOException {
+        int segmentSize = lineWebhook.getJournal().getSegmentSize();
+        if (JournalSegment.HEADER_SIZE + payloadLength > segmentSize) {
+            throw new IOException(String.format("webhook body too large for journal segment: %d bytes", payloadLength));
+        }
+        active.force();
+        long base = active.endOffset();
+        active = JournalSegment.create(dir, base, segmentSize);
+        segments.put(base, active);
+        log.info("WebhookJournal rolled to new segment, base:{}", base);
+    }
+
+    /**
+     * 讀取指定 offset 的紀錄
+     *
+     * @return 尚未有資料時回傳 null
+     */
+    public JournalRecord read(long offset) {
+        if (offset >= committedOffset) {
+            return null;
+        }
+        Map.Entry<Long, JournalSegment> entry = segments.floorEntry(offset);
+        if (entry == null) {
+            throw new IllegalStateException("journal offset already deleted: " + offset);
+        }
+        byte[] payload = entry.getValue().read(offset);
+        return decode(offset, payload);
+    }
+
+    /**
+     * 等待 offset 之後有新資料寫入
+     *
+     * @return true: 已有可讀資料
+     */
+    public boolean awaitData(long offset, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offset < committedOffset) {
+            return true;
+        }
+        writeLock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (offset >= committedOffset && open && nanos > 0) {
+                nanos = dataAppended.awaitNanos(nanos);
+            }
+            return offset < committedOffset;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return segments.isEmpty() ? 0L : segments.firstKey();
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+    }
+
+    /**
+     * 寫入 checkpoint，並刪除已完全處理完畢的 segment
+     */
+    public void writeCheckpoint(long offset) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(tmp, ByteBuffer.allocate(Long.BYTES).putLong(offset).array());
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // 下一個 segment 的起始 offset 小於等於 checkpoint，代表整個 segment 都已處理完
+        Map.Entry<Long, JournalSegment> first = segments.firstEntry();
+        while (first != null && first.getValue() != active) {
+            Long nextBase = segments.higherKey(first.getKey());
+            if (nextBase == null || nextBase > offset) {
+                break;
+            }
+            segments.remove(first.getKey());
+            first.getValue().delete();
+            log.info("WebhookJournal deleted consumed segment, base:{}", first.getKey());
+            first = segments.firstEntry();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            open = false;
+            dataAppended.signalAll();
+        } finally {
+            writeLock.unlock();
+        }
+        for (JournalSegment segment : segments.values()) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException e) {
+                log.error("Failed to close journal segment", e);
+            }
+        }
+        log.info("WebhookJournal closed, end:{}", committedOffset);
+    }
+
+    /**
+     * payload 格式：[byte traceIdLength][traceId][body]
+     */
+    private static byte[] encode(byte[] body, int offset, int length, String traceId) {
+        byte[] trace = traceId == null ? new byte[0] : traceId.getBytes(StandardCharsets.US_ASCII);
+        int traceLength = Math.min(trace.length, Byte.MAX_VALUE);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + traceLength + length);
+        buffer.put((byte) traceLength).put(trace, 0, traceLength).put(body, offset, length);
+        return buffer.array();
+    }
+
+    private static JournalRecord decode(long offset, byte[] payload) {
+        int traceLength = payload[0];
+        String traceId = traceLength == 0 ? null : new String(payload, 1, traceLength, StandardCharsets.US_ASCII);
+        int bodyOffset = 1 + traceLength;
+        long nextOffset = offset + JournalSegment.HEADER_SIZE + payload.length;
+        return new JournalRecord(offset, nextOffset, traceId, payload, bodyOffset, payload.length - bodyOffset);
+    }
+
+    /**
+     * journal 中的一筆紀錄，body 直接引用 payload 陣列避免再複製一次
+     */
+    public record JournalRecord(long offset, long nextOffset, String traceId, byte[] payload, int bodyOffset,
+                                int bodyLength) {
+    }
+}
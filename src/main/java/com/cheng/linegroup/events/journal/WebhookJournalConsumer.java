@@ -0,0 +1,216 @@
+package com.cheng.linegroup.events.journal;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.WebhookEventDispatcher;
+import com.cheng.linegroup.events.webhook.WebhookEventStreamParser;
+import com.cheng.linegroup.utils.TraceUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 從 {@link WebhookJournal} 讀取 webhook 內容並交給 {@link WebhookEventDispatcher} 處理。
+ * <p>
+ * 由單一執行緒依 journal 順序讀取並排入對話 lane，確保同一對話的事件順序與寫入順序一致；
+ * 一筆紀錄內的事件全部處理完才確認 (ack)，處理中的 offset 記錄在 inflight，
+ * checkpoint 只會推進到最小的未完成 offset，確保崩潰後能重播所有尚未確認的事件 (at-least-once)。
+ *
+ * @author cheng
+ * @since 2026/10/17 11:15
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookJournalConsumer {
+
+    private static final long POLL_TIMEOUT_MS = 500;
+
+    private final LineWebhook lineWebhook;
+    private final WebhookJournal webhookJournal;
+    private final WebhookEventDispatcher webhookEventDispatcher;
+    private final WebhookEventStreamParser webhookEventStreamParser;
+
+    /**
+     * 處理中尚未確認的紀錄 offset，與 cursor 一起以 this 為鎖保護
+     */
+    private final TreeSet<Long> inflight = new TreeSet<>();
+    private final Object checkpointLock = new Object();
+    private long cursor;
+    private long lastCheckpoint;
+    /**
+     * 啟動時 journal 的結尾，此 offset 之前的紀錄都是重播
+     */
+    private long replayEnd;
+
+    /**
+     * 限制同時處理中的紀錄數量，避免 lane 處理不及時把整個 journal 讀進記憶體
+     */
+    private Semaphore inflightPermits;
+    private Thread reader;
+    private ScheduledExecutorService checkpointScheduler;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!webhookJournal.isOpen()) {
+            return;
+        }
+        cursor = webhookJournal.readCheckpoint();
+        lastCheckpoint = cursor;
+        replayEnd = webhookJournal.endOffset();
+        log.info("WebhookJournalConsumer start from offset:{}, replay until:{}", cursor, replayEnd);
+
+        LineWebhook.Journal config = lineWebhook.getJournal();
+        inflightPermits = new Semaphore(config.getMaxInflight());
+        reader = new CustomizableThreadFactory("webhookJournal_").newThread(this::consumeLoop);
+        reader.start();
+
+        long interval = config.getCheckpointInterval().toMillis();
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("webhookJournalCheckpoint_"));
+        checkpointScheduler.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void consumeLoop() {
+        while (true) {
+            try {
+                inflightPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            WebhookJournal.JournalRecord journalRecord = poll();
+            if (journalRecord == null) {
+                inflightPermits.release();
+                // 關機時讀到結尾就代表已經全部排入 lane
+                if (stopping) {
+                    return;
+                }
+                awaitData();
+                continue;
+            }
+            try {
+                process(journalRecord);
+            } catch (RejectedExecutionException e) {
+                // lane 已關閉，不確認這筆紀錄，下次啟動時重播
+                log.warn("Lane rejected journal record, offset:{}", journalRecord.offset());
+                return;
+            } catch (Exception e) {
+                // 無法處理的紀錄仍要確認，避免卡住後續的 checkpoint
+                log.error("Failed to process journal record, offset:{}, ERR:{}",
+                        journalRecord.offset(), ExceptionUtils.getStackTrace(e));
+                ack(journalRecord);
+            }
+        }
+    }
+
+    private void awaitData() {
+        long position;
+        synchronized (this) {
+            position = cursor;
+        }
+        try {
+            webhookJournal.awaitData(position, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopping = true;
+        }
+    }
+
+    private synchronized WebhookJournal.JournalRecord poll() {
+        WebhookJournal.JournalRecord journalRecord = webhookJournal.read(cursor);
+        if (journalRecord != null) {
+            inflight.add(journalRecord.offset());
+            cursor = journalRecord.nextOffset();
+        }
+        return journalRecord;
+    }
+
+    private void ack(WebhookJournal.JournalRecord journalRecord) {
+        synchronized (this) {
+            inflight.remove(journalRecord.offset());
+        }
+        inflightPermits.release();
+    }
+
+    private synchronized long committedOffset() {
+        return inflight.isEmpty() ? cursor : inflight.first();
+    }
+
+    private void process(WebhookJournal.JournalRecord journalRecord) throws IOException {
+        String traceId = journalRecord.traceId() != null ? journalRecord.traceId() : TraceUtils.initTrace();
+        List<WebhookEvent.Event> events = new ArrayList<>();
+        webhookEventStreamParser.parse(journalRecord.payload(), journalRecord.bodyOffset(), journalRecord.bodyLength(), events::add);
+        if (events.isEmpty()) {
+            ack(journalRecord);
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(events.size());
+        Runnable onComplete = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                ack(journalRecord);
+            }
+        };
+        boolean replay = journalRecord.offset() < replayEnd;
+        for (WebhookEvent.Event e : events) {
+            e.setTraceId(traceId);
+            webhookEventDispatcher.submit(e, replay, onComplete);
+        }
+    }
+
+    private void checkpoint() {
+        synchronized (checkpointLock) {
+            long offset = committedOffset();
+            if (offset == lastCheckpoint) {
+                return;
+            }
+            try {
+                webhookJournal.writeCheckpoint(offset);
+                lastCheckpoint = offset;
+            } catch (IOException e) {
+                log.error("Failed to write journal checkpoint, offset:{}, ERR:{}", offset, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reader == null) {
+            return;
+        }
+        stopping = true;
+        long deadline = System.currentTimeMillis() + lineWebhook.getJournal().getDrainTimeout().toMillis();
+        try {
+            reader.join(lineWebhook.getJournal().getDrainTimeout().toMillis());
+            // 等待所有已排入 lane 的紀錄處理完畢
+            long remainingMs = Math.max(0, deadline - System.currentTimeMillis());
+            int permits = lineWebhook.getJournal().getMaxInflight();
+            if (reader.isAlive() || !inflightPermits.tryAcquire(permits, remainingMs, TimeUnit.MILLISECONDS)) {
+                log.warn("WebhookJournalConsumer drain timeout, remaining events will be replayed on next start");
+                reader.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reader.interrupt();
+        }
+        checkpointScheduler.shutdownNow();
+        checkpoint();
+        log.info("WebhookJournalConsumer stopped, checkpoint:{}", lastCheckpoint);
+    }
+}
@@ -0,0 +1,335 @@
+package com.cheng.linegroup.events.lane;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 以對話 (群組或使用者) 分流的執行器。
+ * <p>
+ * 每個對話有自己的 {@link Mailbox}，依 key 的 hash 固定分配到一條 lane，每條 lane 只有一個 worker。
+ * 同一個 mailbox 同一時間只會排在一條 lane 上或正在被執行，所以同一對話的事件一定依序處理；
+ * 不同對話則分散在各條 lane 上平行處理。
+ * <p>
+ * 每條 lane 上等待中的對話依「下一個工作的期限」排序 (earliest deadline first)，期限相同時依排入順序；
+ * 沒有期限的工作使用 {@link #NO_DEADLINE}，排在所有有期限的工作之後。
+ * <p>
+ * lane 閒置時會從其他 lane 偷走期限最早的整個 mailbox 來執行，偷的是「尚未開始執行的對話」而非單一事件，
+ * 因此不會破壞對話內的順序。
+ * <p>
+ * 以 {@link #executeAsync} 送出的工作回傳尚未完成的 future 時，lane 的執行緒立即釋放給其他對話，
+ * 但這個對話的下一個工作要等 future 完成後才會再排入 home lane，對話內的順序同樣不變。
+ * future 需自行設定逾時，否則這個對話會一直等待。
+ *
+ * @author cheng
+ * @since 2026/10/17 15:20
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationLaneExecutor implements MetricsSource {
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final long IDLE_POLL_MS = 50;
+
+    private static final Comparator<Mailbox> EARLIEST_DEADLINE_FIRST =
+            Comparator.<Mailbox>comparingLong(m -> m.deadline).thenComparingLong(m -> m.sequence);
+
+    private final LineWebhook lineWebhook;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * 等待非同步工作完成的對話數
+     */
+    private final AtomicInteger awaiting = new AtomicInteger();
+    private Lane[] lanes;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        int count = lineWebhook.getLanes().getCount();
+        if (count <= 0) {
+            count = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i);
+        }
+        running = true;
+        for (Lane lane : lanes) {
+            lane.worker.start();
+        }
+        log.info("ConversationLaneExecutor started with {} lanes", count);
+    }
+
+    /**
+     * 依對話 key 排入對應的 lane，不指定期限
+     *
+     * @param key  對話 key，相同 key 的工作依送出順序執行
+     * @param task 工作內容
+     */
+    public void execute(String key, Runnable task) {
+        execute(key, NO_DEADLINE, task);
+    }
+
+    /**
+     * 依對話 key 排入對應的 lane
+     *
+     * @param key      對話 key，相同 key 的工作依送出順序執行
+     * @param deadline 期限 (epoch millis)，決定此對話在 lane 上的優先順序
+     * @param task     工作內容
+     */
+    public void execute(String key, long deadline, Runnable task) {
+        executeAsync(key, deadline, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 依對話 key 排入對應的 lane，工作回傳的 future 完成後才執行同一對話的下一個工作
+     *
+     * @param key      對話 key，相同 key 的工作依送出順序執行
+     * @param deadline 期限 (epoch millis)，決定此對話在 lane 上的優先順序
+     * @param task     工作內容，回傳尚未完成的非同步工作，沒有時回傳 null
+     */
+    public void executeAsync(String key, long deadline, Supplier<CompletableFuture<?>> task) {
+        if (!running) {
+            throw new RejectedExecutionException("ConversationLaneExecutor is shut down");
+        }
+        int home = Math.floorMod(key.hashCode(), lanes.length);
+        Mailbox mailbox = mailboxes.compute(key, (k, m) -> {
+            Mailbox target = m != null ? m : new Mailbox(k, home);
+            target.tasks.add(new LaneTask(task, deadline));
+            return target;
+        });
+        lanes[home].pending.incrementAndGet();
+        schedule(mailbox, lanes[home]);
+    }
+
+    private void schedule(Mailbox mailbox, Lane lane) {
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            enqueue(mailbox, lane);
+        }
+    }
+
+    /**
+     * 以 mailbox 目前第一個工作的期限排入 lane；呼叫時 mailbox 必須不在任何 lane 上
+     */
+    private void enqueue(Mailbox mailbox, Lane lane) {
+        LaneTask head = mailbox.tasks.peek();
+        mailbox.deadline = head != null ? head.deadline() : NO_DEADLINE;
+        mailbox.sequence = sequence.incrementAndGet();
+        lane.ready.offer(mailbox);
+    }
+
+    /**
+     * @return 所有 lane 上尚未執行的工作總數
+     */
+    public int pendingCount() {
+        int total = 0;
+        for (Lane lane : lanes) {
+            total += lane.pending.get();
+        }
+        return total;
+    }
+
+    private void runLane(Lane lane) {
+        while (running || pendingCount() > 0 || awaiting.get() > 0) {
+            Mailbox mailbox;
+            try {
+                mailbox = lane.ready.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (mailbox == null) {
+                mailbox = steal(lane);
+                if (mailbox == null) {
+                    continue;
+                }
+            }
+            runOnce(lane, mailbox);
+        }
+    }
+
+    /**
+     * 從最忙的 lane 偷走期限最早的等待中對話
+     */
+    private Mailbox steal(Lane thief) {
+        Lane victim = null;
+        for (Lane lane : lanes) {
+            if (lane != thief && lane.ready.size() > 1 && (victim == null || lane.ready.size() > victim.ready.size())) {
+                victim = lane;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        Mailbox mailbox = victim.ready.poll();
+        if (mailbox != null) {
+            thief.stolen.increment();
+        }
+        return mailbox;
+    }
+
+    /**
+     * 執行 mailbox 中的一個工作，之後若還有工作就依下一個工作的期限排回目前的 lane，讓同一 lane 上的對話輪流執行
+     */
+    private void runOnce(Lane lane, Mailbox mailbox) {
+        LaneTask task = mailbox.tasks.poll();
+        CompletableFuture<?> inFlight = null;
+        if (task != null) {
+            lanes[mailbox.home].pending.decrementAndGet();
+            try {
+                inFlight = task.work().get();
+            } catch (Exception e) {
+                log.error("Lane task failed, key:{}, ERR:{}", mailbox.key, ExceptionUtils.getStackTrace(e));
+            } finally {
+                lane.executed.increment();
+            }
+        }
+
+        if (inFlight != null && !inFlight.isDone()) {
+            // mailbox 保持 scheduled 但不在任何 lane 上，完成前同一對話的工作不會被執行
+            awaiting.incrementAndGet();
+            inFlight.whenComplete((r, e) -> {
+                awaiting.decrementAndGet();
+                reschedule(mailbox, lanes[mailbox.home]);
+            });
+            return;
+        }
+        reschedule(mailbox, lane);
+    }
+
+    /**
+     * 工作執行完後，還有工作就排回 lane，否則釋放 mailbox
+     */
+    private void reschedule(Mailbox mailbox, Lane lane) {
+        if (!mailbox.tasks.isEmpty()) {
+            enqueue(mailbox, lane);
+            return;
+        }
+        mailbox.scheduled.set(false);
+        // 在 scheduled 設回 false 之前可能剛好有新工作進來，需要再檢查一次
+        if (!mailbox.tasks.isEmpty()) {
+            schedule(mailbox, lane);
+            return;
+        }
+        mailboxes.computeIfPresent(mailbox.key, (k, m) -> m.tasks.isEmpty() && !m.scheduled.get() ? null : m);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + lineWebhook.getLanes().getAwaitTermination().toMillis();
+        for (Lane lane : lanes) {
+            try {
+                lane.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int remaining = pendingCount();
+        if (remaining > 0 || awaiting.get() > 0) {
+            log.warn("ConversationLaneExecutor shutdown with {} pending tasks, {} awaiting conversations", remaining, awaiting.get());
+            for (Lane lane : lanes) {
+                lane.worker.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "webhookLanes";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        List<Map<String, Object>> laneMetrics = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("lane", lane.index);
+            m.put("queueDepth", lane.pending.get());
+            m.put("readyConversations", lane.ready.size());
+            m.put("executed", lane.executed.sum());
+            m.put("stolen", lane.stolen.sum());
+            laneMetrics.add(m);
+        }
+        metrics.put("lanes", laneMetrics);
+        metrics.put("activeConversations", mailboxes.size());
+        metrics.put("pending", pendingCount());
+        metrics.put("awaitingConversations", awaiting.get());
+        return metrics;
+    }
+
+    /**
+     * 單一對話的待處理工作
+     */
+    private static final class Mailbox {
+        private final String key;
+        private final int home;
+        private final Queue<LaneTask> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * true 表示已排在某條 lane 上或正在執行
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /**
+         * 排入 lane 時的排序依據，只在不在 lane 上時修改
+         */
+        private long deadline;
+        private long sequence;
+
+        private Mailbox(String key, int home) {
+            this.key = key;
+            this.home = home;
+        }
+    }
+
+    private record LaneTask(Supplier<CompletableFuture<?>> work, long deadline) {
+    }
+
+    private final class Lane {
+        private final int index;
+        private final PriorityBlockingQueue<Mailbox> ready = new PriorityBlockingQueue<>(16, EARLIEST_DEADLINE_FIRST);
+        /**
+         * 以此 lane 為 home 的未執行工作數 (queue depth)
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder executed = new LongAdder();
+        private final LongAdder stolen = new LongAdder();
+        private final Thread worker;
+
+        private Lane(int index) {
+            this.index = index;
+            this.worker = new Thread(() -> runLane(this), "webhookLane_" + index);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.cheng.linegroup.events.message;
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.entity.MessageEventRecord;
 import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.media.MediaPrefetcher;
 import com.cheng.linegroup.services.MessageEventRecordService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,10 +19,11 @@ import org.springframework.stereotype.Component;
 public class AudioMessageStrategy implements MessageStrategy {
 
     private final MessageEventRecordService messageEventRecordService;
+    private final MediaPrefetcher mediaPrefetcher;
 
     @Override
-    public boolean canHandle(WebhookEvent.Event e) {
-        return MessageType.audio.name().equalsIgnoreCase(e.getMessage().getType());
+    public MessageType getSupportedMessageType() {
+        return MessageType.audio;
     }
 
     @Override
@@ -33,6 +35,7 @@ public class AudioMessageStrategy implements MessageStrategy {
                 .uid(event.getSource().getUserId())
                 .build();
         messageEventRecordService.save(messageEventRecord);
+        mediaPrefetcher.enqueue(event, getSupportedMessageType());
         return false;
     }
 }
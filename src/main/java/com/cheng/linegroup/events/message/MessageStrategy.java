@@ -1,6 +1,7 @@
 package com.cheng.linegroup.events.message;
 
 import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.MessageType;
 
 /**
  * @author cheng
@@ -8,7 +9,10 @@ import com.cheng.linegroup.dto.WebhookEvent;
  **/
 public interface MessageStrategy {
 
-    boolean canHandle(WebhookEvent.Event msg);
+    /**
+     * @return 此策略處理的訊息類型，啟動時用來建立分派表
+     */
+    MessageType getSupportedMessageType();
 
     boolean handle(WebhookEvent.Event event);
 }
@@ -1,6 +1,8 @@
 package com.cheng.linegroup.events.message;
 
 import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.events.DispatchMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -8,6 +10,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 /**
+ * 啟動時依 {@link MessageType} 將策略編成陣列，每個事件只解析一次訊息類型
+ *
  * @author cheng
  * @since 2024/2/11 19:46
  **/
@@ -15,20 +19,43 @@ import java.util.List;
 @Component
 public class MessageStrategyManager {
 
-    private final List<MessageStrategy> strategies;
+    private final MessageStrategy[][] strategies = new MessageStrategy[MessageType.values().length][];
+    private final DispatchMetrics.Stage[][] stages = new DispatchMetrics.Stage[MessageType.values().length][];
 
     @Autowired
-    public MessageStrategyManager(List<MessageStrategy> strategies) {
-        this.strategies = strategies;
+    public MessageStrategyManager(List<MessageStrategy> strategies, DispatchMetrics dispatchMetrics) {
+        for (MessageType type : MessageType.values()) {
+            MessageStrategy[] chain = strategies.stream()
+                    .filter(s -> s.getSupportedMessageType() == type)
+                    .toArray(MessageStrategy[]::new);
+            DispatchMetrics.Stage[] chainStages = new DispatchMetrics.Stage[chain.length];
+            for (int i = 0; i < chain.length; i++) {
+                chainStages[i] = dispatchMetrics.stage("strategy." + chain[i].getClass().getSimpleName());
+            }
+            this.strategies[type.ordinal()] = chain;
+            this.stages[type.ordinal()] = chainStages;
+        }
     }
 
     public void handle(WebhookEvent.Event event) {
-        for (MessageStrategy strategy : strategies) {
-            if (strategy.canHandle(event)) {
-                if (!strategy.handle(event)) {
-                    // 當 isInterruptHandling 結果為 false 就表示不繼續走流程
-                    break;
-                }
+        MessageType type = event.getMessage() == null ? null : MessageType.of(event.getMessage().getType());
+        if (type == null) {
+            log.info("Unsupported message type, skip");
+            return;
+        }
+        MessageStrategy[] chain = strategies[type.ordinal()];
+        DispatchMetrics.Stage[] chainStages = stages[type.ordinal()];
+        for (int i = 0; i < chain.length; i++) {
+            long start = System.nanoTime();
+            boolean isContinue;
+            try {
+                isContinue = chain[i].handle(event);
+            } finally {
+                chainStages[i].record(start);
+            }
+            if (!isContinue) {
+                // 當 isInterruptHandling 結果為 false 就表示不繼續走流程
+                break;
             }
         }
     }
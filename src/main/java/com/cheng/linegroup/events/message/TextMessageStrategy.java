@@ -2,45 +2,96 @@ package com.cheng.linegroup.events.message;
 
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.events.DispatchMetrics;
+import com.cheng.linegroup.events.deadline.ActionBudget;
 import com.cheng.linegroup.events.message.behavior.TextMessageBehavior;
+import com.cheng.linegroup.events.message.keyword.KeywordAutomaton;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
+import com.cheng.linegroup.events.reply.ReplyCoalescer;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.ReplyKeywordService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 /**
+ * 文字訊息依序交給各個 {@link TextMessageBehavior} 處理，順序由各行為上的 {@code @Order} 決定：
+ * <pre>
+ * AiChatBehavior(10) -> BotLearningBehavior(20) -> DefaultReplyBehavior(30) -> FoodKeywordReplyBehavior(40) -> RandomImageBehavior(50)
+ * </pre>
+ * 文字只經 {@link KeywordAutomaton} 掃描一次 (在 dispatcher 分派時，結果隨事件傳入)，各行為依比對結果判斷是否處理；
+ * 每個行為 (含 canHandle) 分別記錄耗時。
+ * <p>
+ * 各行為的回覆累積在同一個 {@link ReplyAccumulator}，行為鏈結束 (或中斷) 後由 {@link ReplyCoalescer} 合併成一次 reply，
+ * 超過 5 則的部分改用 push。
+ *
  * @author cheng
  * @since 2024/2/12 00:15
  **/
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class TextMessageStrategy implements MessageStrategy {
 
-    private final List<TextMessageBehavior> behaviors;
+    private final TextMessageBehavior[] behaviors;
+    private final DispatchMetrics.Stage[] stages;
     private final ReplyKeywordService replyKeywordService;
     private final LineService lineService;
+    private final ActionBudget actionBudget;
+    private final KeywordAutomaton keywordAutomaton;
+    private final ReplyCoalescer replyCoalescer;
+    private final DispatchMetrics.Stage flushStage;
+
+    public TextMessageStrategy(List<TextMessageBehavior> behaviors, ReplyKeywordService replyKeywordService,
+                               LineService lineService, ActionBudget actionBudget, KeywordAutomaton keywordAutomaton,
+                               ReplyCoalescer replyCoalescer, DispatchMetrics dispatchMetrics) {
+        this.behaviors = behaviors.toArray(TextMessageBehavior[]::new);
+        this.stages = new DispatchMetrics.Stage[this.behaviors.length];
+        for (int i = 0; i < this.behaviors.length; i++) {
+            stages[i] = dispatchMetrics.stage("behavior." + this.behaviors[i].getClass().getSimpleName());
+        }
+        this.replyKeywordService = replyKeywordService;
+        this.lineService = lineService;
+        this.actionBudget = actionBudget;
+        this.keywordAutomaton = keywordAutomaton;
+        this.replyCoalescer = replyCoalescer;
+        this.flushStage = dispatchMetrics.stage("reply.flush");
+    }
 
     @Override
-    public boolean canHandle(WebhookEvent.Event event) {
-        return MessageType.text.name().equalsIgnoreCase(event.getMessage().getType());
+    public MessageType getSupportedMessageType() {
+        return MessageType.text;
     }
 
     @Override
     public boolean handle(WebhookEvent.Event event) {
-        String text = event.getMessage().getText();
-        for (TextMessageBehavior behavior : behaviors) {
-            if (behavior.canHandle(text)) {
-                boolean isInterruptHandling = behavior.performAction(event, replyKeywordService, lineService);
+        // 分派時已掃描過，沒經過 dispatcher 的事件才在這裡掃描
+        KeywordMatch match = event.getKeywordMatch() != null
+                ? event.getKeywordMatch() : keywordAutomaton.match(event.getMessage().getText());
+        ReplyAccumulator reply = ReplyAccumulator.of(event);
+        try {
+            for (int i = 0; i < behaviors.length; i++) {
+                TextMessageBehavior behavior = behaviors[i];
+                long start = System.nanoTime();
+                boolean isInterruptHandling;
+                try {
+                    isInterruptHandling = behavior.canHandle(match) && actionBudget.run(behavior.getClass().getSimpleName(),
+                            () -> behavior.performAction(event, replyKeywordService, lineService, reply));
+                } finally {
+                    stages[i].record(start);
+                }
                 if (isInterruptHandling) {
                     return false;
                 }
             }
+            return true;
+        } finally {
+            long start = System.nanoTime();
+            // 送出與重試的等待不佔用 lane 的執行緒，完成前同一對話的下一個事件不會開始
+            event.defer(replyCoalescer.flush(reply));
+            flushStage.record(start);
         }
-        return true;
     }
 
 }
@@ -1,41 +1,65 @@
 package com.cheng.linegroup.events.message.behavior;
 
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.BehaviorKeyword;
+import com.cheng.linegroup.events.deadline.ReplyDeadline;
+import com.cheng.linegroup.events.deadline.ReplyDeadlineTracker;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
 import com.cheng.linegroup.services.ChatService;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.ReplyKeywordService;
 import com.cheng.linegroup.services.dto.LineMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CompletionException;
 
 /**
+ * AI 聊天：先非同步取得 AI 回覆，再非同步 reply，整個來回不佔用 lane 的執行緒，performAction 送出後立即返回。
+ * <p>
+ * AI 等待時間以事件開始時的 action budget 為上限；reply token 期限在送出 reply 時以事件開始時的 {@link ReplyDeadline} 判斷。
+ * 整個來回以 {@link WebhookEvent.Event#defer} 登記在事件上，回覆送出 (或失敗) 前同一對話之後的訊息不會開始處理，
+ * 事件也不會被視為處理完成。
+ * <p>
+ * OpenAI 斷路或同時呼叫數已滿時 {@link ChatService#chatAsync} 立即失敗，改為回覆固定的訊息。
+ *
  * @author Cheng
  * @since 2024/8/13 23:32
  **/
 @Slf4j
 @Component
+@Order(10)
 @RequiredArgsConstructor
 public class AiChatBehavior implements TextMessageBehavior {
 
-    private static final String[] KEYWORDS = BehaviorKeyword.AI_CHAT.getKeywords();
+    /**
+     * 送出 reply 的逾時
+     */
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String AI_UNAVAILABLE_MSG = "我現在有點忙，晚點再來找我聊天好嗎？";
 
     private final ChatModel chatModel;
     private final ChatService chatService;
+    private final ReplyDeadlineTracker replyDeadlineTracker;
 
     @Override
-    public boolean canHandle(String text) {
-        return Arrays.stream(KEYWORDS).anyMatch(text::startsWith);
+    public boolean canHandle(KeywordMatch match) {
+        return match.has(BehaviorKeyword.AI_CHAT);
     }
 
     @Override
-    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService) {
+    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService,
+                                 ReplyAccumulator reply) {
         log.info("Performing AI chat behavior");
         String userId = event.getSource().getUserId();
         String groupId = event.getSource().getGroupId();
@@ -43,7 +67,13 @@ public class AiChatBehavior implements TextMessageBehavior {
         log.info("Group ID: {}", groupId);
         String text = event.getMessage().getText();
         String chatId = String.format("%s-%s", groupId, userId);
-        String aiResponse = chatService.chat(chatId, text);
+        ReplyDeadline replyDeadline = ReplyDeadline.current();
+        Duration aiTimeout = Duration.ofMillis(replyDeadlineTracker.actionBudgetMillis());
+        String traceId = event.getTraceId();
+        // AI 回覆在 flush 之後才完成，自行取走 reply token；token 已被使用時改用 push
+        String replyToken = reply.claimToken();
+        Api api = replyToken != null ? Api.LINE_MESSAGE_REPLY : Api.LINE_MESSAGE_PUSH;
+        String pushTarget = replyToken != null ? null : reply.pushTarget();
 
 //        String aiResponse = chatModel.call(new Prompt(text,
 //                OpenAiChatOptions.builder()
@@ -51,11 +81,27 @@ public class AiChatBehavior implements TextMessageBehavior {
 //                        .build())
 //        ).getResult().getOutput().getContent();
 
-        LineMessage lineMessage = LineMessage.builder()
-                .replyToken(event.getReplyToken())
-                .messages(Collections.singletonList(LineMessage.Message.builder().msg(aiResponse).build()))
-                .build();
-        lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+        event.defer(chatService.chatAsync(chatId, text, aiTimeout)
+                .exceptionally(e -> {
+                    if (UpstreamGuard.isRejected(e)) {
+                        log.info("AI chat unavailable, reply fallback, traceId:{}", traceId);
+                        return AI_UNAVAILABLE_MSG;
+                    }
+                    throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+                })
+                .thenCompose(aiResponse -> {
+                    LineMessage lineMessage = LineMessage.builder()
+                            .replyToken(replyToken)
+                            .uid(pushTarget)
+                            .messages(Collections.singletonList(LineMessage.Message.builder().msg(aiResponse).build()))
+                            .build();
+                    return lineService.callMessageAPIAsync(lineMessage, api, replyDeadline, REPLY_TIMEOUT);
+                })
+                .whenComplete((resp, e) -> {
+                    if (e != null) {
+                        log.error("AI chat reply failed, traceId:{}, ERR:{}", traceId, ExceptionUtils.getStackTrace(e));
+                    }
+                }));
 
         return true;
     }
@@ -2,18 +2,18 @@ package com.cheng.linegroup.events.message.behavior;
 
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.entity.ReplyKeyword;
-import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.BehaviorKeyword;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
 import com.cheng.linegroup.exception.BizException;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.ReplyKeywordService;
-import com.cheng.linegroup.services.dto.LineMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
-import java.util.Collections;
 
 /**
  * 透過指令讓機器人記住關鍵字和需要回覆的內容。
@@ -23,6 +23,7 @@ import java.util.Collections;
  **/
 @Slf4j
 @Component
+@Order(20)
 @RequiredArgsConstructor
 public class BotLearningBehavior implements TextMessageBehavior {
 
@@ -31,12 +32,13 @@ public class BotLearningBehavior implements TextMessageBehavior {
     private static final String[] SPLIT_KEYWORDS = {"就回", "就說", ":", "："};
 
     @Override
-    public boolean canHandle(String text) {
-        return Arrays.stream(KEYWORDS).anyMatch(text::startsWith);
+    public boolean canHandle(KeywordMatch match) {
+        return match.has(BehaviorKeyword.BOT_LEARNING);
     }
 
     @Override
-    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService) {
+    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService,
+                                 ReplyAccumulator reply) {
         log.info("===>TextMessageStrategy handle");
         String userId = event.getSource().getUserId();
         String groupId = event.getSource().getGroupId();
@@ -53,20 +55,11 @@ public class BotLearningBehavior implements TextMessageBehavior {
             String[] keywordSplitString = replace.split(",");
 
             boolean isDataExist = saveReplyKeyword(userId, groupId, keywordSplitString, replyKeywordService);
-            String msg = isDataExist ? "好我學到了" : "我已經會了！";
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder().msg(msg).build())
-                    ).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+            reply.text(isDataExist ? "好我學到了" : "我已經會了！");
 
         } catch (BizException b) {
             log.error("Error processing the message{}", b.getMessage());
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder().msg(b.getMessage()).build())
-                    ).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+            reply.text(b.getMessage());
         } catch (Exception e) {
             log.error("Error processing the message", e);
         }
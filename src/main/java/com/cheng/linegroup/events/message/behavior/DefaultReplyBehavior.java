@@ -2,16 +2,15 @@ package com.cheng.linegroup.events.message.behavior;
 
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.entity.ReplyKeyword;
-import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.ReplyKeywordService;
-import com.cheng.linegroup.services.dto.LineMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-
 /**
  * 透過指令設定關鍵字，當收到特定關鍵字時，機器人將自動回覆預設的內容。
  *
@@ -20,28 +19,26 @@ import java.util.Collections;
  **/
 @Slf4j
 @Component
+@Order(30)
 @RequiredArgsConstructor
 public class DefaultReplyBehavior implements TextMessageBehavior {
 
     @Override
-    public boolean canHandle(String text) {
-        return true;
+    public boolean canHandle(KeywordMatch match) {
+        // 只有整段文字是學過的關鍵字時才需要依群組查詢回覆
+        return match.isLearnedKeyword();
     }
 
     @Override
-    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService) {
+    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService,
+                                 ReplyAccumulator reply) {
         String userId = event.getSource().getUserId();
         String groupId = event.getSource().getGroupId();
         String text = event.getMessage().getText();
 
         ReplyKeyword replyKeywordByKeyword = replyKeywordService.getReplyKeywordByKeywordAndUidAndGid(text, userId, groupId);
         if (replyKeywordByKeyword != null) {
-            String reply = replyKeywordByKeyword.getReply();
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder().msg(reply).build())
-                    ).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+            reply.text(replyKeywordByKeyword.getReply());
         } else {
             return false;
         }
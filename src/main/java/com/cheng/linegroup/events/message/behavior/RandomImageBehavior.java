@@ -1,10 +1,14 @@
 package com.cheng.linegroup.events.message.behavior;
 
 import com.cheng.linegroup.common.contants.RedisPrefix;
-import com.cheng.linegroup.controller.ImageController;
 import com.cheng.linegroup.dto.WebhookEvent;
-import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.BehaviorKeyword;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
+import com.cheng.linegroup.image.ImageCatalog;
+import com.cheng.linegroup.image.ImageEntry;
+import com.cheng.linegroup.image.ImageVariants;
+import com.cheng.linegroup.image.SentImageTracker;
 import com.cheng.linegroup.enums.MessageType;
 import com.cheng.linegroup.services.ImageSentRecordsService;
 import com.cheng.linegroup.services.LineService;
@@ -14,13 +18,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * 隨機發送圖片，當使用者輸入關鍵字「抽」時，系統將從指定的路徑隨機選取一張圖片並進行推播。
  *
@@ -29,73 +29,57 @@ import java.util.concurrent.ThreadLocalRandom;
  **/
 @Slf4j
 @Component
+@Order(50)
 @RequiredArgsConstructor
 public class RandomImageBehavior implements TextMessageBehavior {
 
-    private static final String[] KEYWORDS = BehaviorKeyword.RANDOM_IMAGE.getKeywords();
-
     @Value("${image.domain}")
     private String domain;
     @Value("${image.subscript-url}")
     private String subscriptUrl;
 
     private final ImageSentRecordsService imageSentRecordsService;
+    private final SentImageTracker sentImageTracker;
+    private final ImageCatalog imageCatalog;
+    private final ImageVariants imageVariants;
 
     @Override
-    public boolean canHandle(String text) {
-        return Arrays.stream(KEYWORDS).anyMatch(text::startsWith);
+    public boolean canHandle(KeywordMatch match) {
+        return match.has(BehaviorKeyword.RANDOM_IMAGE);
     }
 
     @Override
-    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService) {
-        List<String> images = ImageController.getIMAGES();
+    public boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService,
+                                 ReplyAccumulator reply) {
+        ImageCatalog.Snapshot images = imageCatalog.snapshot();
         String userId = event.getSource().getUserId();
         String groupId = event.getSource().getGroupId() == null ? RedisPrefix.PERSONAL : event.getSource().getGroupId();
+        String scope = SentImageTracker.scopeOf(event.getSource().getGroupId(), userId);
 
         if (images.isEmpty()) {
             log.warn("IMAGES 列表為空，無法選擇隨機圖片");
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .uid(userId)
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder().msg("IMAGES 列表為空，無法選擇隨機圖片").build()
-                    )).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+            reply.text("IMAGES 列表為空，無法選擇隨機圖片");
             return true;
         }
 
-        String imgName = images.get(ThreadLocalRandom.current().nextInt(images.size()));
-        imgName = domain.concat(imgName);
-
-        // 紀錄推送圖片的次數，超過五次則推送訂閱連結
-        int sentCount;
-        if (RedisPrefix.PERSONAL.equals(groupId)) {
-            sentCount = imageSentRecordsService.countByGroupIdAndUid(groupId, userId);
-        } else {
-            sentCount = imageSentRecordsService.countByGroupId(groupId);
-        }
-
-        if (sentCount > 5) {
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .uid(userId)
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder().msg("哎呀...我沒有照片可以發了，用這個連結就可以看更多了～\n".concat(subscriptUrl)).build()
-                    )).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+        // 當天推送圖片的次數超過上限則推送訂閱連結
+        if (sentImageTracker.isLimitReached(scope)) {
+            reply.text("哎呀...我沒有照片可以發了，用這個連結就可以看更多了～\n".concat(subscriptUrl));
             return true;
         }
 
+        ImageEntry image = sentImageTracker.pickUnsent(scope, images);
+        String imgName = domain.concat(image.urlPath());
+        ImageVariants.Urls urls = imageVariants.urlsOf(image);
+
         try {
-            LineMessage lineMessage = LineMessage.builder().replyToken(event.getReplyToken())
-                    .uid(userId)
-                    .messages(Collections.singletonList(
-                            LineMessage.Message.builder()
-                                    .type(MessageType.image)
-                                    .originalContentUrl(imgName)
-                                    .previewImageUrl(imgName)
-                                    .build()
-                    )).build();
-            lineService.CallMessageAPI(lineMessage, Api.LINE_MESSAGE_REPLY);
+            reply.add(LineMessage.Message.builder()
+                    .type(MessageType.image)
+                    .originalContentUrl(urls.original())
+                    .previewImageUrl(urls.preview())
+                    .build());
 
+            sentImageTracker.markSent(scope, image);
             imageSentRecordsService.saveImageSentRecords(userId, groupId, imgName);
         } catch (Exception e) {
             log.error("ERR:{}", ExceptionUtils.getStackTrace(e));
@@ -1,6 +1,8 @@
 package com.cheng.linegroup.events.message.behavior;
 
 import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.reply.ReplyAccumulator;
+import com.cheng.linegroup.events.message.keyword.KeywordMatch;
 import com.cheng.linegroup.services.LineService;
 import com.cheng.linegroup.services.ReplyKeywordService;
 
@@ -13,10 +15,10 @@ public interface TextMessageBehavior {
     /**
      * 是否要處理此事件
      *
-     * @param text 從 LINE BOT 收到的事件訊息，通常是使用者輸入的文字
+     * @param match 從 LINE BOT 收到的文字經 {@link com.cheng.linegroup.events.message.keyword.KeywordAutomaton} 比對後的結果
      * @return true: 處理此事件，false: 不處理此事件
      */
-    boolean canHandle(String text);
+    boolean canHandle(KeywordMatch match);
 
     /**
      * 是否中斷後續的行為
@@ -24,8 +26,10 @@ public interface TextMessageBehavior {
      * @param event               WebhookEvent
      * @param replyKeywordService 回覆關鍵字的相關服務
      * @param lineService         有關LINE推播的API
+     * @param reply               此事件的回覆，要回覆的訊息加到這裡，所有行為結束後合併成一次 reply，不要自行呼叫 reply API
      * @return true: 中斷後續的行為，false: 不中斷後續的行為
      */
-    boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService);
+    boolean performAction(WebhookEvent.Event event, ReplyKeywordService replyKeywordService, LineService lineService,
+                          ReplyAccumulator reply);
 
 }
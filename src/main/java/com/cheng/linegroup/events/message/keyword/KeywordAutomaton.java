@@ -0,0 +1,209 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import com.cheng.linegroup.enums.BehaviorKeyword;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有文字行為共用的關鍵字比對器，一次掃描文字即可得到符合的 {@link BehaviorKeyword} 與學過的關鍵字。
+ * <ul>
+ *     <li>PREFIX 指令與學過的關鍵字 (整段文字完全相同) 都從文字開頭比對，放在同一棵 trie，
+ *     新學的關鍵字直接插入節點，不需要重建</li>
+ *     <li>CONTAINS 關鍵字可能出現在任何位置，啟動時編成 Aho-Corasick 自動機，掃描時不分大小寫</li>
+ * </ul>
+ *
+ * @author cheng
+ * @since 2026/10/17 17:30
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KeywordAutomaton {
+
+    private final ReplyKeywordRepository replyKeywordRepository;
+
+    private final TrieNode root = new TrieNode();
+    private final AtomicInteger learnedKeywordCount = new AtomicInteger();
+    private ContainsAutomaton containsAutomaton;
+
+    @PostConstruct
+    public void init() {
+        List<ContainsPattern> containsPatterns = new ArrayList<>();
+        for (BehaviorKeyword behaviorKeyword : BehaviorKeyword.values()) {
+            for (String keyword : behaviorKeyword.getKeywords()) {
+                if (behaviorKeyword.getMatchMode() == BehaviorKeyword.MatchMode.PREFIX) {
+                    root.insert(keyword).addBehavior(behaviorKeyword);
+                } else {
+                    containsPatterns.add(new ContainsPattern(keyword, behaviorKeyword));
+                }
+            }
+        }
+        containsAutomaton = new ContainsAutomaton(containsPatterns);
+
+        List<String> keywords = replyKeywordRepository.findAllKeywords();
+        keywords.forEach(this::addLearnedKeyword);
+        log.info("KeywordAutomaton loaded {} learned keywords", learnedKeywordCount.get());
+    }
+
+    /**
+     * 新增學過的關鍵字，可在比對進行中呼叫
+     */
+    public void addLearnedKeyword(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return;
+        }
+        TrieNode node = root.insert(keyword);
+        synchronized (node) {
+            if (node.learned) {
+                return;
+            }
+            node.learned = true;
+        }
+        learnedKeywordCount.incrementAndGet();
+    }
+
+    public int getLearnedKeywordCount() {
+        return learnedKeywordCount.get();
+    }
+
+    public KeywordMatch match(String text) {
+        KeywordMatch match = new KeywordMatch(text);
+        if (text == null || text.isEmpty()) {
+            return match;
+        }
+
+        TrieNode node = root;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            node = node.child(text.charAt(i));
+            if (node == null) {
+                break;
+            }
+            for (BehaviorKeyword behaviorKeyword : node.behaviors) {
+                match.addBehavior(behaviorKeyword);
+            }
+            if (i == length - 1 && node.learned) {
+                match.markLearnedKeyword();
+            }
+        }
+
+        containsAutomaton.scan(text, match);
+        return match;
+    }
+
+    /**
+     * 從文字開頭比對的 trie，子節點使用 ConcurrentHashMap，插入時不影響同時進行的比對
+     */
+    private static final class TrieNode {
+        private static final BehaviorKeyword[] NONE = new BehaviorKeyword[0];
+
+        private final Map<Character, TrieNode> children = new ConcurrentHashMap<>(4);
+        private volatile BehaviorKeyword[] behaviors = NONE;
+        private volatile boolean learned;
+
+        private TrieNode child(char c) {
+            return children.get(c);
+        }
+
+        private TrieNode insert(String keyword) {
+            TrieNode node = this;
+            for (int i = 0; i < keyword.length(); i++) {
+                node = node.children.computeIfAbsent(keyword.charAt(i), k -> new TrieNode());
+            }
+            return node;
+        }
+
+        private synchronized void addBehavior(BehaviorKeyword behaviorKeyword) {
+            if (Arrays.asList(behaviors).contains(behaviorKeyword)) {
+                return;
+            }
+            BehaviorKeyword[] updated = Arrays.copyOf(behaviors, behaviors.length + 1);
+            updated[behaviors.length] = behaviorKeyword;
+            behaviors = updated;
+        }
+    }
+
+    private record ContainsPattern(String keyword, BehaviorKeyword behaviorKeyword) {
+    }
+
+    /**
+     * CONTAINS 關鍵字的 Aho-Corasick 自動機，建立後不再修改
+     */
+    private static final class ContainsAutomaton {
+        private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+        private final List<Integer> failures = new ArrayList<>();
+        private final List<List<BehaviorKeyword>> outputs = new ArrayList<>();
+
+        private ContainsAutomaton(List<ContainsPattern> patterns) {
+            newState();
+            for (ContainsPattern pattern : patterns) {
+                int state = 0;
+                for (char c : pattern.keyword().toCharArray()) {
+                    char lower = Character.toLowerCase(c);
+                    Integer next = transitions.get(state).get(lower);
+                    if (next == null) {
+                        next = newState();
+                        transitions.get(state).put(lower, next);
+                    }
+                    state = next;
+                }
+                outputs.get(state).add(pattern.behaviorKeyword());
+            }
+
+            // BFS 建立 failure link，並把 failure 狀態的輸出合併進來
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int child : transitions.get(0).values()) {
+                failures.set(child, 0);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> entry : transitions.get(state).entrySet()) {
+                    int child = entry.getValue();
+                    int fail = failures.get(state);
+                    while (fail != 0 && !transitions.get(fail).containsKey(entry.getKey())) {
+                        fail = failures.get(fail);
+                    }
+                    Integer target = transitions.get(fail).get(entry.getKey());
+                    failures.set(child, target != null && target != child ? target : 0);
+                    outputs.get(child).addAll(outputs.get(failures.get(child)));
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int newState() {
+            transitions.add(new HashMap<>());
+            failures.add(0);
+            outputs.add(new ArrayList<>());
+            return transitions.size() - 1;
+        }
+
+        private void scan(String text, KeywordMatch match) {
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                while (state != 0 && !transitions.get(state).containsKey(c)) {
+                    state = failures.get(state);
+                }
+                state = transitions.get(state).getOrDefault(c, 0);
+                for (BehaviorKeyword behaviorKeyword : outputs.get(state)) {
+                    match.addBehavior(behaviorKeyword);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.enums.BehaviorKeyword;
+
+/**
+ * {@link KeywordAutomaton} 對一段文字的比對結果
+ *
+ * @author cheng
+ * @since 2026/10/17 17:30
+ **/
+public final class KeywordMatch {
+
+    private final String text;
+    private int behaviors;
+    private boolean learnedKeyword;
+
+    KeywordMatch(String text) {
+        this.text = text;
+    }
+
+    void addBehavior(BehaviorKeyword behaviorKeyword) {
+        behaviors |= 1 << behaviorKeyword.ordinal();
+    }
+
+    void markLearnedKeyword() {
+        learnedKeyword = true;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean has(BehaviorKeyword behaviorKeyword) {
+        return (behaviors & (1 << behaviorKeyword.ordinal())) != 0;
+    }
+
+    /**
+     * @return 是否符合任何 {@link BehaviorKeyword}
+     */
+    public boolean hasAnyBehavior() {
+        return behaviors != 0;
+    }
+
+    /**
+     * @return 整段文字是否為某個群組 (或個人) 學過的關鍵字，實際的回覆仍需依群組查詢
+     */
+    public boolean isLearnedKeyword() {
+        return learnedKeyword;
+    }
+
+    @Override
+    public String toString() {
+        return "KeywordMatch(behaviors=" + Integer.toBinaryString(behaviors) + ", learnedKeyword=" + learnedKeyword + ")";
+    }
+}
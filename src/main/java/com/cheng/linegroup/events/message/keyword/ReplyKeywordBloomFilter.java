@@ -0,0 +1,190 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.common.domain.ReplyKeywordCache;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 (群組, 關鍵字) 為 key 的 Bloom filter，用來在不讀資料庫的情況下確定「此群組沒有學過這個關鍵字」。
+ * <p>
+ * 啟動時從資料庫建立，新學的關鍵字 (含其他機器同步過來的) 直接加入；
+ * Bloom filter 無法刪除元素，因此定期重建以吸收資料庫中被刪除的關鍵字，重建期間新增的關鍵字會同時加入新舊兩個 filter。
+ * 建立失敗時視為全部可能存在，查詢改由 {@link ReplyKeywordIndex} 處理。
+ *
+ * @author cheng
+ * @since 2026/10/17 18:30
+ **/
+@Slf4j
+@Component
+public class ReplyKeywordBloomFilter implements MetricsSource {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final ReplyKeywordCache.Bloom config;
+    private final ReplyKeywordRepository replyKeywordRepository;
+
+    private final Object lock = new Object();
+    private volatile BloomFilter<CharSequence> current;
+    /**
+     * 重建中的 filter，以 lock 保護
+     */
+    private BloomFilter<CharSequence> building;
+    private volatile long expectedInsertions;
+    private volatile long lastBuildMillis;
+
+    private ScheduledExecutorService rebuildScheduler;
+
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder mightContain = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public ReplyKeywordBloomFilter(ReplyKeywordCache replyKeywordCache, ReplyKeywordRepository replyKeywordRepository) {
+        this.config = replyKeywordCache.getBloom();
+        this.replyKeywordRepository = replyKeywordRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        rebuild();
+        long interval = config.getRebuildInterval().toMillis();
+        rebuildScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replyKeywordBloom_"));
+        rebuildScheduler.scheduleWithFixedDelay(this::rebuild, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param keyword 關鍵字
+     * @param scope   群組 id，個人聊天為 {@code personal:uid}
+     * @return false 表示一定沒有學過，true 表示可能有 (需再查詢)
+     */
+    public boolean mightContain(String scope, String keyword) {
+        BloomFilter<CharSequence> filter = current;
+        if (filter == null) {
+            return true;
+        }
+        if (filter.mightContain(key(scope, keyword))) {
+            mightContain.increment();
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    /**
+     * 加入新學的關鍵字
+     */
+    public void put(String scope, String keyword) {
+        CharSequence key = key(scope, keyword);
+        synchronized (lock) {
+            if (current != null) {
+                current.put(key);
+            }
+            if (building != null) {
+                building.put(key);
+            }
+        }
+    }
+
+    /**
+     * 從資料庫重建，預期數量取設定值與目前筆數兩倍的較大者，讓誤判率維持在設定值附近
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            long count = replyKeywordRepository.count();
+            long expected = Math.max(config.getExpectedInsertions(), count * 2);
+            BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, config.getFpp());
+            synchronized (lock) {
+                building = filter;
+            }
+
+            List<Object[]> keys = replyKeywordRepository.findAllScopeKeys();
+            for (Object[] row : keys) {
+                String gid = (String) row[0];
+                String uid = (String) row[1];
+                String keyword = (String) row[2];
+                filter.put(key(ReplyKeywordIndex.scopeOf(uid, ReplyKeywordIndex.groupOf(gid)), keyword));
+            }
+
+            synchronized (lock) {
+                current = filter;
+                building = null;
+            }
+            expectedInsertions = expected;
+            lastBuildMillis = System.currentTimeMillis();
+            rebuilds.increment();
+            log.info("ReplyKeywordBloomFilter built, keys:{}, expected:{}, fpp:{}, bytes:{}, took:{}ms",
+                    keys.size(), expected, config.getFpp(), footprintBytes(), lastBuildMillis - start);
+        } catch (Exception e) {
+            synchronized (lock) {
+                building = null;
+            }
+            log.error("ReplyKeywordBloomFilter build failed, ERR:{}", ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * 依 Bloom filter 的最佳 bit 數公式估算目前佔用的記憶體
+     */
+    private long footprintBytes() {
+        long n = expectedInsertions;
+        if (n == 0) {
+            return 0;
+        }
+        double bits = -n * Math.log(config.getFpp()) / (Math.log(2) * Math.log(2));
+        return (long) Math.ceil(bits / 8);
+    }
+
+    private static CharSequence key(String scope, String keyword) {
+        return new StringBuilder(scope.length() + keyword.length() + 1)
+                .append(scope).append(KEY_SEPARATOR).append(keyword);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuildScheduler != null) {
+            rebuildScheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "replyKeywordBloom";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        BloomFilter<CharSequence> filter = current;
+        metrics.put("ready", filter != null);
+        metrics.put("approximateElements", filter == null ? 0 : filter.approximateElementCount());
+        metrics.put("expectedInsertions", expectedInsertions);
+        metrics.put("targetFpp", config.getFpp());
+        metrics.put("currentFpp", filter == null ? 0 : filter.expectedFpp());
+        metrics.put("footprintBytes", footprintBytes());
+        metrics.put("definiteMisses", definiteMisses.sum());
+        metrics.put("mightContain", mightContain.sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("lastBuildMillis", lastBuildMillis);
+        return metrics;
+    }
+}
@@ -0,0 +1,242 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.common.contants.RedisPrefix;
+import com.cheng.linegroup.common.domain.ReplyKeywordCache;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import com.cheng.linegroup.entity.ReplyKeyword;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以群組為單位的 keyword → reply 記憶體索引。
+ * <p>
+ * 群組第一次查詢時才從資料庫載入該群組全部的關鍵字，之後命中與未命中都直接在記憶體判斷；
+ * 所有群組合計的估算記憶體超過上限時淘汰最久沒用到的群組。
+ * 關鍵字新增時更新本機索引，並透過 Redis pub/sub 通知其他機器讓該群組的索引失效。
+ * <p>
+ * 個人聊天的關鍵字以 {@code personal:uid} 為範圍，與 {@link com.cheng.linegroup.services.ReplyKeywordService} 的查詢規則一致。
+ *
+ * @author cheng
+ * @since 2026/10/17 18:00
+ **/
+@Slf4j
+@Component
+public class ReplyKeywordIndex implements MessageListener, MetricsSource {
+
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * 每筆關鍵字除了字串本身以外的估算成本 (entity、map entry)
+     */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final ReplyKeywordCache config;
+    private final ReplyKeywordRepository replyKeywordRepository;
+    private final KeywordAutomaton keywordAutomaton;
+    private final ReplyKeywordBloomFilter replyKeywordBloomFilter;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final Cache<String, GroupIndex> groups;
+
+    /**
+     * 用來忽略自己發出的通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+
+    public ReplyKeywordIndex(ReplyKeywordCache config, ReplyKeywordRepository replyKeywordRepository,
+                             KeywordAutomaton keywordAutomaton, ReplyKeywordBloomFilter replyKeywordBloomFilter,
+                             StringRedisTemplate stringRedisTemplate,
+                             RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.config = config;
+        this.replyKeywordRepository = replyKeywordRepository;
+        this.keywordAutomaton = keywordAutomaton;
+        this.replyKeywordBloomFilter = replyKeywordBloomFilter;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.groups = CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxWeight())
+                .weigher((String scope, GroupIndex index) -> index.weight())
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (config.isSyncEnabled()) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(config.getSyncChannel()));
+        }
+    }
+
+    /**
+     * 查詢群組 (或個人) 學過的關鍵字，群組尚未載入時先以 {@link ReplyKeywordBloomFilter} 排除一定不存在的關鍵字，
+     * 可能存在才從資料庫載入整個群組
+     *
+     * @param keyword 關鍵字
+     * @param uid     使用者
+     * @param gid     群組，個人聊天為 null
+     * @return 對應的關鍵字設定，沒有時回傳 null
+     */
+    public ReplyKeyword find(String keyword, String uid, String gid) {
+        String scope = scopeOf(uid, gid);
+        if (groups.getIfPresent(scope) == null && !replyKeywordBloomFilter.mightContain(scope, keyword)) {
+            misses.increment();
+            return null;
+        }
+        GroupIndex index = getOrLoad(uid, gid);
+        ReplyKeyword replyKeyword = index.entries().get(keyword);
+        if (replyKeyword != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return replyKeyword;
+    }
+
+    /**
+     * @return 群組的索引是否已在記憶體中
+     */
+    public boolean isLoaded(String uid, String gid) {
+        return groups.getIfPresent(scopeOf(uid, gid)) != null;
+    }
+
+    /**
+     * 新增關鍵字後呼叫，更新本機索引、關鍵字比對器，並通知其他機器
+     */
+    public void onSaved(ReplyKeyword replyKeyword) {
+        String scope = scopeOf(replyKeyword.getUid(), groupOf(replyKeyword.getGid()));
+        groups.asMap().computeIfPresent(scope, (k, index) -> index.with(replyKeyword));
+        replyKeywordBloomFilter.put(scope, replyKeyword.getKeyword());
+        keywordAutomaton.addLearnedKeyword(replyKeyword.getKeyword());
+        publish(scope, replyKeyword.getKeyword());
+    }
+
+    private GroupIndex getOrLoad(String uid, String gid) {
+        String scope = scopeOf(uid, gid);
+        try {
+            return groups.get(scope, () -> load(uid, gid));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Failed to load reply keywords, scope:" + scope, e.getCause());
+        }
+    }
+
+    private GroupIndex load(String uid, String gid) {
+        loads.increment();
+        List<ReplyKeyword> replyKeywords = gid != null
+                ? replyKeywordRepository.findByGid(gid)
+                : replyKeywordRepository.findByGidAndUid(RedisPrefix.PERSONAL, uid);
+        Map<String, ReplyKeyword> entries = new HashMap<>(Math.max(4, replyKeywords.size() * 2));
+        for (ReplyKeyword replyKeyword : replyKeywords) {
+            entries.putIfAbsent(replyKeyword.getKeyword(), replyKeyword);
+        }
+        return GroupIndex.of(entries);
+    }
+
+    private void publish(String scope, String keyword) {
+        if (!config.isSyncEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(config.getSyncChannel(), nodeId + SEPARATOR + scope + SEPARATOR + keyword);
+        } catch (Exception e) {
+            publishErrors.increment();
+            log.warn("Publish reply keyword change failed, scope:{}, ERR:{}", scope, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        remoteInvalidations.increment();
+        groups.invalidate(parts[1]);
+        replyKeywordBloomFilter.put(parts[1], parts[2]);
+        keywordAutomaton.addLearnedKeyword(parts[2]);
+        log.info("Reply keyword changed on other node, invalidate scope:{}", parts[1]);
+    }
+
+    static String scopeOf(String uid, String gid) {
+        return gid != null ? gid : RedisPrefix.PERSONAL + ":" + uid;
+    }
+
+    /**
+     * 資料表中個人聊天的 gid 存為 personal，轉回查詢時使用的 null
+     */
+    static String groupOf(String storedGid) {
+        return RedisPrefix.PERSONAL.equals(storedGid) ? null : storedGid;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "replyKeywordIndex";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("groups", groups.size());
+        metrics.put("estimatedBytes", groups.asMap().values().stream().mapToLong(GroupIndex::weight).sum());
+        metrics.put("maxBytes", config.getMaxWeight());
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("loads", loads.sum());
+        metrics.put("evictions", groups.stats().evictionCount());
+        metrics.put("remoteInvalidations", remoteInvalidations.sum());
+        metrics.put("publishErrors", publishErrors.sum());
+        return metrics;
+    }
+
+    /**
+     * 單一群組的索引，內容不可變，新增關鍵字時建立新的實例
+     */
+    private record GroupIndex(Map<String, ReplyKeyword> entries, int weight) {
+
+        private static GroupIndex of(Map<String, ReplyKeyword> entries) {
+            long weight = ENTRY_OVERHEAD;
+            for (ReplyKeyword replyKeyword : entries.values()) {
+                weight += weightOf(replyKeyword);
+            }
+            return new GroupIndex(entries, (int) Math.min(Integer.MAX_VALUE, weight));
+        }
+
+        private static long weightOf(ReplyKeyword replyKeyword) {
+            String reply = replyKeyword.getReply();
+            return ENTRY_OVERHEAD + 2L * (replyKeyword.getKeyword().length() + (reply == null ? 0 : reply.length()));
+        }
+
+        private GroupIndex with(ReplyKeyword replyKeyword) {
+            if (entries.containsKey(replyKeyword.getKeyword())) {
+                return this;
+            }
+            Map<String, ReplyKeyword> updated = new HashMap<>(entries);
+            updated.put(replyKeyword.getKeyword(), replyKeyword);
+            return new GroupIndex(updated, (int) Math.min(Integer.MAX_VALUE, weight + weightOf(replyKeyword)));
+        }
+    }
+}
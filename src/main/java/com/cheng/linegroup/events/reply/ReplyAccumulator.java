@@ -0,0 +1,80 @@
+package com.cheng.linegroup.events.reply;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.deadline.ReplyDeadlineTracker;
+import com.cheng.linegroup.services.dto.LineMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 單一事件的回覆累積器。
+ * <p>
+ * reply token 只能使用一次，一則文字訊息可能同時符合多個行為，各自 reply 時第二次呼叫必定失敗。
+ * 行為只把要回覆的訊息加入這裡，由 {@link ReplyCoalescer} 在所有行為結束後合併成一次 reply (最多 5 則)，
+ * 超過的部分改用 push。只在處理事件的執行緒上使用。
+ *
+ * @author cheng
+ * @since 2026/10/17 23:00
+ **/
+public final class ReplyAccumulator {
+
+    private final String replyToken;
+    private final String pushTarget;
+    private final List<LineMessage.Message> messages = new ArrayList<>(2);
+    private boolean tokenClaimed;
+
+    public ReplyAccumulator(String replyToken, String pushTarget) {
+        this.replyToken = replyToken;
+        this.pushTarget = pushTarget;
+    }
+
+    public static ReplyAccumulator of(WebhookEvent.Event event) {
+        return new ReplyAccumulator(event.getReplyToken(), ReplyDeadlineTracker.pushTarget(event));
+    }
+
+    public ReplyAccumulator add(LineMessage.Message message) {
+        messages.add(message);
+        return this;
+    }
+
+    public ReplyAccumulator text(String text) {
+        return add(LineMessage.Message.builder().msg(text).build());
+    }
+
+    /**
+     * 讓非同步流程 (例如 AI 回覆) 自行使用 reply token，之後累積的訊息在 flush 時都改用 push
+     *
+     * @return reply token，已被取走或沒有 reply token 時為 null
+     */
+    public String claimToken() {
+        if (tokenClaimed) {
+            return null;
+        }
+        tokenClaimed = true;
+        return replyToken;
+    }
+
+    /**
+     * @return flush 時可以使用的 reply token，已被取走時為 null
+     */
+    public String replyToken() {
+        return tokenClaimed ? null : replyToken;
+    }
+
+    /**
+     * @return 改用 push 時的對象 (群組優先，其次使用者)
+     */
+    public String pushTarget() {
+        return pushTarget;
+    }
+
+    public List<LineMessage.Message> messages() {
+        return Collections.unmodifiableList(messages);
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cheng.linegroup.events.reply;
+
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.events.deadline.ReplyDeadline;
+import com.cheng.linegroup.services.LineService;
+import com.cheng.linegroup.services.dto.LineMessage;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把 {@link ReplyAccumulator} 累積的訊息一次送出：前 5 則用 reply，其餘每 5 則一次 push。
+ * <p>
+ * 呼叫經由 {@link LineService#callMessageAPIAsync} 依序串接送出，限速重試的等待交給排程器，不會讓 lane 的執行緒 sleep；
+ * reply token 過期或重試會超過期限時依設定改為 push 或丟棄。單一呼叫失敗只記錄 log，不影響其他訊息。
+ *
+ * @author cheng
+ * @since 2026/10/17 23:00
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReplyCoalescer implements MetricsSource {
+
+    /**
+     * LINE 每個 reply / push 請求最多 5 則訊息
+     */
+    public static final int MAX_MESSAGES_PER_REQUEST = 5;
+
+    /**
+     * 單一 reply / push 呼叫的逾時
+     */
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(10);
+
+    private final LineService lineService;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder replyCalls = new LongAdder();
+    private final LongAdder pushCalls = new LongAdder();
+    private final LongAdder spilledMessages = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+
+    /**
+     * @return 所有呼叫都結束 (成功或失敗) 時完成，不會以例外結束
+     */
+    public CompletableFuture<Void> flush(ReplyAccumulator reply) {
+        List<LineMessage.Message> pending = reply.messages();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        if (pending.isEmpty()) {
+            return chain;
+        }
+        flushes.increment();
+        messages.add(pending.size());
+        // 之後的呼叫不在 lane 的執行緒上，先取得目前事件的 reply token 期限
+        ReplyDeadline replyDeadline = ReplyDeadline.current();
+
+        int sent = 0;
+        String replyToken = reply.replyToken();
+        if (StringUtils.isNotBlank(replyToken)) {
+            sent = Math.min(MAX_MESSAGES_PER_REQUEST, pending.size());
+            LineMessage lineMessage = LineMessage.builder()
+                    .replyToken(replyToken)
+                    .messages(new ArrayList<>(pending.subList(0, sent)))
+                    .build();
+            chain = send(chain, lineMessage, Api.LINE_MESSAGE_REPLY, replyDeadline);
+        }
+        if (sent == pending.size()) {
+            return chain;
+        }
+
+        List<LineMessage.Message> overflow = pending.subList(sent, pending.size());
+        if (reply.pushTarget() == null) {
+            droppedMessages.add(overflow.size());
+            log.warn("Drop {} reply messages, no push target", overflow.size());
+            return chain;
+        }
+        spilledMessages.add(overflow.size());
+        for (List<LineMessage.Message> chunk : Lists.partition(overflow, MAX_MESSAGES_PER_REQUEST)) {
+            LineMessage lineMessage = LineMessage.builder()
+                    .uid(reply.pushTarget())
+                    .messages(new ArrayList<>(chunk))
+                    .build();
+            chain = send(chain, lineMessage, Api.LINE_MESSAGE_PUSH, replyDeadline);
+        }
+        return chain;
+    }
+
+    /**
+     * 前一個呼叫結束後才送出，訊息依序到達
+     */
+    private CompletableFuture<Void> send(CompletableFuture<Void> previous, LineMessage lineMessage, Api api,
+                                         ReplyDeadline replyDeadline) {
+        return previous.thenCompose(v -> {
+            (api == Api.LINE_MESSAGE_REPLY ? replyCalls : pushCalls).increment();
+            return lineService.callMessageAPIAsync(lineMessage, api, replyDeadline, CALL_TIMEOUT);
+        }).handle((resp, e) -> {
+            if (e != null) {
+                failedCalls.increment();
+                log.error("Flush reply failed, api:{}, ERR:{}", api, ExceptionUtils.getStackTrace(e));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "replyCoalescing";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("flushes", flushes.sum());
+        metrics.put("messages", messages.sum());
+        metrics.put("replyCalls", replyCalls.sum());
+        metrics.put("pushCalls", pushCalls.sum());
+        metrics.put("spilledMessages", spilledMessages.sum());
+        metrics.put("droppedMessages", droppedMessages.sum());
+        metrics.put("failedCalls", failedCalls.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,72 @@
+package com.cheng.linegroup.events.webhook;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 將 request body 一次讀進每條執行緒重複使用的 byte 陣列，避免每個 webhook 都建立 String 與陣列。
+ * <p>
+ * 回傳的 {@link Body} 只在同一個 request 內有效，需要保留內容時請自行複製。
+ *
+ * @author cheng
+ * @since 2026/10/17 14:10
+ **/
+@Component
+public class WebhookBodyReader {
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    /**
+     * 超過此大小的暫存陣列用完就丟，避免每條 servlet 執行緒都留著大陣列
+     */
+    private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+    /**
+     * LINE webhook 不會有這麼大的 body，超過視為異常請求
+     */
+    private static final int MAX_BODY_SIZE = 4 * 1024 * 1024;
+
+    private final ThreadLocal<byte[]> bufferHolder = ThreadLocal.withInitial(() -> new byte[INITIAL_SIZE]);
+
+    /**
+     * @param in            request body
+     * @param contentLength Content-Length，未知時傳入 -1
+     */
+    public Body read(InputStream in, int contentLength) throws IOException {
+        byte[] buffer = bufferHolder.get();
+        if (contentLength > buffer.length) {
+            buffer = grow(buffer, contentLength);
+        }
+
+        int length = 0;
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+            if (length == buffer.length) {
+                buffer = grow(buffer, buffer.length * 2);
+            }
+        }
+        return new Body(buffer, length);
+    }
+
+    private byte[] grow(byte[] buffer, int size) throws IOException {
+        if (size > MAX_BODY_SIZE) {
+            throw new IOException("webhook body exceeds " + MAX_BODY_SIZE + " bytes");
+        }
+        byte[] larger = new byte[size];
+        System.arraycopy(buffer, 0, larger, 0, buffer.length);
+        if (size <= MAX_RETAINED_SIZE) {
+            bufferHolder.set(larger);
+        }
+        return larger;
+    }
+
+    /**
+     * @param data   暫存陣列，有效內容為 [0, length)
+     * @param length body 長度
+     */
+    public record Body(byte[] data, int length) {
+    }
+}
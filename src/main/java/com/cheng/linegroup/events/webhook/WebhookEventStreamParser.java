@@ -0,0 +1,53 @@
+package com.cheng.linegroup.events.webhook;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.utils.JacksonUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * 以 Jackson 串流 API 直接解析 webhook body 的 events 陣列，
+ * 每解析完一個事件就交給 consumer，不需先建立整個 {@link WebhookEvent}。
+ *
+ * @author cheng
+ * @since 2026/10/17 14:18
+ **/
+@Component
+public class WebhookEventStreamParser {
+
+    private static final String EVENTS = "events";
+
+    /**
+     * @param data     JSON 內容
+     * @param offset   起始位置
+     * @param length   長度
+     * @param consumer 每個事件解析完成後的處理
+     * @return 解析出的事件數量
+     * @throws IOException JSON 格式錯誤
+     */
+    public int parse(byte[] data, int offset, int length, Consumer<WebhookEvent.Event> consumer) throws IOException {
+        int count = 0;
+        try (JsonParser parser = JacksonUtils.createParser(data, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("webhook body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (EVENTS.equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        consumer.accept(parser.readValueAs(WebhookEvent.Event.class));
+                        count++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return count;
+    }
+}
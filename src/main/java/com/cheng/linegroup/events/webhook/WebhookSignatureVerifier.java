@@ -0,0 +1,67 @@
+package com.cheng.linegroup.events.webhook;
+
+import com.cheng.linegroup.common.domain.Line;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * 驗證 x-line-signature。
+ * <p>
+ * 每條執行緒持有一個已用 channel secret 初始化好的 HmacSHA256 {@link Mac}，
+ * 直接對 request body 的 byte 陣列計算，不需每次重新建立金鑰與 Mac。
+ *
+ * @author cheng
+ * @since 2026/10/17 14:02
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Line line;
+
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::createMac);
+
+    /**
+     * @param body      request body
+     * @param offset    body 在陣列中的起始位置
+     * @param length    body 長度
+     * @param signature x-line-signature header
+     * @return true: 簽章相符
+     */
+    public boolean verify(byte[] body, int offset, int length, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        Mac mac = macHolder.get();
+        // doFinal 會自動 reset，同一個 Mac 可以重複使用
+        mac.update(body, offset, length);
+        byte[] calculatedSignature = mac.doFinal();
+        byte[] receivedSignature = Base64.decodeBase64(signature);
+
+        // Compare x-line-signature request header string and the signature
+        return MessageDigest.isEqual(calculatedSignature, receivedSignature);
+    }
+
+    private Mac createMac() {
+        try {
+            String channelSecret = line.getMessage().getChannelSecret();
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(channelSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            log.error("===> Signature verification error: {}", e.getMessage());
+            throw new IllegalStateException("Unable to initialise " + ALGORITHM, e);
+        }
+    }
+}
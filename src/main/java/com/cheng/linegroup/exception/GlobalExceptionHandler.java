@@ -67,6 +67,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.internalServerError().body(R.failed(e));
     }
 
+    @ExceptionHandler(UpstreamRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<R> upstreamRejectedException(UpstreamRejectedException e) {
+        log.warn("上游暫時無法使用:{}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(R.create(e.getCode(), e.getMessage(), null));
+    }
+
     @ExceptionHandler(SQLException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ResponseEntity<R> sqlException(SQLException e) {
@@ -0,0 +1,25 @@
+package com.cheng.linegroup.exception;
+
+import com.cheng.linegroup.enums.Upstream;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * 上游斷路中或 bulkhead 已滿，呼叫被拒絕且沒有實際送出
+ * <p>
+ * 與上游本身回應 503 ({@link BizException}) 區分：拋出此異常時可以確定上游沒有收到請求。
+ *
+ * @author cheng
+ * @since 2026/10/17 23:50
+ **/
+@Getter
+public class UpstreamRejectedException extends RuntimeException {
+    private final int code;
+    private final Upstream upstream;
+
+    public UpstreamRejectedException(Upstream upstream, String reason) {
+        super(String.format("upstream %s: %s", reason, upstream));
+        this.code = HttpStatus.SERVICE_UNAVAILABLE.value();
+        this.upstream = upstream;
+    }
+}
@@ -0,0 +1,578 @@
+package com.cheng.linegroup.fanout;
+
+import com.cheng.linegroup.common.domain.LineFanout;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
+import com.cheng.linegroup.dao.FanoutBatchRepository;
+import com.cheng.linegroup.dao.FanoutJobRepository;
+import com.cheng.linegroup.dao.GroupMainRepository;
+import com.cheng.linegroup.dao.LineUserRepository;
+import com.cheng.linegroup.dto.FanoutJobRequest;
+import com.cheng.linegroup.dto.FanoutProgress;
+import com.cheng.linegroup.entity.FanoutBatch;
+import com.cheng.linegroup.entity.FanoutJob;
+import com.cheng.linegroup.enums.FanoutAudience;
+import com.cheng.linegroup.enums.FanoutStatus;
+import com.cheng.linegroup.exception.BizException;
+import com.cheng.linegroup.exception.UpstreamRejectedException;
+import com.cheng.linegroup.services.LineService;
+import com.cheng.linegroup.services.dto.LineMessage;
+import com.cheng.linegroup.services.dto.MulticastMessage;
+import com.cheng.linegroup.utils.JacksonUtils;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import com.google.common.collect.Lists;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群發工作引擎，取代對每位收件者各呼叫一次 push。
+ * <p>
+ * 建立工作時只記錄對象與訊息，開始執行才切分批次並寫入 {@link FanoutBatch}：
+ * <ul>
+ *   <li>使用者每 500 位合併成一個 multicast 請求</li>
+ *   <li>multicast 不支援群組與聊天室，這些收件者逐一 push</li>
+ *   <li>訊息每 5 則一個請求，同一批次的多個請求依序送出，保持訊息順序</li>
+ * </ul>
+ * 每個工作由一條執行緒依 seq 取出批次，同時最多 inFlightBatches 個批次經由 {@link LineService} 非同步送出，
+ * 速率與 429 / 5xx 重試交給 LINE API gateway。批次結果都回到工作執行緒寫入資料庫，
+ * 服務中斷後從尚未送出的批次 (與批次中尚未送出的請求) 繼續。
+ * <p>
+ * 批次中每個請求完成後先寫入 partsSent 才送出下一個；每個請求的 X-Line-Retry-Key 由 (工作, 批次 seq, 請求序號) 決定，
+ * 中斷前已被 LINE 接受但還沒記錄的請求，重新執行時以同一個 key 送出，LINE 回 409 不會重複發送。
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FanoutEngine implements MetricsSource {
+
+    /**
+     * LINE 每個請求最多 5 則訊息
+     */
+    private static final int MAX_MESSAGES_PER_REQUEST = 5;
+    private static final int MAX_MULTICAST_RECIPIENTS = 500;
+    private static final List<FanoutBatch.Status> UNSENT = List.of(FanoutBatch.Status.PENDING, FanoutBatch.Status.FAILED);
+    private static final long POLL_MILLIS = 100;
+    /**
+     * gateway 拒絕 (等待額度過久) 後整個工作暫停送出的時間
+     */
+    private static final long THROTTLE_BACKOFF_MILLIS = 1_000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final LineFanout setting;
+    private final LineService lineService;
+    private final FanoutJobRepository jobRepository;
+    private final FanoutBatchRepository batchRepository;
+    private final LineUserRepository lineUserRepository;
+    private final GroupMainRepository groupMainRepository;
+
+    private final Map<Long, Run> runs = new ConcurrentHashMap<>();
+
+    private final LongAdder sentRecipients = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder resumedJobs = new LongAdder();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, setting.getMaxConcurrentJobs());
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("fanout_"));
+        // 上次關閉時尚未完成的工作從未送出的批次繼續
+        for (FanoutJob job : jobRepository.findByStatusIn(List.of(FanoutStatus.PENDING, FanoutStatus.RUNNING))) {
+            log.info("Resume fanout job:{}, status:{}", job.getId(), job.getStatus());
+            resumedJobs.increment();
+            submit(job.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 不改變狀態，RUNNING 的工作下次啟動時繼續
+        runs.values().stream().filter(run -> !run.stopRequested).forEach(run -> run.stop(null));
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("FanoutEngine shutdown with {} running jobs", runs.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    public FanoutProgress create(FanoutJobRequest request) {
+        if (request.getAudience() == null) {
+            throw BizException.error("audience is required");
+        }
+        if (request.getMessages() == null || request.getMessages().isEmpty()) {
+            throw BizException.error("messages is required");
+        }
+        boolean custom = request.getAudience() == FanoutAudience.CUSTOM;
+        if (custom && (request.getRecipients() == null || request.getRecipients().isEmpty())) {
+            throw BizException.error("recipients is required for CUSTOM audience");
+        }
+        FanoutJob job = jobRepository.save(FanoutJob.builder()
+                .name(request.getName())
+                .audience(request.getAudience())
+                .messages(JacksonUtils.encodeToJson(request.getMessages()))
+                .recipients(custom ? String.join(",", request.getRecipients()) : null)
+                .status(FanoutStatus.PENDING)
+                .build());
+        log.info("Create fanout job:{}, audience:{}, messages:{}", job.getId(), job.getAudience(), request.getMessages().size());
+        submit(job.getId());
+        return toProgress(job);
+    }
+
+    public FanoutProgress progress(Long jobId) {
+        return toProgress(findJob(jobId));
+    }
+
+    public List<FanoutProgress> list() {
+        return jobRepository.findTop50ByOrderByIdDesc().stream().map(this::toProgress).toList();
+    }
+
+    /**
+     * 停止取出新的批次，送出中的批次完成後狀態改為 PAUSED
+     */
+    public FanoutProgress pause(Long jobId) {
+        return stop(jobId, FanoutStatus.PAUSED);
+    }
+
+    public FanoutProgress cancel(Long jobId) {
+        return stop(jobId, FanoutStatus.CANCELLED);
+    }
+
+    /**
+     * 繼續 PAUSED 的工作，或重送 COMPLETED / FAILED 工作中失敗且未超過嘗試次數的批次
+     */
+    public FanoutProgress resume(Long jobId) {
+        if (runs.containsKey(jobId)) {
+            throw BizException.error("fanout job is running or stopping: " + jobId);
+        }
+        FanoutJob job = findJob(jobId);
+        if (job.getStatus() == FanoutStatus.CANCELLED) {
+            throw BizException.error("fanout job is cancelled: " + jobId);
+        }
+        job.setStatus(job.getTotalBatches() == 0 ? FanoutStatus.PENDING : FanoutStatus.RUNNING);
+        job.setFinishedAt(null);
+        jobRepository.save(job);
+        submit(jobId);
+        return toProgress(job);
+    }
+
+    private FanoutProgress stop(Long jobId, FanoutStatus status) {
+        Run run = runs.get(jobId);
+        if (run != null) {
+            run.stop(status);
+            return toProgress(findJob(jobId));
+        }
+        FanoutJob job = findJob(jobId);
+        if (job.getStatus() == FanoutStatus.CANCELLED
+                || (status == FanoutStatus.PAUSED && job.getStatus() != FanoutStatus.PENDING && job.getStatus() != FanoutStatus.RUNNING)) {
+            return toProgress(job);
+        }
+        job.setStatus(status);
+        if (status == FanoutStatus.CANCELLED) {
+            job.setFinishedAt(LocalDateTime.now());
+        }
+        jobRepository.save(job);
+        return toProgress(job);
+    }
+
+    private FanoutJob findJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> BizException.error(HttpStatus.NOT_FOUND.value(), "fanout job not found: " + jobId));
+    }
+
+    private void submit(Long jobId) {
+        Run run = new Run(jobId);
+        if (runs.putIfAbsent(jobId, run) != null) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                execute(run);
+            } catch (InterruptedException e) {
+                // 關閉服務時中斷，保留狀態讓下次啟動繼續
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Fanout job failed, id:{}, ERR:{}", jobId, ExceptionUtils.getStackTrace(e));
+                jobRepository.findById(jobId).ifPresent(job -> {
+                    job.setStatus(FanoutStatus.FAILED);
+                    job.setLastError(StringUtils.abbreviate(e.getMessage(), MAX_ERROR_LENGTH));
+                    job.setFinishedAt(LocalDateTime.now());
+                    jobRepository.save(job);
+                });
+            } finally {
+                runs.remove(jobId);
+            }
+        });
+    }
+
+    private void execute(Run run) throws InterruptedException {
+        FanoutJob job = jobRepository.findById(run.jobId).orElse(null);
+        if (job == null || job.getStatus() == FanoutStatus.CANCELLED) {
+            return;
+        }
+        if (run.stopRequested) {
+            finish(run, job);
+            return;
+        }
+        if (job.getStatus() == FanoutStatus.PENDING) {
+            plan(job);
+        }
+        List<LineMessage.Message> messages = JacksonUtils.decode2List(job.getMessages(), FanoutJobRequest.Message.class)
+                .stream().map(FanoutJobRequest.Message::toLineMessage).toList();
+        List<List<LineMessage.Message>> parts = Lists.partition(messages, MAX_MESSAGES_PER_REQUEST);
+
+        job.setCompletedBatches(batchRepository.countByStatus(job.getId(), FanoutBatch.Status.SENT));
+        job.setFailedBatches(batchRepository.countByStatus(job.getId(), FanoutBatch.Status.FAILED));
+        job.setSentRecipients(batchRepository.sumRecipients(job.getId(), FanoutBatch.Status.SENT));
+        job.setStatus(FanoutStatus.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        jobRepository.save(job);
+        run.start(job.getTotalRecipients() - job.getSentRecipients());
+
+        int inFlight = Math.max(1, setting.getInFlightBatches());
+        Semaphore window = new Semaphore(inFlight);
+        Deque<FanoutBatch> retries = new ArrayDeque<>();
+        Iterator<FanoutBatch> page = Collections.emptyIterator();
+        boolean exhausted = false;
+        int cursor = 0;
+        while (!run.stopRequested) {
+            drain(run, job, retries);
+            long backoff = run.notBefore - System.currentTimeMillis();
+            if (backoff > 0) {
+                awaitResult(run, job, retries, Math.min(backoff, POLL_MILLIS));
+                continue;
+            }
+            FanoutBatch batch = retries.poll();
+            if (batch == null && !page.hasNext() && !exhausted) {
+                List<FanoutBatch> next = batchRepository.findUnsent(job.getId(), cursor, UNSENT,
+                        setting.getMaxAttempts(), PageRequest.of(0, Math.max(1, setting.getPageSize())));
+                exhausted = next.isEmpty();
+                page = next.iterator();
+            }
+            if (batch == null && page.hasNext()) {
+                batch = page.next();
+                cursor = batch.getSeq();
+            }
+            if (batch == null) {
+                // 結果先放入佇列才釋放額度，額度全數歸還且佇列為空表示所有批次都已處理
+                if (window.availablePermits() == inFlight && run.results.isEmpty()) {
+                    break;
+                }
+                awaitResult(run, job, retries, POLL_MILLIS);
+                continue;
+            }
+            while (!window.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                drain(run, job, retries);
+            }
+            FanoutBatch sending = batch;
+            send(job.getId(), sending, parts).whenComplete((v, e) -> {
+                run.results.add(new Result(sending, e));
+                window.release();
+            });
+        }
+        // 停止時等待送出中的批次，避免已送出的進度沒有記錄
+        while (!window.tryAcquire(inFlight, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            drain(run, job, retries);
+        }
+        drain(run, job, retries);
+        finish(run, job);
+    }
+
+    /**
+     * 取得收件者並切分批次，重新切分前先清除上次中斷時寫入一半的批次
+     */
+    private void plan(FanoutJob job) {
+        List<String> source = switch (job.getAudience()) {
+            case FRIENDS -> lineUserRepository.findFriendUids();
+            case GROUPS -> groupMainRepository.findExistingGids();
+            case CUSTOM -> Arrays.asList(StringUtils.split(StringUtils.defaultString(job.getRecipients()), ','));
+        };
+        Set<String> recipients = new LinkedHashSet<>();
+        for (String id : source) {
+            if (StringUtils.isNotBlank(id)) {
+                recipients.add(id.trim());
+            }
+        }
+        List<String> users = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        for (String id : recipients) {
+            (id.startsWith("U") ? users : others).add(id);
+        }
+
+        batchRepository.deleteByJobId(job.getId());
+        List<FanoutBatch> batches = new ArrayList<>();
+        int size = Math.max(1, Math.min(setting.getMulticastSize(), MAX_MULTICAST_RECIPIENTS));
+        for (List<String> chunk : Lists.partition(users, size)) {
+            batches.add(newBatch(job, batches.size() + 1, true, chunk));
+        }
+        for (String id : others) {
+            batches.add(newBatch(job, batches.size() + 1, false, List.of(id)));
+        }
+        batchRepository.saveAll(batches);
+
+        job.setTotalRecipients(recipients.size());
+        job.setTotalBatches(batches.size());
+        job.setStatus(FanoutStatus.RUNNING);
+        jobRepository.save(job);
+        log.info("Plan fanout job:{}, users:{}, others:{}, batches:{}", job.getId(), users.size(), others.size(), batches.size());
+    }
+
+    private static FanoutBatch newBatch(FanoutJob job, int seq, boolean multicast, List<String> recipients) {
+        return FanoutBatch.builder()
+                .jobId(job.getId())
+                .seq(seq)
+                .multicast(multicast)
+                .recipients(String.join(",", recipients))
+                .recipientCount(recipients.size())
+                .status(FanoutBatch.Status.PENDING)
+                .build();
+    }
+
+    /**
+     * 從 partsSent 開始依序送出批次的每個請求，每完成一個就寫入 partsSent，之後才送出下一個
+     */
+    private CompletableFuture<Void> send(Long jobId, FanoutBatch batch, List<List<LineMessage.Message>> parts) {
+        List<String> to = List.of(StringUtils.split(batch.getRecipients(), ','));
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int i = batch.getPartsSent(); i < parts.size(); i++) {
+            int part = i;
+            String retryKey = retryKey(jobId, batch.getSeq(), part);
+            chain = chain.thenCompose(v -> sendPart(batch.isMulticast(), to, parts.get(part), retryKey))
+                    .thenRun(() -> {
+                        batch.setPartsSent(part + 1);
+                        batchRepository.updatePartsSent(batch.getId(), part + 1);
+                    });
+        }
+        return chain;
+    }
+
+    private CompletableFuture<ApiResponse> sendPart(boolean multicast, List<String> to, List<LineMessage.Message> messages,
+                                                    String retryKey) {
+        requests.increment();
+        Duration timeout = setting.getRequestTimeout();
+        if (multicast) {
+            return lineService.multicastAsync(MulticastMessage.builder().to(to).messages(messages).build(), timeout, retryKey);
+        }
+        LineMessage lineMessage = LineMessage.builder().uid(to.get(0)).messages(messages).build();
+        return lineService.pushAsync(lineMessage, timeout, retryKey);
+    }
+
+    /**
+     * @return 同一個工作、批次與請求永遠得到同一個 key (UUID 格式)
+     */
+    static String retryKey(Long jobId, int seq, int part) {
+        return UUID.nameUUIDFromBytes(("fanout:" + jobId + ":" + seq + ":" + part).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private void awaitResult(Run run, FanoutJob job, Deque<FanoutBatch> retries, long millis) throws InterruptedException {
+        Result result = run.results.poll(millis, TimeUnit.MILLISECONDS);
+        if (result != null) {
+            handle(run, job, retries, result);
+        }
+    }
+
+    private void drain(Run run, FanoutJob job, Deque<FanoutBatch> retries) {
+        Result result;
+        while ((result = run.results.poll()) != null) {
+            handle(run, job, retries, result);
+        }
+    }
+
+    /**
+     * 只在工作執行緒上呼叫，批次與工作的進度都由這裡寫入
+     */
+    private void handle(Run run, FanoutJob job, Deque<FanoutBatch> retries, Result result) {
+        FanoutBatch batch = result.batch();
+        if (result.error() == null) {
+            if (batch.getStatus() == FanoutBatch.Status.FAILED) {
+                job.setFailedBatches(job.getFailedBatches() - 1);
+            }
+            batch.setStatus(FanoutBatch.Status.SENT);
+            batch.setLastError(null);
+            job.setCompletedBatches(job.getCompletedBatches() + 1);
+            job.setSentRecipients(job.getSentRecipients() + batch.getRecipientCount());
+            run.sent.add(batch.getRecipientCount());
+            sentRecipients.add(batch.getRecipientCount());
+            sentBatches.increment();
+        } else {
+            Throwable error = result.error() instanceof CompletionException && result.error().getCause() != null
+                    ? result.error().getCause() : result.error();
+            batch.setAttempts(batch.getAttempts() + 1);
+            batch.setLastError(StringUtils.abbreviate(error.getMessage(), MAX_ERROR_LENGTH));
+            if (isThrottled(error) && batch.getAttempts() < setting.getMaxAttempts()) {
+                // 額度不足時先退避，稍後在本次執行中重送；已停止的工作留待 resume
+                throttled.increment();
+                run.notBefore = System.currentTimeMillis() + THROTTLE_BACKOFF_MILLIS;
+                if (!run.stopRequested) {
+                    retries.add(batch);
+                }
+                batchRepository.save(batch);
+                return;
+            }
+            if (batch.getStatus() != FanoutBatch.Status.FAILED) {
+                job.setFailedBatches(job.getFailedBatches() + 1);
+            }
+            batch.setStatus(FanoutBatch.Status.FAILED);
+            job.setLastError(batch.getLastError());
+            failedBatches.increment();
+            log.warn("Fanout batch failed, job:{}, seq:{}, attempts:{}, ERR:{}",
+                    job.getId(), batch.getSeq(), batch.getAttempts(), error.getMessage());
+        }
+        batchRepository.save(batch);
+        jobRepository.save(job);
+    }
+
+    /**
+     * gateway 等待額度過久直接拒絕、LINE 重試後仍回 429，或上游斷路、bulkhead 已滿 ({@link UpstreamRejectedException})；
+     * 請求沒有被接受，重送不會重複發送。LINE 本身回應的 503 與重試途中才被拒絕的情況不屬於此類，批次直接標為失敗
+     */
+    private static boolean isThrottled(Throwable error) {
+        return (error instanceof BizException e && e.getCode() == HttpStatus.TOO_MANY_REQUESTS.value())
+                || UpstreamGuard.isRejected(error);
+    }
+
+    private void finish(Run run, FanoutJob job) {
+        if (!run.stopRequested) {
+            job.setStatus(FanoutStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+        } else if (run.stopStatus != null) {
+            job.setStatus(run.stopStatus);
+            if (run.stopStatus == FanoutStatus.CANCELLED) {
+                job.setFinishedAt(LocalDateTime.now());
+            }
+        }
+        jobRepository.save(job);
+        log.info("Fanout job:{} {}, sent:{}/{}, failedBatches:{}", job.getId(), job.getStatus(),
+                job.getSentRecipients(), job.getTotalRecipients(), job.getFailedBatches());
+    }
+
+    private FanoutProgress toProgress(FanoutJob job) {
+        Double rate = null;
+        Long eta = null;
+        Run run = runs.get(job.getId());
+        if (run != null && run.startNanos > 0) {
+            double seconds = (System.nanoTime() - run.startNanos) / 1e9;
+            long sent = run.sent.sum();
+            if (seconds > 0 && sent > 0) {
+                rate = sent / seconds;
+                eta = Math.round(Math.max(0, run.remainingAtStart - sent) / rate);
+            }
+        }
+        return FanoutProgress.builder()
+                .id(job.getId())
+                .name(job.getName())
+                .audience(job.getAudience())
+                .status(job.getStatus())
+                .totalRecipients(job.getTotalRecipients())
+                .sentRecipients(job.getSentRecipients())
+                .totalBatches(job.getTotalBatches())
+                .completedBatches(job.getCompletedBatches())
+                .failedBatches(job.getFailedBatches())
+                .recipientsPerSecond(rate)
+                .etaSeconds(eta)
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .lastError(job.getLastError())
+                .build();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "fanout";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runningJobs", runs.size());
+        metrics.put("resumedJobs", resumedJobs.sum());
+        metrics.put("requests", requests.sum());
+        metrics.put("sentBatches", sentBatches.sum());
+        metrics.put("sentRecipients", sentRecipients.sum());
+        metrics.put("failedBatches", failedBatches.sum());
+        metrics.put("throttled", throttled.sum());
+        return metrics;
+    }
+
+    /**
+     * 一次執行的狀態，結果由 OkHttp 執行緒放入 results，工作執行緒取出處理
+     */
+    private static final class Run {
+        private final Long jobId;
+        private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        private final LongAdder sent = new LongAdder();
+        private volatile boolean stopRequested;
+        /**
+         * null 表示服務關閉，保留原本狀態
+         */
+        private volatile FanoutStatus stopStatus;
+        private volatile long startNanos;
+        private volatile long remainingAtStart;
+        private long notBefore;
+
+        private Run(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        private void start(long remaining) {
+            remainingAtStart = remaining;
+            startNanos = System.nanoTime();
+        }
+
+        private void stop(FanoutStatus status) {
+            stopStatus = status;
+            stopRequested = true;
+        }
+    }
+
+    private record Result(FanoutBatch batch, Throwable error) {
+    }
+}
@@ -0,0 +1,385 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.contants.Sign;
+import com.cheng.linegroup.common.domain.ImageCatalogSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 圖片目錄 (image.base-path) 的記憶體清單。
+ * <p>
+ * 啟動時以平行方式走訪整個目錄並讀取每個檔案的大小、尺寸與修改時間，之後以 {@link WatchService} 監聽新增、修改與刪除，
+ * 變更經過 debounce 後重建一份新的 {@link Snapshot}。
+ * 清單以不可變的 snapshot 透過單一 volatile 參考發布，讀取端不需要任何鎖；寫入端 (啟動掃描、watcher、resetImages) 以 writeLock 互斥。
+ * <p>
+ * snapshot 內的圖片依相對路徑排序，新增或刪除檔案時其他圖片的 index 只會平移，不會整個打亂。
+ *
+ * @author cheng
+ * @since 2026/10/17 19:40
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageCatalog implements MetricsSource {
+
+    @Value("${image.base-path}")
+    private String basePath;
+
+    private final ImageCatalogSetting setting;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 目前的檔案清單，只在持有 writeLock 時修改，發布時複製成 snapshot
+     */
+    private final Map<String, ImageEntry> entries = new HashMap<>();
+    private final Object writeLock = new Object();
+    private final AtomicLong version = new AtomicLong();
+
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private Path root;
+    private WatchService watchService;
+    private Thread watcher;
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder watchEvents = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private volatile long lastScanMillis;
+
+    @PostConstruct
+    public void start() {
+        root = Paths.get(basePath).toAbsolutePath().normalize();
+        rescan();
+        if (setting.isWatch() && Files.isDirectory(root)) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                registerTree(root);
+                watcher = new CustomizableThreadFactory("imageCatalog_").newThread(this::watchLoop);
+                watcher.setDaemon(true);
+                watcher.start();
+            } catch (IOException e) {
+                log.error("Start image catalog watcher failed, ERR:{}", ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * @return 目前的圖片清單，不會是 null
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 註冊清單變更的通知，在寫入端的執行緒上、釋放 writeLock 之後呼叫
+     */
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 重新掃描整個目錄並發布新的清單
+     *
+     * @return 圖片數量
+     */
+    public int rescan() {
+        int count;
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+            entries.clear();
+            entries.putAll(walk(root));
+            publish();
+            count = entries.size();
+            lastScanMillis = System.currentTimeMillis() - start;
+            scans.increment();
+            log.info("Image catalog scanned {} images in {} ms, root:{}", count, lastScanMillis, root);
+        }
+        notifyListeners();
+        return count;
+    }
+
+    /**
+     * 走訪目錄取得所有圖片路徑，再平行讀取每個檔案的 metadata
+     */
+    private Map<String, ImageEntry> walk(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            log.warn("Image directory not found: {}", dir);
+            return Map.of();
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            files = paths.filter(p -> Files.isRegularFile(p) && isImage(p)).toList();
+        } catch (IOException | RuntimeException e) {
+            log.error("Walk image directory failed, dir:{}, ERR:{}", dir, e.getMessage());
+            return Map.of();
+        }
+        return files.parallelStream()
+                .map(this::read)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(ImageEntry::name, e -> e, (a, b) -> b));
+    }
+
+    private boolean isImage(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && setting.getExtensions().contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private ImageEntry read(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String name = nameOf(file);
+            int width = -1;
+            int height = -1;
+            try {
+                int[] size = ImageDecoder.readSize(file);
+                if (size != null) {
+                    width = size[0];
+                    height = size[1];
+                }
+            } catch (IOException e) {
+                log.warn("Read image dimensions failed, file:{}, ERR:{}", file, e.getMessage());
+            }
+            return new ImageEntry(name, encode(name), file, attributes.size(), width, height,
+                    attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Read image attributes failed, file:{}, ERR:{}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private String nameOf(Path file) {
+        return root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), Sign.SLASH);
+    }
+
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8)
+                .replace(Sign.ENCODED_SLASH, Sign.SLASH)
+                .replace(Sign.PLUS, Sign.ENCODED_SPACE);
+    }
+
+    /**
+     * 以目前的 entries 建立新的 snapshot，呼叫時必須持有 writeLock
+     */
+    private void publish() {
+        ImageEntry[] sorted = entries.values().toArray(new ImageEntry[0]);
+        Arrays.sort(sorted, Comparator.comparing(ImageEntry::name));
+        snapshot = new Snapshot(version.incrementAndGet(), sorted);
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(p -> Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))::iterator) {
+                WatchKey key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, d);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        long debounce = setting.getDebounce().toMillis();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = collect(watchService.take(), changed);
+                // 持續收集到目錄靜止 debounce 毫秒為止
+                WatchKey key;
+                while ((key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, changed);
+                }
+                if (overflow) {
+                    overflows.increment();
+                    rescan();
+                } else {
+                    apply(changed);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Image catalog watcher failed, ERR:{}", ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * @return 是否發生 OVERFLOW (事件遺失，需要重新掃描)
+     */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path dir = watchedDirs.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            watchEvents.increment();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (dir != null) {
+                changed.add(dir.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return overflow;
+    }
+
+    private void apply(Set<Path> changed) throws IOException {
+        synchronized (writeLock) {
+            for (Path path : changed) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(path);
+                    entries.putAll(walk(path));
+                } else if (Files.isRegularFile(path) && isImage(path)) {
+                    ImageEntry entry = read(path);
+                    if (entry != null) {
+                        entries.put(entry.name(), entry);
+                    }
+                } else {
+                    // 檔案或整個目錄已被刪除
+                    String name = nameOf(path);
+                    entries.remove(name);
+                    entries.keySet().removeIf(n -> n.startsWith(name + Sign.SLASH));
+                }
+            }
+            publish();
+        }
+        log.info("Image catalog updated, changed:{}, images:{}", changed.size(), snapshot.size());
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        Snapshot current = snapshot;
+        for (Consumer<Snapshot> listener : listeners) {
+            try {
+                listener.accept(current);
+            } catch (Exception e) {
+                log.error("Image catalog listener failed, ERR:{}", ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Close image catalog watcher failed: {}", e.getMessage());
+        }
+        watcher.interrupt();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "imageCatalog";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("images", current.size());
+        metrics.put("version", current.version());
+        metrics.put("watchedDirs", watchedDirs.size());
+        metrics.put("scans", scans.sum());
+        metrics.put("lastScanMillis", lastScanMillis);
+        metrics.put("watchEvents", watchEvents.sum());
+        metrics.put("overflows", overflows.sum());
+        return metrics;
+    }
+
+    /**
+     * 某個時間點的圖片清單，建立後不再修改
+     */
+    public static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(0, new ImageEntry[0]);
+
+        private final long version;
+        private final ImageEntry[] images;
+        private final Map<String, ImageEntry> byName;
+
+        Snapshot(long version, ImageEntry[] images) {
+            this.version = version;
+            this.images = images;
+            Map<String, ImageEntry> map = new HashMap<>(images.length * 2);
+            for (ImageEntry image : images) {
+                map.put(image.name(), image);
+            }
+            this.byName = map;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public int size() {
+            return images.length;
+        }
+
+        public boolean isEmpty() {
+            return images.length == 0;
+        }
+
+        public ImageEntry get(int index) {
+            return images[index];
+        }
+
+        /**
+         * @param name 相對路徑
+         * @return 找不到時為 null
+         */
+        public ImageEntry find(String name) {
+            return byName.get(name);
+        }
+
+        public List<ImageEntry> images() {
+            return List.of(images);
+        }
+    }
+}
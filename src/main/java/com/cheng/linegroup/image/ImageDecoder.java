@@ -0,0 +1,229 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageDecodeSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * 以有限記憶體解碼與縮圖。
+ * <p>
+ * 解碼前先讀取檔頭取得尺寸，再以 {@link ImageReadParam#setSourceSubsampling} 只解碼接近目標尺寸 (乘上 oversample) 的像素；
+ * 一張 6000x4000 的照片縮成 240x240 時，解碼出的 BufferedImage 從約 96MB 降到約 1MB。
+ * <p>
+ * 每次解碼前依預估的像素記憶體向 memory budget 取得額度 (以 KB 為單位的 {@link Semaphore})，
+ * 同時執行的數量因此由圖片大小決定：小圖可以大量平行，大圖則排隊，不會一起把 heap 用完。
+ *
+ * @author cheng
+ * @since 2026/10/17 20:20
+ **/
+@Slf4j
+@Component
+public class ImageDecoder implements MetricsSource {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final ImageDecodeSetting setting;
+    private final int budgetKb;
+    private final Semaphore budget;
+
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder subsampled = new LongAdder();
+    private final LongAdder decodedPixels = new LongAdder();
+    private final LongAdder sourcePixels = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong inUseKb = new AtomicLong();
+    private final LongAccumulator peakInUseKb = new LongAccumulator(Math::max, 0);
+
+    public ImageDecoder(ImageDecodeSetting setting) {
+        this.setting = setting;
+        this.budgetKb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, setting.getMemoryBudgetBytes() / 1024));
+        this.budget = new Semaphore(budgetKb, true);
+    }
+
+    /**
+     * 只讀取檔頭取得尺寸，不解碼像素
+     *
+     * @return {寬, 高}，無法辨識的格式為 null
+     */
+    public static int[] readSize(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = readerOf(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(in, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerOf(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    /**
+     * 計算 subsampling 倍率，讓解碼結果仍至少是 fit-within 目標尺寸的 oversample 倍
+     */
+    int subsampling(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        double ratio = Math.max(sourceWidth / (double) targetWidth, sourceHeight / (double) targetHeight);
+        return Math.max(1, (int) (ratio / Math.max(1, setting.getOversample())));
+    }
+
+    /**
+     * 縮圖並編碼成 JPEG，記憶體預算不足時等待
+     *
+     * @param source 原圖，需帶有尺寸
+     * @throws RejectedExecutionException 等待記憶體預算逾時
+     */
+    public byte[] renderJpeg(ImageEntry source, int width, int height) throws IOException {
+        return renderJpeg(source, width, height, null);
+    }
+
+    /**
+     * 縮圖後再經過 postProcess (例如濾鏡) 並編碼成 JPEG，記憶體預算不足時等待
+     *
+     * @param postProcess 可為 null，會額外預留一份輸出尺寸的像素記憶體
+     * @throws RejectedExecutionException 等待記憶體預算逾時
+     */
+    public byte[] renderJpeg(ImageEntry source, int width, int height, UnaryOperator<BufferedImage> postProcess) throws IOException {
+        long estimate = estimateBytes(source.width(), source.height(), width, height);
+        if (postProcess != null) {
+            estimate += (long) width * height * BYTES_PER_PIXEL;
+        }
+        return withBudget(estimate, () -> {
+            BufferedImage decoded = decode(source.file(), width, height);
+            BufferedImage output = Thumbnails.of(decoded).size(width, height).asBufferedImage();
+            if (postProcess != null) {
+                output = postProcess.apply(output);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            ImageIO.write(output, "jpeg", out);
+            return out.toByteArray();
+        });
+    }
+
+    /**
+     * 預估解碼與縮圖過程中同時存在的像素記憶體；尺寸未知時以目標尺寸的 16 倍估算
+     */
+    public long estimateBytes(int sourceWidth, int sourceHeight, int width, int height) {
+        long target = (long) width * height * BYTES_PER_PIXEL;
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            return target * 16;
+        }
+        int s = subsampling(sourceWidth, sourceHeight, width, height);
+        long decoded = (long) ((sourceWidth + s - 1) / s) * ((sourceHeight + s - 1) / s) * BYTES_PER_PIXEL;
+        // 縮圖結果與編碼用的緩衝
+        return decoded + target * 2;
+    }
+
+    /**
+     * 解碼接近目標尺寸的像素
+     */
+    public BufferedImage decode(Path file, int targetWidth, int targetHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = readerOf(in);
+            if (reader == null) {
+                throw new IOException("Unsupported image: " + file);
+            }
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int s = subsampling(sourceWidth, sourceHeight, targetWidth, targetHeight);
+                if (s > 1) {
+                    param.setSourceSubsampling(s, s, 0, 0);
+                    subsampled.increment();
+                }
+                BufferedImage image = reader.read(0, param);
+                decodes.increment();
+                sourcePixels.add((long) sourceWidth * sourceHeight);
+                decodedPixels.add((long) image.getWidth() * image.getHeight());
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 取得記憶體預算後執行，超過整個預算的單一工作會獨佔全部預算
+     */
+    public <T> T withBudget(long bytes, BudgetedTask<T> task) throws IOException {
+        int permits = (int) Math.min(budgetKb, Math.max(1, bytes / 1024));
+        try {
+            if (!budget.tryAcquire(permits)) {
+                waits.increment();
+                if (!budget.tryAcquire(permits, setting.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Image decode memory budget exhausted");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for image decode memory budget", e);
+        }
+        peakInUseKb.accumulate(inUseKb.addAndGet(permits));
+        try {
+            return task.run();
+        } finally {
+            inUseKb.addAndGet(-permits);
+            budget.release(permits);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "imageDecoder";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long source = sourcePixels.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("decodes", decodes.sum());
+        metrics.put("subsampled", subsampled.sum());
+        // 實際解碼的像素佔原圖像素的比例
+        metrics.put("decodedPixelRatio", source == 0 ? 0 : decodedPixels.sum() / (double) source);
+        metrics.put("budgetKb", budgetKb);
+        metrics.put("inUseKb", inUseKb.get());
+        metrics.put("peakInUseKb", peakInUseKb.get());
+        metrics.put("waits", waits.sum());
+        metrics.put("rejected", rejected.sum());
+        return metrics;
+    }
+
+    @FunctionalInterface
+    public interface BudgetedTask<T> {
+        T run() throws IOException;
+    }
+}
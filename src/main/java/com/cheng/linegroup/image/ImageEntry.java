@@ -0,0 +1,23 @@
+package com.cheng.linegroup.image;
+
+import java.nio.file.Path;
+
+/**
+ * 圖片目錄中的一個檔案
+ *
+ * @param name         相對於 image.base-path 的路徑，以 / 分隔
+ * @param urlPath      URL 編碼後的相對路徑，接在 image.domain 後即為圖片連結
+ * @param file         檔案絕對路徑
+ * @param size         檔案大小 (bytes)
+ * @param width        寬度，無法讀取時為 -1
+ * @param height       高度，無法讀取時為 -1
+ * @param lastModified 最後修改時間 (epoch millis)
+ * @author cheng
+ * @since 2026/10/17 19:40
+ **/
+public record ImageEntry(String name, String urlPath, Path file, long size, int width, int height, long lastModified) {
+
+    public boolean hasDimensions() {
+        return width > 0 && height > 0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.cheng.linegroup.image;
+
+import com.jhlabs.image.GaussianFilter;
+import com.jhlabs.image.GrayscaleFilter;
+import com.jhlabs.image.SharpenFilter;
+
+import java.awt.image.BufferedImageOp;
+import java.util.Locale;
+
+/**
+ * 可透過 /img/filter 使用的 JHLabs 濾鏡
+ *
+ * @author cheng
+ * @since 2026/10/17 21:00
+ **/
+public enum ImageFilter {
+
+    /**
+     * 高斯模糊，amount 為半徑
+     */
+    BLUR(40f, 5f, 10f, 20f, 40f, 70f, 100f) {
+        @Override
+        public BufferedImageOp create(float amount) {
+            return new GaussianFilter(amount);
+        }
+
+        @Override
+        public int margin(float amount) {
+            return (int) Math.ceil(amount);
+        }
+    },
+
+    /**
+     * 銳化 (3x3 卷積)
+     */
+    SHARPEN(0f, 0f) {
+        @Override
+        public BufferedImageOp create(float amount) {
+            return new SharpenFilter();
+        }
+
+        @Override
+        public int margin(float amount) {
+            return 1;
+        }
+    },
+
+    /**
+     * 灰階，逐像素處理不需要重疊
+     */
+    GRAYSCALE(0f, 0f) {
+        @Override
+        public BufferedImageOp create(float amount) {
+            return new GrayscaleFilter();
+        }
+
+        @Override
+        public int margin(float amount) {
+            return 0;
+        }
+    };
+
+    private final float defaultAmount;
+    private final float[] steps;
+
+    /**
+     * @param steps 允許的強度，由小到大
+     */
+    ImageFilter(float defaultAmount, float... steps) {
+        this.defaultAmount = defaultAmount;
+        this.steps = steps;
+    }
+
+    /**
+     * 濾鏡不是執行緒安全的，每個分塊各自建立
+     */
+    public abstract BufferedImageOp create(float amount);
+
+    /**
+     * @return 分塊需要向外多讀的像素數，讓分塊邊緣的結果與整張處理一致
+     */
+    public abstract int margin(float amount);
+
+    /**
+     * @param amount 可為 null
+     * @return 最接近的允許強度，每個濾鏡只有幾種強度，避免任意數值都產生不同的快取 key 與重新渲染
+     */
+    public float amountOf(Float amount) {
+        if (amount == null || amount.isNaN()) {
+            return defaultAmount;
+        }
+        float nearest = steps[0];
+        for (float step : steps) {
+            if (Math.abs(step - amount) < Math.abs(nearest - amount)) {
+                nearest = step;
+            }
+        }
+        return nearest;
+    }
+
+    public String path() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return 找不到時為 null
+     */
+    public static ImageFilter of(String path) {
+        for (ImageFilter filter : values()) {
+            if (filter.path().equals(path)) {
+                return filter;
+            }
+        }
+        return null;
+    }
+}
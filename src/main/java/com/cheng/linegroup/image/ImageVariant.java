@@ -0,0 +1,43 @@
+package com.cheng.linegroup.image;
+
+import java.util.Locale;
+
+/**
+ * 預先產生的圖片版本
+ *
+ * @author cheng
+ * @since 2026/10/17 20:40
+ **/
+public enum ImageVariant {
+
+    /**
+     * 限制最大邊長的原圖，用於 originalContentUrl
+     */
+    ORIGINAL,
+
+    /**
+     * 預覽圖，用於 previewImageUrl
+     */
+    PREVIEW,
+
+    /**
+     * 模糊的預告圖
+     */
+    TEASER;
+
+    public String path() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return 找不到時為 null
+     */
+    public static ImageVariant of(String path) {
+        for (ImageVariant variant : values()) {
+            if (variant.path().equals(path)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,340 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageVariantSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.google.common.hash.Hashing;
+import com.jhlabs.image.GaussianFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 在背景為圖片目錄中的每張圖預先產生 {@link ImageVariant}，讓 LINE 預覽時不必下載整張原圖。
+ * <p>
+ * 圖片目錄每次變更都會通知這裡，尚未處理過的圖片排入背景執行緒池平行產生；
+ * 檔名由 (相對路徑, 修改時間) 的 sha256 決定，檔案存在即代表已完成，因此重啟後只會補做缺少的部分，不需要另外記錄進度。
+ * 每張圖只解碼一次 (經過 {@link ImageDecoder} 的抽樣解碼與記憶體預算)，再由同一張解碼結果產生所有版本。
+ * <p>
+ * 原圖修改後產生新版本時刪除同一張圖的舊版本，原圖被刪除時一併刪除它的版本；
+ * 啟動時清掉不屬於目前任何一張圖的檔案 (例如停機期間被修改或刪除的圖)。
+ *
+ * @author cheng
+ * @since 2026/10/17 20:40
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageVariants implements MetricsSource {
+
+    private static final Pattern FILE_NAME = Pattern.compile("[0-9a-f]{64}\\.jpg");
+
+    @Value("${image.domain}")
+    private String domain;
+
+    private final ImageVariantSetting setting;
+    private final ImageCatalog imageCatalog;
+    private final ImageDecoder imageDecoder;
+
+    private Path dir;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 已確認所有版本都存在的 key，避免每次目錄變更都重新檢查檔案
+     */
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /**
+     * 每張圖 (相對路徑) 目前版本的 key，產生新版本時用來找出舊版本
+     */
+    private final Map<String, String> keysByName = new ConcurrentHashMap<>();
+
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAccumulator maxRenderNanos = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    public void start() {
+        if (!setting.isEnabled()) {
+            return;
+        }
+        dir = Paths.get(setting.getDir()).toAbsolutePath().normalize();
+        try {
+            for (ImageVariant variant : ImageVariant.values()) {
+                Files.createDirectories(dir.resolve(variant.path()));
+            }
+        } catch (IOException e) {
+            log.error("Create image variant dir failed, pre-rendering disabled, dir:{}, ERR:{}", dir, e.getMessage());
+            dir = null;
+            return;
+        }
+        int threads = setting.getThreads() > 0 ? setting.getThreads() : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("imageVariant_");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        imageCatalog.addListener(this::onCatalogChanged);
+        ImageCatalog.Snapshot snapshot = imageCatalog.snapshot();
+        removeOrphans(snapshot);
+        onCatalogChanged(snapshot);
+    }
+
+    private void onCatalogChanged(ImageCatalog.Snapshot snapshot) {
+        // 已被刪除的圖
+        for (Map.Entry<String, String> e : keysByName.entrySet()) {
+            if (snapshot.find(e.getKey()) == null && keysByName.remove(e.getKey(), e.getValue())) {
+                removeVariants(e.getValue());
+            }
+        }
+        int queued = 0;
+        for (ImageEntry entry : snapshot.images()) {
+            String key = keyOf(entry);
+            if (!completed.contains(key) && pending.add(key)) {
+                try {
+                    executor.execute(() -> render(entry, key));
+                    queued++;
+                } catch (RejectedExecutionException e) {
+                    pending.remove(key);
+                    return;
+                }
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} images for variant pre-rendering", queued);
+        }
+    }
+
+    private static String keyOf(ImageEntry entry) {
+        return Hashing.sha256().hashString(entry.name() + "|" + entry.lastModified(), StandardCharsets.UTF_8).toString();
+    }
+
+    private Path fileOf(ImageVariant variant, String key) {
+        return dir.resolve(variant.path()).resolve(key + ".jpg");
+    }
+
+    /**
+     * 原圖超過尺寸上限才需要產生限制尺寸的版本
+     */
+    private boolean needsCappedOriginal(ImageEntry entry) {
+        int max = setting.getOriginalMaxSize();
+        return !entry.hasDimensions() || entry.width() > max || entry.height() > max;
+    }
+
+    private void render(ImageEntry entry, String key) {
+        try {
+            boolean original = needsCappedOriginal(entry) && !Files.exists(fileOf(ImageVariant.ORIGINAL, key));
+            boolean preview = !Files.exists(fileOf(ImageVariant.PREVIEW, key));
+            boolean teaser = setting.isTeaserEnabled() && !Files.exists(fileOf(ImageVariant.TEASER, key));
+            if (original || preview || teaser) {
+                long start = System.nanoTime();
+                int decodeSize = original ? setting.getOriginalMaxSize() : setting.getPreviewSize();
+                imageDecoder.withBudget(imageDecoder.estimateBytes(entry.width(), entry.height(), decodeSize, decodeSize), () -> {
+                    BufferedImage decoded = imageDecoder.decode(entry.file(), decodeSize, decodeSize);
+                    if (original) {
+                        write(ImageVariant.ORIGINAL, key, fit(decoded, setting.getOriginalMaxSize()));
+                    }
+                    BufferedImage previewImage = fit(decoded, setting.getPreviewSize());
+                    if (preview) {
+                        write(ImageVariant.PREVIEW, key, previewImage);
+                    }
+                    if (teaser) {
+                        GaussianFilter filter = new GaussianFilter(setting.getTeaserRadius());
+                        write(ImageVariant.TEASER, key, filter.filter(previewImage, null));
+                    }
+                    return null;
+                });
+                long elapsed = System.nanoTime() - start;
+                rendered.increment();
+                renderNanos.add(elapsed);
+                maxRenderNanos.accumulate(elapsed);
+            }
+            ImageEntry current = imageCatalog.snapshot().find(entry.name());
+            if (current == null || !keyOf(current).equals(key)) {
+                // 產生期間原圖又被修改或刪除，這份已經過期
+                removeVariants(key);
+                return;
+            }
+            completed.add(key);
+            String previous = keysByName.put(entry.name(), key);
+            if (previous != null && !previous.equals(key)) {
+                removeVariants(previous);
+            }
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Pre-render image variants failed, image:{}, ERR:{}", entry.name(), ExceptionUtils.getStackTrace(e));
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    private void removeVariants(String key) {
+        completed.remove(key);
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                if (Files.deleteIfExists(fileOf(variant, key))) {
+                    removed.increment();
+                }
+            } catch (IOException e) {
+                log.warn("Remove stale image variant failed, variant:{}, key:{}, ERR:{}", variant, key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 啟動時刪除不屬於目前清單中任何一張圖的版本檔案與上次沒搬移完成的暫存檔
+     */
+    private void removeOrphans(ImageCatalog.Snapshot snapshot) {
+        Set<String> live = new HashSet<>(snapshot.size() * 2);
+        for (ImageEntry entry : snapshot.images()) {
+            live.add(keyOf(entry));
+        }
+        int count = 0;
+        for (ImageVariant variant : ImageVariant.values()) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir.resolve(variant.path()))) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    boolean orphan = FILE_NAME.matcher(fileName).matches()
+                            && !live.contains(fileName.substring(0, fileName.length() - ".jpg".length()));
+                    if ((orphan || fileName.endsWith(".tmp")) && Files.deleteIfExists(file)) {
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Remove orphan image variants failed, variant:{}, ERR:{}", variant, e.getMessage());
+            }
+        }
+        removed.add(count);
+        if (count > 0) {
+            log.info("Removed {} orphan image variant files", count);
+        }
+    }
+
+    /**
+     * 等比縮小到最大邊長不超過 max，已經夠小時直接回傳，不放大
+     */
+    private static BufferedImage fit(BufferedImage image, int max) throws IOException {
+        if (image.getWidth() <= max && image.getHeight() <= max) {
+            return image;
+        }
+        return Thumbnails.of(image).size(max, max).asBufferedImage();
+    }
+
+    private void write(ImageVariant variant, String key, BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        Thumbnails.of(image)
+                .scale(1.0)
+                .imageType(BufferedImage.TYPE_INT_RGB)
+                .outputFormat("jpg")
+                .outputQuality(setting.getQuality())
+                .toOutputStream(out);
+        Path file = fileOf(variant, key);
+        Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+        Files.write(tmp, out.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param fileName {sha256}.jpg
+     * @return 檔案不存在或名稱不合法時為 null
+     */
+    public Path resolve(ImageVariant variant, String fileName) {
+        if (dir == null || !FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        Path file = dir.resolve(variant.path()).resolve(fileName);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * 訊息使用的圖片連結，尚未產生的版本使用原圖連結
+     */
+    public Urls urlsOf(ImageEntry entry) {
+        String source = domain.concat(entry.urlPath());
+        String original = needsCappedOriginal(entry) ? urlOf(entry, ImageVariant.ORIGINAL, source) : source;
+        return new Urls(original, urlOf(entry, ImageVariant.PREVIEW, original));
+    }
+
+    /**
+     * @return 模糊預告圖連結，尚未產生時為 null
+     */
+    public String teaserUrl(ImageEntry entry) {
+        if (!setting.isTeaserEnabled()) {
+            return null;
+        }
+        return urlOf(entry, ImageVariant.TEASER, null);
+    }
+
+    private String urlOf(ImageEntry entry, ImageVariant variant, String fallback) {
+        if (dir == null || StringUtils.isBlank(setting.getPublicUrl())) {
+            return fallback;
+        }
+        String key = keyOf(entry);
+        if (!completed.contains(key) && !Files.exists(fileOf(variant, key))) {
+            return fallback;
+        }
+        return StringUtils.removeEnd(setting.getPublicUrl(), "/") + "/img/variant/" + variant.path() + "/" + key + ".jpg";
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            // 未完成的部分下次啟動時會依檔案是否存在補做
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "imageVariants";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long count = rendered.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("completed", completed.size());
+        metrics.put("pending", pending.size());
+        metrics.put("rendered", count);
+        metrics.put("failed", failed.sum());
+        metrics.put("removed", removed.sum());
+        metrics.put("avgRenderMs", count == 0 ? 0 : renderNanos.sum() / count / 1_000_000.0);
+        metrics.put("maxRenderMs", maxRenderNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    /**
+     * LINE 圖片訊息的兩個連結
+     */
+    public record Urls(String original, String preview) {
+    }
+}
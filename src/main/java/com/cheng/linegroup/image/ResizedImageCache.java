@@ -0,0 +1,333 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageResizeCacheSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 縮圖的兩層快取：記憶體 LRU (已編碼的 JPEG bytes) + 磁碟目錄。
+ * <p>
+ * 快取 key 由 (圖片, 寬, 高, 原圖修改時間) 組成，原圖被覆蓋後 key 自然改變，不需要主動失效；ETag 也由同一個 key 產生。
+ * 要求的寬高先往上取到 {@link ImageResizeCacheSetting#getSizeBuckets()} 的一級，任意尺寸的請求只會產生有限種縮圖。
+ * 同一個 key 同時有多個請求 miss 時，由 Guava Cache 的 {@code get(key, loader)} 保證只會有一個執行緒讀磁碟或縮圖，
+ * 其他執行緒等待同一個結果。
+ * <p>
+ * 磁碟層合計超過 disk-max-bytes 時依最後使用時間 (LRU) 刪除檔案；啟動時依檔案修改時間重建使用順序。
+ *
+ * @author cheng
+ * @since 2026/10/17 20:00
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResizedImageCache implements MetricsSource {
+
+    private final ImageCatalog imageCatalog;
+    private final ImageDecoder imageDecoder;
+    private final TiledFilterEngine tiledFilterEngine;
+    private final ImageResizeCacheSetting setting;
+
+    private Cache<String, byte[]> memory;
+    private Path diskDir;
+    private int[] buckets;
+
+    /**
+     * 磁碟檔案 (hash) 與大小，依最後使用順序排列；以自身為鎖
+     */
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAccumulator maxRenderNanos = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    public void init() {
+        memory = CacheBuilder.newBuilder()
+                .maximumWeight(setting.getMemoryMaxBytes())
+                .weigher((String key, byte[] data) -> data.length)
+                .recordStats()
+                .build();
+        buckets = setting.getSizeBuckets().stream().mapToInt(Integer::intValue).filter(b -> b > 0).sorted().distinct().toArray();
+        if (setting.isDiskEnabled()) {
+            diskDir = Paths.get(setting.getDiskDir()).toAbsolutePath().normalize();
+            try {
+                Files.createDirectories(diskDir);
+                loadDiskIndex();
+            } catch (IOException e) {
+                log.error("Create resize cache dir failed, disk cache disabled, dir:{}, ERR:{}", diskDir, e.getMessage());
+                diskDir = null;
+            }
+        }
+    }
+
+    /**
+     * 依修改時間由舊到新載入既有的快取檔，刪除上次沒搬移完成的暫存檔
+     */
+    private void loadDiskIndex() throws IOException {
+        Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".jpg")) {
+                    attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+                }
+            }
+        }
+        List<Path> files = new ArrayList<>(attributes.keySet());
+        files.sort(Comparator.comparing(f -> attributes.get(f).lastModifiedTime()));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            recordDiskWrite(name.substring(0, name.length() - ".jpg".length()), attributes.get(file).size());
+        }
+        log.info("Resize disk cache loaded, dir:{}, files:{}, bytes:{}", diskDir, diskIndex.size(), diskBytes);
+    }
+
+    /**
+     * 找出要輸出的縮圖，只計算 key 與 ETag，不讀取任何圖片
+     *
+     * @param imgName 不含副檔名的圖片名稱
+     * @return 找不到原圖時為 null
+     */
+    public Variant variant(String imgName, int width, int height) {
+        return variant(imgName, width, height, null, null);
+    }
+
+    /**
+     * 找出要輸出的濾鏡縮圖，只計算 key 與 ETag，不讀取任何圖片
+     *
+     * @param imgName 不含副檔名的圖片名稱
+     * @param width   要求的寬，實際輸出往上取到最接近的一級
+     * @param height  要求的高，實際輸出往上取到最接近的一級
+     * @param filter  可為 null
+     * @param amount  濾鏡強度，null 為預設值
+     * @return 找不到原圖時為 null
+     */
+    public Variant variant(String imgName, int width, int height, ImageFilter filter, Float amount) {
+        if (width <= 0 || height <= 0 || width > setting.getMaxDimension() || height > setting.getMaxDimension()) {
+            throw new IllegalArgumentException("width/height must be between 1 and " + setting.getMaxDimension());
+        }
+        ImageEntry source = imageCatalog.snapshot().find(imgName + ".jpg");
+        if (source == null) {
+            return null;
+        }
+        width = bucket(width);
+        height = bucket(height);
+        float filterAmount = filter != null ? filter.amountOf(amount) : 0f;
+        String key = source.name() + "|" + width + "x" + height + "|" + source.lastModified()
+                + (filter != null ? "|" + filter.path() + ":" + filterAmount : "");
+        String hash = Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+        return new Variant(source, width, height, filter, filterAmount, key, hash);
+    }
+
+    /**
+     * @return 不小於 size 的最小一級；超過最大一級時為最大一級，沒有設定分級時為 size
+     */
+    int bucket(int size) {
+        for (int b : buckets) {
+            if (b >= size) {
+                return b;
+            }
+        }
+        return buckets.length > 0 ? buckets[buckets.length - 1] : size;
+    }
+
+    /**
+     * 304 Not Modified 的次數，由 controller 回報，不計入 requests
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    /**
+     * @return 縮圖 (JPEG)
+     * @throws java.util.concurrent.RejectedExecutionException 等待解碼記憶體預算逾時
+     */
+    public byte[] get(Variant variant) throws IOException {
+        requests.increment();
+        try {
+            return memory.get(variant.key(), () -> load(variant));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] load(Variant variant) throws IOException {
+        Path file = diskDir != null ? diskDir.resolve(variant.hash() + ".jpg") : null;
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                byte[] data = Files.readAllBytes(file);
+                diskHits.increment();
+                recordDiskRead(variant.hash(), data.length);
+                return data;
+            } catch (NoSuchFileException e) {
+                // 剛好被淘汰，重新縮圖
+                forgetDisk(variant.hash());
+            }
+        }
+
+        long start = System.nanoTime();
+        byte[] data = variant.filter() == null
+                ? imageDecoder.renderJpeg(variant.source(), variant.width(), variant.height())
+                : imageDecoder.renderJpeg(variant.source(), variant.width(), variant.height(),
+                img -> tiledFilterEngine.apply(img, variant.filter(), variant.amount()));
+        long elapsed = System.nanoTime() - start;
+        renders.increment();
+        renderNanos.add(elapsed);
+        maxRenderNanos.accumulate(elapsed);
+
+        if (file != null) {
+            try {
+                // 先寫暫存檔再搬移，其他執行緒或機器不會讀到寫一半的檔案
+                Path tmp = Files.createTempFile(diskDir, variant.hash(), ".tmp");
+                Files.write(tmp, data);
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                recordDiskWrite(variant.hash(), data.length);
+            } catch (IOException e) {
+                log.warn("Write resize cache failed, file:{}, ERR:{}", file, e.getMessage());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 更新使用順序；其他機器寫入的檔案第一次讀到時才加入
+     */
+    private void recordDiskRead(String hash, long size) {
+        synchronized (diskIndex) {
+            if (diskIndex.get(hash) != null) {
+                return;
+            }
+        }
+        recordDiskWrite(hash, size);
+    }
+
+    private void recordDiskWrite(String hash, long size) {
+        List<String> victims = new ArrayList<>();
+        synchronized (diskIndex) {
+            Long previous = diskIndex.put(hash, size);
+            diskBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+            while (diskBytes > setting.getDiskMaxBytes() && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(hash)) {
+                    continue;
+                }
+                diskBytes -= eldest.getValue();
+                victims.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String victim : victims) {
+            try {
+                Files.deleteIfExists(diskDir.resolve(victim + ".jpg"));
+                diskEvictions.increment();
+            } catch (IOException e) {
+                log.warn("Evict resize cache failed, hash:{}, ERR:{}", victim, e.getMessage());
+            }
+        }
+    }
+
+    private void forgetDisk(String hash) {
+        synchronized (diskIndex) {
+            Long size = diskIndex.remove(hash);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "imageResizeCache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        CacheStats stats = memory.stats();
+        long total = requests.sum();
+        long renderCount = renders.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", total);
+        // 304 不讀取縮圖，另外計算
+        metrics.put("notModified", notModified.sum());
+        metrics.put("memoryHits", stats.hitCount());
+        metrics.put("memoryHitRatio", stats.hitRate());
+        metrics.put("diskHits", diskHits.sum());
+        metrics.put("renders", renderCount);
+        // 不需要重新縮圖的比例 (記憶體 + 磁碟)
+        metrics.put("hitRatio", total == 0 ? 0 : (total - renderCount) / (double) total);
+        metrics.put("avgRenderMs", renderCount == 0 ? 0 : renderNanos.sum() / renderCount / 1_000_000.0);
+        metrics.put("maxRenderMs", maxRenderNanos.get() / 1_000_000.0);
+        metrics.put("memoryEntries", memory.size());
+        metrics.put("evictions", stats.evictionCount());
+        synchronized (diskIndex) {
+            metrics.put("diskEntries", diskIndex.size());
+            metrics.put("diskBytes", diskBytes);
+        }
+        metrics.put("diskEvictions", diskEvictions.sum());
+        return metrics;
+    }
+
+    /**
+     * 一張原圖的某個尺寸 (與濾鏡)
+     *
+     * @param width  取級後的寬
+     * @param height 取級後的高
+     * @param filter 沒有濾鏡時為 null
+     * @param key    快取 key
+     * @param hash key 的 sha256，作為磁碟檔名與 ETag
+     */
+    public record Variant(ImageEntry source, int width, int height, ImageFilter filter, float amount, String key, String hash) {
+
+        public String etag() {
+            return "\"" + hash.substring(0, 32) + "\"";
+        }
+
+        public long lastModified() {
+            return source.lastModified();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.contants.RedisPrefix;
+import com.cheng.linegroup.common.domain.SentImageTracking;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.google.common.hash.Hashing;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 bitmap 記錄每個群組 (私訊則為每個使用者) 當天已發送過的圖片，另以計數器記錄當天的發送次數。
+ * <p>
+ * 每張圖片的 bit 由檔名的 hash 決定 ({@link #bitOf})，不依賴圖片清單的順序，新增或刪除圖片不會讓其他圖片的紀錄錯位；
+ * 不同檔名落在同一個 bit 時只會被當成一起發送過，不會重複發送。
+ * 抽圖時只從尚未發送的圖片中挑選，當天不會重複；每日上限依發送次數判斷，圖片張數少於上限時仍會達到上限。
+ * <p>
+ * bitmap 與計數器依日期分組，換日時直接換成新的一組 (key rotation)，舊的一組由 GC 回收。
+ * 開啟 Redis 鏡像時以 {@code image:sent:{yyyyMMdd}:{scope}} 的 Redis bitmap (SETBIT) 與
+ * {@code image:sent-count:{yyyyMMdd}:{scope}} 的計數器 (INCR) 為準，每次判斷都讀取 Redis，多台機器之間不會各算各的；
+ * 讀取失敗時退回本機的紀錄。
+ *
+ * @author cheng
+ * @since 2026/10/17 19:20
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SentImageTracker implements MetricsSource {
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final SentImageTracking config;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private Clock clock = Clock.systemUTC();
+    private volatile Day today;
+
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    /**
+     * @param groupId 群組 id，私訊為 null
+     * @param userId  使用者 id
+     * @return bitmap 的 scope，私訊以使用者區分
+     */
+    public static String scopeOf(String groupId, String userId) {
+        return groupId != null ? groupId : RedisPrefix.PERSONAL + ":" + userId;
+    }
+
+    /**
+     * @param name   圖片相對路徑
+     * @param idBits bitmap 大小為 2^idBits
+     * @return 圖片在 bitmap 中的位置，只由檔名決定
+     */
+    static int bitOf(String name, int idBits) {
+        return Hashing.murmur3_32_fixed().hashString(name, StandardCharsets.UTF_8).asInt() & ((1 << idBits) - 1);
+    }
+
+    /**
+     * @return 今天已發送的次數
+     */
+    public int sentCount(String scope) {
+        Day day = current();
+        Scope local = day.scope(scope);
+        int count;
+        synchronized (local) {
+            count = local.count;
+        }
+        if (config.isRedisMirror()) {
+            String key = countKey(day, scope);
+            try {
+                String value = stringRedisTemplate.opsForValue().get(key);
+                return value != null ? Math.max(count, Integer.parseInt(value)) : count;
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("Read sent image count from redis failed, key:{}, ERR:{}", key, e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 是否已達每日上限
+     */
+    public boolean isLimitReached(String scope) {
+        return sentCount(scope) > config.getDailyLimit();
+    }
+
+    /**
+     * 從今天尚未發送的圖片中隨機挑一張，全部都發過時才從所有圖片中挑選
+     *
+     * @param images 目前的圖片清單，不可為空
+     * @return 挑中的圖片
+     */
+    public ImageEntry pickUnsent(String scope, ImageCatalog.Snapshot images) {
+        draws.increment();
+        Day day = current();
+        BitSet sent = sentBits(day, scope);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // reservoir sampling：只走訪一次，從未發送的圖片中等機率挑選
+        ImageEntry picked = null;
+        int unsent = 0;
+        for (int i = 0; i < images.size(); i++) {
+            ImageEntry image = images.get(i);
+            if (!sent.get(bitOf(image.name(), config.getIdBits())) && random.nextInt(++unsent) == 0) {
+                picked = image;
+            }
+        }
+        if (picked == null) {
+            exhausted.increment();
+            return images.get(random.nextInt(images.size()));
+        }
+        return picked;
+    }
+
+    /**
+     * 記錄圖片已發送，發送次數加一
+     */
+    public void markSent(String scope, ImageEntry image) {
+        Day day = current();
+        int bit = bitOf(image.name(), config.getIdBits());
+        Scope local = day.scope(scope);
+        synchronized (local) {
+            local.bits.set(bit);
+            local.count++;
+        }
+        if (config.isRedisMirror()) {
+            String key = redisKey(day, scope);
+            String countKey = countKey(day, scope);
+            try {
+                stringRedisTemplate.opsForValue().setBit(key, bit, true);
+                stringRedisTemplate.opsForValue().increment(countKey);
+                stringRedisTemplate.expire(key, config.getRedisTtl());
+                stringRedisTemplate.expire(countKey, config.getRedisTtl());
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("Mirror sent image to redis failed, key:{}, ERR:{}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return 今天已發送的 bit，開啟 Redis 鏡像時合併 Redis 上其他機器的紀錄
+     */
+    private BitSet sentBits(Day day, String scope) {
+        Scope local = day.scope(scope);
+        BitSet bits;
+        synchronized (local) {
+            bits = (BitSet) local.bits.clone();
+        }
+        if (config.isRedisMirror()) {
+            bits.or(load(redisKey(day, scope)));
+        }
+        return bits;
+    }
+
+    /**
+     * 換日時換成新的一組 bitmap
+     */
+    private Day current() {
+        LocalDate date = LocalDate.now(clock.withZone(ZoneId.of(config.getZoneId())));
+        Day day = today;
+        if (day != null && day.date.equals(date)) {
+            return day;
+        }
+        synchronized (this) {
+            if (today == null || !today.date.equals(date)) {
+                if (today != null) {
+                    log.info("Rotate sent image bitmaps {} -> {}, scopes:{}", today.date, date, today.scopes.size());
+                    rotations.increment();
+                }
+                today = new Day(date);
+            }
+            return today;
+        }
+    }
+
+    private static String redisKey(Day day, String scope) {
+        return RedisPrefix.IMAGE_SENT + day.date.format(DAY_FORMAT) + ":" + scope;
+    }
+
+    private static String countKey(Day day, String scope) {
+        return RedisPrefix.IMAGE_SENT_COUNT + day.date.format(DAY_FORMAT) + ":" + scope;
+    }
+
+    /**
+     * 讀取 Redis bitmap，Redis 的 bit 0 為第一個 byte 的最高位，與 {@link BitSet#valueOf(byte[])} 相反，需逐位轉換
+     */
+    private BitSet load(String key) {
+        try {
+            byte[] raw = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8)));
+            BitSet bits = new BitSet();
+            if (raw == null) {
+                return bits;
+            }
+            for (int i = 0; i < raw.length; i++) {
+                int b = raw[i] & 0xFF;
+                for (int j = 0; b != 0 && j < 8; j++) {
+                    if ((b & (0x80 >>> j)) != 0) {
+                        bits.set(i * 8 + j);
+                    }
+                }
+            }
+            return bits;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("Load sent image bitmap from redis failed, key:{}, ERR:{}", key, e.getMessage());
+            return new BitSet();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sentImageTracker";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Day day = today;
+        long bytes = 0;
+        if (day != null) {
+            for (Scope scope : day.scopes.values()) {
+                bytes += scope.bits.size() / 8;
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("date", day != null ? day.date.toString() : null);
+        metrics.put("scopes", day != null ? day.scopes.size() : 0);
+        metrics.put("bitmapBytes", bytes);
+        metrics.put("draws", draws.sum());
+        metrics.put("exhausted", exhausted.sum());
+        metrics.put("rotations", rotations.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        return metrics;
+    }
+
+    private static final class Day {
+        private final LocalDate date;
+        private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+
+        private Day(LocalDate date) {
+            this.date = date;
+        }
+
+        private Scope scope(String scope) {
+            return scopes.computeIfAbsent(scope, k -> new Scope());
+        }
+    }
+
+    /**
+     * 單一 scope 當天在本機的紀錄，以自身為鎖
+     */
+    private static final class Scope {
+        private final BitSet bits = new BitSet();
+        private int count;
+    }
+}
@@ -0,0 +1,259 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageFilterSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.Raster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 將圖片切成互相重疊的分塊，在 {@link ForkJoinPool} 上平行套用濾鏡後再拼回整張。
+ * <p>
+ * 每個分塊向外多讀 {@link ImageFilter#margin(float)} 個像素，濾鏡在分塊邊緣的取樣因此與整張處理相同，
+ * 拼回時只複製中間不含重疊的部分。分塊的來源直接使用 {@link BufferedImage#getSubimage} (與原圖共用像素)，
+ * 完整尺寸 (tileSize + 2 * margin) 分塊的輸出暫存影像放回 pool 重複使用；圖片邊緣的分塊尺寸隨圖片大小變化，
+ * 每次重新配置，不放入 pool，pool 的種類因此只隨 margin (濾鏡與強度) 變化，合計大小另以 pooled-max-bytes 限制。
+ *
+ * @author cheng
+ * @since 2026/10/17 21:00
+ **/
+@Slf4j
+@Component
+public class TiledFilterEngine implements MetricsSource {
+
+    private final ImageFilterSetting setting;
+    private final ForkJoinPool pool;
+
+    /**
+     * 完整尺寸分塊的 pool，key 為 (邊長, 類型) 組成的 long
+     */
+    private final Map<Long, BufferPool> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final LongAdder images = new LongAdder();
+    private final LongAdder tiles = new LongAdder();
+    private final LongAdder bufferHits = new LongAdder();
+    private final LongAdder bufferMisses = new LongAdder();
+    private final LongAdder edgeTiles = new LongAdder();
+    private final LongAdder filterNanos = new LongAdder();
+    private final LongAccumulator maxFilterNanos = new LongAccumulator(Math::max, 0);
+
+    public TiledFilterEngine(ImageFilterSetting setting) {
+        this.setting = setting;
+        int parallelism = setting.getParallelism() > 0 ? setting.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("imageFilter_" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 套用濾鏡，回傳新的圖片，不修改原圖
+     *
+     * @param amount 濾鏡強度，需先經過 {@link ImageFilter#amountOf(Float)}
+     */
+    public BufferedImage apply(BufferedImage source, ImageFilter filter, float amount) {
+        long start = System.nanoTime();
+        BufferedImage src = normalize(source);
+        BufferedImage dest = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        int tileSize = Math.max(16, setting.getTileSize());
+        int margin = filter.margin(amount);
+        int columns = (src.getWidth() + tileSize - 1) / tileSize;
+        int rows = (src.getHeight() + tileSize - 1) / tileSize;
+
+        pool.invoke(new TileTask(src, dest, filter, amount, tileSize, margin, columns, 0, columns * rows));
+
+        long elapsed = System.nanoTime() - start;
+        images.increment();
+        tiles.add((long) columns * rows);
+        filterNanos.add(elapsed);
+        maxFilterNanos.accumulate(elapsed);
+        return dest;
+    }
+
+    /**
+     * 轉成 INT_RGB / INT_ARGB，JHLabs 濾鏡以 int 像素處理，分塊與輸出也才能使用相同的 raster 格式
+     */
+    private static BufferedImage normalize(BufferedImage image) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (image.getType() == type) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    private void filterTile(BufferedImage src, BufferedImage dest, ImageFilter filter, float amount,
+                            int tileSize, int margin, int column, int row) {
+        int x = column * tileSize;
+        int y = row * tileSize;
+        int width = Math.min(tileSize, src.getWidth() - x);
+        int height = Math.min(tileSize, src.getHeight() - y);
+        // 向外擴張 margin，但不超出原圖
+        int x0 = Math.max(0, x - margin);
+        int y0 = Math.max(0, y - margin);
+        int x1 = Math.min(src.getWidth(), x + width + margin);
+        int y1 = Math.min(src.getHeight(), y + height + margin);
+
+        BufferedImage input = src.getSubimage(x0, y0, x1 - x0, y1 - y0);
+        int side = tileSize + 2 * margin;
+        if (x1 - x0 != side || y1 - y0 != side) {
+            edgeTiles.increment();
+            BufferedImage output = new BufferedImage(x1 - x0, y1 - y0, src.getType());
+            filterInto(input, output, filter, amount, dest, x - x0, y - y0, x, y, width, height);
+            return;
+        }
+        BufferPool bufferPool = buffers.computeIfAbsent(keyOf(side, src.getType()), k -> new BufferPool());
+        BufferedImage output = bufferPool.borrow(side, src.getType());
+        try {
+            filterInto(input, output, filter, amount, dest, x - x0, y - y0, x, y, width, height);
+        } finally {
+            bufferPool.giveBack(output);
+        }
+    }
+
+    /**
+     * 套用濾鏡到 output，再把不含重疊的部分 (output 中的 innerX, innerY 起) 複製到 dest 的 (x, y)
+     */
+    private static void filterInto(BufferedImage input, BufferedImage output, ImageFilter filter, float amount, BufferedImage dest,
+                                   int innerX, int innerY, int x, int y, int width, int height) {
+        filter.create(amount).filter(input, output);
+        Raster inner = output.getRaster().createChild(innerX, innerY, width, height, 0, 0, null);
+        dest.getRaster().setRect(x, y, inner);
+    }
+
+    private static long keyOf(int side, int type) {
+        return ((long) side << 8) | type;
+    }
+
+    /**
+     * INT_RGB / INT_ARGB 每個像素 4 bytes
+     */
+    private static long bytesOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "imageFilter";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long count = images.sum();
+        int pooled = 0;
+        for (BufferPool bufferPool : buffers.values()) {
+            pooled += bufferPool.size.get();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("images", count);
+        metrics.put("tiles", tiles.sum());
+        metrics.put("parallelism", pool.getParallelism());
+        metrics.put("avgFilterMs", count == 0 ? 0 : filterNanos.sum() / count / 1_000_000.0);
+        metrics.put("maxFilterMs", maxFilterNanos.get() / 1_000_000.0);
+        metrics.put("pooledBuffers", pooled);
+        metrics.put("pooledBytes", pooledBytes.get());
+        metrics.put("bufferHits", bufferHits.sum());
+        metrics.put("bufferMisses", bufferMisses.sum());
+        metrics.put("edgeTiles", edgeTiles.sum());
+        return metrics;
+    }
+
+    /**
+     * 完整尺寸分塊輸出用的暫存影像
+     */
+    private final class BufferPool {
+        private final Queue<BufferedImage> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private BufferedImage borrow(int side, int type) {
+            BufferedImage image = idle.poll();
+            if (image != null) {
+                size.decrementAndGet();
+                pooledBytes.addAndGet(-bytesOf(image));
+                bufferHits.increment();
+                return image;
+            }
+            bufferMisses.increment();
+            return new BufferedImage(side, side, type);
+        }
+
+        private void giveBack(BufferedImage image) {
+            long bytes = bytesOf(image);
+            if (size.incrementAndGet() > setting.getPooledBuffersPerSize()) {
+                size.decrementAndGet();
+                return;
+            }
+            if (pooledBytes.addAndGet(bytes) > setting.getPooledMaxBytes()) {
+                pooledBytes.addAndGet(-bytes);
+                size.decrementAndGet();
+                return;
+            }
+            idle.offer(image);
+        }
+    }
+
+    /**
+     * 以二分法拆分分塊範圍 [from, to)
+     */
+    private final class TileTask extends RecursiveAction {
+        private final BufferedImage src;
+        private final BufferedImage dest;
+        private final ImageFilter filter;
+        private final float amount;
+        private final int tileSize;
+        private final int margin;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        private TileTask(BufferedImage src, BufferedImage dest, ImageFilter filter, float amount,
+                         int tileSize, int margin, int columns, int from, int to) {
+            this.src = src;
+            this.dest = dest;
+            this.filter = filter;
+            this.amount = amount;
+            this.tileSize = tileSize;
+            this.margin = margin;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                filterTile(src, dest, filter, amount, tileSize, margin, from % columns, from / columns);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileTask(src, dest, filter, amount, tileSize, margin, columns, from, mid),
+                    new TileTask(src, dest, filter, amount, tileSize, margin, columns, mid, to));
+        }
+    }
+}
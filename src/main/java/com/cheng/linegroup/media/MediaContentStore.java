@@ -0,0 +1,361 @@
+package com.cheng.linegroup.media;
+
+import com.cheng.linegroup.common.domain.MediaStoreSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 以內容 hash 定址的訊息內容儲存。
+ * <p>
+ * 下載的內容直接以 {@link FileChannel#transferFrom} 串流寫入暫存檔並同時計算 sha256，完成後搬移到 blobs/{hash 前兩碼}/{hash}；
+ * 相同內容 (例如同一張圖被轉傳到多個群組) 只會存一份。messageId 與 hash 的對應寫在 ids/{messageId}，重啟後仍可查詢。
+ * 整個過程不會把內容讀進 heap。
+ * <p>
+ * 預先下載 ({@link MediaPrefetcher}) 會把每則圖片、影音訊息都存下來，因此定期清理：
+ * 超過 {@link MediaStoreSetting#getRetention()} 的 messageId 對應被刪除，沒有對應指向的內容跟著刪除；
+ * blobs/ 總大小超過 {@link MediaStoreSetting#getMaxBytes()} 時再從最久沒有被儲存的內容開始刪除。
+ * 相同內容再次儲存時會更新檔案的修改時間，保留期限從最後一次儲存重新計算。
+ *
+ * @author cheng
+ * @since 2026/10/17 21:20
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaContentStore implements MetricsSource {
+
+    private static final Pattern MESSAGE_ID = Pattern.compile("[0-9A-Za-z_-]{1,64}");
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    private final MediaStoreSetting setting;
+
+    private Path blobDir;
+    private Path idDir;
+    private Path tmpDir;
+    private Cache<String, StoredMedia> index;
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * 寫入 blob 與 messageId 對應時持有，清理刪除 blob 前也要持有，避免刪掉剛被重複使用的內容
+     */
+    private final Object commitLock = new Object();
+
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder expiredIds = new LongAdder();
+    private final LongAdder removedBlobs = new LongAdder();
+    private final LongAdder evictedBlobs = new LongAdder();
+    private final LongAdder removedBytes = new LongAdder();
+    private volatile long blobBytes;
+    private volatile int blobCount;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(setting.getDir()).toAbsolutePath().normalize();
+        blobDir = Files.createDirectories(root.resolve("blobs"));
+        idDir = Files.createDirectories(root.resolve("ids"));
+        tmpDir = Files.createDirectories(root.resolve("tmp"));
+        index = CacheBuilder.newBuilder().maximumSize(setting.getIndexCacheSize()).build();
+        long interval = setting.getCleanupInterval().toMillis();
+        cleaner = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mediaStoreCleanup_"));
+        cleaner.scheduleWithFixedDelay(this::cleanupQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 串流寫入內容，讀完 in 後回傳；in 由呼叫端關閉
+     *
+     * @param messageId   訊息 id
+     * @param contentType Content-Type
+     * @param in          內容
+     */
+    public StoredMedia store(String messageId, String contentType, InputStream in) throws IOException {
+        requireValidId(messageId);
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(tmpDir, "media", ".part");
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(in, digest));
+             FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            long n;
+            while ((n = target.transferFrom(source, size, TRANSFER_CHUNK)) > 0) {
+                size += n;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String hash = HexFormat.of().formatHex(digest.digest());
+        Path file = blobPath(hash);
+        StoredMedia media = new StoredMedia(messageId, hash, contentType, size, file);
+        synchronized (commitLock) {
+            if (Files.exists(file)) {
+                deduplicated.increment();
+                Files.deleteIfExists(tmp);
+                // 保留期限從最後一次儲存重新計算
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.createDirectories(file.getParent());
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                stored.increment();
+                bytesWritten.add(size);
+            }
+            writeIndex(media);
+        }
+        index.put(messageId, media);
+        return media;
+    }
+
+    /**
+     * @return 尚未儲存或內容已被刪除時為 null
+     */
+    public StoredMedia find(String messageId) {
+        if (messageId == null || !MESSAGE_ID.matcher(messageId).matches()) {
+            return null;
+        }
+        StoredMedia media = index.getIfPresent(messageId);
+        if (media == null) {
+            media = readIndex(messageId);
+            if (media != null) {
+                index.put(messageId, media);
+            }
+        }
+        return media != null && Files.isRegularFile(media.file()) ? media : null;
+    }
+
+    /**
+     * 刪除過期的 messageId 對應與沒有對應指向的內容，總大小超過上限時再從最舊的內容開始刪除
+     *
+     * @return 刪除的內容數
+     */
+    public int cleanup() throws IOException {
+        long now = System.currentTimeMillis();
+        long expireBefore = now - setting.getRetention().toMillis();
+
+        Map<String, List<Path>> idsByHash = new HashMap<>();
+        try (DirectoryStream<Path> ids = Files.newDirectoryStream(idDir)) {
+            for (Path id : ids) {
+                if (lastModified(id) < expireBefore) {
+                    deleteId(id);
+                    expiredIds.increment();
+                    continue;
+                }
+                String hash = hashOf(id);
+                if (hash != null) {
+                    idsByHash.computeIfAbsent(hash, k -> new ArrayList<>()).add(id);
+                }
+            }
+        }
+
+        List<Blob> blobs = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(blobDir, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                blobs.add(new Blob(file, lastModified(file), Files.size(file)));
+            }
+        }
+        blobs.sort(Comparator.comparingLong(Blob::lastModified));
+
+        int removed = 0;
+        int evicted = 0;
+        long total = 0;
+        List<Blob> live = new ArrayList<>();
+        for (Blob blob : blobs) {
+            // 剛搬移完成的內容可能還沒寫入 messageId 對應，只刪除超過期限的
+            if (!idsByHash.containsKey(blob.hash()) && blob.lastModified() < expireBefore) {
+                if (deleteBlob(blob)) {
+                    removedBlobs.increment();
+                    removed++;
+                }
+            } else {
+                live.add(blob);
+                total += blob.size();
+            }
+        }
+        for (int i = 0; i < live.size() && total > setting.getMaxBytes(); i++) {
+            Blob blob = live.get(i);
+            if (deleteBlob(blob)) {
+                for (Path id : idsByHash.getOrDefault(blob.hash(), List.of())) {
+                    deleteId(id);
+                }
+                evictedBlobs.increment();
+                evicted++;
+                total -= blob.size();
+            }
+        }
+        blobBytes = total;
+        blobCount = live.size() - evicted;
+        removed += evicted;
+
+        long staleBefore = now - setting.getCleanupInterval().toMillis();
+        try (DirectoryStream<Path> tmps = Files.newDirectoryStream(tmpDir)) {
+            for (Path tmp : tmps) {
+                if (lastModified(tmp) < staleBefore) {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Media store cleanup, removed:{}, remaining:{} ({} bytes)", removed, blobCount, total);
+        }
+        return removed;
+    }
+
+    private void cleanupQuietly() {
+        try {
+            cleanup();
+        } catch (Exception e) {
+            log.warn("Media store cleanup failed, ERR:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 掃描後又被儲存 (修改時間變了) 的內容不刪除
+     */
+    private boolean deleteBlob(Blob blob) throws IOException {
+        synchronized (commitLock) {
+            if (lastModified(blob.file()) != blob.lastModified()) {
+                return false;
+            }
+            if (!Files.deleteIfExists(blob.file())) {
+                return false;
+            }
+        }
+        removedBytes.add(blob.size());
+        return true;
+    }
+
+    private void deleteId(Path id) throws IOException {
+        Files.deleteIfExists(id);
+        index.invalidate(id.getFileName().toString());
+    }
+
+    private static String hashOf(Path id) {
+        try (Stream<String> lines = Files.lines(id, StandardCharsets.UTF_8)) {
+            return lines.findFirst().orElse(null);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 檔案已不存在時為 -1
+     */
+    private static long lastModified(Path file) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void writeIndex(StoredMedia media) throws IOException {
+        Path tmp = Files.createTempFile(tmpDir, media.messageId(), ".id");
+        Files.write(tmp, List.of(media.hash(), media.contentType(), String.valueOf(media.size())), StandardCharsets.UTF_8);
+        Files.move(tmp, idDir.resolve(media.messageId()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private StoredMedia readIndex(String messageId) {
+        Path file = idDir.resolve(messageId);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            String hash = lines.get(0);
+            return new StoredMedia(messageId, hash, lines.get(1), Long.parseLong(lines.get(2)), blobPath(hash));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Read media index failed, messageId:{}, ERR:{}", messageId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void requireValidId(String messageId) {
+        if (messageId == null || !MESSAGE_ID.matcher(messageId).matches()) {
+            throw new IllegalArgumentException("Invalid messageId: " + messageId);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "mediaStore";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("stored", stored.sum());
+        metrics.put("deduplicated", deduplicated.sum());
+        metrics.put("bytesWritten", bytesWritten.sum());
+        metrics.put("indexCached", index.size());
+        metrics.put("expiredIds", expiredIds.sum());
+        metrics.put("removedBlobs", removedBlobs.sum());
+        metrics.put("evictedBlobs", evictedBlobs.sum());
+        metrics.put("removedBytes", removedBytes.sum());
+        metrics.put("blobCount", blobCount);
+        metrics.put("blobBytes", blobBytes);
+        return metrics;
+    }
+
+    private record Blob(Path file, long lastModified, long size) {
+        private String hash() {
+            return file.getFileName().toString();
+        }
+    }
+}
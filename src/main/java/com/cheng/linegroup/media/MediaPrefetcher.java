@@ -0,0 +1,312 @@
+package com.cheng.linegroup.media;
+
+import com.cheng.linegroup.api.response.MessageContentResponse;
+import com.cheng.linegroup.common.domain.MediaPrefetchSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.services.LineService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 收到圖片、音訊、影片訊息時預先把內容下載到 {@link MediaContentStore}。
+ * <p>
+ * LINE 只保存訊息內容一段時間，等到需要時才下載常常已經取不到 (404 / 410)，因此在事件進來時就排入下載。
+ * 下載由固定數量的執行緒處理，等待中的工作有上限，滿了直接放棄，不會拖慢 webhook lane。
+ * <p>
+ * 音訊、影片需要等 LINE 轉檔完成才能下載：先查詢轉檔狀態，processing 時交給排程器以指數退避重新排入，
+ * 等待期間不佔用下載執行緒；succeeded 才下載，failed 或超過 {@link MediaPrefetchSetting#getMaxWait()} 則放棄。
+ *
+ * @author cheng
+ * @since 2026/10/17 21:40
+ **/
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaPrefetcher implements MetricsSource {
+
+    private static final String STATUS_SUCCEEDED = "succeeded";
+    private static final String STATUS_PROCESSING = "processing";
+    private static final String PROVIDER_EXTERNAL = "external";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final MediaPrefetchSetting setting;
+    private final MediaContentStore mediaContentStore;
+    private final LineService lineService;
+
+    /**
+     * 等待下載或轉檔中的 messageId，避免重送的事件重複下載
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder downloaded = new LongAdder();
+    private final LongAdder downloadedBytes = new LongAdder();
+    private final LongAdder downloadNanos = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expiryMisses = new LongAdder();
+    private final LongAdder statusPolls = new LongAdder();
+    private final AtomicInteger transcoding = new AtomicInteger();
+    private final LongAdder queueLagMs = new LongAdder();
+    private final LongAdder queueLagSamples = new LongAdder();
+    private final LongAccumulator maxQueueLagMs = new LongAccumulator(Math::max, 0);
+    private final LongAdder eventLagMs = new LongAdder();
+    private final LongAccumulator maxEventLagMs = new LongAccumulator(Math::max, 0);
+
+    private ThreadPoolExecutor downloader;
+    private ScheduledExecutorService poller;
+
+    @PostConstruct
+    public void start() {
+        int concurrency = Math.max(1, setting.getConcurrency());
+        downloader = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, setting.getQueueCapacity())),
+                new CustomizableThreadFactory("mediaPrefetch_"));
+        poller = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mediaPrefetchPoller_"));
+    }
+
+    /**
+     * 排入預先下載，內容由外部提供、已下載過或正在下載時略過
+     *
+     * @param event webhook 訊息事件
+     * @param type  訊息類型，音訊、影片會先等待轉檔完成
+     */
+    public void enqueue(WebhookEvent.Event event, MessageType type) {
+        WebhookEvent.Event.Message message = event.getMessage();
+        if (!setting.isEnabled() || message == null || message.getId() == null) {
+            return;
+        }
+        WebhookEvent.Event.Message.ContentProvider provider = message.getContentProvider();
+        if (provider != null && PROVIDER_EXTERNAL.equals(provider.getType())) {
+            skipped.increment();
+            return;
+        }
+        String messageId = message.getId();
+        if (!pending.add(messageId)) {
+            skipped.increment();
+            return;
+        }
+        if (mediaContentStore.find(messageId) != null) {
+            pending.remove(messageId);
+            skipped.increment();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long eventTime = event.getTimestamp() > 0 ? event.getTimestamp() : now;
+        boolean needsTranscode = type == MessageType.audio || type == MessageType.video;
+        enqueued.increment();
+        submit(new Job(messageId, needsTranscode, eventTime, 0), now);
+    }
+
+    private void submit(Job job, long queuedAt) {
+        try {
+            downloader.execute(() -> run(job, queuedAt));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            pending.remove(job.messageId());
+            log.warn("Media prefetch queue full, drop messageId:{}", job.messageId());
+        }
+    }
+
+    private void run(Job job, long queuedAt) {
+        long lag = System.currentTimeMillis() - queuedAt;
+        queueLagMs.add(lag);
+        queueLagSamples.increment();
+        maxQueueLagMs.accumulate(lag);
+
+        boolean done = true;
+        try {
+            if (job.needsTranscode()) {
+                Transcoding state = checkTranscoding(job);
+                done = state != Transcoding.WAITING;
+                if (state != Transcoding.READY) {
+                    return;
+                }
+            }
+            download(job);
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Media prefetch failed, messageId:{}, ERR:{}", job.messageId(), ExceptionUtils.getStackTrace(e));
+        } finally {
+            if (done) {
+                pending.remove(job.messageId());
+            }
+        }
+    }
+
+    /**
+     * 查詢轉檔狀態，processing 時排程重新查詢
+     */
+    private Transcoding checkTranscoding(Job job) {
+        statusPolls.increment();
+        MessageContentResponse status = lineService.getVideoOrAudioStatus(job.messageId());
+        if (status == null) {
+            throw new IllegalStateException("transcoding status unavailable");
+        }
+        if (isExpired(status)) {
+            expiryMisses.increment();
+            log.info("Media prefetch miss, content expired, messageId:{}", job.messageId());
+            return Transcoding.GONE;
+        }
+        if (STATUS_SUCCEEDED.equals(status.getStatus())) {
+            return Transcoding.READY;
+        }
+        if (!STATUS_PROCESSING.equals(status.getStatus())) {
+            throw new IllegalStateException("transcoding status:" + status.getStatus() + ", message:" + status.getMessage());
+        }
+        if (System.currentTimeMillis() - job.eventTime() > setting.getMaxWait().toMillis()) {
+            throw new IllegalStateException("transcoding not finished within " + setting.getMaxWait());
+        }
+
+        long delay = backoff(job.attempt());
+        Job next = new Job(job.messageId(), true, job.eventTime(), job.attempt() + 1);
+        transcoding.incrementAndGet();
+        try {
+            poller.schedule(() -> {
+                transcoding.decrementAndGet();
+                submit(next, System.currentTimeMillis());
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 關機中，放棄這筆
+            transcoding.decrementAndGet();
+            return Transcoding.GONE;
+        }
+        return Transcoding.WAITING;
+    }
+
+    private void download(Job job) {
+        long start = System.nanoTime();
+        MessageContentResponse content = lineService.getMessageContent(job.messageId());
+        if (content == null) {
+            throw new IllegalStateException("content unavailable");
+        }
+        if (content.getContentHash() == null) {
+            if (isExpired(content)) {
+                expiryMisses.increment();
+                log.info("Media prefetch miss, content expired, messageId:{}", job.messageId());
+                return;
+            }
+            throw new IllegalStateException("httpStatus:" + content.getHttpStatus() + ", message:" + content.getMessage());
+        }
+        downloadNanos.add(System.nanoTime() - start);
+        downloaded.increment();
+        if (content.getContentLength() != null) {
+            downloadedBytes.add(content.getContentLength());
+        }
+        long eventLag = System.currentTimeMillis() - job.eventTime();
+        eventLagMs.add(eventLag);
+        maxEventLagMs.accumulate(eventLag);
+    }
+
+    /**
+     * LINE 已刪除內容或使用者收回訊息
+     */
+    private static boolean isExpired(MessageContentResponse response) {
+        Integer httpStatus = response.getHttpStatus();
+        return httpStatus != null && (httpStatus == 404 || httpStatus == 410);
+    }
+
+    /**
+     * 以 initialBackoff 為底每次加倍，上限 maxBackoff，加上最多 20% 的隨機量避免同時重新查詢
+     */
+    private long backoff(int attempt) {
+        long initial = setting.getInitialBackoff().toMillis();
+        long max = setting.getMaxBackoff().toMillis();
+        long delay = initial << Math.min(attempt, 20);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        downloader.shutdown();
+        try {
+            if (!downloader.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("MediaPrefetcher shutdown with {} queued downloads", downloader.getQueue().size());
+                downloader.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            downloader.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "mediaPrefetch";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long downloads = downloaded.sum();
+        long lagSamples = queueLagSamples.sum();
+        metrics.put("enabled", setting.isEnabled());
+        metrics.put("enqueued", enqueued.sum());
+        metrics.put("skipped", skipped.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("downloaded", downloads);
+        metrics.put("downloadedBytes", downloadedBytes.sum());
+        metrics.put("downloadAvgMs", downloads == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(downloadNanos.sum() / downloads));
+        metrics.put("failed", failed.sum());
+        metrics.put("expiryMisses", expiryMisses.sum());
+        metrics.put("statusPolls", statusPolls.sum());
+        metrics.put("queueDepth", downloader.getQueue().size());
+        metrics.put("activeDownloads", downloader.getActiveCount());
+        metrics.put("awaitingTranscode", transcoding.get());
+        metrics.put("queueLagAvgMs", lagSamples == 0 ? 0 : queueLagMs.sum() / lagSamples);
+        metrics.put("queueLagMaxMs", maxQueueLagMs.get());
+        metrics.put("eventToStoredAvgMs", downloads == 0 ? 0 : eventLagMs.sum() / downloads);
+        metrics.put("eventToStoredMaxMs", maxEventLagMs.get());
+        return metrics;
+    }
+
+    private enum Transcoding {
+        /**
+         * 轉檔完成，可以下載
+         */
+        READY,
+        /**
+         * 轉檔中，已排程重新查詢
+         */
+        WAITING,
+        /**
+         * 內容已不存在或無法排程，不再處理
+         */
+        GONE
+    }
+
+    /**
+     * @param needsTranscode 音訊、影片需要先確認轉檔完成
+     * @param eventTime      webhook 事件時間，用來計算等待上限與 event-to-stored 延遲
+     * @param attempt        已查詢轉檔狀態的次數
+     */
+    private record Job(String messageId, boolean needsTranscode, long eventTime, int attempt) {
+    }
+}
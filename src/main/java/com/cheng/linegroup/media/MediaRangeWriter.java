@@ -0,0 +1,176 @@
+package com.cheng.linegroup.media;
+
+import com.cheng.linegroup.common.domain.MediaStoreSetting;
+import com.cheng.linegroup.common.metrics.MetricsSource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 將 {@link StoredMedia} 寫回 HTTP 回應，支援單一區段的 Range (206) 與 If-None-Match (304)。
+ * <p>
+ * Tomcat 支援 sendfile 時交由 Tomcat 以 sendfile 直接從檔案送到 socket (zero-copy)；
+ * 不支援時以 {@link FileChannel#transferTo} 寫到回應的 OutputStream，都不會把內容整個讀進 heap。
+ * 多區段的 Range 依 RFC 9110 忽略，回傳完整內容。
+ *
+ * @author cheng
+ * @since 2026/10/17 21:20
+ **/
+@Component
+@RequiredArgsConstructor
+public class MediaRangeWriter implements MetricsSource {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Range 超出內容範圍 (416)
+     */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private final MediaStoreSetting setting;
+
+    private final LongAdder full = new LongAdder();
+    private final LongAdder partial = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder unsatisfiable = new LongAdder();
+    private final LongAdder sendfile = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    public void write(StoredMedia media, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = media.size();
+        String etag = "\"" + media.hash() + "\"";
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(setting.getMaxAge()).cachePrivate().getHeaderValue());
+
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == UNSATISFIABLE) {
+                unsatisfiable.increment();
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        if (response.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT) {
+            partial.increment();
+        } else {
+            full.increment();
+        }
+
+        long length = end - start + 1;
+        response.setContentType(media.contentType());
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length <= 0) {
+            return;
+        }
+        bytesServed.add(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            sendfile.increment();
+            request.setAttribute(SENDFILE_FILENAME, media.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            // Tomcat 的 end 不含該位置
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(media.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * 解析單一區段的 bytes range
+     *
+     * @return {start, end}；格式不符或多區段時為 null (回傳完整內容)；超出範圍時為 {@link #UNSATISFIABLE}
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-N：最後 N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) {
+                return UNSATISFIABLE;
+            }
+            return start <= end ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "mediaServe";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("full", full.sum());
+        metrics.put("partial", partial.sum());
+        metrics.put("notModified", notModified.sum());
+        metrics.put("unsatisfiable", unsatisfiable.sum());
+        metrics.put("sendfile", sendfile.sum());
+        metrics.put("bytesServed", bytesServed.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,17 @@
+package com.cheng.linegroup.media;
+
+import java.nio.file.Path;
+
+/**
+ * 已儲存的訊息內容
+ *
+ * @param messageId   LINE 訊息 id (預覽圖為 {messageId}-preview)
+ * @param hash        內容的 sha256，相同內容只存一份
+ * @param contentType LINE 回應的 Content-Type
+ * @param size        bytes
+ * @param file        內容檔案
+ * @author cheng
+ * @since 2026/10/17 21:20
+ **/
+public record StoredMedia(String messageId, String hash, String contentType, long size, Path file) {
+}
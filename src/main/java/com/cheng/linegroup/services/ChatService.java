@@ -1,6 +1,9 @@
 package com.cheng.linegroup.services;
 
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
 import com.cheng.linegroup.config.AiConfig;
+import com.cheng.linegroup.enums.Upstream;
+import com.cheng.linegroup.exception.UpstreamRejectedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -10,6 +13,10 @@ import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 /**
  * @author Cheng
  * @since 2024/11/9 20:38
@@ -20,6 +27,7 @@ import org.springframework.stereotype.Service;
 public class ChatService {
 
     private final ChatClient chatClient;
+    private final UpstreamGuard upstreamGuard;
     private final ChatMemory chatMemory = new InMemoryChatMemory();
 
     // 初始化系統提示
@@ -30,19 +38,43 @@ public class ChatService {
 
     /**
      * 使用記憶體的聊天方法
+     * <p>
+     * 所有 OpenAI 呼叫都經過 {@link Upstream#OPENAI} 的 bulkhead 與 circuit breaker，被拒絕時拋出 {@link UpstreamRejectedException}
      */
     public String chat(String chatId, String userMessage) {
+        remember(chatId, userMessage);
+
+        // 使用記憶體中的訊息進行對話 - M3 版本的 API 使用方式
+        return upstreamGuard.call(Upstream.OPENAI, () -> this.chatClient.prompt()
+                .messages(chatMemory.get(chatId, 30))
+                .call()
+                .content(), null);
+    }
+
+    /**
+     * 使用記憶體的非同步聊天方法，以串流 API 接收回覆，等待期間不佔用執行緒
+     *
+     * @param timeout 等待完整回覆的上限，逾時會取消請求並以 {@link java.util.concurrent.TimeoutException} 結束
+     * @return 斷路中或同時呼叫數已滿時立即以 UpstreamRejectedException 結束 (見 {@link UpstreamGuard#isRejected(Throwable)})
+     */
+    public CompletableFuture<String> chatAsync(String chatId, String userMessage, Duration timeout) {
+        remember(chatId, userMessage);
+
+        return upstreamGuard.callAsync(Upstream.OPENAI, () -> this.chatClient.prompt()
+                .messages(chatMemory.get(chatId, 30))
+                .stream()
+                .content()
+                .collect(Collectors.joining())
+                .timeout(timeout)
+                .toFuture(), null);
+    }
+
+    private void remember(String chatId, String userMessage) {
         chatMemory.add(chatId, new UserMessage(userMessage));
 
         if (chatMemory.get(chatId, 10).size() <= 1) {
             chatMemory.add(chatId, new SystemMessage(SYSTEM_PROMPT));
         }
-
-        // 使用記憶體中的訊息進行對話 - M3 版本的 API 使用方式
-        return this.chatClient.prompt()
-                .messages(chatMemory.get(chatId, 30))
-                .call()
-                .content();
     }
 
     /**
@@ -51,9 +83,9 @@ public class ChatService {
     public String simpleChat(String message) {
         // M3 版本的 ChatClient API 調用方式
         // 直接使用消息列表
-        return chatClient.prompt()
+        return upstreamGuard.call(Upstream.OPENAI, () -> chatClient.prompt()
                 .messages(AiConfig.createMessagesWithSystemPrompt(message))
                 .call()
-                .content();
+                .content(), null);
     }
 }
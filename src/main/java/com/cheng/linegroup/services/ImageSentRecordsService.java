@@ -1,12 +1,25 @@
 package com.cheng.linegroup.services;
 
+import com.cheng.linegroup.common.domain.SentImageTracking;
+import com.cheng.linegroup.common.persistence.WriteBehindBuffer;
 import com.cheng.linegroup.dao.ImageSentRecordsRepository;
 import com.cheng.linegroup.entity.ImageSentRecords;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
+ * 圖片發送紀錄，只作為稽核用途；每日上限由 {@link com.cheng.linegroup.image.SentImageTracker} 判斷。
+ * 超過 image.sent-tracking.record-retention 的紀錄定期刪除。
+ *
  * @author Cheng
  * @since 2024/7/29 00:37
  **/
@@ -14,22 +27,48 @@ import org.springframework.stereotype.Service;
 @Service
 @RequiredArgsConstructor
 public class ImageSentRecordsService {
+    private final WriteBehindBuffer<ImageSentRecords> imageSentRecordsBuffer;
     private final ImageSentRecordsRepository imageSentRecordsRepository;
+    private final SentImageTracking sentImageTracking;
+
+    private ScheduledExecutorService purgeScheduler;
 
-    public void deleteAll(){
-        imageSentRecordsRepository.deleteAll();
+    @PostConstruct
+    public void init() {
+        long interval = sentImageTracking.getRecordPurgeInterval().toMillis();
+        purgeScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("imageSentRecordsPurge_"));
+        purgeScheduler.scheduleWithFixedDelay(this::purgeExpired, interval, interval, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 交給 write-behind 批次寫入，不在呼叫端等待資料庫
+     */
     public void saveImageSentRecords(String userId, String groupId, String imageLink) {
-        imageSentRecordsRepository.save(ImageSentRecords.builder()
+        imageSentRecordsBuffer.add(ImageSentRecords.builder()
                 .uid(userId).groupId(groupId).imageLink(imageLink).build());
     }
 
-    public int countByGroupId(String groupId) {
-        return imageSentRecordsRepository.countByGroupId(groupId);
+    /**
+     * 刪除超過保留期限的紀錄
+     *
+     * @return 刪除的筆數，失敗時為 0
+     */
+    public int purgeExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(sentImageTracking.getRecordRetention());
+        try {
+            int deleted = imageSentRecordsRepository.deleteByCreateTimeBefore(before);
+            log.info("Purge image sent records before {}, deleted:{}", before, deleted);
+            return deleted;
+        } catch (Exception e) {
+            log.warn("Purge image sent records failed, ERR:{}", e.getMessage());
+            return 0;
+        }
     }
 
-    public int countByGroupIdAndUid(String groupId, String uid) {
-        return imageSentRecordsRepository.countByGroupIdAndUid(groupId, uid);
+    @PreDestroy
+    public void shutdown() {
+        if (purgeScheduler != null) {
+            purgeScheduler.shutdownNow();
+        }
     }
 }
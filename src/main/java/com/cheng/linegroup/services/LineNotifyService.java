@@ -4,21 +4,22 @@ import com.cheng.linegroup.annotation.LogApi;
 import com.cheng.linegroup.api.line.GroupAPI;
 import com.cheng.linegroup.api.response.LineGroupResponse;
 import com.cheng.linegroup.common.domain.LineNotify;
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
 import com.cheng.linegroup.dto.LineNotifyMessage;
 import com.cheng.linegroup.dto.LineNotifyOauth;
 import com.cheng.linegroup.dto.LineNotifyToken;
 import com.cheng.linegroup.dto.WebhookEvent;
 import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.enums.Upstream;
 import com.cheng.linegroup.utils.ApiUtils;
+import com.cheng.linegroup.utils.HttpRequest;
 import com.cheng.linegroup.utils.JacksonUtils;
-import com.cheng.linegroup.utils.OkHttpUtils;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,6 +35,7 @@ public class LineNotifyService {
 
     private final GroupAPI groupAPI;
     private final LineNotify lineNotify;
+    private final UpstreamGuard upstreamGuard;
 
     @Async
     @LogApi(description = "通知中控群組")
@@ -75,19 +77,17 @@ public class LineNotifyService {
 
     public void notifyMessage(LineNotifyMessage lineMessage) {
         String url = ApiUtils.getUrl(lineNotify.getApiDomain(), Api.LINE_NOTIFY_PUSH);
-        ObjectNode params = JacksonUtils.genJsonObject()
-                .put("message", lineMessage.getMessage());
+        Map<String, String> params = new LinkedHashMap<>(4);
+        params.put("message", lineMessage.getMessage());
 
         if (lineMessage.getImageUrl() != null) {
-            params.put("imageThumbnail", lineMessage.getImageUrl().toString())
-                    .put("imageFullsize", lineMessage.getImageUrl().toString());
+            params.put("imageThumbnail", lineMessage.getImageUrl().toString());
+            params.put("imageFullsize", lineMessage.getImageUrl().toString());
         }
 
-        OkHttpUtils.builder()
-                .addHeader(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", lineMessage.getToken()))
-                .addParam(params)
-                .post(url, false)
-                .sync();
+        upstreamGuard.execute(Upstream.LINE_NOTIFY, HttpRequest.post(url)
+                .bearer(lineMessage.getToken())
+                .form(params));
     }
 
     public void notifyOauth() {
@@ -106,7 +106,7 @@ public class LineNotifyService {
                 "response_mode", "form_post"
         );
 
-        OkHttpUtils.builder().addParam(params).get(oauthUrl).sync();
+        upstreamGuard.execute(Upstream.LINE_NOTIFY, HttpRequest.get(oauthUrl).query(params));
     }
 
     public String notifyToken(LineNotifyOauth oauth) {
@@ -124,7 +124,7 @@ public class LineNotifyService {
 
         log.info("tokenUrl:{}", tokenUrl);
 
-        String resultData = OkHttpUtils.builder().addParam(params).post(tokenUrl, false).sync().getResultData();
+        String resultData = upstreamGuard.execute(Upstream.LINE_NOTIFY, HttpRequest.post(tokenUrl).form(params)).getResultData();
 
         LineNotifyToken lineNotifyToken = JacksonUtils.decodeFromJson(resultData, LineNotifyToken.class);
         log.info("lineNotifyToken:{}", lineNotifyToken);
@@ -1,18 +1,23 @@
 package com.cheng.linegroup.services;
 
 import com.cheng.linegroup.api.line.GroupAPI;
+import com.cheng.linegroup.api.line.LineApiGateway;
 import com.cheng.linegroup.api.line.MessageContentAPI;
 import com.cheng.linegroup.api.response.LineGroupResponse;
 import com.cheng.linegroup.api.response.MessageContentResponse;
 import com.cheng.linegroup.common.domain.Line;
 import com.cheng.linegroup.enums.Api;
 import com.cheng.linegroup.enums.ApiResult;
+import com.cheng.linegroup.enums.LineEndpoint;
+import com.cheng.linegroup.events.deadline.ReplyDeadline;
+import com.cheng.linegroup.events.deadline.ReplyDeadlineTracker;
 import com.cheng.linegroup.exception.BizException;
 import com.cheng.linegroup.services.dto.LineMessage;
 import com.cheng.linegroup.services.dto.LineUserDto;
+import com.cheng.linegroup.services.dto.MulticastMessage;
 import com.cheng.linegroup.utils.ApiUtils;
+import com.cheng.linegroup.utils.HttpRequest;
 import com.cheng.linegroup.utils.JacksonUtils;
-import com.cheng.linegroup.utils.OkHttpUtils;
 import com.cheng.linegroup.utils.dto.ApiResponse;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
@@ -22,8 +27,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author cheng
@@ -37,13 +44,14 @@ public class LineService {
     private final Line line;
     private final GroupAPI groupAPI;
     private final MessageContentAPI messageContentAPI;
+    private final ReplyDeadlineTracker replyDeadlineTracker;
+    private final LineApiGateway lineApiGateway;
 
     public LineUserDto getUserProfile(String uid) throws IOException {
         String channelToken = line.getMessage().getChannelToken();
         try {
             String url = ApiUtils.getUrl(line.getApiDomain(), Api.LINE_GET_USER_PROFILE, uid);
-            ApiResponse resp = OkHttpUtils.builder().addLineAuthHeader(channelToken)
-                    .get(url).sync().preview();
+            ApiResponse resp = lineApiGateway.execute(LineEndpoint.PROFILE, HttpRequest.get(url).bearer(channelToken)).preview();
             if (resp.getHttpStatusCode() == HttpStatus.OK.value()) {
                 return LineUserDto.builder()
                         .userId(uid)
@@ -62,15 +70,28 @@ public class LineService {
     }
 
     public void CallMessageAPI(LineMessage lineMessage, Api api) {
-        String channelToken = line.getMessage().getChannelToken();
+        ReplyDeadline replyDeadline = ReplyDeadline.current();
 
-        try {
-            String url = ApiUtils.getUrl(line.getApiDomain(), api);
-            ObjectNode jsonNodes = JacksonUtils.toNode(lineMessage);
+        // reply token 已過期時依設定改用 push 或丟棄
+        if (api == Api.LINE_MESSAGE_REPLY && replyDeadlineTracker.isReplyExpired(replyDeadline)) {
+            lineMessage = replyDeadlineTracker.fallback(lineMessage, replyDeadline);
+            if (lineMessage == null) {
+                return;
+            }
+            api = Api.LINE_MESSAGE_PUSH;
+        }
 
-            ApiResponse apiResponse = OkHttpUtils.builder().addLineAuthHeader(channelToken)
-                    .addParam(jsonNodes)
-                    .post(url).sync();
+        try {
+            ApiResponse apiResponse = lineApiGateway.execute(LineEndpoint.of(api), messageRequest(lineMessage, api),
+                    retryUntil(api, replyDeadline));
+            // reply 被限速且等不到重試，reply token 即將過期，依設定改用 push 或丟棄
+            if (isThrottledReply(api, apiResponse)) {
+                lineMessage = replyDeadlineTracker.fallback(lineMessage, replyDeadline);
+                if (lineMessage == null) {
+                    return;
+                }
+                apiResponse = lineApiGateway.execute(LineEndpoint.PUSH, messageRequest(lineMessage, Api.LINE_MESSAGE_PUSH));
+            }
 
             int httpStatusCode = apiResponse.getHttpStatusCode();
             String resultData = apiResponse.getResultData();
@@ -88,6 +109,101 @@ public class LineService {
 
     }
 
+    /**
+     * 非同步呼叫 message API，不佔用呼叫端執行緒，適合串接在其他非同步呼叫 (例如 AI 回覆) 之後
+     * <p>
+     * 執行緒上沒有綁定 reply token 期限，需傳入事件開始處理時的 {@link ReplyDeadline#current()}；
+     * 送出時 reply token 已過期，或 reply 被限速而重試會超過期限時，依設定改用 push 或丟棄 (丟棄時 future 的結果為 null)。
+     *
+     * @param replyDeadline 事件的 reply token 期限，可為 null
+     * @param timeout       整個呼叫的逾時，逾時或取消 future 時會取消連線
+     * @return 非 200 時以 {@link BizException} 結束
+     */
+    public CompletableFuture<ApiResponse> callMessageAPIAsync(LineMessage lineMessage, Api api,
+                                                              ReplyDeadline replyDeadline, Duration timeout) {
+        if (api == Api.LINE_MESSAGE_REPLY && replyDeadlineTracker.isReplyExpired(replyDeadline)) {
+            lineMessage = replyDeadlineTracker.fallback(lineMessage, replyDeadline);
+            if (lineMessage == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            api = Api.LINE_MESSAGE_PUSH;
+        }
+
+        Api target = api;
+        LineMessage message = lineMessage;
+        return lineApiGateway.executeAsync(LineEndpoint.of(target), messageRequest(message, target), timeout,
+                        retryUntil(target, replyDeadline))
+                .thenCompose(apiResponse -> {
+                    if (!isThrottledReply(target, apiResponse)) {
+                        return CompletableFuture.completedFuture(requireOk(apiResponse));
+                    }
+                    LineMessage push = replyDeadlineTracker.fallback(message, replyDeadline);
+                    if (push == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return lineApiGateway.executeAsync(LineEndpoint.PUSH, messageRequest(push, Api.LINE_MESSAGE_PUSH), timeout)
+                            .thenApply(LineService::requireOk);
+                });
+    }
+
+    private HttpRequest messageRequest(LineMessage lineMessage, Api api) {
+        String url = ApiUtils.getUrl(line.getApiDomain(), api);
+        return HttpRequest.post(url).bearer(line.getMessage().getChannelToken()).json(lineMessage);
+    }
+
+    /**
+     * reply 的重試不等到 reply token 期限之後
+     */
+    private static long retryUntil(Api api, ReplyDeadline replyDeadline) {
+        return api == Api.LINE_MESSAGE_REPLY && replyDeadline != null ? replyDeadline.deadline() : Long.MAX_VALUE;
+    }
+
+    private static boolean isThrottledReply(Api api, ApiResponse apiResponse) {
+        return api == Api.LINE_MESSAGE_REPLY && apiResponse.getHttpStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    /**
+     * 以 multicast 同時發送給多位使用者 (最多 500 位、5 則訊息)，不支援群組與聊天室
+     *
+     * @return 非 200 時以 {@link BizException} 結束
+     */
+    public CompletableFuture<ApiResponse> multicastAsync(MulticastMessage message, Duration timeout) {
+        return multicastAsync(message, timeout, null);
+    }
+
+    /**
+     * 以呼叫端決定的 X-Line-Retry-Key 送出 multicast，重新送出同一則訊息時沿用同一個 key，LINE 會排除重複
+     *
+     * @param retryKey UUID 格式，null 時由 gateway 產生
+     * @see #multicastAsync(MulticastMessage, Duration)
+     */
+    public CompletableFuture<ApiResponse> multicastAsync(MulticastMessage message, Duration timeout, String retryKey) {
+        String url = ApiUtils.getUrl(line.getApiDomain(), Api.LINE_MESSAGE_MULTICAST);
+        HttpRequest request = HttpRequest.post(url).bearer(line.getMessage().getChannelToken()).json(message)
+                .header(LineApiGateway.RETRY_KEY_HEADER, retryKey);
+        return lineApiGateway.executeAsync(LineEndpoint.MULTICAST, request, timeout).thenApply(LineService::requireOk);
+    }
+
+    /**
+     * 以呼叫端決定的 X-Line-Retry-Key push 給單一對象，重新送出同一則訊息時沿用同一個 key，LINE 會排除重複
+     *
+     * @param retryKey UUID 格式，null 時由 gateway 產生
+     * @return 非 200 時以 {@link BizException} 結束
+     */
+    public CompletableFuture<ApiResponse> pushAsync(LineMessage lineMessage, Duration timeout, String retryKey) {
+        HttpRequest request = messageRequest(lineMessage, Api.LINE_MESSAGE_PUSH).header(LineApiGateway.RETRY_KEY_HEADER, retryKey);
+        return lineApiGateway.executeAsync(LineEndpoint.PUSH, request, timeout).thenApply(LineService::requireOk);
+    }
+
+    private static ApiResponse requireOk(ApiResponse apiResponse) {
+        int httpStatusCode = apiResponse.getHttpStatusCode();
+        if (HttpStatus.OK.value() != httpStatusCode) {
+            throw BizException.error(httpStatusCode, String.format(ApiResult.ERROR.getMsg(), apiResponse.getResultData()));
+        }
+        log.info("resp:{}", apiResponse.getResultData());
+        return apiResponse;
+    }
+
     public String getGroupName(String gid) {
         LineGroupResponse groupChatSummary = groupAPI.getGroupChatSummary(gid, LineGroupResponse.class);
         return groupChatSummary.getGroupName();
@@ -114,13 +230,11 @@ public class LineService {
         times++;
 
         String url = ApiUtils.getUrl(line.getApiDomain(), String.format(Api.LINE_GROUP_MEMBER_IDS.getUri(), groupId));
-        if (nextToken != null) {
-            url += "?start=" + nextToken;
-        }
 
-        ApiResponse sync = OkHttpUtils.builder()
-                .addLineAuthHeader(line.getMessage().getChannelToken())
-                .get(url).sync();
+        HttpRequest request = HttpRequest.get(url)
+                .bearer(line.getMessage().getChannelToken())
+                .query("start", nextToken);
+        ApiResponse sync = lineApiGateway.execute(LineEndpoint.OTHER, request);
 
         if (sync.getHttpStatusCode() != HttpStatus.OK.value()) {
             throw new IOException("Failed to get group member IDs: " + sync.getResultData());
@@ -143,4 +257,8 @@ public class LineService {
     public MessageContentResponse getMessageContent(String messageId) {
         return messageContentAPI.getMessageContent(messageId, MessageContentResponse.class);
     }
+
+    public MessageContentResponse getVideoOrAudioStatus(String messageId) {
+        return messageContentAPI.getVideoOrAudioStatus(messageId, MessageContentResponse.class);
+    }
 }
@@ -1,6 +1,6 @@
 package com.cheng.linegroup.services;
 
-import com.cheng.linegroup.dao.MessageEventRecordRepository;
+import com.cheng.linegroup.common.persistence.WriteBehindBuffer;
 import com.cheng.linegroup.entity.MessageEventRecord;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,9 +15,12 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class MessageEventRecordService {
 
-    private final MessageEventRecordRepository messageEventRecordRepository;
+    private final WriteBehindBuffer<MessageEventRecord> messageEventRecordBuffer;
 
+    /**
+     * 交給 write-behind 批次寫入，不在呼叫端等待資料庫
+     */
     public void save(MessageEventRecord messageEventRecord) {
-        messageEventRecordRepository.save(messageEventRecord);
+        messageEventRecordBuffer.add(messageEventRecord);
     }
 }
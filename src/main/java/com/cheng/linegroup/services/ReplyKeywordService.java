@@ -1,8 +1,8 @@
 package com.cheng.linegroup.services;
 
-import com.cheng.linegroup.common.contants.RedisPrefix;
 import com.cheng.linegroup.dao.ReplyKeywordRepository;
 import com.cheng.linegroup.entity.ReplyKeyword;
+import com.cheng.linegroup.events.message.keyword.ReplyKeywordIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -17,18 +17,20 @@ import org.springframework.stereotype.Service;
 public class ReplyKeywordService {
 
     private final ReplyKeywordRepository replyKeywordRepository;
+    private final ReplyKeywordIndex replyKeywordIndex;
 
+    /**
+     * 查詢學過的關鍵字，群組內以 keyword + gid 查詢，個人聊天 (gid 為 null) 以 keyword + uid 查詢
+     * <p>
+     * 查詢走 {@link ReplyKeywordIndex}，只有群組第一次查詢時會讀取資料庫
+     */
     public ReplyKeyword getReplyKeywordByKeywordAndUidAndGid(String keyword, String uid, String gid) {
-        if (gid != null) {
-            return replyKeywordRepository.getReplyKeywordByKeywordAndGid(keyword, gid);
-        } else {
-            gid = RedisPrefix.PERSONAL;
-        }
-        return replyKeywordRepository.getReplyKeywordByKeywordAndUidAndGid(keyword, uid, gid);
+        return replyKeywordIndex.find(keyword, uid, gid);
     }
 
     public void save(ReplyKeyword replyKeyword) {
-        replyKeywordRepository.save(replyKeyword);
+        ReplyKeyword saved = replyKeywordRepository.save(replyKeyword);
+        replyKeywordIndex.onSaved(saved);
     }
 
 }
@@ -0,0 +1,21 @@
+package com.cheng.linegroup.services.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * multicast 請求，to 最多 500 位使用者，messages 最多 5 則
+ *
+ * @author cheng
+ * @since 2026/10/17 22:40
+ **/
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Builder
+public class MulticastMessage {
+    private List<String> to;
+    private List<LineMessage.Message> messages;
+}
@@ -0,0 +1,313 @@
+package com.cheng.linegroup.utils;
+
+import com.cheng.linegroup.common.domain.LineHeader;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不可變的 HTTP 請求描述，取代需要從物件池借用、呼叫後還要 release 的 {@link OkHttpUtils}
+ * <p>
+ * 每個設定方法都回傳新的實例，原本的實例不變，因此可以當成常數共用 (例如先設定好授權標頭)，也可以跨執行緒使用。
+ * 預設使用共用的 {@link OkHttpUtils#sharedClient()}，需要隔離的上游可用 {@link #client(OkHttpClient)} 指定其他 client。
+ * <ul>
+ *   <li>查詢參數直接加到 {@link HttpUrl}，不經過 JSON 轉換</li>
+ *   <li>JSON body 在送出時直接序列化寫入連線，不產生中間字串</li>
+ *   <li>表單參數直接建立 {@link FormBody}</li>
+ * </ul>
+ * <pre>
+ * ApiResponse resp = HttpRequest.post(url).bearer(token).json(message).execute();
+ * CompletableFuture&lt;ApiResponse&gt; future = HttpRequest.get(url).bearer(token).executeAsync(Duration.ofSeconds(5));
+ * </pre>
+ *
+ * @author cheng
+ * @since 2026/10/17 22:00
+ **/
+@Slf4j
+public final class HttpRequest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final String[] NO_QUERY = new String[0];
+
+    private static volatile String requestIdHeader;
+
+    private final String method;
+    private final String url;
+    private final Headers headers;
+    /**
+     * name, value 交錯存放
+     */
+    private final String[] query;
+    private final RequestBody body;
+    /**
+     * null 表示使用共用的 client
+     */
+    private final OkHttpClient client;
+
+    private HttpRequest(String method, String url, Headers headers, String[] query, RequestBody body, OkHttpClient client) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.query = query;
+        this.body = body;
+        this.client = client;
+    }
+
+    public static HttpRequest get(String url) {
+        return new HttpRequest("GET", Objects.requireNonNull(url), Headers.of(), NO_QUERY, null, null);
+    }
+
+    /**
+     * 未設定 body 時送出空的 JSON 物件
+     */
+    public static HttpRequest post(String url) {
+        return new HttpRequest("POST", Objects.requireNonNull(url), Headers.of(), NO_QUERY, null, null);
+    }
+
+    public HttpRequest header(String name, String value) {
+        if (name == null || value == null) {
+            return this;
+        }
+        return new HttpRequest(method, url, headers.newBuilder().set(name, value).build(), query, body, client);
+    }
+
+    /**
+     * @return 標頭的值，沒有設定時為 null
+     */
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    public HttpRequest bearer(String token) {
+        return header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    /**
+     * 加入查詢參數，value 為 null 時略過
+     */
+    public HttpRequest query(String name, String value) {
+        if (name == null || value == null) {
+            return this;
+        }
+        String[] q = Arrays.copyOf(query, query.length + 2);
+        q[query.length] = name;
+        q[query.length + 1] = value;
+        return new HttpRequest(method, url, headers, q, body, client);
+    }
+
+    public HttpRequest query(Map<String, String> params) {
+        if (params == null || params.isEmpty()) {
+            return this;
+        }
+        String[] q = Arrays.copyOf(query, query.length + params.size() * 2);
+        int i = query.length;
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (e.getKey() != null && e.getValue() != null) {
+                q[i++] = e.getKey();
+                q[i++] = e.getValue();
+            }
+        }
+        return new HttpRequest(method, url, headers, i == q.length ? q : Arrays.copyOf(q, i), body, client);
+    }
+
+    /**
+     * 以 JSON 送出，送出時才序列化並直接寫入連線
+     */
+    public HttpRequest json(Object value) {
+        return new HttpRequest(method, url, headers, query, new JsonRequestBody(value), client);
+    }
+
+    /**
+     * 以 application/x-www-form-urlencoded 送出，value 為 null 的欄位略過
+     */
+    public HttpRequest form(Map<String, String> params) {
+        FormBody.Builder form = new FormBody.Builder();
+        if (params != null) {
+            params.forEach((k, v) -> {
+                if (v != null) {
+                    form.add(k, v);
+                }
+            });
+        }
+        return new HttpRequest(method, url, headers, query, form.build(), client);
+    }
+
+    /**
+     * 改用指定的 client 送出 (例如各上游獨立 dispatcher 的 client)
+     */
+    public HttpRequest client(OkHttpClient client) {
+        return new HttpRequest(method, url, headers, query, body, client);
+    }
+
+    public Request toRequest() {
+        HttpUrl httpUrl = HttpUrl.get(url);
+        if (query.length > 0) {
+            HttpUrl.Builder builder = httpUrl.newBuilder();
+            for (int i = 0; i < query.length; i += 2) {
+                builder.addQueryParameter(query[i], query[i + 1]);
+            }
+            httpUrl = builder.build();
+        }
+        RequestBody requestBody = body;
+        if (requestBody == null && "POST".equals(method)) {
+            requestBody = RequestBody.create("{}", JSON);
+        }
+        return new Request.Builder().url(httpUrl).headers(headers).method(method, requestBody).build();
+    }
+
+    /**
+     * 同步送出，JSON 或文字回應讀成字串，二進位內容不讀取 (需要內容時改用 {@link #stream(OkHttpUtils.ResponseHandler)})
+     *
+     * @return 連線失敗時回傳 {@link ApiResponse#empty()}
+     */
+    public ApiResponse execute() {
+        Request request = toRequest();
+        log.info("===> [{}] API Url:{}", method, request.url());
+        try (Response response = client().newCall(request).execute()) {
+            return toApiResponse(response);
+        } catch (IOException e) {
+            log.error("ERR:{}", ExceptionUtils.getStackTrace(e));
+            return ApiResponse.empty();
+        }
+    }
+
+    /**
+     * 以 client 預設的連線、讀寫逾時非同步送出
+     *
+     * @see #executeAsync(Duration)
+     */
+    public CompletableFuture<ApiResponse> executeAsync() {
+        return executeAsync(null);
+    }
+
+    /**
+     * 非同步送出，不佔用呼叫端執行緒；回應讀取方式與 {@link #execute()} 相同
+     * <p>
+     * 結果在 OkHttp dispatcher 的執行緒上完成，後續若有耗時或阻塞的處理請使用 {@code thenXxxAsync} 指定 executor。
+     * 連線失敗或逾時時 future 以 {@link IOException} 結束；呼叫 {@link CompletableFuture#cancel(boolean)} 會一併取消連線。
+     *
+     * @param timeout 整個呼叫 (連線、送出、讀取回應) 的逾時，null 表示只使用 client 預設的連線、讀寫逾時
+     */
+    public CompletableFuture<ApiResponse> executeAsync(Duration timeout) {
+        Request request = toRequest();
+        log.info("===> [{}] API Url:{} (async)", method, request.url());
+        Call call = client().newCall(request);
+        if (timeout != null) {
+            call.timeout().timeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        future.whenComplete((r, t) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response) {
+                try (response) {
+                    future.complete(toApiResponse(response));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private static ApiResponse toApiResponse(Response response) throws IOException {
+        String contentType = response.header(HttpHeaders.CONTENT_TYPE);
+        ResponseBody responseBody = response.body();
+        String data = null;
+        if (responseBody != null && (contentType == null || contentType.contains("json") || contentType.startsWith("text"))) {
+            data = responseBody.string();
+        }
+        ApiResponse apiResponse = ApiResponse.builder()
+                .httpStatusCode(response.code())
+                .lineRequestId(response.header(requestIdHeader()))
+                .resultData(data)
+                .contentType(contentType)
+                .retryAfter(response.header(HttpHeaders.RETRY_AFTER))
+                .build();
+        if (response.code() != HttpStatus.OK.value()) {
+            log.info("===> API httpStatusCode:{} Response:{}", response.code(), apiResponse);
+        }
+        return apiResponse;
+    }
+
+    /**
+     * 不經過記憶體緩衝，直接把 {@link Response} 交給 handler 讀取 body，handler 結束後關閉連線
+     */
+    public <T> T stream(OkHttpUtils.ResponseHandler<T> handler) throws IOException {
+        Request request = toRequest();
+        log.info("===> [{}] API Url:{}", method, request.url());
+        try (Response response = client().newCall(request).execute()) {
+            return handler.handle(response);
+        }
+    }
+
+    private OkHttpClient client() {
+        return client != null ? client : OkHttpUtils.sharedClient();
+    }
+
+    private static String requestIdHeader() {
+        String header = requestIdHeader;
+        if (header == null) {
+            header = SpringUtils.getBean(LineHeader.class).getRequestId();
+            requestIdHeader = header;
+        }
+        return header;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+
+    /**
+     * 送出時才以 Jackson 直接寫入 sink；長度未知，以 chunked 傳送
+     */
+    private static final class JsonRequestBody extends RequestBody {
+        private final Object value;
+
+        private JsonRequestBody(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            JacksonUtils.writeTo(sink.outputStream(), value);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.cheng.linegroup.utils;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -14,6 +15,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 
 /**
@@ -27,6 +29,10 @@ public class JacksonUtils {
     }
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    /**
+     * 寫入串流用，寫完不關閉目標串流
+     */
+    private static final ObjectWriter STREAM_WRITER;
 
     static {
         MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
@@ -35,6 +41,7 @@ public class JacksonUtils {
         MAPPER.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
         MAPPER.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
         MAPPER.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+        STREAM_WRITER = MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     /**
@@ -185,6 +192,13 @@ public class JacksonUtils {
         }
     }
 
+    /**
+     * 直接序列化寫入 OutputStream，不產生中間字串；不會關閉 out
+     */
+    public static void writeTo(OutputStream out, Object obj) throws IOException {
+        STREAM_WRITER.writeValue(out, obj);
+    }
+
     /**
      * map轉class物件
      */
@@ -271,6 +285,18 @@ public class JacksonUtils {
         return MAPPER.readTree(jsonStr);
     }
 
+    /**
+     * 建立直接讀取 byte 陣列的串流解析器，可搭配 {@link JsonParser#readValueAs(Class)} 逐筆反序列化
+     *
+     * @param data   JSON 內容
+     * @param offset 起始位置
+     * @param length 長度
+     * @return 已綁定共用 ObjectMapper 的 {@link JsonParser}
+     */
+    public static JsonParser createParser(byte[] data, int offset, int length) throws IOException {
+        return MAPPER.createParser(data, offset, length);
+    }
+
     public static boolean hasEscape(String text) {
         return text.contains(StringUtils.LF)
                 || text.contains(StringUtils.CR)
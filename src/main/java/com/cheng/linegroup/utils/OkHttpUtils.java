@@ -16,6 +16,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -29,8 +30,10 @@ import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -46,6 +49,9 @@ import java.util.concurrent.TimeUnit;
  *        增加對{@link #addParam(Map)}的參數判斷，避免空參數導致問題
  *        重構{@link #addHeader(String, String)}，用簡單的判斷方式提升效率
  * - 1.5: 修正單例模式的問題，避免將之前的參數附加上下一次的請求
+ * - 1.6: 新增{@link #stream(ResponseHandler)}串流讀取回應，{@link #sync()}不再將二進位內容讀進記憶體
+ * - 1.7: 移除物件池，{@link #builder()}每次建立新實例；新增不可變的{@link HttpRequest}共用同一個 OkHttpClient
+ * - 1.8: {@link #async()}改為回傳 CompletableFuture，修正回傳結果永遠為空的問題
  * </pre>
  *
  * @author cheng
@@ -67,6 +73,10 @@ public class OkHttpUtils {
                 重構 addHeader(String, String)，用簡單的判斷方式提升效率
                 """, LocalDate.of(2024, 12, 7)));
         VERSION_HISTORY.add(new VersionInfo(1.5, "修正單例模式的問題，避免將之前的參數附加上下一次的請求", LocalDate.of(2024, 12, 11)));
+        VERSION_HISTORY.add(new VersionInfo(1.6, "新增 stream 串流讀取回應，sync 不再將二進位內容讀進記憶體", LocalDate.of(2026, 10, 17)));
+        VERSION_HISTORY.add(new VersionInfo(1.7, "移除物件池，新增不可變的 HttpRequest 共用同一個 OkHttpClient", LocalDate.of(2026, 10, 17)));
+        VERSION_HISTORY.add(new VersionInfo(1.8, "async 改為回傳 CompletableFuture，修正回傳結果永遠為空的問題", LocalDate.of(2026, 10, 17)));
+        VERSION_HISTORY.add(new VersionInfo(1.9, "新增 isolatedClient，各上游使用獨立的 dispatcher", LocalDate.of(2026, 10, 17)));
 
     }
 
@@ -108,26 +118,7 @@ public class OkHttpUtils {
         if (okHttpClient == null) {
             synchronized (OkHttpUtils.class) {
                 if (okHttpClient == null) {
-                    HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-                    logging.setLevel(HttpLoggingInterceptor.Level.HEADERS);
-                    TrustManager[] trustManagers = buildTrustManagers();
-                    OkHttpClient.Builder builder =
-                            new OkHttpClient.Builder()
-                                    .addInterceptor(logging)
-                                    .connectTimeout(10, TimeUnit.SECONDS)
-                                    .writeTimeout(8, TimeUnit.SECONDS)
-                                    .readTimeout(8, TimeUnit.SECONDS)
-                                    .sslSocketFactory(
-                                            createSSLSocketFactory(trustManagers), (X509TrustManager) trustManagers[0])
-                                    .hostnameVerifier((hostName, session) -> true)
-                                    .retryOnConnectionFailure(true)
-//                                    .cookieJar(new OkHttpCookieManager())
-                                    .dispatcher(new Dispatcher(new ThreadPoolExecutor(10, 10, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000))))
-                                    .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES));
-                    if (ipProxy != null) {
-                        builder.proxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(ipProxy.getIp(), ipProxy.getPort())));
-                    }
-                    okHttpClient = builder.build();
+                    okHttpClient = buildClient(ipProxy);
                     addHeader(HttpHeaders.ACCEPT, "*/*");
                     addHeader(HttpHeaders.CONNECTION, "keep-alive");
 //                    addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
@@ -136,6 +127,57 @@ public class OkHttpUtils {
         }
     }
 
+    /**
+     * 共用的 {@link OkHttpClient}，{@link HttpRequest} 與本類別使用同一個連線池與 dispatcher
+     */
+    static OkHttpClient sharedClient() {
+        if (okHttpClient == null) {
+            synchronized (OkHttpUtils.class) {
+                if (okHttpClient == null) {
+                    okHttpClient = buildClient(null);
+                }
+            }
+        }
+        return okHttpClient;
+    }
+
+    /**
+     * 與共用 client 共用連線池、攔截器與逾時設定，但使用獨立的 dispatcher：
+     * 非同步呼叫最多 maxRequests 個同時進行，執行緒與其他上游分開，某個上游變慢時不會佔滿共用的 dispatcher
+     *
+     * @param name 執行緒名稱
+     */
+    public static OkHttpClient isolatedClient(String name, int maxRequests) {
+        Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("okhttp-" + name + "_")));
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        return sharedClient().newBuilder().dispatcher(dispatcher).build();
+    }
+
+    private static OkHttpClient buildClient(IpProxy ipProxy) {
+        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+        logging.setLevel(HttpLoggingInterceptor.Level.HEADERS);
+        TrustManager[] trustManagers = buildTrustManagers();
+        OkHttpClient.Builder builder =
+                new OkHttpClient.Builder()
+                        .addInterceptor(logging)
+                        .connectTimeout(10, TimeUnit.SECONDS)
+                        .writeTimeout(8, TimeUnit.SECONDS)
+                        .readTimeout(8, TimeUnit.SECONDS)
+                        .sslSocketFactory(
+                                createSSLSocketFactory(trustManagers), (X509TrustManager) trustManagers[0])
+                        .hostnameVerifier((hostName, session) -> true)
+                        .retryOnConnectionFailure(true)
+//                        .cookieJar(new OkHttpCookieManager())
+                        .dispatcher(new Dispatcher(new ThreadPoolExecutor(10, 10, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000))))
+                        .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES));
+        if (ipProxy != null) {
+            builder.proxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(ipProxy.getIp(), ipProxy.getPort())));
+        }
+        return builder.build();
+    }
+
     /**
      * 控制多個執行緒對共用資源的訪問
      */
@@ -150,29 +192,20 @@ public class OkHttpUtils {
 
     /**
      * 若要使用代理IP需要使用{@link OkHttpUtils#builder(IpProxy)}
+     * <p>
+     * 每次呼叫都建立新的實例，不再從物件池借用；新程式請改用不可變的 {@link HttpRequest}
      */
-    // 不使用池的方法
-//    public static OkHttpUtils builder() {
-//        return new OkHttpUtils();
-//    }
     public static OkHttpUtils builder() {
-        try {
-            return OkHttpUtilsPool.borrow();
-        } catch (Exception e) {
-            log.error("===>ERR:", e);
-            return new OkHttpUtils();
-        }
+        return new OkHttpUtils();
     }
 
+    /**
+     * 清除本次請求的參數與標頭
+     */
     public void release() {
-        try {
-            paramMap = null;
-            paramObj = null;
-            headerMap = null;
-            OkHttpUtilsPool.release(this);
-        } catch (Exception e) {
-            log.error("Failed to release OkHttpUtils back to pool", e);
-        }
+        paramMap = null;
+        paramObj = null;
+        headerMap = null;
     }
 
     public static OkHttpUtils builder(IpProxy ipProxy) {
@@ -422,12 +455,14 @@ public class OkHttpUtils {
                         .contentType(contentType)
                         .build();
             } else {
-                byte[] data = Objects.requireNonNull(response.body()).bytes();
+                // 二進位內容 (圖片、影音) 不在這裡讀進記憶體，需要內容時改用 stream
+                String data = contentType == null || contentType.startsWith("text")
+                        ? Objects.requireNonNull(response.body()).string() : null;
                 apiResponse = ApiResponse.builder()
                         .httpStatusCode(code)
                         .lineRequestId(lineRequestId)
+                        .resultData(data)
                         .contentType(contentType)
-                        .binaryData(data)
                         .build();
             }
             int httpStatusCode = apiResponse.getHttpStatusCode();
@@ -443,42 +478,61 @@ public class OkHttpUtils {
         }
     }
 
-    public ApiResponse async() {
-        StringBuilder buffer = new StringBuilder();
-        ApiResponse.ApiResponseBuilder builder = ApiResponse.builder();
+    /**
+     * 不經過記憶體緩衝，直接把 {@link Response} 交給 handler 讀取 body，適合下載檔案等大型回應；
+     * handler 結束後關閉連線
+     */
+    public <T> T stream(ResponseHandler<T> handler) throws IOException {
+        setHeader(request);
+        try (Response response = okHttpClient.newCall(request.build()).execute()) {
+            return handler.handle(response);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 非同步送出，回應在 OkHttp dispatcher 的執行緒上完成
+     * <p>
+     * 原本直接回傳尚未收到回應時的結果 (內容永遠是空的)，改為回傳 future；取消 future 時一併取消連線
+     */
+    public CompletableFuture<ApiResponse> async() {
         setHeader(request);
-        okHttpClient
-                .newCall(request.build())
-                .enqueue(
-                        new Callback() {
-                            @Override
-                            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                                buffer.append("ERROR:").append(e.getMessage());
-                                release();
-                            }
-
-                            @Override
-                            public void onResponse(@NotNull Call call, @NotNull Response response)
-                                    throws IOException {
-                                try {
-                                    builder.httpStatusCode(response.code());
-                                    buffer.append(Objects.requireNonNull(response.body()).string());
-                                } finally {
-                                    release();
-                                }
-//                                getSemaphoreInstance().release();
-                            }
-                        });
-
-        // async 版本無需使用 Semaphore，直接返回結果 (如果非同步操作需要同步完成，則應啟用)
-//        try {
-//            getSemaphoreInstance().acquire();
-//        } catch (InterruptedException e) {
-//            log.info("ERR:{}", ExceptionUtils.getStackTrace(e));
-//            Thread.currentThread().interrupt();
-//        }
-
-        return builder.resultData(buffer.toString()).build();
+        Call call = okHttpClient.newCall(request.build());
+        CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        future.whenComplete((r, t) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(
+                new Callback() {
+                    @Override
+                    public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                        try {
+                            future.completeExceptionally(e);
+                        } finally {
+                            release();
+                        }
+                    }
+
+                    @Override
+                    public void onResponse(@NotNull Call call, @NotNull Response response) {
+                        try (response) {
+                            future.complete(ApiResponse.builder()
+                                    .httpStatusCode(response.code())
+                                    .lineRequestId(response.header(requestIdHeader))
+                                    .contentType(response.header("Content-Type"))
+                                    .resultData(Objects.requireNonNull(response.body()).string())
+                                    .build());
+                        } catch (IOException e) {
+                            future.completeExceptionally(e);
+                        } finally {
+                            release();
+                        }
+                    }
+                });
+        return future;
     }
 
     public void async(ICallBack callBack) {
@@ -543,6 +597,11 @@ public class OkHttpUtils {
         };
     }
 
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
     public interface ICallBack {
         void onSuccessful(Call call, String data) throws IOException;
 
@@ -567,8 +626,8 @@ public class OkHttpUtils {
     }
 
     private static void testPostAsync(String u) {
-        ApiResponse async = OkHttpUtils.builder().get(u).async();
-        System.out.println("async = " + async);
+        OkHttpUtils.builder().get(u).async()
+                .thenAccept(async -> System.out.println("async = " + async));
     }
 
     private static void testPostAsyncCallback(String u) {
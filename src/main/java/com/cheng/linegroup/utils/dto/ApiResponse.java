@@ -34,7 +34,10 @@ public class ApiResponse {
      */
     private List<CSVRecord> csvRecords;
     private String contentType;
-    private byte[] binaryData;
+    /**
+     * 429 / 503 時的 Retry-After 標頭
+     */
+    private String retryAfter;
 
     public ApiResponse preview() {
         try {
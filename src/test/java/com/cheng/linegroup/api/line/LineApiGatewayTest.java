@@ -0,0 +1,121 @@
+package com.cheng.linegroup.api.line;
+
+import com.cheng.linegroup.common.domain.LineGateway;
+import com.cheng.linegroup.common.resilience.UpstreamGuard;
+import com.cheng.linegroup.enums.LineEndpoint;
+import com.cheng.linegroup.utils.HttpRequest;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LineApiGateway 重試、Retry-After 與 reply 期限的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 16:30
+ **/
+public class LineApiGatewayTest {
+
+    private static final HttpRequest REQUEST = HttpRequest.post("https://api.line.me/v2/bot/message/push");
+
+    private UpstreamGuard upstreamGuard;
+    private LineApiGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        LineGateway setting = new LineGateway();
+        setting.setInitialBackoff(Duration.ofMillis(10));
+        upstreamGuard = mock(UpstreamGuard.class);
+        gateway = new LineApiGateway(setting, upstreamGuard);
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    @DisplayName("429 依 Retry-After 等待後以同一個 retry key 重試，重試收到 409 視為成功")
+    void testRetryAfterWithSameRetryKey() {
+        when(upstreamGuard.execute(any(), any())).thenReturn(status(429, "1"), status(409, null));
+
+        long start = System.nanoTime();
+        ApiResponse response = gateway.execute(LineEndpoint.PUSH, REQUEST);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 900, "應等待 Retry-After 的秒數");
+        assertEquals(200, response.getHttpStatusCode());
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(upstreamGuard, times(2)).execute(any(), requests.capture());
+        List<HttpRequest> sent = requests.getAllValues();
+        String retryKey = sent.get(0).toRequest().header(LineApiGateway.RETRY_KEY_HEADER);
+        assertNotNull(retryKey);
+        assertEquals(retryKey, sent.get(1).toRequest().header(LineApiGateway.RETRY_KEY_HEADER));
+    }
+
+    @Test
+    @DisplayName("5xx 只在可安全重試的分類重試，最多 max-retries 次")
+    void testServerErrorRetries() {
+        when(upstreamGuard.execute(any(), any())).thenReturn(status(500, null));
+
+        assertEquals(500, gateway.execute(LineEndpoint.REPLY, REQUEST).getHttpStatusCode());
+        verify(upstreamGuard, times(1)).execute(any(), any());
+
+        assertEquals(500, gateway.execute(LineEndpoint.PUSH, REQUEST).getHttpStatusCode());
+        verify(upstreamGuard, times(5)).execute(any(), any());
+        assertEquals(3L, family("push").get("retries"));
+    }
+
+    @Test
+    @DisplayName("reply 的重試會超過 reply token 期限時不等待，直接回傳 429")
+    void testReplyRetryCappedAtDeadline() {
+        when(upstreamGuard.execute(any(), any())).thenReturn(status(429, "5"));
+
+        long start = System.nanoTime();
+        ApiResponse response = gateway.execute(LineEndpoint.REPLY, REQUEST, System.currentTimeMillis() + 1_000);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000, "不應等待 Retry-After");
+        assertEquals(429, response.getHttpStatusCode());
+        verify(upstreamGuard, times(1)).execute(any(), any());
+        assertEquals(1L, family("reply").get("retriesPastDeadline"));
+    }
+
+    @Test
+    @DisplayName("非同步送出時重試交給排程器，呼叫端立即返回")
+    void testAsyncRetry() throws Exception {
+        when(upstreamGuard.executeAsync(any(), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(status(503, null)),
+                CompletableFuture.completedFuture(status(200, null)));
+
+        CompletableFuture<ApiResponse> future = gateway.executeAsync(LineEndpoint.PUSH, REQUEST, null);
+
+        assertEquals(200, future.get(5, TimeUnit.SECONDS).getHttpStatusCode());
+        verify(upstreamGuard, times(2)).executeAsync(any(), any(), any());
+
+        when(upstreamGuard.executeAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(status(429, "5")));
+        ApiResponse reply = gateway.executeAsync(LineEndpoint.REPLY, REQUEST, null, System.currentTimeMillis() + 1_000)
+                .get(1, TimeUnit.SECONDS);
+        assertEquals(429, reply.getHttpStatusCode());
+    }
+
+    private static ApiResponse status(int httpStatus, String retryAfter) {
+        return ApiResponse.builder().httpStatusCode(httpStatus).retryAfter(retryAfter).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> family(String name) {
+        return (Map<String, Object>) gateway.getMetrics().get(name);
+    }
+}
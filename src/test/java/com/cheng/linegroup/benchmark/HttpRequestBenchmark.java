@@ -0,0 +1,172 @@
+package com.cheng.linegroup.benchmark;
+
+import com.cheng.linegroup.services.dto.LineMessage;
+import com.cheng.linegroup.utils.ApiUtils;
+import com.cheng.linegroup.utils.HttpRequest;
+import com.cheng.linegroup.utils.JacksonUtils;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 建立 LINE API 請求 (不含網路) 的配置量比較，看 gc.alloc.rate.norm (bytes/op)
+ * <pre>
+ * legacy:  從物件池借出 -> headerMap/paramObj -> toNode + toJsonString 產生 body 字串
+ *          GET 查詢參數 toJsonString -> toMap -> encodingParams 組 query string -> 歸還物件池
+ * request: 不可變的 HttpRequest，查詢參數直接加到 HttpUrl，JSON 送出時直接寫入 sink
+ * </pre>
+ * 兩者都把 body 寫到 {@link Buffer}，模擬送出時寫入連線。messageCount 為一次回覆的訊息數 (LINE 上限 5)。
+ * 直接執行 main 即可。
+ *
+ * @author cheng
+ * @since 2026/10/17 22:00
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRequestBenchmark {
+
+    private static final String URL = "https://api.line.me/v2/bot/message/reply";
+    private static final String MEMBER_URL = "https://api.line.me/v2/bot/group/Cb8f920d5c155f93d5a44464a5d46439b/members/ids";
+    private static final String TOKEN = "c2VjcmV0LWNoYW5uZWwtdG9rZW4tZm9yLWJlbmNobWFyaw==";
+    private static final MediaType JSON = MediaType.parse("application/json;charset=utf-8");
+
+    @Param({"1", "5"})
+    private int messageCount;
+
+    private LineMessage lineMessage;
+    private GenericObjectPool<LegacyState> pool;
+
+    @Setup
+    public void setUp() {
+        List<LineMessage.Message> messages = new ArrayList<>(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            messages.add(LineMessage.Message.builder().msg("唐董今天吃什麼 " + i).build());
+        }
+        lineMessage = LineMessage.builder()
+                .replyToken("757913772c4646b784d4b7ce46d12671")
+                .messages(messages)
+                .build();
+
+        GenericObjectPoolConfig<LegacyState> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(50);
+        config.setMinIdle(5);
+        config.setMaxIdle(10);
+        pool = new GenericObjectPool<>(new BasePooledObjectFactory<>() {
+            @Override
+            public LegacyState create() {
+                return new LegacyState();
+            }
+
+            @Override
+            public PooledObject<LegacyState> wrap(LegacyState obj) {
+                return new DefaultPooledObject<>(obj);
+            }
+        }, config);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public void legacyPost(Blackhole bh) throws Exception {
+        // 對應原本 LineService.CallMessageAPI + OkHttpUtils.post(url).sync()
+        LegacyState state = pool.borrowObject();
+        try {
+            state.headerMap = new HashMap<>(10);
+            state.headerMap.put("Authorization", String.format("Bearer %s", TOKEN));
+            state.paramObj = JacksonUtils.genJsonObject();
+            state.paramObj.setAll(JacksonUtils.toNode(lineMessage));
+            String json = JacksonUtils.toJsonString(state.paramObj);
+            Request.Builder builder = new Request.Builder().post(RequestBody.create(json, JSON)).url(URL);
+            state.headerMap.forEach(builder::addHeader);
+            consume(bh, builder.build());
+        } finally {
+            state.headerMap = null;
+            state.paramObj = null;
+            pool.returnObject(state);
+        }
+    }
+
+    @Benchmark
+    public void requestPost(Blackhole bh) throws IOException {
+        consume(bh, HttpRequest.post(URL).bearer(TOKEN).json(lineMessage).toRequest());
+    }
+
+    @Benchmark
+    public void legacyGet(Blackhole bh) throws Exception {
+        // 對應原本 LineService.getGroupMemberIds 以 addParam 帶入 start 後 get(url)
+        LegacyState state = pool.borrowObject();
+        try {
+            state.headerMap = new HashMap<>(10);
+            state.headerMap.put("Authorization", String.format("Bearer %s", TOKEN));
+            state.paramObj = JacksonUtils.genJsonObject();
+            state.paramObj.put("start", "JsDpvXKiTZQ6G8cKBqa5ERv5ZsCkRnz7H5D4yTf3BT5n");
+            Map<String, String> map = JacksonUtils.toMap(JacksonUtils.toJsonString(state.paramObj));
+            String encodingParams = ApiUtils.encodingParams(map);
+            String url = String.format("%s%s", MEMBER_URL, "?" + encodingParams);
+            Request.Builder builder = new Request.Builder().get().url(url);
+            state.headerMap.forEach(builder::addHeader);
+            bh.consume(builder.build());
+        } finally {
+            state.headerMap = null;
+            state.paramObj = null;
+            pool.returnObject(state);
+        }
+    }
+
+    @Benchmark
+    public void requestGet(Blackhole bh) {
+        bh.consume(HttpRequest.get(MEMBER_URL).bearer(TOKEN)
+                .query("start", "JsDpvXKiTZQ6G8cKBqa5ERv5ZsCkRnz7H5D4yTf3BT5n")
+                .toRequest());
+    }
+
+    private static void consume(Blackhole bh, Request request) throws IOException {
+        Buffer sink = new Buffer();
+        request.body().writeTo(sink);
+        bh.consume(sink.size());
+        sink.clear();
+        bh.consume(request);
+    }
+
+    /**
+     * 原本 OkHttpUtils 在物件池中保存的可變狀態
+     */
+    private static final class LegacyState {
+        private Map<String, String> headerMap;
+        private ObjectNode paramObj;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HttpRequestBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
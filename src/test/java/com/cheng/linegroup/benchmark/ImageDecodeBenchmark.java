@@ -0,0 +1,139 @@
+package com.cheng.linegroup.benchmark;
+
+import com.cheng.linegroup.common.domain.ImageDecodeSetting;
+import com.cheng.linegroup.image.ImageDecoder;
+import com.cheng.linegroup.image.ImageEntry;
+import net.coobird.thumbnailator.Thumbnails;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /img/{name}/{w}/{h} 縮圖的解碼方式比較，同時送出 concurrency 個縮圖請求並等待全部完成
+ * <pre>
+ * legacy:     ImageIO.read 解碼整張原圖 -> Thumbnailator 縮圖 (原本的 ImageController.getImage)
+ * subsampled: 讀檔頭 -> ImageReadParam 抽樣解碼 -> Thumbnailator 縮圖，受 memory budget 限制同時執行量
+ * </pre>
+ * 原圖為 6000x4000 的 JPEG (約 96MB 像素記憶體)，縮成 240x240。
+ * 每個 iteration 結束時印出該 iteration 的 heap 峰值；legacy 在 concurrency 50 時可能直接 OutOfMemoryError。
+ * 直接執行 main 即可。
+ *
+ * @author cheng
+ * @since 2026/10/17 20:20
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ImageDecodeBenchmark {
+
+    private static final int SOURCE_WIDTH = 6000;
+    private static final int SOURCE_HEIGHT = 4000;
+    private static final int TARGET = 240;
+
+    @Param({"1", "10", "50"})
+    private int concurrency;
+
+    private Path file;
+    private ImageEntry entry;
+    private ImageDecoder decoder;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("decode-benchmark", ".jpg");
+        BufferedImage source = new BufferedImage(SOURCE_WIDTH, SOURCE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = source.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, SOURCE_WIDTH, SOURCE_HEIGHT, Color.BLUE));
+        g.fillRect(0, 0, SOURCE_WIDTH, SOURCE_HEIGHT);
+        g.dispose();
+        ImageIO.write(source, "jpeg", file.toFile());
+
+        entry = new ImageEntry("benchmark.jpg", "benchmark.jpg", file, Files.size(file),
+                SOURCE_WIDTH, SOURCE_HEIGHT, Files.getLastModifiedTime(file).toMillis());
+        decoder = new ImageDecoder(new ImageDecodeSetting());
+        executor = Executors.newFixedThreadPool(50);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n  peak heap: %d MB (concurrency %d)%n", peak / 1024 / 1024, concurrency);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) throws Exception {
+        runConcurrently(bh, () -> {
+            BufferedImage img = ImageIO.read(file.toFile());
+            BufferedImage output = Thumbnails.of(img).size(TARGET, TARGET).asBufferedImage();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(output, "jpeg", out);
+            return out.toByteArray();
+        });
+    }
+
+    @Benchmark
+    public void subsampled(Blackhole bh) throws Exception {
+        runConcurrently(bh, () -> decoder.renderJpeg(entry, TARGET, TARGET));
+    }
+
+    private void runConcurrently(Blackhole bh, Callable<byte[]> render) throws Exception {
+        List<Future<byte[]>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(executor.submit(render));
+        }
+        for (Future<byte[]> future : futures) {
+            bh.consume(future.get());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageDecodeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.cheng.linegroup.benchmark;
+
+import com.cheng.linegroup.common.domain.ImageFilterSetting;
+import com.cheng.linegroup.image.ImageFilter;
+import com.cheng.linegroup.image.TiledFilterEngine;
+import com.jhlabs.image.GaussianFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高斯模糊 (半徑 40，與 ImageTest 相同) 的吞吐量比較
+ * <pre>
+ * singleThreaded: 整張圖直接交給 GaussianFilter (原本的 ImageTest.gaussianFilter)
+ * tiled:          TiledFilterEngine 切成 512px 分塊在 ForkJoinPool 上平行處理再拼回
+ * </pre>
+ * 直接執行 main 即可。
+ *
+ * @author cheng
+ * @since 2026/10/17 21:00
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ImageFilterBenchmark {
+
+    private static final float RADIUS = 40f;
+
+    @Param({"1024", "2048", "4096"})
+    private int size;
+
+    private BufferedImage source;
+    private TiledFilterEngine engine;
+
+    @Setup
+    public void setUp() {
+        source = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = source.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, size, size, Color.BLUE, true));
+        g.fillRect(0, 0, size, size);
+        g.dispose();
+        engine = new TiledFilterEngine(new ImageFilterSetting());
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage singleThreaded() {
+        return new GaussianFilter(RADIUS).filter(source, null);
+    }
+
+    @Benchmark
+    public BufferedImage tiled() {
+        return engine.apply(source, ImageFilter.BLUR, RADIUS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
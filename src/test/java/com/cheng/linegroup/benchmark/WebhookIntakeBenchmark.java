@@ -0,0 +1,118 @@
+package com.cheng.linegroup.benchmark;
+
+import com.cheng.linegroup.common.domain.Line;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.webhook.WebhookEventStreamParser;
+import com.cheng.linegroup.events.webhook.WebhookSignatureVerifier;
+import com.cheng.linegroup.utils.JacksonUtils;
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * webhook 驗證 + 解析的效能比較
+ * <pre>
+ * legacy:    String body -> getBytes -> 每次建立 SecretKeySpec/Mac -> decodeFromJson 整包反序列化
+ * streaming: byte body   -> 執行緒共用 Mac                      -> 串流解析 events 逐筆處理
+ * </pre>
+ * eventCount 1 為一般私訊，10/50 模擬群組大量訊息時 LINE 合併送出的 webhook。
+ * 直接執行 main 即可。
+ *
+ * @author cheng
+ * @since 2026/10/17 14:40
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookIntakeBenchmark {
+
+    private static final String CHANNEL_SECRET = "0123456789abcdef0123456789abcdef";
+
+    @Param({"1", "10", "50"})
+    private int eventCount;
+
+    private String body;
+    private byte[] bodyBytes;
+    private String signature;
+
+    private WebhookSignatureVerifier verifier;
+    private WebhookEventStreamParser parser;
+
+    @Setup
+    public void setUp() throws Exception {
+        body = buildBody(eventCount);
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        signature = Base64.encodeBase64String(hmac(bodyBytes));
+
+        Line line = new Line();
+        Line.Message message = new Line.Message();
+        message.setChannelSecret(CHANNEL_SECRET);
+        line.setMessage(message);
+        verifier = new WebhookSignatureVerifier(line);
+        parser = new WebhookEventStreamParser();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) throws Exception {
+        // 對應原本 LineController.verifySignature + JacksonUtils.decodeFromJson
+        SecretKeySpec key = new SecretKeySpec(CHANNEL_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(key);
+        byte[] calculated = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+        boolean valid = MessageDigest.isEqual(calculated, Base64.decodeBase64(signature));
+        bh.consume(valid);
+
+        WebhookEvent event = JacksonUtils.decodeFromJson(body, WebhookEvent.class);
+        for (WebhookEvent.Event e : event.getEvents()) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws IOException {
+        boolean valid = verifier.verify(bodyBytes, 0, bodyBytes.length, signature);
+        bh.consume(valid);
+        parser.parse(bodyBytes, 0, bodyBytes.length, bh::consume);
+    }
+
+    private static byte[] hmac(byte[] data) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(CHANNEL_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return mac.doFinal(data);
+    }
+
+    private static String buildBody(int eventCount) {
+        StringBuilder sb = new StringBuilder("{\"destination\":\"U2c4b24b25fe4de46a9875a2c83c94063\",\"events\":[");
+        for (int i = 0; i < eventCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("""
+                    {"type":"message","message":{"type":"text","id":"46880923%06d","quoteToken":"q3Plxr4AgKd...","text":"唐董今天吃什麼 %d"},\
+                    "webhookEventId":"01HQ4C2M3B5XH8Y7W6N2K9R%03d","deliveryContext":{"isRedelivery":false},\
+                    "timestamp":1708930000000,"source":{"type":"group","groupId":"Cb8f920d5c155f93d5a44464a5d46439b",\
+                    "userId":"U4af4980629f8c0b3a1a2b3c4d5e6f7a8"},"replyToken":"757913772c4646b784d4b7ce46d12671","mode":"active"}\
+                    """.formatted(i, i, i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WebhookIntakeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.cheng.linegroup.common.persistence;
+
+import com.cheng.linegroup.common.domain.WriteBehind;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WriteBehindBuffer 批次寫入與關閉時寫完剩餘紀錄的測試
+ * <p>
+ * 以記錄每次 batchUpdate 內容的 JdbcTemplate 取代資料庫
+ *
+ * @author cheng
+ * @since 2026/10/18 11:00
+ */
+public class WriteBehindBufferTest {
+
+    @Test
+    @DisplayName("關閉時寫完所有尚未寫入的紀錄，且依加入順序")
+    public void testFlushOnClose() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate(0);
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", config(1000, Duration.ofSeconds(2)),
+                jdbcTemplate, "INSERT", (ps, r) -> {
+        });
+        List<Integer> records = IntStream.range(0, 50).boxed().toList();
+        records.forEach(buffer::add);
+
+        // batch 未滿且還沒到 flush 間隔
+        assertTrue(jdbcTemplate.rows().isEmpty(), "關閉前不應已寫入");
+
+        buffer.close();
+        assertEquals(records, jdbcTemplate.rows());
+        assertEquals(50L, buffer.getMetrics().get("written"));
+        assertEquals(0, buffer.getMetrics().get("queueSize"));
+
+        // 關閉後加入的紀錄改在呼叫端同步寫入
+        buffer.add(50);
+        assertEquals(51, jdbcTemplate.rows().size());
+        assertEquals(1L, buffer.getMetrics().get("callerWrites"));
+    }
+
+    @Test
+    @DisplayName("每個 batch 不超過 batchSize")
+    public void testBatchSize() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate(0);
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", config(5, Duration.ofMillis(200)),
+                jdbcTemplate, "INSERT", (ps, r) -> {
+        });
+        IntStream.range(0, 12).forEach(buffer::add);
+        buffer.close();
+
+        assertEquals(IntStream.range(0, 12).boxed().toList(), jdbcTemplate.rows());
+        assertTrue(jdbcTemplate.batchSizes().stream().allMatch(size -> size <= 5), "batch 大小: " + jdbcTemplate.batchSizes());
+    }
+
+    @Test
+    @DisplayName("寫入失敗時重試，不遺失紀錄")
+    public void testRetryFailedBatch() {
+        RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate(2);
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>("test", config(100, Duration.ofMillis(200)),
+                jdbcTemplate, "INSERT", (ps, r) -> {
+        });
+        IntStream.range(0, 3).forEach(buffer::add);
+        buffer.close();
+
+        assertEquals(List.of(0, 1, 2), jdbcTemplate.rows());
+        assertEquals(0L, buffer.getMetrics().get("failed"));
+    }
+
+    private static WriteBehind config(int batchSize, Duration flushInterval) {
+        WriteBehind config = new WriteBehind();
+        config.setBatchSize(batchSize);
+        config.setFlushInterval(flushInterval);
+        config.setCapacity(1000);
+        config.setMaxRetries(3);
+        return config;
+    }
+
+    /**
+     * 記錄 batchUpdate 的內容，前 failures 次呼叫拋出例外
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private final List<Integer> rows = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger failures;
+
+        private RecordingJdbcTemplate(int failures) {
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (failures.getAndDecrement() > 0) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            rows.addAll((Collection<Integer>) batchArgs);
+            batchSizes.add(batchArgs.size());
+            return new int[][]{new int[batchArgs.size()]};
+        }
+
+        private List<Integer> rows() {
+            synchronized (rows) {
+                return new ArrayList<>(rows);
+            }
+        }
+
+        private List<Integer> batchSizes() {
+            synchronized (batchSizes) {
+                return new ArrayList<>(batchSizes);
+            }
+        }
+    }
+}
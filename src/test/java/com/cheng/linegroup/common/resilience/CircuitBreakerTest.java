@@ -0,0 +1,124 @@
+package com.cheng.linegroup.common.resilience;
+
+import com.cheng.linegroup.common.domain.UpstreamResilience;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CircuitBreaker 狀態轉換的測試，時間以參數傳入，不需等待
+ *
+ * @author cheng
+ * @since 2026/10/18 11:30
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 1_000;
+
+    @Test
+    @DisplayName("CLOSED -> OPEN -> HALF_OPEN -> CLOSED")
+    public void testRecover() {
+        CircuitBreaker breaker = new CircuitBreaker("test", policy());
+        long now = 0;
+
+        // 未達 minimumCalls 前不斷路
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CircuitBreaker.Permit.NORMAL, breaker.tryAcquire(now));
+            breaker.onResult(CircuitBreaker.Permit.NORMAL, true, now);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, stateOf(breaker));
+
+        breaker.tryAcquire(now);
+        breaker.onResult(CircuitBreaker.Permit.NORMAL, true, now);
+        assertEquals(CircuitBreaker.State.OPEN, stateOf(breaker));
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire(now + OPEN_MS - 1));
+
+        // 經過 openDuration 後放行 halfOpenProbes 個探測呼叫
+        now += OPEN_MS;
+        CircuitBreaker.Permit first = breaker.tryAcquire(now);
+        CircuitBreaker.Permit second = breaker.tryAcquire(now);
+        assertEquals(CircuitBreaker.Permit.PROBE, first);
+        assertEquals(CircuitBreaker.Permit.PROBE, second);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, stateOf(breaker));
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire(now));
+
+        breaker.onResult(first, false, now);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, stateOf(breaker));
+        breaker.onResult(second, false, now);
+        assertEquals(CircuitBreaker.State.CLOSED, stateOf(breaker));
+        assertEquals(CircuitBreaker.Permit.NORMAL, breaker.tryAcquire(now));
+
+        // 恢復後視窗重新計算
+        assertEquals(0, breaker.metrics().get("windowCalls"));
+        Map<?, ?> transitions = (Map<?, ?>) breaker.metrics().get("transitions");
+        assertEquals(1L, transitions.get("CLOSED->OPEN"));
+        assertEquals(1L, transitions.get("OPEN->HALF_OPEN"));
+        assertEquals(1L, transitions.get("HALF_OPEN->CLOSED"));
+    }
+
+    @Test
+    @DisplayName("任一探測呼叫失敗即回到 OPEN，並重新計時")
+    public void testProbeFailure() {
+        CircuitBreaker breaker = tripped();
+        long now = OPEN_MS;
+
+        CircuitBreaker.Permit probe = breaker.tryAcquire(now);
+        assertEquals(CircuitBreaker.Permit.PROBE, probe);
+        breaker.onResult(probe, true, now);
+        assertEquals(CircuitBreaker.State.OPEN, stateOf(breaker));
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire(now + OPEN_MS - 1));
+        assertEquals(CircuitBreaker.Permit.PROBE, breaker.tryAcquire(now + OPEN_MS));
+    }
+
+    @Test
+    @DisplayName("釋放未使用的探測許可後可再取得")
+    public void testReleaseProbe() {
+        CircuitBreaker breaker = tripped();
+        long now = OPEN_MS;
+
+        CircuitBreaker.Permit first = breaker.tryAcquire(now);
+        breaker.tryAcquire(now);
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire(now));
+
+        breaker.release(first);
+        assertEquals(CircuitBreaker.Permit.PROBE, breaker.tryAcquire(now));
+    }
+
+    @Test
+    @DisplayName("斷路前送出的呼叫結果不影響 OPEN 狀態")
+    public void testLateResultIgnored() {
+        CircuitBreaker breaker = tripped();
+
+        breaker.onResult(CircuitBreaker.Permit.NORMAL, false, 1);
+        assertEquals(CircuitBreaker.State.OPEN, stateOf(breaker));
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire(1));
+    }
+
+    private static CircuitBreaker tripped() {
+        CircuitBreaker breaker = new CircuitBreaker("test", policy());
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire(0);
+            breaker.onResult(CircuitBreaker.Permit.NORMAL, true, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, stateOf(breaker));
+        return breaker;
+    }
+
+    private static UpstreamResilience.Policy policy() {
+        UpstreamResilience.Policy policy = new UpstreamResilience.Policy();
+        policy.setWindowSize(10);
+        policy.setMinimumCalls(4);
+        policy.setFailureRateThreshold(50);
+        policy.setOpenDuration(Duration.ofMillis(OPEN_MS));
+        policy.setHalfOpenProbes(2);
+        return policy;
+    }
+
+    private static CircuitBreaker.State stateOf(CircuitBreaker breaker) {
+        return (CircuitBreaker.State) breaker.metrics().get("state");
+    }
+}
@@ -0,0 +1,102 @@
+package com.cheng.linegroup.common.resilience;
+
+import com.cheng.linegroup.common.domain.UpstreamResilience;
+import com.cheng.linegroup.enums.Upstream;
+import com.cheng.linegroup.utils.HttpRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UpstreamGuard 串流呼叫只在連線與回應標頭期間佔用 bulkhead 的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 16:30
+ */
+public class UpstreamGuardTest {
+
+    private HttpServer server;
+    private UpstreamGuard guard;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 先送出標頭，body 過一段時間才寫完
+        server.createContext("/slow", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write('a');
+                out.flush();
+                Thread.sleep(300);
+                out.write('b');
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.createContext("/error", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        UpstreamResilience.Policy policy = new UpstreamResilience.Policy();
+        policy.setMaxConcurrent(1);
+        policy.setSlowCallThreshold(Duration.ofMillis(100));
+        UpstreamResilience setting = new UpstreamResilience();
+        setting.getPolicies().put(Upstream.LINE_DATA, policy);
+        guard = new UpstreamGuard(setting);
+        guard.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        guard.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("收到標頭後就釋放 bulkhead，讀取 body 的時間不算慢呼叫")
+    public void testBodyNotGuarded() throws IOException {
+        String body = guard.stream(Upstream.LINE_DATA, HttpRequest.get(baseUrl + "/slow"), response -> {
+            assertEquals(0, metrics().get("active"), "讀取 body 時不佔用 bulkhead");
+            // bulkhead 只有 1 個位置，讀取 body 時仍可進行其他呼叫
+            guard.stream(Upstream.LINE_DATA, HttpRequest.get(baseUrl + "/error"), r -> r.code());
+            try (InputStream in = response.body().byteStream()) {
+                return new String(in.readAllBytes());
+            }
+        });
+
+        assertEquals("ab", body);
+        assertEquals(2L, metrics().get("calls"));
+        assertEquals(0L, metrics().get("slowCalls"));
+        assertEquals(0, metrics().get("active"));
+    }
+
+    @Test
+    @DisplayName("5xx 與連線失敗計入失敗")
+    public void testServerErrorCounted() throws IOException {
+        assertEquals(503, guard.stream(Upstream.LINE_DATA, HttpRequest.get(baseUrl + "/error"), r -> r.code()));
+        server.stop(0);
+        assertThrows(IOException.class, () -> guard.stream(Upstream.LINE_DATA, HttpRequest.get(baseUrl + "/error"), r -> r.code()));
+
+        assertEquals(2L, metrics().get("failures"));
+        assertEquals(0, metrics().get("active"));
+    }
+
+    private Map<?, ?> metrics() {
+        return (Map<?, ?>) guard.getMetrics().get("line_data");
+    }
+}
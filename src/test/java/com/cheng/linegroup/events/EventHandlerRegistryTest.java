@@ -0,0 +1,55 @@
+package com.cheng.linegroup.events;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.LineEvent;
+import com.cheng.linegroup.events.handler.NoneEventHandler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EventHandlerRegistry 分派表測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:30
+ */
+public class EventHandlerRegistryTest {
+
+    @Test
+    @DisplayName("事件交給對應的 handler，沒有對應的事件共用同一個 NoneEventHandler")
+    public void testDispatch() {
+        List<WebhookEvent.Event> handled = new ArrayList<>();
+        EventHandler joinHandler = new EventHandler() {
+            @Override
+            public void handle(WebhookEvent.Event e) {
+                handled.add(e);
+            }
+
+            @Override
+            public LineEvent getSupportedEventType() {
+                return LineEvent.JOIN;
+            }
+        };
+        DispatchMetrics dispatchMetrics = new DispatchMetrics();
+        EventHandlerRegistry registry = new EventHandlerRegistry(List.of(joinHandler), dispatchMetrics);
+
+        WebhookEvent.Event e = new WebhookEvent.Event();
+        registry.handle(LineEvent.JOIN, e);
+        assertEquals(List.of(e), handled);
+
+        EventHandler leave = registry.getEventHandler(LineEvent.LEAVE);
+        assertInstanceOf(NoneEventHandler.class, leave);
+        assertSame(leave, registry.getEventHandler(LineEvent.FOLLOW));
+
+        registry.handle(LineEvent.LEAVE, e);
+        assertEquals(1, handled.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stage = (Map<String, Object>) dispatchMetrics.getMetrics().get("handler.NoneEventHandler");
+        assertEquals(1L, stage.get("count"));
+    }
+}
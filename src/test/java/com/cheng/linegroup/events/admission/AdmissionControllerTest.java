@@ -0,0 +1,124 @@
+package com.cheng.linegroup.events.admission;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdmissionController 延後、補入順序與丟棄測試
+ * <p>
+ * 上限固定為 2：COMMAND 可到 3，LIFECYCLE 為 2，CHATTER 為 1；每個優先等級最多延後 2 個事件。
+ * 不啟動定期補入的排程，補入只發生在 permit 釋放時。
+ *
+ * @author cheng
+ * @since 2026/10/18 10:40
+ */
+public class AdmissionControllerTest {
+
+    private AdmissionController admission;
+    private final List<String> started = new ArrayList<>();
+    private final List<String> shed = new ArrayList<>();
+    private final Map<String, AdmissionController.Permit> permits = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        LineWebhook lineWebhook = new LineWebhook();
+        LineWebhook.Admission config = lineWebhook.getAdmission();
+        config.setInitialLimit(2);
+        config.setMinLimit(2);
+        config.setMaxLimit(2);
+        config.setCommandHeadroom(1.5);
+        config.setChatterRatio(0.5);
+        config.setMaxDeferred(2);
+        admission = new AdmissionController(lineWebhook);
+    }
+
+    @Test
+    @DisplayName("對話有延後的事件時，之後的事件 (含 COMMAND) 排在後面，補入時依送進來的順序")
+    public void testDeferredEventsKeepConversationOrder() {
+        submit("A", EventPriority.CHATTER, "A1");
+        submit("A", EventPriority.CHATTER, "A2");
+        // 還有額度，但 A 已有延後的事件，不能插隊
+        submit("A", EventPriority.COMMAND, "A3");
+        submit("B", EventPriority.COMMAND, "B1");
+        submit("C", EventPriority.CHATTER, "C1");
+        assertEquals(List.of("A1", "B1"), started);
+
+        release("A1");
+        // CHATTER 上限為 1，B1 仍在處理中
+        assertEquals(List.of("A1", "B1"), started);
+
+        release("B1");
+        // A2 補入後 A 的下一個事件是 COMMAND，立即以 COMMAND 的額度補入
+        assertEquals(List.of("A1", "B1", "A2", "A3"), started);
+
+        release("A2");
+        release("A3");
+        assertEquals(List.of("A1", "B1", "A2", "A3", "C1"), started);
+        assertTrue(shed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("CHATTER 延後佇列滿時丟棄，已在對話中排隊的事件不受影響")
+    public void testShedChatterWhenDeferredQueueFull() {
+        submit("A", EventPriority.CHATTER, "A1");
+        submit("A", EventPriority.CHATTER, "A2");
+        submit("B", EventPriority.CHATTER, "B1");
+        // 延後佇列已滿
+        submit("C", EventPriority.CHATTER, "C1");
+        submit("A", EventPriority.CHATTER, "A3");
+        assertEquals(List.of("A1"), started);
+        assertEquals(List.of("C1", "A3"), shed);
+
+        release("A1");
+        release("A2");
+        release("B1");
+        assertEquals(List.of("A1", "A2", "B1"), started);
+        assertEquals(2L, chatterMetrics().get("shed"));
+        assertEquals(0, chatterMetrics().get("deferredQueue"));
+    }
+
+    @Test
+    @DisplayName("LIFECYCLE 延後佇列滿時超量接受，不會被丟棄")
+    public void testLifecycleAdmittedOverLimitWhenDeferredQueueFull() {
+        submit("X", EventPriority.LIFECYCLE, "X1");
+        submit("Y", EventPriority.LIFECYCLE, "Y1");
+        submit("L1", EventPriority.LIFECYCLE, "L1");
+        submit("L2", EventPriority.LIFECYCLE, "L2");
+        submit("L3", EventPriority.LIFECYCLE, "L3");
+
+        assertEquals(List.of("X1", "Y1", "L3"), started);
+        assertTrue(shed.isEmpty());
+
+        release("X1");
+        release("Y1");
+        release("L3");
+        assertEquals(List.of("X1", "Y1", "L3", "L1", "L2"), started);
+    }
+
+    private void submit(String key, EventPriority priority, String name) {
+        Consumer<AdmissionController.Permit> task = permit -> {
+            started.add(name);
+            permits.put(name, permit);
+        };
+        admission.submit(key, priority, task, () -> shed.add(name));
+    }
+
+    private void release(String name) {
+        permits.remove(name).release();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> chatterMetrics() {
+        return (Map<String, Object>) admission.getMetrics().get(EventPriority.CHATTER.name());
+    }
+}
@@ -0,0 +1,78 @@
+package com.cheng.linegroup.events.deadline;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ActionBudget 超過時間預算時中斷行為的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:20
+ */
+public class ActionBudgetTest {
+
+    private ReplyDeadlineTracker tracker;
+    private ActionBudget actionBudget;
+
+    @BeforeEach
+    public void setUp() {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.getDeadline().setActionBudget(Duration.ofMillis(100));
+        tracker = new ReplyDeadlineTracker(lineWebhook);
+        actionBudget = new ActionBudget(tracker);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        actionBudget.shutdown();
+    }
+
+    @Test
+    @DisplayName("預算內完成的行為照常回傳結果")
+    public void testWithinBudget() {
+        assertFalse(actionBudget.run("fast", () -> false));
+        assertTrue(actionBudget.run("fast", () -> true));
+        assertEquals(0L, tracker.getMetrics().get("actionsCancelled"));
+    }
+
+    @Test
+    @DisplayName("超過預算時中斷阻塞中的行為，結束後清除執行緒的中斷狀態")
+    public void testCancelBlockingAction() {
+        long start = System.nanoTime();
+        boolean result = actionBudget.run("slow", () -> {
+            try {
+                Thread.sleep(10_000);
+                return false;
+            } catch (InterruptedException e) {
+                return ActionBudget.isCancelled();
+            }
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(result, "被取消的行為應中斷後續行為");
+        assertTrue(elapsedMs < 5_000, "應在預算到期後盡快結束: " + elapsedMs + "ms");
+        assertFalse(Thread.currentThread().isInterrupted(), "不應留下中斷狀態");
+        assertFalse(ActionBudget.isCancelled());
+        assertEquals(1L, tracker.getMetrics().get("actionsCancelled"));
+    }
+
+    @Test
+    @DisplayName("被取消的行為拋出的例外不往外傳")
+    public void testCancelledActionException() {
+        assertTrue(actionBudget.run("throwing", () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("interrupted");
+            }
+            return false;
+        }));
+    }
+}
@@ -0,0 +1,102 @@
+package com.cheng.linegroup.events.deadline;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.events.lane.ConversationLaneExecutor;
+import com.cheng.linegroup.services.dto.LineMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReplyDeadlineTracker 期限計算與過期處理測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:20
+ */
+public class ReplyDeadlineTrackerTest {
+
+    @AfterEach
+    public void tearDown() {
+        ReplyDeadline.clear();
+    }
+
+    @Test
+    @DisplayName("期限為事件時間加上 reply token ttl 減去安全邊際，沒有 reply token 時沒有期限")
+    public void testDeadlineOf() {
+        ReplyDeadlineTracker tracker = new ReplyDeadlineTracker(new LineWebhook());
+
+        assertEquals(1_000L + 60_000 - 3_000, tracker.deadlineOf(event("R1", 1_000L)));
+        assertEquals(ConversationLaneExecutor.NO_DEADLINE, tracker.deadlineOf(event(null, 1_000L)));
+        assertEquals(ConversationLaneExecutor.NO_DEADLINE, tracker.deadlineOf(event("R1", 0)));
+    }
+
+    @Test
+    @DisplayName("開始處理時已過期，reply 改用 push 發送到群組")
+    public void testFallbackToPush() {
+        ReplyDeadlineTracker tracker = new ReplyDeadlineTracker(new LineWebhook());
+        long now = System.currentTimeMillis();
+        WebhookEvent.Event e = event("R1", now - 120_000);
+
+        ReplyDeadline replyDeadline = tracker.begin(e, tracker.deadlineOf(e), now - 100);
+        assertTrue(replyDeadline.isExpired());
+        assertTrue(tracker.isReplyExpired());
+
+        LineMessage pushed = tracker.fallback(LineMessage.builder().replyToken("R1").build());
+        assertNotNull(pushed);
+        assertNull(pushed.getReplyToken());
+        assertEquals("G1", pushed.getUid());
+        assertEquals(1L, tracker.getMetrics().get("missedBeforeStart"));
+        assertEquals(1L, tracker.getMetrics().get("downgradedToPush"));
+    }
+
+    @Test
+    @DisplayName("DROP 時過期的 reply 直接丟棄，行為的時間預算不超過剩餘時間")
+    public void testDropPolicy() {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.getDeadline().setExpiredPolicy(LineWebhook.ExpiredPolicy.DROP);
+        lineWebhook.getDeadline().setActionBudget(Duration.ofMinutes(5));
+        ReplyDeadlineTracker tracker = new ReplyDeadlineTracker(lineWebhook);
+        long now = System.currentTimeMillis();
+
+        WebhookEvent.Event fresh = event("R1", now);
+        tracker.begin(fresh, tracker.deadlineOf(fresh), now);
+        long budget = tracker.actionBudgetMillis();
+        assertTrue(budget > 50_000 && budget <= 57_000, "budget: " + budget);
+
+        WebhookEvent.Event expired = event("R2", now - 120_000);
+        tracker.begin(expired, tracker.deadlineOf(expired), now);
+        assertEquals(0, tracker.actionBudgetMillis());
+        assertNull(tracker.fallback(LineMessage.builder().replyToken("R2").build()));
+        assertEquals(1L, tracker.getMetrics().get("dropped"));
+    }
+
+    @Test
+    @DisplayName("PUSH 時行為使用固定的時間預算")
+    public void testPushPolicyBudget() {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.getDeadline().setActionBudget(Duration.ofSeconds(5));
+        ReplyDeadlineTracker tracker = new ReplyDeadlineTracker(lineWebhook);
+        long now = System.currentTimeMillis();
+        WebhookEvent.Event expired = event("R1", now - 120_000);
+
+        tracker.begin(expired, tracker.deadlineOf(expired), now);
+        assertEquals(5_000, tracker.actionBudgetMillis());
+    }
+
+    private static WebhookEvent.Event event(String replyToken, long timestamp) {
+        WebhookEvent.Event e = new WebhookEvent.Event();
+        e.setWebhookEventId("E-" + timestamp);
+        e.setReplyToken(replyToken);
+        e.setTimestamp(timestamp);
+        WebhookEvent.Event.Source source = new WebhookEvent.Event.Source();
+        source.setGroupId("G1");
+        source.setUserId("U1");
+        e.setSource(source);
+        return e;
+    }
+}
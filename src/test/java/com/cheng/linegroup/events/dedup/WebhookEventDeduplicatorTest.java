@@ -0,0 +1,100 @@
+package com.cheng.linegroup.events.dedup;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import com.cheng.linegroup.dto.WebhookEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebhookEventDeduplicator 兩階段標記測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:00
+ */
+public class WebhookEventDeduplicatorTest {
+
+    @Test
+    @DisplayName("處理中與已完成的事件都視為重複")
+    public void testDuplicate() {
+        WebhookEventDeduplicator dedup = new WebhookEventDeduplicator(new LineWebhook(), null);
+
+        WebhookEvent.Event e = event("E1", false);
+        assertTrue(dedup.tryClaim(e, false));
+        assertFalse(dedup.tryClaim(event("E1", true), false), "處理中的事件不能再被取得");
+        dedup.complete(e);
+        assertFalse(dedup.tryClaim(event("E1", true), true), "已完成的事件重播時也要丟棄");
+        assertTrue(dedup.tryClaim(event("E2", false), false));
+
+        assertEquals(2L, dedup.getMetrics().get("localHits"));
+        assertEquals(2L, dedup.getMetrics().get("misses"));
+        assertEquals(2L, dedup.getMetrics().get("redeliveries"));
+    }
+
+    @Test
+    @DisplayName("未處理完成而釋放的事件，重送時可以再次處理")
+    public void testReleaseAllowsRedelivery() {
+        WebhookEventDeduplicator dedup = new WebhookEventDeduplicator(new LineWebhook(), null);
+
+        WebhookEvent.Event e = event("E1", false);
+        assertTrue(dedup.tryClaim(e, false));
+        dedup.release(e);
+        assertTrue(dedup.tryClaim(event("E1", true), false));
+        assertEquals(1L, dedup.getMetrics().get("released"));
+    }
+
+    @Test
+    @DisplayName("沒有 webhookEventId 或關閉去重時一律放行")
+    public void testPassThrough() {
+        WebhookEventDeduplicator dedup = new WebhookEventDeduplicator(new LineWebhook(), null);
+        assertTrue(dedup.tryClaim(event(null, false), false));
+        assertTrue(dedup.tryClaim(event(null, false), false));
+
+        LineWebhook disabled = new LineWebhook();
+        disabled.getDedup().setEnabled(false);
+        WebhookEventDeduplicator off = new WebhookEventDeduplicator(disabled, null);
+        WebhookEvent.Event e = event("E1", false);
+        assertTrue(off.tryClaim(e, false));
+        off.complete(e);
+        assertTrue(off.tryClaim(e, false));
+    }
+
+    @Test
+    @DisplayName("Redis 上前一次執行留下的 pending 標記只有重播的事件能接手")
+    @SuppressWarnings("unchecked")
+    public void testReplayTakesOverRedisPending() {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.getDedup().setRedisEnabled(true);
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), eq("0"), any(Duration.class))).thenReturn(false);
+        when(ops.get(anyString())).thenReturn("0");
+
+        // 每次都用新的 deduplicator，模擬重啟後本機沒有標記
+        assertFalse(new WebhookEventDeduplicator(lineWebhook, redis).tryClaim(event("E1", false), false));
+
+        WebhookEventDeduplicator replaying = new WebhookEventDeduplicator(lineWebhook, redis);
+        assertTrue(replaying.tryClaim(event("E1", false), true));
+        assertEquals(1L, replaying.getMetrics().get("takenOver"));
+
+        when(ops.get(anyString())).thenReturn("1");
+        assertFalse(new WebhookEventDeduplicator(lineWebhook, redis).tryClaim(event("E2", false), true),
+                "已完成的事件不能被重播接手");
+    }
+
+    private static WebhookEvent.Event event(String webhookEventId, boolean redelivery) {
+        WebhookEvent.Event e = new WebhookEvent.Event();
+        e.setWebhookEventId(webhookEventId);
+        WebhookEvent.Event.DeliveryContext deliveryContext = new WebhookEvent.Event.DeliveryContext();
+        deliveryContext.setRedelivery(redelivery);
+        e.setDeliveryContext(deliveryContext);
+        return e;
+    }
+}
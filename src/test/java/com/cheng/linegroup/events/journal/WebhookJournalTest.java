@@ -0,0 +1,112 @@
+package com.cheng.linegroup.events.journal;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebhookJournal 重新開啟時的復原與 checkpoint 測試
+ *
+ * @author cheng
+ * @since 2026/10/18 10:00
+ */
+public class WebhookJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private WebhookJournal journal;
+
+    @AfterEach
+    public void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    @DisplayName("重新開啟後從 checkpoint 重播，並丟棄寫到一半的紀錄")
+    public void testRecoverFromTornRecord() throws IOException {
+        journal = open();
+        long first = journal.append(body("first"), 0, body("first").length, "trace-1");
+        long second = journal.append(body("second"), 0, body("second").length, "trace-2");
+        long third = journal.append(body("third"), 0, body("third").length, "trace-3");
+        WebhookJournal.JournalRecord firstRecord = journal.read(first);
+        journal.writeCheckpoint(firstRecord.nextOffset());
+        journal.close();
+
+        // 模擬崩潰：第三筆的 length 已寫入，payload 卻不完整 (crc 不符)
+        tear(third);
+
+        journal = open();
+        assertEquals(second, journal.readCheckpoint(), "checkpoint 應停在第二筆");
+        assertEquals(third, journal.endOffset(), "寫到一半的第三筆不應被視為已寫入");
+
+        WebhookJournal.JournalRecord replayed = journal.read(journal.readCheckpoint());
+        assertNotNull(replayed);
+        assertEquals("trace-2", replayed.traceId());
+        assertEquals("second", bodyOf(replayed));
+        assertNull(journal.read(replayed.nextOffset()), "第二筆之後不應再有紀錄");
+
+        // 新紀錄從被丟棄的位置開始覆寫
+        long appended = journal.append(body("fourth"), 0, body("fourth").length, null);
+        assertEquals(third, appended);
+        WebhookJournal.JournalRecord fourth = journal.read(appended);
+        assertNull(fourth.traceId());
+        assertEquals("fourth", bodyOf(fourth));
+    }
+
+    @Test
+    @DisplayName("沒有 checkpoint 時從頭重播")
+    public void testReplayFromStartWithoutCheckpoint() throws IOException {
+        journal = open();
+        long first = journal.append(body("only"), 0, body("only").length, "trace");
+        journal.close();
+
+        journal = open();
+        assertEquals(first, journal.readCheckpoint());
+        assertEquals("only", bodyOf(journal.read(first)));
+    }
+
+    private WebhookJournal open() throws IOException {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.setIntakeMode(LineWebhook.IntakeMode.JOURNAL);
+        lineWebhook.getJournal().setDir(dir.toString());
+        lineWebhook.getJournal().setSegmentSize(SEGMENT_SIZE);
+        WebhookJournal webhookJournal = new WebhookJournal(lineWebhook);
+        webhookJournal.init();
+        return webhookJournal;
+    }
+
+    /**
+     * 改壞 offset 處紀錄的第一個 payload byte
+     */
+    private void tear(long offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(String.format("%020d.log", 0)).toFile(), "rw")) {
+            long position = offset + JournalSegment.HEADER_SIZE;
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xFF);
+        }
+    }
+
+    private static byte[] body(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String bodyOf(WebhookJournal.JournalRecord journalRecord) {
+        return new String(journalRecord.payload(), journalRecord.bodyOffset(), journalRecord.bodyLength(), StandardCharsets.UTF_8);
+    }
+}
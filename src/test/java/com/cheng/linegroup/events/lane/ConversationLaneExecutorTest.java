@@ -0,0 +1,155 @@
+package com.cheng.linegroup.events.lane;
+
+import com.cheng.linegroup.common.domain.LineWebhook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConversationLaneExecutor 對話內順序與 work stealing 測試
+ *
+ * @author cheng
+ * @since 2026/10/18 10:20
+ */
+public class ConversationLaneExecutorTest {
+
+    private static final int LANES = 4;
+    private static final int KEYS = 8;
+    private static final int TASKS_PER_KEY = 40;
+
+    private ConversationLaneExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        LineWebhook lineWebhook = new LineWebhook();
+        lineWebhook.getLanes().setCount(LANES);
+        executor = new ConversationLaneExecutor(lineWebhook);
+        executor.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("所有對話集中在同一條 lane 時，其他 lane 偷走對話執行，同一對話仍依序且不重疊")
+    public void testPerKeyFifoUnderStealing() throws InterruptedException {
+        List<String> keys = keysOnLane(0);
+        Map<String, List<Integer>> executed = new ConcurrentHashMap<>();
+        Map<String, AtomicBoolean> running = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(KEYS * TASKS_PER_KEY);
+
+        for (String key : keys) {
+            executed.put(key, Collections.synchronizedList(new ArrayList<>()));
+            running.put(key, new AtomicBoolean());
+        }
+        for (int seq = 0; seq < TASKS_PER_KEY; seq++) {
+            for (String key : keys) {
+                int n = seq;
+                executor.execute(key, () -> {
+                    if (!running.get(key).compareAndSet(false, true)) {
+                        overlaps.incrementAndGet();
+                    }
+                    try {
+                        sleep(2);
+                        executed.get(key).add(n);
+                    } finally {
+                        running.get(key).set(false);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "所有工作應在時間內完成");
+        assertEquals(0, overlaps.get(), "同一對話的工作不應同時執行");
+        List<Integer> expected = IntStream.range(0, TASKS_PER_KEY).boxed().toList();
+        for (String key : keys) {
+            assertEquals(expected, executed.get(key), "對話 " + key + " 應依送出順序執行");
+        }
+        assertTrue(stolen() > 0, "閒置的 lane 應從忙碌的 lane 偷走對話");
+        assertEquals(0, executor.pendingCount());
+    }
+
+    @Test
+    @DisplayName("非同步工作完成前同一對話的下一個工作不會執行，lane 可以先處理其他對話")
+    public void testAsyncTaskHoldsConversation() throws InterruptedException {
+        List<String> keys = keysOnLane(0);
+        String first = keys.get(0);
+        String other = keys.get(1);
+        CompletableFuture<Void> reply = new CompletableFuture<>();
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch otherDone = new CountDownLatch(1);
+        CountDownLatch allDone = new CountDownLatch(1);
+
+        executor.executeAsync(first, ConversationLaneExecutor.NO_DEADLINE, () -> {
+            executed.add("first-1");
+            return reply;
+        });
+        executor.execute(first, () -> {
+            executed.add("first-2");
+            allDone.countDown();
+        });
+        executor.execute(other, () -> {
+            executed.add("other");
+            otherDone.countDown();
+        });
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS), "其他對話不應被等待中的對話卡住");
+        sleep(100);
+        assertEquals(2, executed.size());
+        assertFalse(executed.contains("first-2"), "前一個工作的 future 完成前不應執行");
+        assertEquals(1, executor.getMetrics().get("awaitingConversations"));
+
+        reply.complete(null);
+        assertTrue(allDone.await(5, TimeUnit.SECONDS));
+        assertEquals(3, executed.size());
+        assertEquals("first-2", executed.get(2));
+        assertEquals(0, executor.getMetrics().get("awaitingConversations"));
+    }
+
+    /**
+     * 找出 home 為同一條 lane 的對話 key
+     */
+    private static List<String> keysOnLane(int lane) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < KEYS; i++) {
+            String key = "C" + i;
+            if (Math.floorMod(key.hashCode(), LANES) == lane) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long stolen() {
+        List<Map<String, Object>> lanes = (List<Map<String, Object>>) executor.getMetrics().get("lanes");
+        return lanes.stream().mapToLong(m -> (Long) m.get("stolen")).sum();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
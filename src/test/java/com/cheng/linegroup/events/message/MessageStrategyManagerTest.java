@@ -0,0 +1,99 @@
+package com.cheng.linegroup.events.message;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import com.cheng.linegroup.enums.MessageType;
+import com.cheng.linegroup.events.DispatchMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MessageStrategyManager 依訊息類型分派的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:30
+ */
+public class MessageStrategyManagerTest {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    @DisplayName("只呼叫訊息類型對應的策略，依註冊順序執行，回傳 false 時中斷")
+    public void testDispatchByType() {
+        DispatchMetrics dispatchMetrics = new DispatchMetrics();
+        MessageStrategyManager manager = new MessageStrategyManager(List.of(
+                new Recording(MessageType.text, "text1", true),
+                new Recording(MessageType.image, "image1", true),
+                new Recording(MessageType.text, "text2", false),
+                new Recording(MessageType.text, "text3", true)), dispatchMetrics);
+
+        manager.handle(event("text"));
+        assertEquals(List.of("text1", "text2"), calls);
+
+        calls.clear();
+        manager.handle(event("IMAGE"));
+        assertEquals(List.of("image1"), calls);
+
+        Map<String, Object> metrics = dispatchMetrics.getMetrics();
+        assertTrue(metrics.containsKey("strategy.Recording"));
+    }
+
+    @Test
+    @DisplayName("沒有訊息或不支援的類型直接略過")
+    public void testUnsupportedType() {
+        MessageStrategyManager manager = new MessageStrategyManager(
+                List.of(new Recording(MessageType.text, "text1", true)), new DispatchMetrics());
+
+        manager.handle(event("sticker"));
+        manager.handle(event(null));
+        manager.handle(new WebhookEvent.Event());
+        // 有類型但沒有對應的策略
+        manager.handle(event("video"));
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    @DisplayName("訊息類型不分大小寫，不支援時回傳 null")
+    public void testMessageTypeOf() {
+        assertEquals(MessageType.text, MessageType.of("text"));
+        assertEquals(MessageType.audio, MessageType.of("Audio"));
+        assertNull(MessageType.of("sticker"));
+        assertNull(MessageType.of(null));
+    }
+
+    private static WebhookEvent.Event event(String type) {
+        WebhookEvent.Event e = new WebhookEvent.Event();
+        WebhookEvent.Event.Message message = new WebhookEvent.Event.Message();
+        message.setType(type);
+        e.setMessage(message);
+        return e;
+    }
+
+    private final class Recording implements MessageStrategy {
+        private final MessageType type;
+        private final String name;
+        private final boolean isContinue;
+
+        private Recording(MessageType type, String name, boolean isContinue) {
+            this.type = type;
+            this.name = name;
+            this.isContinue = isContinue;
+        }
+
+        @Override
+        public MessageType getSupportedMessageType() {
+            return type;
+        }
+
+        @Override
+        public boolean handle(WebhookEvent.Event event) {
+            calls.add(name);
+            return isContinue;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import com.cheng.linegroup.enums.BehaviorKeyword;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * KeywordAutomaton 一次掃描比對指令與學過關鍵字的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:40
+ */
+public class KeywordAutomatonTest {
+
+    private KeywordAutomaton keywordAutomaton;
+
+    @BeforeEach
+    public void setUp() {
+        ReplyKeywordRepository replyKeywordRepository = mock(ReplyKeywordRepository.class);
+        when(replyKeywordRepository.findAllKeywords()).thenReturn(List.of("早安", "晚安"));
+        keywordAutomaton = new KeywordAutomaton(replyKeywordRepository);
+        keywordAutomaton.init();
+    }
+
+    @Test
+    @DisplayName("PREFIX 指令只從文字開頭比對")
+    public void testPrefix() {
+        assertTrue(keywordAutomaton.match(".今天天氣").has(BehaviorKeyword.AI_CHAT));
+        assertTrue(keywordAutomaton.match("唐董看到了嗎").has(BehaviorKeyword.BOT_LEARNING));
+        assertTrue(keywordAutomaton.match("抽").has(BehaviorKeyword.RANDOM_IMAGE));
+
+        KeywordMatch middle = keywordAutomaton.match("我要抽");
+        assertFalse(middle.has(BehaviorKeyword.RANDOM_IMAGE));
+        assertFalse(middle.hasAnyBehavior());
+    }
+
+    @Test
+    @DisplayName("CONTAINS 關鍵字出現在任何位置都符合，不分大小寫")
+    public void testContains() {
+        assertTrue(keywordAutomaton.match("推薦 FOOD 嗎").has(BehaviorKeyword.FOOD));
+        assertTrue(keywordAutomaton.match("附近有什麼美食").has(BehaviorKeyword.FOOD));
+        assertFalse(keywordAutomaton.match("foo d").has(BehaviorKeyword.FOOD));
+
+        KeywordMatch both = keywordAutomaton.match("抽美食");
+        assertTrue(both.has(BehaviorKeyword.RANDOM_IMAGE));
+        assertTrue(both.has(BehaviorKeyword.FOOD));
+        assertFalse(both.has(BehaviorKeyword.AI_CHAT));
+    }
+
+    @Test
+    @DisplayName("學過的關鍵字必須整段文字相同，新學的關鍵字立即生效")
+    public void testLearnedKeyword() {
+        assertEquals(2, keywordAutomaton.getLearnedKeywordCount());
+        assertTrue(keywordAutomaton.match("早安").isLearnedKeyword());
+        assertFalse(keywordAutomaton.match("早安啊").isLearnedKeyword());
+        assertFalse(keywordAutomaton.match("早").isLearnedKeyword());
+
+        assertFalse(keywordAutomaton.match("午安").isLearnedKeyword());
+        keywordAutomaton.addLearnedKeyword("午安");
+        keywordAutomaton.addLearnedKeyword("午安");
+        assertTrue(keywordAutomaton.match("午安").isLearnedKeyword());
+        assertEquals(3, keywordAutomaton.getLearnedKeywordCount());
+
+        // 學過的關鍵字也可以同時是指令
+        keywordAutomaton.addLearnedKeyword("抽");
+        KeywordMatch match = keywordAutomaton.match("抽");
+        assertTrue(match.isLearnedKeyword());
+        assertTrue(match.has(BehaviorKeyword.RANDOM_IMAGE));
+    }
+
+    @Test
+    @DisplayName("空字串與 null 沒有任何符合")
+    public void testEmpty() {
+        assertFalse(keywordAutomaton.match("").hasAnyBehavior());
+        assertFalse(keywordAutomaton.match(null).isLearnedKeyword());
+    }
+}
@@ -0,0 +1,73 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.common.contants.RedisPrefix;
+import com.cheng.linegroup.common.domain.ReplyKeywordCache;
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ReplyKeywordBloomFilter 建立、新增與重建的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:50
+ */
+public class ReplyKeywordBloomFilterTest {
+
+    @Test
+    @DisplayName("建立前視為全部可能存在，建立後學過的關鍵字一定判斷為可能存在")
+    public void testMightContain() {
+        ReplyKeywordRepository replyKeywordRepository = mock(ReplyKeywordRepository.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            rows.add(new Object[]{"G" + (i % 10), "U" + i, "keyword-" + i});
+        }
+        rows.add(new Object[]{RedisPrefix.PERSONAL, "U1", "早安"});
+        when(replyKeywordRepository.findAllScopeKeys()).thenReturn(rows);
+        ReplyKeywordBloomFilter filter = new ReplyKeywordBloomFilter(config(), replyKeywordRepository);
+
+        assertTrue(filter.mightContain("G0", "anything"));
+
+        filter.rebuild();
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain("G" + (i % 10), "keyword-" + i));
+        }
+        assertTrue(filter.mightContain(ReplyKeywordIndex.scopeOf("U1", null), "早安"));
+        assertFalse(filter.mightContain(ReplyKeywordIndex.scopeOf("U2", null), "早安"));
+        assertFalse(filter.mightContain("G0", "keyword-1"), "關鍵字屬於其他群組");
+
+        filter.put("G0", "新關鍵字");
+        assertTrue(filter.mightContain("G0", "新關鍵字"));
+    }
+
+    @Test
+    @DisplayName("重建失敗時保留原本的 filter")
+    public void testRebuildFailureKeepsCurrent() {
+        ReplyKeywordRepository replyKeywordRepository = mock(ReplyKeywordRepository.class);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"G1", "U1", "早安"});
+        when(replyKeywordRepository.findAllScopeKeys()).thenReturn(rows).thenThrow(new IllegalStateException("db down"));
+        ReplyKeywordBloomFilter filter = new ReplyKeywordBloomFilter(config(), replyKeywordRepository);
+
+        filter.rebuild();
+        filter.rebuild();
+        assertTrue(filter.mightContain("G1", "早安"));
+        assertFalse(filter.mightContain("G1", "晚安"));
+        assertEquals(1L, filter.getMetrics().get("rebuilds"));
+    }
+
+    /**
+     * 誤判率設得很低，讓「一定沒有」的斷言不受誤判影響
+     */
+    private static ReplyKeywordCache config() {
+        ReplyKeywordCache config = new ReplyKeywordCache();
+        config.getBloom().setFpp(1e-6);
+        return config;
+    }
+}
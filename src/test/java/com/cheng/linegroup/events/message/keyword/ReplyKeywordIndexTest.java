@@ -0,0 +1,129 @@
+package com.cheng.linegroup.events.message.keyword;
+
+import com.cheng.linegroup.common.contants.RedisPrefix;
+import com.cheng.linegroup.common.domain.ReplyKeywordCache;
+import com.cheng.linegroup.dao.ReplyKeywordRepository;
+import com.cheng.linegroup.entity.ReplyKeyword;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ReplyKeywordIndex 以群組為單位載入、Bloom filter 排除與更新的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:50
+ */
+public class ReplyKeywordIndexTest {
+
+    private ReplyKeywordRepository replyKeywordRepository;
+    private KeywordAutomaton keywordAutomaton;
+    private ReplyKeywordIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        replyKeywordRepository = mock(ReplyKeywordRepository.class);
+        when(replyKeywordRepository.findByGid("G1")).thenReturn(List.of(keyword("U1", "G1", "早安", "早")));
+        when(replyKeywordRepository.findByGidAndUid(RedisPrefix.PERSONAL, "U2"))
+                .thenReturn(List.of(keyword("U2", RedisPrefix.PERSONAL, "晚安", "晚")));
+        when(replyKeywordRepository.findAllScopeKeys()).thenReturn(List.of(
+                new Object[]{"G1", "U1", "早安"}, new Object[]{RedisPrefix.PERSONAL, "U2", "晚安"}));
+        keywordAutomaton = new KeywordAutomaton(replyKeywordRepository);
+        keywordAutomaton.init();
+
+        ReplyKeywordCache config = new ReplyKeywordCache();
+        config.setSyncEnabled(false);
+        config.getBloom().setFpp(1e-6);
+        ReplyKeywordBloomFilter replyKeywordBloomFilter = new ReplyKeywordBloomFilter(config, replyKeywordRepository);
+        replyKeywordBloomFilter.rebuild();
+        index = new ReplyKeywordIndex(config, replyKeywordRepository, keywordAutomaton, replyKeywordBloomFilter, null, null);
+    }
+
+    @Test
+    @DisplayName("群組第一次查詢時載入，之後命中與未命中都不再讀資料庫")
+    public void testLoadOncePerGroup() {
+        assertFalse(index.isLoaded("U1", "G1"));
+        assertEquals("早", index.find("早安", "U1", "G1").getReply());
+        assertTrue(index.isLoaded("U1", "G1"));
+        assertNull(index.find("午安", "U3", "G1"));
+        assertEquals("早", index.find("早安", "U3", "G1").getReply());
+
+        verify(replyKeywordRepository, times(1)).findByGid("G1");
+        assertEquals(2L, index.getMetrics().get("hits"));
+        assertEquals(1L, index.getMetrics().get("misses"));
+        assertEquals(1L, index.getMetrics().get("loads"));
+    }
+
+    @Test
+    @DisplayName("群組尚未載入時，Bloom filter 確定沒有的關鍵字不讀資料庫")
+    public void testBloomFilterSkipsLoad() {
+        assertNull(index.find("午安", "U1", "G1"));
+        assertNull(index.find("早安", "U1", "G2"));
+        assertFalse(index.isLoaded("U1", "G1"));
+        verify(replyKeywordRepository, never()).findByGid(anyString());
+
+        // 新學的關鍵字加入 Bloom filter 後才會載入群組
+        index.onSaved(keyword("U1", "G1", "午安", "午"));
+        when(replyKeywordRepository.findByGid("G1")).thenReturn(List.of(
+                keyword("U1", "G1", "早安", "早"), keyword("U1", "G1", "午安", "午")));
+        assertEquals("午", index.find("午安", "U1", "G1").getReply());
+        verify(replyKeywordRepository, times(1)).findByGid("G1");
+    }
+
+    @Test
+    @DisplayName("個人聊天以使用者為範圍，與群組的關鍵字分開")
+    public void testPersonalScope() {
+        assertEquals("晚", index.find("晚安", "U2", null).getReply());
+        assertNull(index.find("晚安", "U2", "G1"));
+        assertNull(index.find("早安", "U2", null));
+    }
+
+    @Test
+    @DisplayName("新增關鍵字時更新已載入的群組與關鍵字比對器")
+    public void testOnSaved() {
+        index.find("早安", "U1", "G1");
+        index.onSaved(keyword("U1", "G1", "午安", "午"));
+
+        assertEquals("午", index.find("午安", "U1", "G1").getReply());
+        assertTrue(keywordAutomaton.match("午安").isLearnedKeyword());
+        verify(replyKeywordRepository, times(1)).findByGid("G1");
+
+        // 個人聊天的關鍵字以 personal 存放
+        index.find("晚安", "U2", null);
+        index.onSaved(keyword("U2", RedisPrefix.PERSONAL, "你好", "好"));
+        assertEquals("好", index.find("你好", "U2", null).getReply());
+    }
+
+    @Test
+    @DisplayName("其他機器的通知讓群組失效，下次查詢重新載入；自己發出的通知忽略")
+    public void testRemoteInvalidation() {
+        index.find("早安", "U1", "G1");
+        index.onMessage(message("other-node\nG1\n午安"), null);
+
+        assertFalse(index.isLoaded("U1", "G1"));
+        assertTrue(keywordAutomaton.match("午安").isLearnedKeyword());
+        index.find("早安", "U1", "G1");
+        verify(replyKeywordRepository, times(2)).findByGid("G1");
+        assertEquals(1L, index.getMetrics().get("remoteInvalidations"));
+
+        index.onMessage(message("broken"), null);
+        assertTrue(index.isLoaded("U1", "G1"));
+    }
+
+    private static ReplyKeyword keyword(String uid, String gid, String keyword, String reply) {
+        return ReplyKeyword.builder().uid(uid).gid(gid).keyword(keyword).reply(reply).build();
+    }
+
+    private static Message message(String body) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+}
@@ -0,0 +1,127 @@
+package com.cheng.linegroup.events.reply;
+
+import com.cheng.linegroup.enums.Api;
+import com.cheng.linegroup.services.LineService;
+import com.cheng.linegroup.services.dto.LineMessage;
+import com.cheng.linegroup.utils.dto.ApiResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author cheng
+ * @since 2026/10/18 11:00
+ **/
+public class ReplyCoalescerTest {
+
+    private LineService lineService;
+    private ReplyCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        lineService = mock(LineService.class);
+        when(lineService.callMessageAPIAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        coalescer = new ReplyCoalescer(lineService);
+    }
+
+    @Test
+    @DisplayName("多個行為的回覆合併成一次 reply")
+    void testCoalesceIntoSingleReply() {
+        ReplyAccumulator reply = new ReplyAccumulator("token", "G1");
+        reply.text("a").text("b").text("c");
+
+        coalescer.flush(reply).join();
+
+        ArgumentCaptor<LineMessage> captor = ArgumentCaptor.forClass(LineMessage.class);
+        verify(lineService, times(1)).callMessageAPIAsync(captor.capture(), eq(Api.LINE_MESSAGE_REPLY), any(), any());
+        verify(lineService, never()).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+        assertEquals("token", captor.getValue().getReplyToken());
+        assertEquals(3, captor.getValue().getMessages().size());
+    }
+
+    @Test
+    @DisplayName("超過 5 則的部分每 5 則 push 一次")
+    void testOverflowPushedInChunks() {
+        ReplyAccumulator reply = new ReplyAccumulator("token", "G1");
+        for (int i = 0; i < 12; i++) {
+            reply.text("m" + i);
+        }
+
+        coalescer.flush(reply).join();
+
+        ArgumentCaptor<LineMessage> replies = ArgumentCaptor.forClass(LineMessage.class);
+        verify(lineService).callMessageAPIAsync(replies.capture(), eq(Api.LINE_MESSAGE_REPLY), any(), any());
+        assertEquals(5, replies.getValue().getMessages().size());
+
+        ArgumentCaptor<LineMessage> pushes = ArgumentCaptor.forClass(LineMessage.class);
+        verify(lineService, times(2)).callMessageAPIAsync(pushes.capture(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+        List<LineMessage> pushed = pushes.getAllValues();
+        assertEquals("G1", pushed.get(0).getUid());
+        assertEquals(5, pushed.get(0).getMessages().size());
+        assertEquals(2, pushed.get(1).getMessages().size());
+        assertEquals("m10", pushed.get(1).getMessages().get(0).getMsg());
+        assertEquals(7L, coalescer.getMetrics().get("spilledMessages"));
+    }
+
+    @Test
+    @DisplayName("前一個呼叫完成後才送出下一個，flush 本身不等待")
+    void testSendsInOrderWithoutBlocking() {
+        CompletableFuture<ApiResponse> pendingReply = new CompletableFuture<>();
+        when(lineService.callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_REPLY), any(), any())).thenReturn(pendingReply);
+        ReplyAccumulator reply = new ReplyAccumulator("token", "G1");
+        for (int i = 0; i < 6; i++) {
+            reply.text("m" + i);
+        }
+
+        CompletableFuture<Void> flushed = coalescer.flush(reply);
+
+        assertFalse(flushed.isDone());
+        verify(lineService, never()).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+        pendingReply.complete(null);
+        assertTrue(flushed.isDone());
+        verify(lineService, times(1)).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+    }
+
+    @Test
+    @DisplayName("reply token 已被取走時全部改用 push，沒有對象時丟棄")
+    void testClaimedTokenAndNoTarget() {
+        ReplyAccumulator claimed = new ReplyAccumulator("token", "U1");
+        assertEquals("token", claimed.claimToken());
+        assertNull(claimed.claimToken());
+        claimed.text("a");
+        coalescer.flush(claimed).join();
+        verify(lineService, never()).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_REPLY), any(), any());
+        verify(lineService, times(1)).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+
+        ReplyAccumulator noTarget = new ReplyAccumulator(null, null);
+        noTarget.text("b");
+        coalescer.flush(noTarget).join();
+        assertEquals(1L, coalescer.getMetrics().get("droppedMessages"));
+    }
+
+    @Test
+    @DisplayName("單一呼叫失敗不影響其他訊息")
+    void testFailedCallCounted() {
+        when(lineService.callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_REPLY), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+        ReplyAccumulator reply = new ReplyAccumulator("token", "G1");
+        for (int i = 0; i < 6; i++) {
+            reply.text("m" + i);
+        }
+
+        assertDoesNotThrow(() -> coalescer.flush(reply).join());
+
+        verify(lineService, times(1)).callMessageAPIAsync(any(), eq(Api.LINE_MESSAGE_PUSH), any(), any());
+        assertEquals(1L, coalescer.getMetrics().get("failedCalls"));
+        // 沒有訊息時不送出
+        assertTrue(coalescer.flush(new ReplyAccumulator("token", "G1")).isDone());
+        assertEquals(1L, coalescer.getMetrics().get("flushes"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.cheng.linegroup.events.webhook;
+
+import com.cheng.linegroup.dto.WebhookEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebhookEventStreamParser 串流解析測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:10
+ */
+public class WebhookEventStreamParserTest {
+
+    private final WebhookEventStreamParser parser = new WebhookEventStreamParser();
+
+    @Test
+    @DisplayName("依序解析 events 陣列中的每個事件，略過其他欄位與未知欄位")
+    public void testParseEvents() throws IOException {
+        String json = """
+                {
+                  "destination": "U0",
+                  "extra": {"nested": [1, 2, {"a": "b"}]},
+                  "events": [
+                    {"type": "message", "webhookEventId": "E1", "replyToken": "R1", "unknown": {"x": 1},
+                     "source": {"type": "group", "groupId": "G1", "userId": "U1"},
+                     "message": {"type": "text", "id": "M1", "text": "hello"}},
+                    {"type": "join", "webhookEventId": "E2", "source": {"type": "group", "groupId": "G2"}}
+                  ]
+                }
+                """;
+        List<WebhookEvent.Event> events = new ArrayList<>();
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+
+        int count = parser.parse(data, 0, data.length, events::add);
+
+        assertEquals(2, count);
+        assertEquals("E1", events.get(0).getWebhookEventId());
+        assertEquals("G1", events.get(0).getSource().getGroupId());
+        assertEquals("hello", events.get(0).getMessage().getText());
+        assertEquals("join", events.get(1).getType());
+        assertNull(events.get(1).getMessage());
+    }
+
+    @Test
+    @DisplayName("只解析 offset 與 length 範圍內的內容")
+    public void testParseRange() throws IOException {
+        byte[] body = "{\"events\":[{\"webhookEventId\":\"E1\"}]}".getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[body.length + 10];
+        System.arraycopy(body, 0, buffer, 5, body.length);
+        List<WebhookEvent.Event> events = new ArrayList<>();
+
+        assertEquals(1, parser.parse(buffer, 5, body.length, events::add));
+        assertEquals("E1", events.get(0).getWebhookEventId());
+    }
+
+    @Test
+    @DisplayName("沒有 events 時回傳 0，不是 JSON 物件時拋出例外")
+    public void testEmptyAndInvalid() throws IOException {
+        byte[] empty = "{\"destination\":\"U0\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(0, parser.parse(empty, 0, empty.length, e -> fail("不應有事件")));
+
+        byte[] array = "[1,2]".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> parser.parse(array, 0, array.length, e -> {
+        }));
+    }
+}
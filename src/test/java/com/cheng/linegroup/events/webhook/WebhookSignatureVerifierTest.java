@@ -0,0 +1,74 @@
+package com.cheng.linegroup.events.webhook;
+
+import com.cheng.linegroup.common.domain.Line;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebhookSignatureVerifier 簽章驗證測試
+ *
+ * @author cheng
+ * @since 2026/10/18 12:10
+ */
+public class WebhookSignatureVerifierTest {
+
+    private static final String SECRET = "test-channel-secret";
+
+    private WebhookSignatureVerifier verifier;
+
+    @BeforeEach
+    public void setUp() {
+        Line line = new Line();
+        line.setMessage(new Line.Message());
+        line.getMessage().setChannelSecret(SECRET);
+        verifier = new WebhookSignatureVerifier(line);
+    }
+
+    @Test
+    @DisplayName("簽章相符時通過，同一條執行緒重複驗證結果一致")
+    public void testValidSignature() throws Exception {
+        byte[] body = "{\"destination\":\"U1\",\"events\":[]}".getBytes(StandardCharsets.UTF_8);
+        String signature = sign(body);
+
+        assertTrue(verifier.verify(body, 0, body.length, signature));
+        assertTrue(verifier.verify(body, 0, body.length, signature));
+    }
+
+    @Test
+    @DisplayName("只驗證 offset 與 length 範圍內的內容")
+    public void testVerifyRange() throws Exception {
+        byte[] body = "{\"events\":[]}".getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[body.length + 8];
+        System.arraycopy(body, 0, buffer, 3, body.length);
+
+        assertTrue(verifier.verify(buffer, 3, body.length, sign(body)));
+    }
+
+    @Test
+    @DisplayName("內容被改動、簽章錯誤或沒有簽章時不通過")
+    public void testInvalidSignature() throws Exception {
+        byte[] body = "{\"events\":[]}".getBytes(StandardCharsets.UTF_8);
+        String signature = sign(body);
+        byte[] tampered = "{\"events\":[{}]}".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(verifier.verify(tampered, 0, tampered.length, signature));
+        assertFalse(verifier.verify(body, 0, body.length, sign(tampered)));
+        assertFalse(verifier.verify(body, 0, body.length, null));
+        // 驗證失敗後 Mac 仍可繼續使用
+        assertTrue(verifier.verify(body, 0, body.length, signature));
+    }
+
+    private static String sign(byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(body));
+    }
+}
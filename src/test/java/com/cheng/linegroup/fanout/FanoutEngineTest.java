@@ -0,0 +1,194 @@
+package com.cheng.linegroup.fanout;
+
+import com.cheng.linegroup.common.domain.LineFanout;
+import com.cheng.linegroup.dao.FanoutBatchRepository;
+import com.cheng.linegroup.dao.FanoutJobRepository;
+import com.cheng.linegroup.dao.GroupMainRepository;
+import com.cheng.linegroup.dao.LineUserRepository;
+import com.cheng.linegroup.dto.FanoutJobRequest;
+import com.cheng.linegroup.entity.FanoutBatch;
+import com.cheng.linegroup.entity.FanoutJob;
+import com.cheng.linegroup.enums.FanoutAudience;
+import com.cheng.linegroup.enums.FanoutStatus;
+import com.cheng.linegroup.services.LineService;
+import com.cheng.linegroup.services.dto.LineMessage;
+import com.cheng.linegroup.services.dto.MulticastMessage;
+import com.cheng.linegroup.utils.JacksonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * FanoutEngine 切分批次與中斷後繼續的測試，資料庫以記憶體中的清單代替
+ *
+ * @author cheng
+ * @since 2026/10/18 17:00
+ **/
+public class FanoutEngineTest {
+
+    private static final long JOB_ID = 1L;
+
+    private final List<FanoutBatch> batches = new CopyOnWriteArrayList<>();
+    private FanoutJob job;
+
+    private FanoutJobRepository jobRepository;
+    private FanoutBatchRepository batchRepository;
+    private LineService lineService;
+    private FanoutEngine engine;
+    private boolean started;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(FanoutJobRepository.class);
+        batchRepository = mock(FanoutBatchRepository.class);
+        lineService = mock(LineService.class);
+
+        when(jobRepository.save(any())).thenAnswer(inv -> {
+            job = inv.getArgument(0);
+            if (job.getId() == null) {
+                job.setId(JOB_ID);
+            }
+            return job;
+        });
+        when(jobRepository.findById(JOB_ID)).thenAnswer(inv -> Optional.ofNullable(job));
+        when(batchRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<FanoutBatch> saved = inv.getArgument(0);
+            for (FanoutBatch batch : saved) {
+                batch.setId((long) batches.size() + 1);
+                batches.add(batch);
+            }
+            return saved;
+        });
+        when(batchRepository.findUnsent(eq(JOB_ID), anyInt(), any(), anyInt(), any())).thenAnswer(inv -> {
+            int afterSeq = inv.getArgument(1);
+            List<FanoutBatch.Status> statuses = inv.getArgument(2);
+            int maxAttempts = inv.getArgument(3);
+            return batches.stream()
+                    .filter(b -> b.getSeq() > afterSeq && statuses.contains(b.getStatus()) && b.getAttempts() < maxAttempts)
+                    .sorted(Comparator.comparingInt(FanoutBatch::getSeq))
+                    .toList();
+        });
+        when(batchRepository.countByStatus(eq(JOB_ID), any())).thenAnswer(inv ->
+                (int) batches.stream().filter(b -> b.getStatus() == inv.getArgument(1)).count());
+        when(batchRepository.sumRecipients(eq(JOB_ID), any())).thenAnswer(inv ->
+                batches.stream().filter(b -> b.getStatus() == inv.getArgument(1)).mapToLong(FanoutBatch::getRecipientCount).sum());
+        when(lineService.multicastAsync(any(), any(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(lineService.pushAsync(any(), any(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+        engine = new FanoutEngine(new LineFanout(), lineService, jobRepository, batchRepository,
+                mock(LineUserRepository.class), mock(GroupMainRepository.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (started) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("使用者每 500 位合併成一個 multicast，群組逐一 push，訊息每 5 則一個請求")
+    void testChunking() throws InterruptedException {
+        when(jobRepository.findByStatusIn(any())).thenReturn(List.of());
+        start();
+        List<String> recipients = new ArrayList<>(IntStream.range(0, 1200).mapToObj(i -> "U" + i).toList());
+        recipients.add("C1");
+        recipients.add("R1");
+
+        FanoutJobRequest request = new FanoutJobRequest();
+        request.setAudience(FanoutAudience.CUSTOM);
+        request.setRecipients(recipients);
+        request.setMessages(messages(7));
+        engine.create(request);
+        awaitTrue(() -> job.getStatus() == FanoutStatus.COMPLETED);
+
+        assertEquals(5, batches.size());
+        assertEquals(List.of(500, 500, 200, 1, 1), batches.stream().map(FanoutBatch::getRecipientCount).toList());
+        ArgumentCaptor<MulticastMessage> multicasts = ArgumentCaptor.forClass(MulticastMessage.class);
+        verify(lineService, times(6)).multicastAsync(multicasts.capture(), any(), anyString());
+        assertEquals(5, multicasts.getAllValues().get(0).getMessages().size());
+        assertEquals(2, multicasts.getAllValues().get(1).getMessages().size());
+        verify(lineService, times(4)).pushAsync(any(), any(), anyString());
+        // 每個請求完成後各寫入一次進度
+        verify(batchRepository, times(10)).updatePartsSent(anyLong(), anyInt());
+        assertEquals(1202, job.getSentRecipients());
+        assertEquals(5, job.getCompletedBatches());
+    }
+
+    @Test
+    @DisplayName("中斷後從批次中尚未送出的請求繼續，並沿用同一個 retry key")
+    void testResumeFromPersistedPart() throws InterruptedException {
+        job = FanoutJob.builder()
+                .audience(FanoutAudience.CUSTOM)
+                .messages(JacksonUtils.encodeToJson(messages(7)))
+                .status(FanoutStatus.RUNNING)
+                .totalRecipients(2)
+                .totalBatches(1)
+                .build();
+        job.setId(JOB_ID);
+        FanoutBatch batch = FanoutBatch.builder().jobId(JOB_ID).seq(1).multicast(true).recipients("U1,U2")
+                .recipientCount(2).partsSent(1).status(FanoutBatch.Status.PENDING).build();
+        batch.setId(1L);
+        batches.add(batch);
+        when(jobRepository.findByStatusIn(any())).thenReturn(List.of(job));
+
+        start();
+        awaitTrue(() -> job.getStatus() == FanoutStatus.COMPLETED);
+
+        ArgumentCaptor<MulticastMessage> sent = ArgumentCaptor.forClass(MulticastMessage.class);
+        verify(lineService, times(1)).multicastAsync(sent.capture(), any(), eq(FanoutEngine.retryKey(JOB_ID, 1, 1)));
+        List<LineMessage.Message> resent = sent.getValue().getMessages();
+        assertEquals(2, resent.size());
+        assertEquals("m5", resent.get(0).getMsg());
+        verify(batchRepository).updatePartsSent(1L, 2);
+        assertEquals(FanoutBatch.Status.SENT, batch.getStatus());
+    }
+
+    @Test
+    @DisplayName("retry key 只由工作、批次與請求序號決定")
+    void testDeterministicRetryKey() {
+        String key = FanoutEngine.retryKey(JOB_ID, 3, 0);
+        assertEquals(key, FanoutEngine.retryKey(JOB_ID, 3, 0));
+        assertNotEquals(key, FanoutEngine.retryKey(JOB_ID, 3, 1));
+        assertNotEquals(key, FanoutEngine.retryKey(2L, 3, 0));
+        assertEquals(key, UUID.fromString(key).toString());
+    }
+
+    private void start() {
+        engine.init();
+        started = true;
+    }
+
+    private static List<FanoutJobRequest.Message> messages(int count) {
+        List<FanoutJobRequest.Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FanoutJobRequest.Message message = new FanoutJobRequest.Message();
+            message.setText("m" + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待群發工作完成逾時");
+            Thread.sleep(20);
+        }
+    }
+}
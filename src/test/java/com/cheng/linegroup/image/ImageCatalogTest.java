@@ -0,0 +1,102 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageCatalogSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ImageCatalog 掃描與監聽目錄變更的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 13:00
+ */
+public class ImageCatalogTest {
+
+    @TempDir
+    Path dir;
+
+    private ImageCatalog catalog;
+
+    @AfterEach
+    public void tearDown() {
+        if (catalog != null) {
+            catalog.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("掃描目錄取得圖片的尺寸，依相對路徑排序並略過非圖片檔")
+    public void testScan() throws IOException {
+        writeImage(dir.resolve("b.png"), 40, 30);
+        writeImage(dir.resolve("a b.jpg"), 20, 10);
+        Files.createDirectories(dir.resolve("sub"));
+        writeImage(dir.resolve("sub/c.PNG"), 8, 8);
+        Files.writeString(dir.resolve("note.txt"), "not an image");
+
+        catalog = catalog(false);
+        ImageCatalog.Snapshot snapshot = catalog.snapshot();
+
+        assertEquals(List.of("a b.jpg", "b.png", "sub/c.PNG"), snapshot.images().stream().map(ImageEntry::name).toList());
+        ImageEntry b = snapshot.find("b.png");
+        assertEquals(40, b.width());
+        assertEquals(30, b.height());
+        assertEquals("a%20b.jpg", snapshot.get(0).urlPath());
+        assertEquals("sub/c.PNG", snapshot.get(2).urlPath());
+        assertNull(snapshot.find("note.txt"));
+    }
+
+    @Test
+    @DisplayName("監聽到新增與刪除後發布新的清單")
+    public void testWatch() throws Exception {
+        writeImage(dir.resolve("a.png"), 10, 10);
+        catalog = catalog(true);
+        assertEquals(1, catalog.snapshot().size());
+        long version = catalog.snapshot().version();
+
+        writeImage(dir.resolve("b.png"), 10, 10);
+        awaitTrue(() -> catalog.snapshot().find("b.png") != null);
+        assertTrue(catalog.snapshot().version() > version);
+
+        Files.delete(dir.resolve("a.png"));
+        awaitTrue(() -> catalog.snapshot().find("a.png") == null);
+        assertEquals(1, catalog.snapshot().size());
+    }
+
+    private ImageCatalog catalog(boolean watch) {
+        ImageCatalogSetting setting = new ImageCatalogSetting();
+        setting.setWatch(watch);
+        setting.setDebounce(Duration.ofMillis(50));
+        ImageCatalog imageCatalog = new ImageCatalog(setting);
+        ReflectionTestUtils.setField(imageCatalog, "basePath", dir.toString());
+        imageCatalog.start();
+        return imageCatalog;
+    }
+
+    private static void writeImage(Path file, int width, int height) throws IOException {
+        String name = file.getFileName().toString();
+        String format = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format.equals("jpg") ? "jpeg" : format, file.toFile());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待目錄變更逾時");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageDecodeSetting;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ImageDecoder subsampling 解碼與記憶體預算的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 13:10
+ */
+public class ImageDecoderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("subsampling 倍率讓解碼結果至少是目標尺寸的 oversample 倍")
+    public void testSubsampling() {
+        ImageDecoder decoder = new ImageDecoder(new ImageDecodeSetting());
+
+        assertEquals(8, decoder.subsampling(4000, 3000, 240, 240));
+        assertEquals(1, decoder.subsampling(300, 300, 240, 240));
+        assertEquals(1, decoder.subsampling(100, 100, 240, 240));
+    }
+
+    @Test
+    @DisplayName("只解碼接近目標尺寸的像素，縮圖結果不超過目標尺寸")
+    public void testDecodeAndRender() throws IOException {
+        Path file = dir.resolve("large.png");
+        ImageIO.write(new BufferedImage(1200, 800, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        ImageDecoder decoder = new ImageDecoder(new ImageDecodeSetting());
+
+        assertArrayEquals(new int[]{1200, 800}, ImageDecoder.readSize(file));
+
+        BufferedImage decoded = decoder.decode(file, 100, 100);
+        assertEquals(200, decoded.getWidth());
+        assertEquals(134, decoded.getHeight());
+        assertEquals(1L, decoder.getMetrics().get("subsampled"));
+
+        ImageEntry entry = new ImageEntry("large.png", "large.png", file, 0, 1200, 800, 0);
+        BufferedImage rendered = ImageIO.read(new ByteArrayInputStream(decoder.renderJpeg(entry, 100, 100)));
+        assertEquals(100, Math.max(rendered.getWidth(), rendered.getHeight()));
+        assertEquals(0L, decoder.getMetrics().get("inUseKb"));
+    }
+
+    @Test
+    @DisplayName("記憶體預算用完時等待，逾時則拒絕")
+    public void testBudgetExhausted() throws IOException {
+        ImageDecodeSetting setting = new ImageDecodeSetting();
+        setting.setMemoryBudgetBytes(1024 * 1024);
+        setting.setAcquireTimeout(Duration.ofMillis(100));
+        ImageDecoder decoder = new ImageDecoder(setting);
+
+        // 超過整個預算的工作獨佔全部預算，期間其他工作拿不到額度
+        assertThrows(RejectedExecutionException.class,
+                () -> decoder.withBudget(8L * 1024 * 1024, () -> decoder.withBudget(1024, () -> "inner")));
+        assertEquals(1L, decoder.getMetrics().get("rejected"));
+        assertEquals(0L, decoder.getMetrics().get("inUseKb"));
+
+        assertEquals("ok", decoder.withBudget(512 * 1024, () -> "ok"));
+        assertEquals(1024L, decoder.getMetrics().get("peakInUseKb"));
+    }
+
+    @Test
+    @DisplayName("預估記憶體以 subsampling 後的尺寸計算，尺寸未知時以目標尺寸的 16 倍估算")
+    public void testEstimateBytes() {
+        ImageDecoder decoder = new ImageDecoder(new ImageDecodeSetting());
+
+        assertEquals(500L * 375 * 4 + 240L * 240 * 4 * 2, decoder.estimateBytes(4000, 3000, 240, 240));
+        assertEquals(240L * 240 * 4 * 16, decoder.estimateBytes(-1, -1, 240, 240));
+    }
+}
@@ -0,0 +1,43 @@
+package com.cheng.linegroup.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ImageFilter 強度分級的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 15:30
+ */
+public class ImageFilterTest {
+
+    @Test
+    @DisplayName("強度取最接近的一級，超出範圍取最小或最大一級")
+    public void testAmountSteps() {
+        assertEquals(40f, ImageFilter.BLUR.amountOf(null));
+        assertEquals(40f, ImageFilter.BLUR.amountOf(Float.NaN));
+        assertEquals(5f, ImageFilter.BLUR.amountOf(-3f));
+        assertEquals(5f, ImageFilter.BLUR.amountOf(7.4f));
+        assertEquals(10f, ImageFilter.BLUR.amountOf(7.6f));
+        assertEquals(40f, ImageFilter.BLUR.amountOf(33.3f));
+        assertEquals(40f, ImageFilter.BLUR.amountOf(41.27f));
+        assertEquals(100f, ImageFilter.BLUR.amountOf(1e6f));
+        assertEquals(0f, ImageFilter.SHARPEN.amountOf(12f));
+        assertEquals(0f, ImageFilter.GRAYSCALE.amountOf(0.5f));
+    }
+
+    @Test
+    @DisplayName("相近的強度只會有幾種不同的值")
+    public void testFewDistinctAmounts() {
+        Set<Float> amounts = new HashSet<>();
+        for (float amount = 0f; amount <= 120f; amount += 0.01f) {
+            amounts.add(ImageFilter.BLUR.amountOf(amount));
+        }
+        assertEquals(6, amounts.size());
+    }
+}
@@ -0,0 +1,120 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageCatalogSetting;
+import com.cheng.linegroup.common.domain.ImageDecodeSetting;
+import com.cheng.linegroup.common.domain.ImageVariantSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ImageVariants 產生與清除舊版本的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 15:00
+ */
+public class ImageVariantsTest {
+
+    private static final String ORPHAN = "0".repeat(64) + ".jpg";
+
+    @TempDir
+    Path dir;
+
+    private Path images;
+    private Path previews;
+    private ImageCatalog catalog;
+    private ImageVariants variants;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        images = Files.createDirectories(dir.resolve("images"));
+        previews = Files.createDirectories(dir.resolve("variants/preview"));
+        writeImage(images.resolve("a.jpg"), 1000);
+
+        ImageCatalogSetting catalogSetting = new ImageCatalogSetting();
+        catalogSetting.setWatch(false);
+        catalog = new ImageCatalog(catalogSetting);
+        ReflectionTestUtils.setField(catalog, "basePath", images.toString());
+        catalog.start();
+
+        ImageVariantSetting setting = new ImageVariantSetting();
+        setting.setDir(dir.resolve("variants").toString());
+        setting.setThreads(1);
+        variants = new ImageVariants(setting, catalog, new ImageDecoder(new ImageDecodeSetting()));
+        ReflectionTestUtils.setField(variants, "domain", "https://example.com/");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        variants.stop();
+        catalog.stop();
+    }
+
+    @Test
+    @DisplayName("原圖修改後產生新版本並刪除舊版本")
+    public void testRemoveStaleVariantOnUpdate() throws Exception {
+        variants.start();
+        awaitTrue(() -> countFiles(previews) == 1);
+        Path first = onlyFile(previews);
+
+        writeImage(images.resolve("a.jpg"), 800);
+        Files.setLastModifiedTime(images.resolve("a.jpg"), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        catalog.rescan();
+
+        awaitTrue(() -> countFiles(previews) == 1 && !Files.exists(first));
+        assertEquals(2L, variants.getMetrics().get("rendered"));
+    }
+
+    @Test
+    @DisplayName("原圖刪除時一併刪除版本，啟動時清掉不屬於任何圖的檔案")
+    public void testRemoveOrphans() throws Exception {
+        Files.writeString(previews.resolve(ORPHAN), "stale");
+        variants.start();
+        assertFalse(Files.exists(previews.resolve(ORPHAN)));
+        awaitTrue(() -> countFiles(previews) == 1);
+
+        Files.delete(images.resolve("a.jpg"));
+        catalog.rescan();
+
+        awaitTrue(() -> countFiles(previews) == 0 && (Long) variants.getMetrics().get("removed") >= 2L);
+    }
+
+    private static void writeImage(Path file, int width) throws IOException {
+        ImageIO.write(new BufferedImage(width, width / 2, BufferedImage.TYPE_INT_RGB), "jpeg", file.toFile());
+    }
+
+    private static long countFiles(Path dir) {
+        try (var files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".jpg")).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path onlyFile(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".jpg")).findFirst().orElseThrow();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待產生圖片版本逾時");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.ImageCatalogSetting;
+import com.cheng.linegroup.common.domain.ImageDecodeSetting;
+import com.cheng.linegroup.common.domain.ImageResizeCacheSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResizedImageCache 尺寸分級、磁碟 LRU 與統計的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 14:30
+ */
+public class ResizedImageCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private ImageCatalog catalog;
+    private ImageResizeCacheSetting setting;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path images = Files.createDirectories(dir.resolve("images"));
+        for (String name : new String[]{"a", "b", "c"}) {
+            ImageIO.write(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "jpeg", images.resolve(name + ".jpg").toFile());
+        }
+        ImageCatalogSetting catalogSetting = new ImageCatalogSetting();
+        catalogSetting.setWatch(false);
+        catalog = new ImageCatalog(catalogSetting);
+        ReflectionTestUtils.setField(catalog, "basePath", images.toString());
+        catalog.start();
+
+        setting = new ImageResizeCacheSetting();
+        setting.setDiskDir(dir.resolve("cache").toString());
+        // 記憶體層放不下任何縮圖，每次都經過磁碟層
+        setting.setMemoryMaxBytes(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        catalog.stop();
+    }
+
+    @Test
+    @DisplayName("要求的尺寸往上取到最接近的一級，相近的尺寸共用同一個快取")
+    public void testSizeBuckets() {
+        ResizedImageCache cache = cache();
+
+        ResizedImageCache.Variant v1 = cache.variant("a", 100, 100);
+        ResizedImageCache.Variant v2 = cache.variant("a", 120, 127);
+        assertEquals(v1.hash(), v2.hash());
+        assertEquals(128, v1.width());
+        assertEquals(128, v1.height());
+
+        ResizedImageCache.Variant wide = cache.variant("a", 2000, 10);
+        assertEquals(2048, wide.width());
+        assertEquals(64, wide.height());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.variant("a", 4096, 100));
+        assertNull(cache.variant("missing", 100, 100));
+    }
+
+    @Test
+    @DisplayName("磁碟層超過上限時刪除最久沒用到的檔案")
+    public void testDiskLru() throws IOException {
+        ResizedImageCache cache = cache();
+        ResizedImageCache.Variant a = cache.variant("a", 128, 128);
+        ResizedImageCache.Variant b = cache.variant("b", 128, 128);
+        ResizedImageCache.Variant c = cache.variant("c", 128, 128);
+
+        long size = cache.get(a).length;
+        // 三張縮圖內容相同，大小一樣；只放得下兩張
+        setting.setDiskMaxBytes(size * 2);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        Path cacheDir = dir.resolve("cache");
+        assertTrue(Files.exists(cacheDir.resolve(a.hash() + ".jpg")));
+        assertFalse(Files.exists(cacheDir.resolve(b.hash() + ".jpg")), "b 最久沒用到，應被刪除");
+        assertTrue(Files.exists(cacheDir.resolve(c.hash() + ".jpg")));
+        assertEquals(1L, cache.getMetrics().get("diskHits"));
+        assertEquals(1L, cache.getMetrics().get("diskEvictions"));
+        assertEquals(size * 2, cache.getMetrics().get("diskBytes"));
+
+        // 重新啟動後依修改時間重建，刪除沒搬移完成的暫存檔
+        Files.writeString(cacheDir.resolve("x.tmp"), "partial");
+        ResizedImageCache restarted = cache();
+        assertEquals(2, restarted.getMetrics().get("diskEntries"));
+        assertFalse(Files.exists(cacheDir.resolve("x.tmp")));
+    }
+
+    @Test
+    @DisplayName("304 另外計算，不影響命中率")
+    public void testNotModifiedCountedSeparately() throws IOException {
+        ResizedImageCache cache = cache();
+        ResizedImageCache.Variant a = cache.variant("a", 128, 128);
+        cache.recordNotModified();
+        cache.recordNotModified();
+        cache.get(a);
+        cache.get(a);
+
+        assertEquals(2L, cache.getMetrics().get("requests"));
+        assertEquals(2L, cache.getMetrics().get("notModified"));
+        assertEquals(1L, cache.getMetrics().get("renders"));
+        assertEquals(0.5, (Double) cache.getMetrics().get("hitRatio"), 1e-9);
+    }
+
+    private ResizedImageCache cache() {
+        ResizedImageCache cache = new ResizedImageCache(catalog, new ImageDecoder(new ImageDecodeSetting()), null, setting);
+        cache.init();
+        return cache;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cheng.linegroup.image;
+
+import com.cheng.linegroup.common.domain.SentImageTracking;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * SentImageTracker 每日上限、換日與 Redis 鏡像的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 14:00
+ */
+public class SentImageTrackerTest {
+
+    private static final ImageEntry A = image("a.jpg");
+    private static final ImageEntry B = image("b.jpg");
+    private static final ImageEntry C = image("0-new.jpg");
+
+    private SentImageTracking config;
+
+    @BeforeEach
+    public void setUp() {
+        config = new SentImageTracking();
+        config.setDailyLimit(3);
+        config.setZoneId("UTC");
+        assertNotEquals(SentImageTracker.bitOf("a.jpg", 16), SentImageTracker.bitOf("b.jpg", 16));
+        assertNotEquals(SentImageTracker.bitOf("a.jpg", 16), SentImageTracker.bitOf("0-new.jpg", 16));
+    }
+
+    @Test
+    @DisplayName("每日上限依發送次數計算，圖片比上限少時仍會達到上限")
+    public void testLimitCountsSends() {
+        SentImageTracker tracker = tracker(null, "2026-10-18T01:00:00Z");
+        ImageCatalog.Snapshot images = snapshot(A, B);
+
+        for (int i = 0; i < 3; i++) {
+            tracker.markSent("G1", tracker.pickUnsent("G1", images));
+            assertFalse(tracker.isLimitReached("G1"));
+        }
+        tracker.markSent("G1", tracker.pickUnsent("G1", images));
+
+        assertEquals(4, tracker.sentCount("G1"));
+        assertTrue(tracker.isLimitReached("G1"));
+        assertFalse(tracker.isLimitReached("G2"), "不同群組分開計算");
+        assertTrue((Long) tracker.getMetrics().get("exhausted") >= 2L);
+    }
+
+    @Test
+    @DisplayName("已發送的紀錄依檔名對應，新增圖片改變清單順序後不會錯位")
+    public void testStableAcrossCatalogChanges() {
+        SentImageTracker tracker = tracker(null, "2026-10-18T01:00:00Z");
+        tracker.markSent("G1", A);
+
+        // 新圖片排在最前面，原本的 index 全部往後移
+        ImageCatalog.Snapshot reloaded = snapshot(C, A, B);
+        for (int i = 0; i < 50; i++) {
+            assertNotEquals("a.jpg", tracker.pickUnsent("G1", reloaded).name());
+        }
+        tracker.markSent("G1", B);
+        tracker.markSent("G1", C);
+        assertEquals(0L, tracker.getMetrics().get("exhausted"));
+    }
+
+    @Test
+    @DisplayName("換日後發送次數與已發送的圖片重新計算")
+    public void testDailyRollover() {
+        SentImageTracker tracker = tracker(null, "2026-10-18T23:59:00Z");
+        ImageCatalog.Snapshot images = snapshot(A);
+        for (int i = 0; i < 4; i++) {
+            tracker.markSent("G1", A);
+        }
+        assertTrue(tracker.isLimitReached("G1"));
+
+        ReflectionTestUtils.setField(tracker, "clock", Clock.fixed(Instant.parse("2026-10-19T00:01:00Z"), ZoneOffset.UTC));
+
+        assertEquals(0, tracker.sentCount("G1"));
+        assertFalse(tracker.isLimitReached("G1"));
+        assertEquals("a.jpg", tracker.pickUnsent("G1", images).name());
+        assertEquals(0L, tracker.getMetrics().get("exhausted"));
+        assertEquals(1L, tracker.getMetrics().get("rotations"));
+    }
+
+    @Test
+    @DisplayName("開啟 Redis 鏡像時以 SETBIT、INCR 寫入，每次判斷上限都讀取 Redis 的次數")
+    @SuppressWarnings("unchecked")
+    public void testRedisMirror() {
+        config.setRedisMirror(true);
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        SentImageTracker tracker = tracker(redis, "2026-10-18T01:00:00Z");
+
+        tracker.markSent("G1", A);
+
+        verify(ops).setBit("image:sent:20261018:G1", SentImageTracker.bitOf("a.jpg", 16), true);
+        verify(ops).increment("image:sent-count:20261018:G1");
+
+        // 其他機器已發送 4 次
+        when(ops.get("image:sent-count:20261018:G1")).thenReturn("4");
+        assertTrue(tracker.isLimitReached("G1"));
+        when(ops.get("image:sent-count:20261018:G1")).thenThrow(new IllegalStateException("down"));
+        assertEquals(1, tracker.sentCount("G1"), "Redis 失敗時退回本機的次數");
+        assertEquals(1L, tracker.getMetrics().get("redisErrors"));
+    }
+
+    private SentImageTracker tracker(StringRedisTemplate redis, String now) {
+        SentImageTracker tracker = new SentImageTracker(config, redis);
+        ReflectionTestUtils.setField(tracker, "clock", Clock.fixed(Instant.parse(now), ZoneOffset.UTC));
+        return tracker;
+    }
+
+    private static ImageCatalog.Snapshot snapshot(ImageEntry... images) {
+        return new ImageCatalog.Snapshot(1, images);
+    }
+
+    private static ImageEntry image(String name) {
+        return new ImageEntry(name, name, Path.of("/tmp", name), 1, 10, 10, 0);
+    }
+}
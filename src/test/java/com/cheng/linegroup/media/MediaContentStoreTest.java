@@ -0,0 +1,99 @@
+package com.cheng.linegroup.media;
+
+import com.cheng.linegroup.common.domain.MediaStoreSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MediaContentStore 保留期限與大小上限清理的測試
+ *
+ * @author cheng
+ * @since 2026/10/18 16:00
+ **/
+public class MediaContentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private MediaStoreSetting setting;
+    private MediaContentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        setting = new MediaStoreSetting();
+        setting.setDir(dir.toString());
+        setting.setRetention(Duration.ofDays(7));
+        store = new MediaContentStore(setting);
+        store.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    @DisplayName("過期的 messageId 與沒有對應指向的內容被刪除，仍被使用的內容保留")
+    void testRetention() throws IOException {
+        StoredMedia shared = store("m1", "shared");
+        StoredMedia alone = store("m2", "alone");
+        age(dir.resolve("ids/m1"), Duration.ofDays(8));
+        age(dir.resolve("ids/m2"), Duration.ofDays(8));
+        age(shared.file(), Duration.ofDays(8));
+        age(alone.file(), Duration.ofDays(8));
+        // 相同內容再次儲存，保留期限重新計算
+        store("m3", "shared");
+        Path partial = Files.writeString(dir.resolve("tmp/media1.part"), "partial");
+        age(partial, Duration.ofHours(2));
+
+        assertEquals(1, store.cleanup());
+
+        assertNull(store.find("m1"));
+        assertNull(store.find("m2"));
+        assertNotNull(store.find("m3"));
+        assertTrue(Files.exists(shared.file()));
+        assertFalse(Files.exists(alone.file()));
+        assertFalse(Files.exists(partial), "下載中斷留下的暫存檔被刪除");
+        assertEquals(2L, store.getMetrics().get("expiredIds"));
+        assertEquals(1L, store.getMetrics().get("removedBlobs"));
+    }
+
+    @Test
+    @DisplayName("總大小超過上限時從最舊的內容開始刪除")
+    void testMaxBytes() throws IOException {
+        setting.setMaxBytes(10);
+        StoredMedia older = store("m1", "0123456789");
+        store("m2", "abcdefghij");
+        age(older.file(), Duration.ofHours(1));
+
+        assertEquals(1, store.cleanup());
+
+        assertNull(store.find("m1"));
+        assertFalse(Files.exists(dir.resolve("ids/m1")));
+        assertNotNull(store.find("m2"));
+        assertEquals(1L, store.getMetrics().get("evictedBlobs"));
+        assertEquals(10L, store.getMetrics().get("blobBytes"));
+        assertEquals(1, store.getMetrics().get("blobCount"));
+    }
+
+    private StoredMedia store(String messageId, String content) throws IOException {
+        return store.store(messageId, "image/jpeg", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Path age(Path file, Duration age) throws IOException {
+        return Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - age.toMillis()));
+    }
+}
@@ -0,0 +1,97 @@
+package com.cheng.linegroup.media;
+
+import com.cheng.linegroup.common.domain.MediaStoreSetting;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author cheng
+ * @since 2026/10/18 10:40
+ **/
+public class MediaRangeWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private MediaRangeWriter writer;
+    private StoredMedia media;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writer = new MediaRangeWriter(new MediaStoreSetting());
+        Path file = dir.resolve("m1");
+        Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+        media = new StoredMedia("m1", "abc", "video/mp4", 10, file);
+    }
+
+    @Test
+    @DisplayName("單一區段回傳 206 與對應內容")
+    void testSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/m1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(media, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("超出內容範圍回傳 416")
+    void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/media/m1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-20");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(media, request, response);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("沒有 Range 時回傳完整內容，ETag 相符時回傳 304")
+    void testFullAndNotModified() throws Exception {
+        MockHttpServletResponse full = new MockHttpServletResponse();
+        writer.write(media, new MockHttpServletRequest("GET", "/media/m1"), full);
+        assertEquals(200, full.getStatus());
+        assertEquals("0123456789", full.getContentAsString());
+
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/media/m1");
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc\"");
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        writer.write(media, conditional, notModified);
+        assertEquals(304, notModified.getStatus());
+
+        assertEquals(1L, writer.getMetrics().get("full"));
+        assertEquals(1L, writer.getMetrics().get("notModified"));
+    }
+
+    @Test
+    @DisplayName("解析 Range 標頭")
+    void testParseRange() {
+        assertArrayEquals(new long[]{0, 9}, MediaRangeWriter.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[]{7, 9}, MediaRangeWriter.parseRange("bytes=-3", 10));
+        assertArrayEquals(new long[]{5, 9}, MediaRangeWriter.parseRange("bytes=5-100", 10));
+        // 多區段與格式錯誤時回傳完整內容
+        assertNull(MediaRangeWriter.parseRange("bytes=0-1,3-4", 10));
+        assertNull(MediaRangeWriter.parseRange("items=0-1", 10));
+        assertNull(MediaRangeWriter.parseRange("bytes=a-b", 10));
+        assertEquals(0, MediaRangeWriter.parseRange("bytes=10-", 10).length);
+    }
+}
@@ -0,0 +1,79 @@
+package com.cheng.linegroup.utils;
+
+import okhttp3.FormBody;
+import okhttp3.Request;
+import okio.Buffer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author cheng
+ * @since 2026/10/18 10:50
+ **/
+public class HttpRequestTest {
+
+    @Test
+    @DisplayName("設定方法回傳新實例，原本的實例不變")
+    void testImmutable() {
+        HttpRequest base = HttpRequest.get("https://api.line.me/v2/bot/info");
+        HttpRequest authed = base.bearer("token");
+
+        assertNotSame(base, authed);
+        assertNull(base.toRequest().header(HttpHeaders.AUTHORIZATION));
+        assertEquals("Bearer token", authed.toRequest().header(HttpHeaders.AUTHORIZATION));
+        // null 值略過，回傳原本的實例
+        assertSame(base, base.header("X-Test", null));
+        assertSame(base, base.query("start", null));
+    }
+
+    @Test
+    @DisplayName("查詢參數直接加到 URL")
+    void testQuery() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("a", "1");
+        params.put("b", null);
+        params.put("c", "x y");
+
+        Request request = HttpRequest.get("https://api.line.me/v2/bot/group/G1/members/ids")
+                .query("start", "s1")
+                .query(params)
+                .toRequest();
+
+        assertEquals("s1", request.url().queryParameter("start"));
+        assertEquals("1", request.url().queryParameter("a"));
+        assertNull(request.url().queryParameter("b"));
+        assertEquals("x y", request.url().queryParameter("c"));
+        assertEquals(3, request.url().querySize());
+    }
+
+    @Test
+    @DisplayName("JSON 與表單 body")
+    void testBody() throws Exception {
+        Request json = HttpRequest.post("https://api.line.me/v2/bot/message/push")
+                .json(Map.of("to", "U1"))
+                .toRequest();
+        Buffer buffer = new Buffer();
+        json.body().writeTo(buffer);
+        assertEquals("{\"to\":\"U1\"}", buffer.readUtf8());
+        assertEquals("application/json; charset=utf-8", json.body().contentType().toString());
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("message", "hi");
+        fields.put("skip", null);
+        Request form = HttpRequest.post("https://notify-api.line.me/api/notify").form(fields).toRequest();
+        FormBody body = (FormBody) form.body();
+        assertEquals(1, body.size());
+        assertEquals("hi", body.value(0));
+
+        // 未設定 body 的 POST 送出空的 JSON 物件
+        Buffer empty = new Buffer();
+        HttpRequest.post("https://api.line.me/v2/bot/x").toRequest().body().writeTo(empty);
+        assertEquals("{}", empty.readUtf8());
+    }
+}
@@ -274,12 +274,14 @@ public class TestOkHttpUtils {
                         .contentType(contentType)
                         .build();
             } else {
-                byte[] data = Objects.requireNonNull(response.body()).bytes();
+                // 與 OkHttpUtils.sync() 相同，二進位內容不讀進記憶體
+                String data = contentType == null || contentType.startsWith("text")
+                        ? Objects.requireNonNull(response.body()).string() : null;
                 apiResponse = ApiResponse.builder()
                         .httpStatusCode(code)
                         .lineRequestId(lineRequestId)
+                        .resultData(data)
                         .contentType(contentType)
-                        .binaryData(data)
                         .build();
             }
             int httpStatusCode = apiResponse.getHttpStatusCode();